@@ -8,12 +8,19 @@ import java.nio.file.Paths;
 import javax.persistence.*;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 
-/** Entity representing an attachment to {@link Post}. */
+/**
+ * Entity representing an attachment to {@link Post}.
+ *
+ * <p>Attachments referenced by posts loaded together (e.g. latest replies on board page) are
+ * fetched in batches, so they don't cost one query per post.
+ */
 @Entity
 @Table(name = "attachments")
+@BatchSize(size = Constants.MAX_THREADS_PER_PAGE * Constants.MAX_LATEST_REPLIES_PER_THREAD)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +40,17 @@ public class Attachment extends BaseEntity {
   @ToString.Include
   private AttachmentCategory category;
 
+  /**
+   * State of processing of this attachment's file.
+   *
+   * @see AttachmentStatus
+   */
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  @ToString.Include
+  @Builder.Default
+  private AttachmentStatus status = AttachmentStatus.READY;
+
   /** Parent folder(s) this attachment is stored in. Example: {@code /foo/pol/}. */
   @Basic @EqualsAndHashCode.Include @ToString.Include private String folder;
 
@@ -46,16 +64,13 @@ public class Attachment extends BaseEntity {
   private String originalFilename;
 
   /**
-   * Filename generated by the system. The file will be stored under this name. Embedded attachments
-   * are not stored locally, so it will be {@code null} for them.
+   * Filename generated by the system from checksum of the file. The file will be stored under this
+   * name and shared by all attachments with the same content. Embedded attachments are not stored
+   * locally, so it will be {@code null} for them.
    */
-  @Column(unique = true)
-  @EqualsAndHashCode.Include
-  @ToString.Include
-  private String filename;
+  @EqualsAndHashCode.Include @ToString.Include private String filename;
 
   /** (Optional) name of stored thumbnail for this attachment's file. */
-  @Column(unique = true)
   private String thumbnailFilename;
 
   /** (Optional) shareable url to this attachment's file on remote storage server. */
@@ -82,6 +97,18 @@ public class Attachment extends BaseEntity {
   @Fetch(FetchMode.JOIN)
   private EmbedData embedData;
 
+  /**
+   * Quality of thumbnail created for this attachment's file. Determined by settings of the board
+   * the file was uploaded to. Stored files are shared only by attachments with the same thumbnail
+   * quality.
+   *
+   * @see ThumbnailQuality
+   */
+  @Enumerated(value = EnumType.STRING)
+  @Column(nullable = false)
+  @Builder.Default
+  private ThumbnailQuality thumbnailQuality = ThumbnailQuality.QUALITY;
+
   /**
    * @return pointer to this attachment's file on local filesystem. If file does not exist (embedded
    *     attachments) return {@code null}
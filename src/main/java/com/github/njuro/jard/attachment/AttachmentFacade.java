@@ -8,10 +8,14 @@ import com.github.njuro.jard.board.Board;
 import com.github.njuro.jard.board.BoardFacade;
 import com.github.njuro.jard.board.dto.BoardDto;
 import com.github.njuro.jard.utils.validation.PropertyValidationException;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Predicate;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.tika.Tika;
@@ -39,21 +43,23 @@ public class AttachmentFacade extends BaseFacade<Attachment, AttachmentDto> {
   }
 
   /**
-   * Creates and stores new attachment.
+   * Creates and stores new attachment. The attachment is returned while its file is still being
+   * processed, see {@link AttachmentService#saveAttachment(Attachment, InputStream)}.
    *
    * @param file uploaded file
    * @param board {@link Board} to which the file was uploaded
    * @return created {@link Attachment}
    * @throws PropertyValidationException if MIME type of uploaded file is not supported on given
    *     board or saving of attachment fails
+   * @throws AttachmentProcessingRejectedException if processing queue for category of the
+   *     attachment is full
    */
   public AttachmentDto createAttachment(MultipartFile file, BoardDto board) {
-    String mimeType = detectMimeType(file);
-    if (!boardFacade.isMimeTypeSupported(board, mimeType)) {
-      throw new PropertyValidationException("Uploaded file mime type not supported on this board");
-    }
-
-    return createAttachment(file, mimeType, Paths.get(board.getLabel()));
+    return createAttachment(
+        file,
+        Paths.get(board.getLabel()),
+        board.getSettings().getThumbnailQuality(),
+        mimeType -> boardFacade.isMimeTypeSupported(board, mimeType));
   }
 
   /**
@@ -65,51 +71,70 @@ public class AttachmentFacade extends BaseFacade<Attachment, AttachmentDto> {
    * @throws PropertyValidationException if saving of attachment fails
    */
   public AttachmentDto createAttachment(MultipartFile file, Path folder) {
-    return createAttachment(file, detectMimeType(file), folder);
+    return createAttachment(file, folder, ThumbnailQuality.QUALITY, mimeType -> true);
   }
 
   /**
-   * Creates and stores new attachment.
+   * Creates and stores new attachment. The uploaded file is read only once - its MIME type is
+   * detected from the beginning of the stream, which is then stored without being opened again.
    *
    * @param file uploaded file
-   * @param mimeType MIME type of uploaded file
    * @param folder path to folder where uploaded file should be stored
+   * @param thumbnailQuality quality of thumbnail to create for uploaded file
+   * @param isMimeTypeSupported whether detected MIME type of uploaded file is supported
    * @return created {@link Attachment}
-   * @throws PropertyValidationException if saving of attachment fails or filename has no extension
+   * @throws PropertyValidationException if MIME type is not supported, saving of attachment fails
+   *     or filename has no extension
    */
-  private AttachmentDto createAttachment(MultipartFile file, String mimeType, Path folder) {
-    String ext = FilenameUtils.getExtension(file.getOriginalFilename());
-    if (ext == null || ext.isEmpty()) {
-      throw new PropertyValidationException("Name of uploaded file must have an extension");
-    }
+  private AttachmentDto createAttachment(
+      MultipartFile file,
+      Path folder,
+      ThumbnailQuality thumbnailQuality,
+      Predicate<String> isMimeTypeSupported) {
+    try (InputStream input = new BufferedInputStream(file.getInputStream())) {
+      String mimeType = detectMimeType(input);
+      if (!isMimeTypeSupported.test(mimeType)) {
+        throw new PropertyValidationException(
+            "Uploaded file mime type not supported on this board");
+      }
 
-    String generatedName = Instant.now().toEpochMilli() + "." + ext.toLowerCase();
-    var attachment =
-        Attachment.builder()
-            .originalFilename(file.getOriginalFilename())
-            .filename(generatedName)
-            .folder(folder.toString())
-            .metadata(new AttachmentMetadata())
-            .build();
-    attachment.getMetadata().setMimeType(mimeType);
+      String ext = FilenameUtils.getExtension(file.getOriginalFilename());
+      if (ext == null || ext.isEmpty()) {
+        throw new PropertyValidationException("Name of uploaded file must have an extension");
+      }
 
-    try {
-      return toDto(attachmentService.saveAttachment(attachment, file));
+      String generatedName = Instant.now().toEpochMilli() + "." + ext.toLowerCase();
+      var attachment =
+          Attachment.builder()
+              .originalFilename(file.getOriginalFilename())
+              .filename(generatedName)
+              .folder(folder.toString())
+              .metadata(new AttachmentMetadata())
+              .thumbnailQuality(thumbnailQuality)
+              .build();
+      attachment.getMetadata().setMimeType(mimeType);
+
+      return toDto(attachmentService.saveAttachment(attachment, input));
     } catch (IOException ex) {
       log.error("Saving of attachment failed", ex);
       throw new PropertyValidationException("Saving of attachment failed");
     }
   }
 
+  /** {@link AttachmentService#getAttachment(UUID)} */
+  public AttachmentDto getAttachment(UUID id) {
+    return toDto(attachmentService.getAttachment(id));
+  }
+
   /**
-   * Detects MIME type of given file.
+   * Detects MIME type of uploaded file. The stream is reset to its beginning afterwards.
    *
-   * @param file file to detect MIME type of
+   * @param input stream of uploaded file, must support marking
    * @return detected MIME type or {@code null} if none was found
    */
-  private String detectMimeType(MultipartFile file) {
+  private String detectMimeType(InputStream input) {
     try {
-      return mimeTypeDetector.detect(file.getInputStream());
+      return mimeTypeDetector.detect(input);
     } catch (IOException ex) {
       log.error("Failed to detect mime type: " + ex.getMessage());
       return null;
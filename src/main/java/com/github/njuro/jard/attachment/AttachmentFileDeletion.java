@@ -0,0 +1,72 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.base.BaseEntity;
+import com.github.njuro.jard.common.Constants;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * Entity representing scheduled deletion of stored files (file and thumbnail) of deleted {@link
+ * Attachment}. Deletions are recorded in the same transaction the attachment is deleted in, and
+ * executed after it commits, so failed deletion of files never leaves database and storage out of
+ * sync.
+ *
+ * @see AttachmentFileDeletionService
+ */
+@Entity
+@Table(name = "attachment_file_deletions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(onlyExplicitlyIncluded = true, callSuper = false)
+@ToString(onlyExplicitlyIncluded = true)
+public class AttachmentFileDeletion extends BaseEntity {
+
+  private static final long serialVersionUID = 4310682541935378529L;
+
+  /** Parent folder(s) the file is stored in. */
+  @Basic
+  @Column(nullable = false)
+  @EqualsAndHashCode.Include
+  @ToString.Include
+  private String folder;
+
+  /** Name of the file. */
+  @Basic
+  @Column(nullable = false)
+  @EqualsAndHashCode.Include
+  @ToString.Include
+  private String filename;
+
+  /** Name of the thumbnail of the file, or {@code null} if there is none. */
+  @Basic private String thumbnailFilename;
+
+  /** How many times the deletion already failed. */
+  @Column(nullable = false)
+  @Builder.Default
+  private int attempts = 0;
+
+  /** When should the deletion be executed (again). */
+  @Column(nullable = false)
+  private OffsetDateTime nextAttemptAt;
+
+  /**
+   * @return paths to all files to delete, relative to the root of user content (both on local
+   *     filesystem and remote storage)
+   */
+  public List<Path> getStoredFiles() {
+    var files = new ArrayList<Path>();
+    files.add(Paths.get(folder, filename));
+    if (thumbnailFilename != null) {
+      files.add(Paths.get(folder, Constants.THUMBNAIL_FOLDER_NAME, thumbnailFilename));
+    }
+    return files;
+  }
+}
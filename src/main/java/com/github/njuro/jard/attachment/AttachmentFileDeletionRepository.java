@@ -0,0 +1,26 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.base.BaseRepository;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AttachmentFileDeletionRepository extends BaseRepository<AttachmentFileDeletion> {
+
+  @Query(
+      value =
+          "SELECT * FROM attachment_file_deletions WHERE next_attempt_at <= :now "
+              + "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<AttachmentFileDeletion> findDueForUpdate(
+      @Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+  @Modifying
+  @Query("DELETE FROM AttachmentFileDeletion d WHERE d.folder = :folder AND d.filename = :filename")
+  void deleteByFolderAndFilename(
+      @Param("folder") String folder, @Param("filename") String filename);
+}
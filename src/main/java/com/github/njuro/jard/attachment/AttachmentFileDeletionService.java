@@ -0,0 +1,160 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.attachment.storage.RemoteStorageService;
+import com.github.njuro.jard.common.Constants;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service for deleting stored files of deleted attachments. Deletions are first scheduled in the
+ * transaction which deletes the attachments and then executed in batches by {@link
+ * AttachmentFileDeletionWorker}, so no files are deleted while database locks are held and failed
+ * deletions can be retried.
+ */
+@Service
+@Transactional
+@Slf4j
+public class AttachmentFileDeletionService {
+
+  private final RemoteStorageService remoteStorageService;
+  private final AttachmentFileDeletionRepository fileDeletionRepository;
+
+  @Autowired
+  public AttachmentFileDeletionService(
+      @Autowired(required = false) RemoteStorageService remoteStorageService,
+      AttachmentFileDeletionRepository fileDeletionRepository) {
+    this.remoteStorageService = remoteStorageService;
+    this.fileDeletionRepository = fileDeletionRepository;
+  }
+
+  /**
+   * Schedules deletion of stored files (including thumbnail) of given attachment. Embedded
+   * attachments have only stored thumbnail, which is then deleted as standalone file. The deletion
+   * becomes visible to the worker only when current transaction commits.
+   *
+   * @param attachment attachment to delete files of
+   * @throws NullPointerException if attachment is {@code null}
+   */
+  public void scheduleDeletion(Attachment attachment) {
+    Objects.requireNonNull(attachment);
+
+    if (attachment.getCategory() == AttachmentCategory.EMBED) {
+      fileDeletionRepository.save(
+          AttachmentFileDeletion.builder()
+              .folder(attachment.getThumbnailFolder())
+              .filename(attachment.getThumbnailFilename())
+              .nextAttemptAt(OffsetDateTime.now())
+              .build());
+      return;
+    }
+
+    fileDeletionRepository.save(
+        AttachmentFileDeletion.builder()
+            .folder(attachment.getFolder())
+            .filename(attachment.getFilename())
+            .thumbnailFilename(attachment.getThumbnailFilename())
+            .nextAttemptAt(OffsetDateTime.now())
+            .build());
+  }
+
+  /**
+   * Cancels scheduled deletion of given file, because it is going to be stored again. If the
+   * deletion is being executed right now, waits until it finishes, so the new file is not deleted.
+   *
+   * @param folder parent folder(s) of the file
+   * @param filename name of the file
+   */
+  public void cancelDeletion(String folder, String filename) {
+    fileDeletionRepository.deleteByFolderAndFilename(folder, filename);
+  }
+
+  /**
+   * Executes single batch (at most {@link Constants#ATTACHMENT_DELETION_BATCH_SIZE}) of scheduled
+   * deletions, which are due. Files are deleted from remote storage with as few requests as
+   * possible and from local filesystem in parallel. Deletions which failed are retried later, until
+   * {@link Constants#ATTACHMENT_DELETION_MAX_ATTEMPTS} is reached.
+   *
+   * <p>Executed deletions stay locked until the transaction ends, so they are not picked up by
+   * another worker or cancelled in the meantime.
+   *
+   * @return number of executed deletions
+   */
+  public int deleteDueFiles() {
+    OffsetDateTime now = OffsetDateTime.now();
+    List<AttachmentFileDeletion> deletions =
+        fileDeletionRepository.findDueForUpdate(now, Constants.ATTACHMENT_DELETION_BATCH_SIZE);
+    if (deletions.isEmpty()) {
+      return 0;
+    }
+
+    List<Path> files =
+        deletions.stream()
+            .flatMap(deletion -> deletion.getStoredFiles().stream())
+            .distinct()
+            .collect(Collectors.toList());
+    Set<Path> failed = ConcurrentHashMap.newKeySet();
+
+    if (remoteStorageService != null) {
+      try {
+        failed.addAll(remoteStorageService.deleteFiles(files));
+      } catch (RuntimeException ex) {
+        log.error("Deletion of {} files from remote storage failed", files.size(), ex);
+        failed.addAll(files);
+      }
+    }
+    files.parallelStream().filter(file -> !deleteLocalFile(file)).forEach(failed::add);
+
+    List<AttachmentFileDeletion> finished = new ArrayList<>();
+    for (AttachmentFileDeletion deletion : deletions) {
+      if (deletion.getStoredFiles().stream().noneMatch(failed::contains)) {
+        finished.add(deletion);
+        continue;
+      }
+
+      deletion.setAttempts(deletion.getAttempts() + 1);
+      if (deletion.getAttempts() >= Constants.ATTACHMENT_DELETION_MAX_ATTEMPTS) {
+        log.error(
+            "Giving up deletion of files {} after {} attempts",
+            deletion.getStoredFiles(),
+            deletion.getAttempts());
+        finished.add(deletion);
+      } else {
+        deletion.setNextAttemptAt(
+            now.plusSeconds(
+                (long) Constants.ATTACHMENT_DELETION_RETRY_INTERVAL * deletion.getAttempts()));
+      }
+    }
+
+    fileDeletionRepository.deleteAllByIdInBatch(
+        finished.stream().map(AttachmentFileDeletion::getId).collect(Collectors.toList()));
+    return deletions.size();
+  }
+
+  /**
+   * Deletes file from local filesystem. Missing file is considered deleted.
+   *
+   * @param file path to the file, relative to the root of user content
+   * @return {@code true} if the file was deleted, {@code false} otherwise
+   */
+  private boolean deleteLocalFile(Path file) {
+    try {
+      Files.deleteIfExists(Constants.USER_CONTENT_PATH.resolve(file));
+      return true;
+    } catch (IOException ex) {
+      log.warn("Deletion of file {} failed", file, ex);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.common.Constants;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background worker executing deletions of attachment files scheduled by {@link
+ * AttachmentFileDeletionService}. The worker is woken up after transaction which deleted some
+ * attachments commits, and it also periodically checks for deletions which are due to be retried or
+ * were missed (for example because of restart).
+ */
+@Component
+@Slf4j
+public class AttachmentFileDeletionWorker {
+
+  private final AttachmentFileDeletionService fileDeletionService;
+
+  /** Single thread executing the deletions, so batches never compete for the same rows. */
+  private final ScheduledExecutorService executor;
+
+  /** Whether deletion of due files is already waiting to be executed. */
+  private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+  @Autowired
+  public AttachmentFileDeletionWorker(AttachmentFileDeletionService fileDeletionService) {
+    this.fileDeletionService = fileDeletionService;
+
+    var threadFactory = new CustomizableThreadFactory("attachment-deletion-");
+    threadFactory.setDaemon(true);
+    executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    executor.scheduleWithFixedDelay(
+        this::deleteDueFiles,
+        Constants.ATTACHMENT_DELETION_RETRY_INTERVAL,
+        Constants.ATTACHMENT_DELETION_RETRY_INTERVAL,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * Wakes up the worker to execute all due deletions. Multiple calls made before the worker gets to
+   * them result in single execution.
+   */
+  public void wakeUp() {
+    if (wakeUpPending.compareAndSet(false, true)) {
+      executor.execute(
+          () -> {
+            wakeUpPending.set(false);
+            deleteDueFiles();
+          });
+    }
+  }
+
+  /** Executes batches of due deletions, until there are none left. */
+  private void deleteDueFiles() {
+    try {
+      int executed;
+      do {
+        executed = fileDeletionService.deleteDueFiles();
+      } while (executed == Constants.ATTACHMENT_DELETION_BATCH_SIZE);
+    } catch (RuntimeException ex) {
+      log.error("Deletion of attachment files failed", ex);
+    }
+  }
+
+  /** Stops the worker. Deletions which were not executed yet are left for next start. */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
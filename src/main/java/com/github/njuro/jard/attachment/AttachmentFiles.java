@@ -0,0 +1,28 @@
+package com.github.njuro.jard.attachment;
+
+import java.util.UUID;
+
+/**
+ * Lightweight projection of {@link Attachment}, containing only locations of its stored files, so
+ * the files can be moved without loading whole entity graph.
+ */
+public interface AttachmentFiles {
+
+  /** @return ID of the attachment */
+  UUID getId();
+
+  /** @return parent folder(s) the attachment is stored in */
+  String getFolder();
+
+  /** @return path to attachment's file relative to its folder */
+  String getFilename();
+
+  /** @return path to thumbnail relative to thumbnail folder, or {@code null} */
+  String getThumbnailFilename();
+
+  /** @return url to attachment's file on remote storage server, or {@code null} */
+  String getRemoteStorageUrl();
+
+  /** @return url to thumbnail on remote storage server, or {@code null} */
+  String getRemoteStorageThumbnailUrl();
+}
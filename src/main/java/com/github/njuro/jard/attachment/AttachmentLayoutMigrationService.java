@@ -0,0 +1,267 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.attachment.storage.RemoteStorageService;
+import com.github.njuro.jard.common.Constants;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service for moving stored files of attachments from {@link UserContentLayout#FLAT} to {@link
+ * UserContentLayout#SHARDED} layout. Migration is executed in batches by {@link
+ * AttachmentLayoutMigrationWorker}, while the application keeps running.
+ *
+ * <p>Files are first linked to their new location (copies on remote storage are copied there on the
+ * server), then attachments are updated to point there and files in old location are left to {@link
+ * AttachmentFileDeletionService}, once no attachment references them. Attachments with files which
+ * cannot be copied are left in flat layout. So every attachment points to existing file at any
+ * time.
+ */
+@Service
+@Slf4j
+public class AttachmentLayoutMigrationService {
+
+  private final RemoteStorageService remoteStorageService;
+  private final AttachmentRepository attachmentRepository;
+  private final AttachmentFileDeletionService fileDeletionService;
+
+  /**
+   * Template for transaction updating migrated attachments, so their rows are not locked while the
+   * files are being copied.
+   */
+  private final TransactionTemplate migrationTransaction;
+
+  @Autowired
+  public AttachmentLayoutMigrationService(
+      @Autowired(required = false) RemoteStorageService remoteStorageService,
+      AttachmentRepository attachmentRepository,
+      AttachmentFileDeletionService fileDeletionService,
+      PlatformTransactionManager transactionManager) {
+    this.remoteStorageService = remoteStorageService;
+    this.attachmentRepository = attachmentRepository;
+    this.fileDeletionService = fileDeletionService;
+    migrationTransaction = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Migrates single batch (at most {@link Constants#ATTACHMENT_LAYOUT_MIGRATION_BATCH_SIZE}) of
+   * processed attachments stored in flat layout, which follow given attachment in order of their
+   * folder and filename. Files are copied in parallel without holding any locks, then attachments
+   * sharing the same file are updated together with single query in short transaction.
+   *
+   * <p>Copies of files whose attachments were deleted in the meantime, or which failed to be
+   * referenced because the transaction was rolled back, are removed again.
+   *
+   * @param after last attachment of previous batch, or {@code null} to start from the beginning
+   * @return last attachment of this batch, or {@code null} if there are no attachments left
+   */
+  public AttachmentFiles migrateBatch(AttachmentFiles after) {
+    List<AttachmentFiles> batch =
+        attachmentRepository.findFlatAfter(
+            after == null ? "" : after.getFolder(),
+            after == null ? "" : after.getFilename(),
+            Constants.ATTACHMENT_LAYOUT_MIGRATION_BATCH_SIZE);
+    if (batch.isEmpty()) {
+      return null;
+    }
+
+    Map<Path, AttachmentFiles> filesByPath = new LinkedHashMap<>();
+    batch.forEach(
+        files -> filesByPath.putIfAbsent(Paths.get(files.getFolder(), files.getFilename()), files));
+
+    Map<Path, CopiedFiles> copied = new ConcurrentHashMap<>();
+    filesByPath
+        .entrySet()
+        .parallelStream()
+        .forEach(
+            entry ->
+                copyFiles(entry.getValue()).ifPresent(copy -> copied.put(entry.getKey(), copy)));
+
+    List<CopiedFiles> unreferenced;
+    try {
+      unreferenced =
+          migrationTransaction.execute(
+              status ->
+                  copied.entrySet().stream()
+                      .filter(
+                          entry ->
+                              !updateAttachments(filesByPath.get(entry.getKey()), entry.getValue()))
+                      .map(Map.Entry::getValue)
+                      .collect(Collectors.toList()));
+    } catch (RuntimeException ex) {
+      copied.values().forEach(this::discardCopies);
+      throw ex;
+    }
+    Objects.requireNonNull(unreferenced).forEach(this::discardCopies);
+
+    log.debug(
+        "Moved {} of {} files of attachments to sharded layout",
+        copied.size() - unreferenced.size(),
+        filesByPath.size());
+    return batch.get(batch.size() - 1);
+  }
+
+  /**
+   * Points attachments sharing the same file to its new location and schedules deletion of the old
+   * location, if there are no other attachments referencing it.
+   *
+   * @return {@code false} if there was no attachment to update (all were deleted meanwhile)
+   */
+  private boolean updateAttachments(AttachmentFiles files, CopiedFiles copied) {
+    int updated =
+        attachmentRepository.moveStoredFiles(
+            files.getFolder(),
+            files.getFilename(),
+            UserContentLayout.SHARDED.resolveFilename(files.getFilename()),
+            files.getThumbnailFilename() == null
+                ? null
+                : UserContentLayout.SHARDED.resolveFilename(files.getThumbnailFilename()),
+            copied.remoteStorageUrl,
+            copied.remoteStorageThumbnailUrl);
+    if (updated == 0) {
+      return false;
+    }
+
+    // attachments which are not processed yet still use the old files
+    if (!attachmentRepository.existsByFolderAndFilename(files.getFolder(), files.getFilename())) {
+      fileDeletionService.scheduleDeletion(
+          Attachment.builder()
+              .folder(files.getFolder())
+              .filename(files.getFilename())
+              .thumbnailFilename(files.getThumbnailFilename())
+              .build());
+    }
+    return true;
+  }
+
+  /**
+   * Copies file and thumbnail (if any) of attachment to sharded layout.
+   *
+   * @param files stored files of attachment
+   * @return created copies, or empty optional if some of the files could not be copied
+   */
+  private Optional<CopiedFiles> copyFiles(AttachmentFiles files) {
+    CopiedFiles copied = new CopiedFiles();
+    try {
+      copied.remoteStorageUrl =
+          copyFile(files.getFolder(), files.getFilename(), files.getRemoteStorageUrl(), copied);
+      if (files.getThumbnailFilename() != null) {
+        copied.remoteStorageThumbnailUrl =
+            copyFile(
+                getThumbnailFolder(files),
+                files.getThumbnailFilename(),
+                files.getRemoteStorageThumbnailUrl(),
+                copied);
+      }
+      return Optional.of(copied);
+    } catch (IOException | IllegalArgumentException ex) {
+      log.warn(
+          "Failed to copy files of attachment {}, leaving it in flat layout",
+          Paths.get(files.getFolder(), files.getFilename()),
+          ex);
+      discardCopies(copied);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Copies file from flat layout to sharded layout, by creating hard link where possible. Copy on
+   * remote storage (if the file was uploaded there) is created by the remote server. File missing
+   * locally is copied only on remote storage.
+   *
+   * @param folder parent folder(s) of the file
+   * @param filename name of the file in flat layout
+   * @param remoteStorageUrl url to the file on remote storage, or {@code null}
+   * @param copied where to record created copies
+   * @return url to the copy on remote storage, or {@code null} if the file was not uploaded there
+   * @throws NoSuchFileException if the file exists neither locally nor on remote storage
+   * @throws IOException if copying of local file fails
+   * @throws IllegalArgumentException if copying on remote storage fails
+   */
+  private String copyFile(
+      String folder, String filename, String remoteStorageUrl, CopiedFiles copied)
+      throws IOException {
+    String shardedFilename = UserContentLayout.SHARDED.resolveFilename(filename);
+    Path source = Constants.USER_CONTENT_PATH.resolve(Paths.get(folder, filename));
+    Path target = Constants.USER_CONTENT_PATH.resolve(Paths.get(folder, shardedFilename));
+    boolean remote = remoteStorageService != null && remoteStorageUrl != null;
+
+    if (Files.exists(source)) {
+      Files.createDirectories(target.getParent());
+      try {
+        try {
+          Files.createLink(target, source);
+        } catch (UnsupportedOperationException ex) {
+          Files.copy(source, target);
+        }
+        copied.created.add(target);
+      } catch (FileAlreadyExistsException ex) {
+        // file with the same content was already moved
+      }
+    } else if (!remote) {
+      throw new NoSuchFileException(source.toString());
+    }
+
+    if (!remote) {
+      return null;
+    }
+    String url = remoteStorageService.copyFile(folder, filename, folder, shardedFilename);
+    copied.uploaded.add(Paths.get(folder, shardedFilename));
+    return url;
+  }
+
+  /** Removes copies of files created by migration, which are not referenced by any attachment. */
+  private void discardCopies(CopiedFiles copied) {
+    for (Path file : copied.created) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException ex) {
+        log.error("Failed to delete copy {} of attachment file", file, ex);
+      }
+    }
+
+    if (remoteStorageService != null && !copied.uploaded.isEmpty()) {
+      try {
+        remoteStorageService.deleteFiles(copied.uploaded);
+      } catch (RuntimeException ex) {
+        log.error("Failed to delete {} copies from remote storage", copied.uploaded.size(), ex);
+      }
+    }
+  }
+
+  private String getThumbnailFolder(AttachmentFiles files) {
+    return Paths.get(files.getFolder(), Constants.THUMBNAIL_FOLDER_NAME).toString();
+  }
+
+  /** Copies of stored files of single attachment, created by migration. */
+  private static class CopiedFiles {
+
+    /** Local copies created by migration. */
+    private final List<Path> created = new ArrayList<>();
+
+    /** Paths to copies created by migration on remote storage. */
+    private final List<Path> uploaded = new ArrayList<>();
+
+    /** Url to copy of the file on remote storage, or {@code null}. */
+    private String remoteStorageUrl;
+
+    /** Url to copy of the thumbnail on remote storage, or {@code null}. */
+    private String remoteStorageThumbnailUrl;
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.njuro.jard.attachment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background worker moving files of attachments stored in {@link UserContentLayout#FLAT} layout to
+ * {@link UserContentLayout#SHARDED} layout, when sharded layout is active. Migration is started
+ * after the application is ready and runs in batches (see {@link
+ * AttachmentLayoutMigrationService}), so the application keeps serving requests meanwhile. If it is
+ * interrupted, it continues with the next start.
+ */
+@Component
+@Slf4j
+public class AttachmentLayoutMigrationWorker {
+
+  private final AttachmentLayoutMigrationService layoutMigrationService;
+  private final AttachmentFileDeletionWorker fileDeletionWorker;
+  private final UserContentLayout layout;
+
+  /** Single thread executing the migration, so batches never compete for the same rows. */
+  private final ExecutorService executor;
+
+  @Autowired
+  public AttachmentLayoutMigrationWorker(
+      AttachmentLayoutMigrationService layoutMigrationService,
+      AttachmentFileDeletionWorker fileDeletionWorker,
+      @Value("${app.user.content.layout:FLAT}") UserContentLayout layout) {
+    this.layoutMigrationService = layoutMigrationService;
+    this.fileDeletionWorker = fileDeletionWorker;
+    this.layout = layout;
+
+    var threadFactory = new CustomizableThreadFactory("attachment-layout-migration-");
+    threadFactory.setDaemon(true);
+    executor = Executors.newSingleThreadExecutor(threadFactory);
+  }
+
+  /** Starts the migration in background, if sharded layout is active. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (layout == UserContentLayout.SHARDED) {
+      executor.execute(this::migrate);
+    }
+  }
+
+  /**
+   * Executes batches of migration, until all attachments in flat layout were visited. Attachments
+   * which could not be migrated are skipped, so each of them is visited only once per start.
+   */
+  private void migrate() {
+    AttachmentFiles last = null;
+    try {
+      do {
+        last = layoutMigrationService.migrateBatch(last);
+        fileDeletionWorker.wakeUp(); // deletes files in old locations
+      } while (last != null && !Thread.currentThread().isInterrupted());
+    } catch (RuntimeException ex) {
+      log.error("Migration of attachment files to sharded layout failed", ex);
+      return;
+    }
+
+    if (last == null) {
+      log.info("Migration of attachment files to sharded layout finished");
+    }
+  }
+
+  /** Stops the worker. Attachments which were not migrated yet are left for next start. */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
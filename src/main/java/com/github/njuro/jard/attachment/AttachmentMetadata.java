@@ -50,13 +50,20 @@ public class AttachmentMetadata implements Serializable {
   @Column(nullable = false)
   private String fileSize;
 
+  /**
+   * Exact size of this attachment's file in bytes. Is {@code null} for attachments uploaded before
+   * it was recorded.
+   */
+  @Basic private Long fileSizeBytes;
+
   /** (Optional) formatted duration of this attachment's file, e.g. {@code 00:02:30}. */
   @Basic private String duration;
 
   /**
-   * Hash of content bytes of this attachment's files e.g. {@code 9e107d9d372bb6826bd81d3542a419d6}
+   * SHA-256 hash of content bytes of this attachment's file, e.g. {@code
+   * 2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824}. Calculated while the
+   * uploaded file is being stored and used as its filename, so identical files are stored only
+   * once. Attachments uploaded before have MD5 hash here.
    */
-  @Basic
-  @Column(nullable = false)
-  private String checksum;
+  @Basic private String checksum;
 }
@@ -0,0 +1,15 @@
+package com.github.njuro.jard.attachment;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception to be thrown when looked up attachment is not found.
+ *
+ * <p>Set 404 HTTP status.
+ */
+@ResponseStatus(code = HttpStatus.NOT_FOUND, reason = "Attachment not found")
+public class AttachmentNotFoundException extends RuntimeException {
+
+  private static final long serialVersionUID = -2297513914375018465L;
+}
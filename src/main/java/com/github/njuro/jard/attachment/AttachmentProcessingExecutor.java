@@ -0,0 +1,107 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.common.Constants;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executor for processing of uploaded attachments (metadata, thumbnails, upload to remote storage)
+ * outside of request threads.
+ *
+ * <p>Each {@link AttachmentCategory} has its own bounded pool, so for example slow processing of
+ * videos does not delay processing of images. Before the uploaded file is accepted, a slot in the
+ * pool has to be reserved with {@link #reserve(AttachmentCategory)}, which fails fast when there is
+ * already {@link Constants#ATTACHMENT_PROCESSING_THREADS} running and {@link
+ * Constants#ATTACHMENT_PROCESSING_QUEUE_CAPACITY} waiting tasks of the same category.
+ */
+@Component
+public class AttachmentProcessingExecutor {
+
+  /** Pools of workers, mapped by category of attachments they process. */
+  private final Map<AttachmentCategory, ExecutorService> executors =
+      new EnumMap<>(AttachmentCategory.class);
+
+  /** Free slots (running or waiting tasks) in pools, mapped by category. */
+  private final Map<AttachmentCategory, Semaphore> slots = new EnumMap<>(AttachmentCategory.class);
+
+  public AttachmentProcessingExecutor() {
+    this(Constants.ATTACHMENT_PROCESSING_THREADS, Constants.ATTACHMENT_PROCESSING_QUEUE_CAPACITY);
+  }
+
+  AttachmentProcessingExecutor(int threads, int queueCapacity) {
+    for (AttachmentCategory category : AttachmentCategory.values()) {
+      if (category == AttachmentCategory.EMBED) {
+        continue; // embedded attachments have no uploaded file
+      }
+
+      var threadFactory =
+          new CustomizableThreadFactory("attachment-" + category.name().toLowerCase() + "-");
+      threadFactory.setDaemon(true);
+      executors.put(
+          category,
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              0,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              threadFactory));
+      slots.put(category, new Semaphore(threads + queueCapacity));
+    }
+  }
+
+  /**
+   * Reserves slot for processing of attachment of given category.
+   *
+   * @param category category of the attachment
+   * @throws AttachmentProcessingRejectedException if all slots for given category are taken
+   */
+  public void reserve(AttachmentCategory category) {
+    if (!slots.get(category).tryAcquire()) {
+      throw new AttachmentProcessingRejectedException();
+    }
+  }
+
+  /**
+   * Releases slot reserved with {@link #reserve(AttachmentCategory)}, which will not be used.
+   *
+   * @param category category of the attachment
+   */
+  public void release(AttachmentCategory category) {
+    slots.get(category).release();
+  }
+
+  /**
+   * Submits processing of attachment of given category. The slot must be reserved beforehand and is
+   * released when processing finishes.
+   *
+   * @param category category of the attachment
+   * @param task processing task
+   */
+  public void submit(AttachmentCategory category, Runnable task) {
+    executors
+        .get(category)
+        .execute(
+            () -> {
+              try {
+                task.run();
+              } finally {
+                release(category);
+              }
+            });
+  }
+
+  /** Stops all workers. Attachments still waiting for processing are left in processing state. */
+  @PreDestroy
+  public void shutdown() {
+    executors.values().forEach(ExecutorService::shutdownNow);
+  }
+}
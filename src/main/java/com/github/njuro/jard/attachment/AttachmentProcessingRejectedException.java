@@ -0,0 +1,18 @@
+package com.github.njuro.jard.attachment;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception to be thrown when uploaded attachment cannot be accepted, because the processing queue
+ * for its category is full.
+ *
+ * <p>Set 429 HTTP status.
+ */
+@ResponseStatus(
+    code = HttpStatus.TOO_MANY_REQUESTS,
+    reason = "Too many attachments are being processed, try again later")
+public class AttachmentProcessingRejectedException extends RuntimeException {
+
+  private static final long serialVersionUID = 4431069208736462371L;
+}
@@ -1,7 +1,85 @@
 package com.github.njuro.jard.attachment;
 
 import com.github.njuro.jard.base.BaseRepository;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface AttachmentRepository extends BaseRepository<Attachment> {}
+public interface AttachmentRepository extends BaseRepository<Attachment> {
+
+  @Query(
+      value =
+          "SELECT a.* FROM attachments a JOIN attachments_metadata m ON m.attachment_id = a.id "
+              + "WHERE m.checksum = :checksum AND a.thumbnail_quality = :thumbnailQuality "
+              + "AND a.status = 'READY' LIMIT 1 FOR SHARE OF a",
+      nativeQuery = true)
+  Optional<Attachment> findReadyByChecksumForShare(
+      @Param("checksum") String checksum, @Param("thumbnailQuality") String thumbnailQuality);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT a FROM Attachment a WHERE a.id = :id")
+  Optional<Attachment> findByIdForUpdate(@Param("id") UUID id);
+
+  @Query(
+      value =
+          "SELECT CAST(id AS text) AS id, folder, filename, thumbnail_filename AS \"thumbnailFilename\", "
+              + "remote_storage_url AS \"remoteStorageUrl\", "
+              + "remote_storage_thumbnail_url AS \"remoteStorageThumbnailUrl\" FROM attachments "
+              + "WHERE id = :id FOR UPDATE",
+      nativeQuery = true)
+  Optional<AttachmentFiles> findFilesByIdForUpdate(@Param("id") UUID id);
+
+  boolean existsByFolderAndFilenameAndIdNot(String folder, String filename, UUID id);
+
+  boolean existsByFolderAndFilename(String folder, String filename);
+
+  Optional<Attachment> findFirstByFolderAndThumbnailFilenameAndRemoteStorageThumbnailUrlNotNull(
+      String folder, String thumbnailFilename);
+
+  boolean existsByFolderAndThumbnailFilenameAndIdNot(
+      String folder, String thumbnailFilename, UUID id);
+
+  @Query(
+      "SELECT e FROM EmbedData e WHERE e.thumbnailNextAttemptAt <= :now "
+          + "ORDER BY e.thumbnailNextAttemptAt")
+  List<EmbedData> findDueEmbedThumbnails(@Param("now") OffsetDateTime now, Pageable pageable);
+
+  @Query(
+      value =
+          "SELECT CAST(id AS text) AS id, folder, filename, thumbnail_filename AS \"thumbnailFilename\", "
+              + "remote_storage_url AS \"remoteStorageUrl\", "
+              + "remote_storage_thumbnail_url AS \"remoteStorageThumbnailUrl\" FROM attachments "
+              + "WHERE status = 'READY' AND filename NOT LIKE '%/%' "
+              + "AND (folder, filename) > (:folder, :filename) "
+              + "ORDER BY folder, filename LIMIT :limit",
+      nativeQuery = true)
+  List<AttachmentFiles> findFlatAfter(
+      @Param("folder") String folder,
+      @Param("filename") String filename,
+      @Param("limit") int limit);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query(
+      value =
+          "UPDATE attachments SET filename = :newFilename, thumbnail_filename = :thumbnailFilename, "
+              + "remote_storage_url = :remoteStorageUrl, "
+              + "remote_storage_thumbnail_url = :remoteStorageThumbnailUrl "
+              + "WHERE folder = :folder AND filename = :filename AND status = 'READY'",
+      nativeQuery = true)
+  int moveStoredFiles(
+      @Param("folder") String folder,
+      @Param("filename") String filename,
+      @Param("newFilename") String newFilename,
+      @Param("thumbnailFilename") String thumbnailFilename,
+      @Param("remoteStorageUrl") String remoteStorageUrl,
+      @Param("remoteStorageThumbnailUrl") String remoteStorageThumbnailUrl);
+}
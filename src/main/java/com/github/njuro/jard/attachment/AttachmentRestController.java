@@ -0,0 +1,29 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.attachment.dto.AttachmentDto;
+import com.github.njuro.jard.common.Mappings;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping(Mappings.API_ROOT_ATTACHMENTS)
+public class AttachmentRestController {
+
+  private final AttachmentFacade attachmentFacade;
+
+  @Autowired
+  public AttachmentRestController(AttachmentFacade attachmentFacade) {
+    this.attachmentFacade = attachmentFacade;
+  }
+
+  /**
+   * Reports current state of attachment. Clients poll this endpoint until status of the attachment
+   * is no longer {@link AttachmentStatus#PROCESSING}.
+   */
+  @GetMapping(Mappings.PATH_VARIABLE_ATTACHMENT + "/status")
+  public AttachmentDto getAttachmentStatus(
+      @PathVariable(Mappings.PLACEHOLDER_ATTACHMENT) UUID attachmentId) {
+    return attachmentFacade.getAttachment(attachmentId);
+  }
+}
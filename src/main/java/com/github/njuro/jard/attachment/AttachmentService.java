@@ -8,16 +8,25 @@ import com.github.njuro.jard.attachment.helpers.AttachmentMetadataUtils;
 import com.github.njuro.jard.attachment.storage.RemoteStorageService;
 import java.awt.image.RenderedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Objects;
-import javax.imageio.ImageIO;
+import java.util.Optional;
+import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @Transactional
@@ -26,57 +35,273 @@ public class AttachmentService {
 
   private final RemoteStorageService remoteStorageService;
   private final AttachmentRepository attachmentRepository;
+  private final AttachmentProcessingExecutor processingExecutor;
+  private final AttachmentFileDeletionService fileDeletionService;
+  private final AttachmentFileDeletionWorker fileDeletionWorker;
+  private final EmbedThumbnailWorker embedThumbnailWorker;
+
+  /**
+   * Template for transaction saving result of processing, as background workers reach {@link
+   * #processAttachment(Attachment)} without going through transactional proxy.
+   */
+  private final TransactionTemplate processingTransaction;
+
+  @Value("${app.user.content.layout:FLAT}")
+  private UserContentLayout layout;
 
   @Autowired
   public AttachmentService(
       @Autowired(required = false) RemoteStorageService remoteStorageService,
-      AttachmentRepository attachmentRepository) {
+      AttachmentRepository attachmentRepository,
+      AttachmentProcessingExecutor processingExecutor,
+      AttachmentFileDeletionService fileDeletionService,
+      AttachmentFileDeletionWorker fileDeletionWorker,
+      EmbedThumbnailWorker embedThumbnailWorker,
+      PlatformTransactionManager transactionManager) {
     this.remoteStorageService = remoteStorageService;
     this.attachmentRepository = attachmentRepository;
+    this.processingExecutor = processingExecutor;
+    this.fileDeletionService = fileDeletionService;
+    this.fileDeletionWorker = fileDeletionWorker;
+    this.embedThumbnailWorker = embedThumbnailWorker;
+    processingTransaction = new TransactionTemplate(transactionManager);
   }
 
   /**
-   * Saves {@link Attachment} and its retrieved {@link AttachmentMetadata} to database and stores
-   * its file (specific way of storing the file is determined by active {@link
-   * UserContentStorageMode}).
+   * Stores file of {@link Attachment} on local filesystem and saves the attachment to database in
+   * {@link AttachmentStatus#PROCESSING} state. The uploaded content is streamed to its location in
+   * single pass, which also calculates its checksum and size. Rest of the processing (see {@link
+   * #processAttachment(Attachment)}) is submitted to {@link AttachmentProcessingExecutor} once the
+   * current transaction commits.
    *
-   * <p>Depending on category of the attachment also creates and stores its thumbnail.
+   * <p>Files are stored under name derived from their checksum, in active {@link
+   * UserContentLayout}. If file with the same checksum was already processed with the same {@link
+   * ThumbnailQuality}, its stored file, thumbnail and metadata are reused, the uploaded copy is
+   * discarded and the attachment is saved right away in {@link AttachmentStatus#READY} state.
    *
    * @param attachment attachment to be saved
-   * @param source uploaded file
+   * @param source content of uploaded file, is not closed by this method
    * @return saved {@link Attachment}
    * @throws IOException if storing to local filesystem fails
-   * @throws IllegalArgumentException if something goes wrong during setting of metadata or
-   *     uploading to remote server
+   * @throws IllegalArgumentException if attachment has MIME type which does not belong to any
+   *     category
+   * @throws AttachmentProcessingRejectedException if processing queue for category of the
+   *     attachment is full
    * @throws NullPointerException if one of the parameters is {@code null}
    */
-  public Attachment saveAttachment(Attachment attachment, MultipartFile source) throws IOException {
+  public Attachment saveAttachment(Attachment attachment, InputStream source) throws IOException {
     Objects.requireNonNull(attachment);
     Objects.requireNonNull(source);
 
-    //noinspection ResultOfMethodCallIgnored
-    attachment.getFile().getParentFile().mkdirs();
-    source.transferTo(attachment.getFile());
-    AttachmentMetadataUtils.setMetadata(attachment);
+    AttachmentMetadataUtils.setAttachmentCategory(attachment);
+    AttachmentCategory category = attachment.getCategory();
+    processingExecutor.reserve(category);
+    if (!category.hasThumbnail()) {
+      // quality does not matter for files without thumbnail, so they are always shared
+      attachment.setThumbnailQuality(ThumbnailQuality.QUALITY);
+    }
 
-    if (remoteStorageService != null) {
-      String url =
-          remoteStorageService.uploadFile(
-              attachment.getFolder(), attachment.getFilename(), attachment.getFile());
-      attachment.setRemoteStorageUrl(url);
+    Path stored = null;
+    Attachment saved;
+    try {
+      stored = AttachmentMetadataUtils.storeFile(attachment, source);
+
+      // locks the existing attachment, so its file cannot be deleted before this one is saved
+      // (shared lock, so concurrent reposts of the same file do not wait on each other)
+      Optional<Attachment> existing =
+          attachmentRepository.findReadyByChecksumForShare(
+              attachment.getMetadata().getChecksum(), attachment.getThumbnailQuality().name());
+      if (existing.isPresent()) {
+        Files.delete(stored);
+        reuseStoredFiles(attachment, existing.get());
+        attachment.setStatus(AttachmentStatus.READY);
+      } else {
+        attachment.setFilename(layout.resolveFilename(attachment.getFilename()));
+        // file with the same name may still be scheduled for deletion after its last attachment
+        fileDeletionService.cancelDeletion(attachment.getFolder(), attachment.getFilename());
+        AttachmentMetadataUtils.publishFile(attachment, stored);
+        attachment.setStatus(AttachmentStatus.PROCESSING);
+      }
+      stored = null;
+
+      attachment.getMetadata().setAttachment(attachment);
+      saved = attachmentRepository.save(attachment);
+    } catch (IOException | RuntimeException ex) {
+      processingExecutor.release(category);
+      if (stored != null) {
+        Files.deleteIfExists(stored);
+      }
+      throw ex;
+    }
+
+    if (saved.getStatus() == AttachmentStatus.READY) {
+      processingExecutor.release(category);
+      return saved;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+              processingExecutor.submit(category, () -> processStoredAttachment(saved));
+            } else {
+              processingExecutor.submit(category, () -> discardAttachmentFiles(saved));
+            }
+          }
+        });
+    return saved;
+  }
+
+  /**
+   * Makes attachment use already stored files (including thumbnail and copies on remote storage) of
+   * another attachment with the same content, and copies its metadata.
+   *
+   * @param attachment attachment to reuse stored files for
+   * @param existing processed attachment with the same content
+   */
+  private void reuseStoredFiles(Attachment attachment, Attachment existing) {
+    attachment.setCategory(existing.getCategory());
+    attachment.setFolder(existing.getFolder());
+    attachment.setFilename(existing.getFilename());
+    attachment.setThumbnailFilename(existing.getThumbnailFilename());
+    attachment.setRemoteStorageUrl(existing.getRemoteStorageUrl());
+    attachment.setRemoteStorageThumbnailUrl(existing.getRemoteStorageThumbnailUrl());
+
+    AttachmentMetadata metadata = attachment.getMetadata();
+    AttachmentMetadata existingMetadata = existing.getMetadata();
+    metadata.setMimeType(existingMetadata.getMimeType());
+    metadata.setWidth(existingMetadata.getWidth());
+    metadata.setHeight(existingMetadata.getHeight());
+    metadata.setThumbnailWidth(existingMetadata.getThumbnailWidth());
+    metadata.setThumbnailHeight(existingMetadata.getThumbnailHeight());
+    metadata.setDuration(existingMetadata.getDuration());
+  }
+
+  /**
+   * Processes attachment in background. The attachment is loaded again, so the worker does not
+   * share entity instance with the request which saved it.
+   *
+   * @param stored attachment stored by {@link #saveAttachment(Attachment, InputStream)}
+   */
+  private void processStoredAttachment(Attachment stored) {
+    attachmentRepository
+        .findById(stored.getId())
+        .ifPresentOrElse(this::processAttachment, () -> discardAttachmentFiles(stored));
+  }
+
+  /**
+   * Processes stored file of given {@link Attachment} - retrieves its {@link AttachmentMetadata},
+   * uploads it to remote storage (if {@link UserContentStorageMode} requires it) and depending on
+   * category of the attachment also creates and stores its thumbnail. Processed attachment is saved
+   * in {@link AttachmentStatus#READY} state.
+   *
+   * <p>If processing fails, all stored files of the attachment are discarded and it is saved in
+   * {@link AttachmentStatus#FAILED} state. The result is saved only while holding lock of the
+   * attachment's row, so if the attachment was deleted in the meantime, its files are discarded and
+   * nothing is saved (deleted attachment is never inserted again).
+   *
+   * @param attachment attachment to process
+   * @return processed attachment
+   */
+  public Attachment processAttachment(Attachment attachment) {
+    try {
+      AttachmentMetadataUtils.setMetadata(attachment);
+
+      if (remoteStorageService != null) {
+        String url =
+            remoteStorageService.uploadFile(
+                attachment.getFolder(), attachment.getFilename(), attachment.getFile());
+        attachment.setRemoteStorageUrl(url);
+      }
+
+      if (attachment.getCategory().hasThumbnail()) {
+        saveAttachmentThumbnail(attachment);
+      }
+
+      attachment.setStatus(AttachmentStatus.READY);
+    } catch (IOException | RuntimeException ex) {
+      log.error("Processing of attachment {} failed", attachment.getFilename(), ex);
+      discardAttachmentFiles(attachment);
+      attachment.setStatus(AttachmentStatus.FAILED);
     }
 
-    if (attachment.getCategory().hasThumbnail()) {
-      saveAttachmentThumbnail(attachment);
+    Optional<Attachment> saved =
+        processingTransaction.execute(
+            status ->
+                attachmentRepository
+                    .findByIdForUpdate(attachment.getId())
+                    .map(locked -> attachmentRepository.save(attachment)));
+    if (saved == null || saved.isEmpty()) {
+      discardAttachmentFiles(attachment);
+      return attachment;
     }
 
-    attachment.getMetadata().setAttachment(attachment);
-    return attachmentRepository.save(attachment);
+    return saved.get();
+  }
+
+  /**
+   * Discards all stored files of attachment, which failed processing or was deleted during it.
+   * Files shared with other attachments are kept. Errors are only logged, as there is nothing more
+   * to do about them.
+   *
+   * @param attachment attachment to discard files of
+   */
+  private void discardAttachmentFiles(Attachment attachment) {
+    if (!isFileShared(attachment)) {
+      try {
+        if (remoteStorageService != null && attachment.getRemoteStorageUrl() != null) {
+          remoteStorageService.deleteFile(attachment.getFolder(), attachment.getFilename());
+        }
+        if (remoteStorageService != null && attachment.getRemoteStorageThumbnailUrl() != null) {
+          remoteStorageService.deleteFile(
+              attachment.getThumbnailFolder(), attachment.getThumbnailFilename());
+        }
+      } catch (RuntimeException ex) {
+        log.error("Failed to discard remote files of attachment {}", attachment.getFilename(), ex);
+      }
+
+      FileUtils.deleteQuietly(attachment.getFile());
+      FileUtils.deleteQuietly(attachment.getThumbnailFile());
+    }
+
+    attachment.setFilename(null);
+    attachment.setRemoteStorageUrl(null);
+    attachment.setRemoteStorageThumbnailUrl(null);
+    attachment.setThumbnailFilename(null);
+  }
+
+  /**
+   * Checks whether stored file of attachment is shared with other attachments with the same
+   * content, meaning it can't be deleted yet.
+   *
+   * @param attachment attachment to check
+   * @return {@code true} if other attachment references the same stored file, {@code false}
+   *     otherwise
+   */
+  private boolean isFileShared(Attachment attachment) {
+    return attachment.getFilename() != null
+        && attachmentRepository.existsByFolderAndFilenameAndIdNot(
+            attachment.getFolder(), attachment.getFilename(), attachment.getId());
+  }
+
+  /**
+   * Checks whether stored thumbnail of embedded attachment is shared with other embedded
+   * attachments with the same thumbnail, meaning it can't be deleted yet.
+   *
+   * @param attachment embedded attachment to check
+   * @return {@code true} if other attachment references the same stored thumbnail, {@code false}
+   *     otherwise
+   */
+  private boolean isThumbnailShared(Attachment attachment) {
+    return attachmentRepository.existsByFolderAndThumbnailFilenameAndIdNot(
+        attachment.getFolder(), attachment.getThumbnailFilename(), attachment.getId());
   }
 
   /**
    * Creates and stores thumbnail of given attachment (specific way of storing the file is
-   * determined by active {@link UserContentStorageMode}).
+   * determined by active {@link UserContentStorageMode}). Thumbnail already stored for the same
+   * file is not written again, otherwise it is written atomically.
    *
    * @param attachment attachment to create and store thumbnail for
    * @throws IOException if storing to local filesystem fails
@@ -92,23 +317,29 @@ public class AttachmentService {
         FilenameUtils.removeExtension(attachment.getFilename())
             + EXTENSION_SEPARATOR_STR
             + extension);
-    attachment.getThumbnailFile().getParentFile().mkdirs();
     RenderedImage thumbnail = AttachmentImageUtils.createThumbnail(attachment);
 
-    ImageIO.write(thumbnail, extension, attachment.getThumbnailFile());
+    if (!attachment.getThumbnailFile().exists()) {
+      // the same thumbnail may be already stored by concurrent upload of the same file
+      AttachmentImageUtils.writeThumbnail(
+          thumbnail, extension, attachment.getThumbnailFile().toPath());
+    }
 
     if (remoteStorageService != null) {
       String url =
           remoteStorageService.uploadFile(
               attachment.getThumbnailFolder(),
-              attachment.getFilename(),
+              attachment.getThumbnailFilename(),
               attachment.getThumbnailFile());
       attachment.setRemoteStorageThumbnailUrl(url);
     }
   }
 
   /**
-   * Saves embedded {@link Attachment} and its retrieved {@link EmbedData} to database. *
+   * Saves embedded {@link Attachment} and its retrieved {@link EmbedData} to database. If provider
+   * of the embedded content has thumbnail for it, the thumbnail is downloaded and stored by {@link
+   * EmbedThumbnailWorker} once the current transaction commits. Until then, clients use thumbnail
+   * on provider's server.
    *
    * @param attachment attachment to be saved
    * @return saved {@link Attachment}
@@ -117,63 +348,94 @@ public class AttachmentService {
   public Attachment saveEmbeddedAttachment(Attachment attachment) {
     Objects.requireNonNull(attachment);
 
-    attachment.getEmbedData().setAttachment(attachment);
+    EmbedData embedData = attachment.getEmbedData();
+    embedData.setAttachment(attachment);
+    if (embedData.getThumbnailUrl() == null) {
+      return attachmentRepository.save(attachment);
+    }
+
+    embedData.setThumbnailNextAttemptAt(OffsetDateTime.now());
+    Attachment saved = attachmentRepository.save(attachment);
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            embedThumbnailWorker.wakeUp();
+          }
+        });
+    return saved;
+  }
 
-    return attachmentRepository.save(attachment);
+  /**
+   * Retrieves attachment with given ID.
+   *
+   * @param id ID of attachment
+   * @return retrieved attachment
+   * @throws AttachmentNotFoundException if such attachment does not exist
+   */
+  public Attachment getAttachment(UUID id) {
+    return attachmentRepository.findById(id).orElseThrow(AttachmentNotFoundException::new);
   }
 
   /**
-   * Deletes given attachment.
+   * Deletes given attachment. Its stored files are deleted only if they are not shared with other
+   * attachments (see {@link #saveAttachment(Attachment, InputStream)}).
    *
-   * @throws IOException if deleting from local filesystem fails
-   * @throws IllegalArgumentException if deleting from remote server fails
+   * @param attachment attachment to delete
    * @throws NullPointerException if attachment is {@code null}
+   * @see #deleteAttachments(List)
    */
-  public void deleteAttachment(Attachment attachment) throws IOException {
+  public void deleteAttachment(Attachment attachment) {
     Objects.requireNonNull(attachment);
-
-    if (attachment.getCategory() != AttachmentCategory.EMBED) {
-      deleteAttachmentFile(attachment);
-    }
-
-    attachmentRepository.delete(attachment);
+    deleteAttachments(List.of(attachment));
   }
 
   /**
-   * Deletes list of given attachments.
+   * Deletes list of given attachments. Deletion of their stored files is only scheduled with {@link
+   * AttachmentFileDeletionService} and executed in background after current transaction commits, so
+   * it neither holds the transaction, nor leaves deleted attachments without files when the
+   * transaction rolls back.
+   *
+   * <p>Stored files of attachments still being processed are read again under lock of their rows,
+   * so files created by processing which finished in the meantime are deleted too.
    *
    * @param attachments list of attachments to delete
-   * @throws IOException if deleting from local filesystem fails
-   * @throws IllegalArgumentException if deleting from remote server fails
    * @throws NullPointerException if attachment list is {@code null}
    */
-  public void deleteAttachments(List<Attachment> attachments) throws IOException {
+  public void deleteAttachments(List<Attachment> attachments) {
     Objects.requireNonNull(attachments);
-    for (Attachment attachment : attachments) {
-      deleteAttachment(attachment);
-    }
-  }
 
-  /**
-   * Deletes attachment's file.
-   *
-   * @param attachment attachment, which file to delete
-   * @throws IOException if deleting from local filesystem fails
-   * @throws IllegalArgumentException if deleting from remote server fails
-   */
-  private void deleteAttachmentFile(Attachment attachment) throws IOException {
-    if (remoteStorageService != null) {
-      remoteStorageService.deleteFile(attachment.getFolder(), attachment.getFilename());
+    boolean scheduled = false;
+    for (Attachment attachment : attachments) {
+      if (attachment.getStatus() == AttachmentStatus.PROCESSING) {
+        attachmentRepository
+            .findFilesByIdForUpdate(attachment.getId())
+            .ifPresent(
+                files -> {
+                  attachment.setFilename(files.getFilename());
+                  attachment.setThumbnailFilename(files.getThumbnailFilename());
+                  attachment.setRemoteStorageUrl(files.getRemoteStorageUrl());
+                  attachment.setRemoteStorageThumbnailUrl(files.getRemoteStorageThumbnailUrl());
+                });
+      }
+      attachmentRepository.delete(attachment);
 
-      if (attachment.getThumbnailFilename() != null) {
-        remoteStorageService.deleteFile(
-            attachment.getThumbnailFolder(), attachment.getThumbnailFilename());
+      if (attachment.getCategory() == AttachmentCategory.EMBED
+          ? attachment.getThumbnailFilename() != null && !isThumbnailShared(attachment)
+          : attachment.getFilename() != null && !isFileShared(attachment)) {
+        fileDeletionService.scheduleDeletion(attachment);
+        scheduled = true;
       }
     }
 
-    Files.deleteIfExists(attachment.getFile().toPath());
-    if (attachment.getThumbnailFile() != null) {
-      Files.deleteIfExists(attachment.getThumbnailFile().toPath());
+    if (scheduled) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              fileDeletionWorker.wakeUp();
+            }
+          });
     }
   }
 }
@@ -0,0 +1,11 @@
+package com.github.njuro.jard.attachment;
+
+/** Enum representing state of processing of uploaded {@link Attachment}. */
+public enum AttachmentStatus {
+  /** File is stored, but its metadata, thumbnail and remote copy are still being created. */
+  PROCESSING,
+  /** Attachment is fully processed. */
+  READY,
+  /** Processing failed and the file was discarded. */
+  FAILED
+}
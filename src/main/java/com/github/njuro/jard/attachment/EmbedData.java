@@ -2,6 +2,7 @@ package com.github.njuro.jard.attachment;
 
 import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler;
 import java.io.Serializable;
+import java.time.OffsetDateTime;
 import java.util.UUID;
 import javax.persistence.*;
 import lombok.AllArgsConstructor;
@@ -51,4 +52,15 @@ public class EmbedData implements Serializable {
   @Basic
   @Column(columnDefinition = "TEXT", nullable = false)
   private String renderedHtml;
+
+  /** How many times the download of thumbnail from {@link #thumbnailUrl} already failed. */
+  @Column(nullable = false)
+  @Builder.Default
+  private int thumbnailAttempts = 0;
+
+  /**
+   * When should the thumbnail be downloaded from {@link #thumbnailUrl} (again). Is {@code null}
+   * when the thumbnail is already stored, or there is none to download.
+   */
+  private OffsetDateTime thumbnailNextAttemptAt;
 }
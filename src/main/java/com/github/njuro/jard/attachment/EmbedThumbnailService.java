@@ -0,0 +1,224 @@
+package com.github.njuro.jard.attachment;
+
+import static com.github.njuro.jard.common.Constants.DEFAULT_THUMBNAIL_EXTENSION;
+import static org.apache.commons.io.FilenameUtils.EXTENSION_SEPARATOR_STR;
+
+import com.github.njuro.jard.attachment.helpers.AttachmentImageUtils;
+import com.github.njuro.jard.attachment.helpers.AttachmentMetadataUtils;
+import com.github.njuro.jard.attachment.storage.RemoteStorageService;
+import com.github.njuro.jard.common.Constants;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Service for storing thumbnails of embedded attachments. Thumbnails are downloaded from servers of
+ * their providers by {@link EmbedThumbnailWorker} after the attachment is saved, and then stored
+ * the same way as thumbnails of uploaded files, so clients never load them from third-party
+ * servers. Failed downloads are retried later, until {@link Constants#EMBED_THUMBNAIL_MAX_ATTEMPTS}
+ * is reached.
+ */
+@Service
+@Transactional
+@Slf4j
+public class EmbedThumbnailService {
+
+  /** Extension of thumbnails without transparency. */
+  private static final String OPAQUE_THUMBNAIL_EXTENSION = "jpg";
+
+  private final RemoteStorageService remoteStorageService;
+  private final AttachmentRepository attachmentRepository;
+  private final AttachmentFileDeletionService fileDeletionService;
+
+  @Value("${app.user.content.layout:FLAT}")
+  private UserContentLayout layout;
+
+  @Autowired
+  public EmbedThumbnailService(
+      @Autowired(required = false) RemoteStorageService remoteStorageService,
+      AttachmentRepository attachmentRepository,
+      AttachmentFileDeletionService fileDeletionService) {
+    this.remoteStorageService = remoteStorageService;
+    this.attachmentRepository = attachmentRepository;
+    this.fileDeletionService = fileDeletionService;
+  }
+
+  /**
+   * Retrieves single batch (at most {@link Constants#EMBED_THUMBNAIL_BATCH_SIZE}) of embedded
+   * attachments, whose thumbnail is due to be downloaded.
+   *
+   * @return embed data of the attachments
+   */
+  @Transactional(readOnly = true)
+  public List<EmbedData> getDueThumbnails() {
+    return attachmentRepository.findDueEmbedThumbnails(
+        OffsetDateTime.now(), PageRequest.of(0, Constants.EMBED_THUMBNAIL_BATCH_SIZE));
+  }
+
+  /**
+   * Creates thumbnail of embedded attachment from image downloaded from its provider and stores it
+   * (specific way of storing the file is determined by active {@link UserContentStorageMode}). The
+   * image goes through the same pipeline as uploaded images, but only the thumbnail is kept.
+   *
+   * <p>Thumbnails are stored in {@link Constants#EMBED_FOLDER_NAME} under name derived from
+   * checksum of the image, so the same content embedded repeatedly shares single thumbnail. Stored
+   * thumbnail is never rewritten (it may be served at the same time), new thumbnail is written to
+   * temporary file first and then moved to its location. If the attachment was deleted or already
+   * has thumbnail, nothing is stored.
+   *
+   * @param attachmentId ID of embedded attachment
+   * @param image content of the downloaded image
+   * @throws IOException if storing to local filesystem fails
+   * @throws IllegalArgumentException if the image cannot be decoded or uploading to remote server
+   *     fails
+   * @throws NullPointerException if one of the parameters is {@code null}
+   */
+  public void saveThumbnail(UUID attachmentId, byte[] image) throws IOException {
+    Objects.requireNonNull(attachmentId);
+    Objects.requireNonNull(image);
+
+    Optional<Attachment> existing = attachmentRepository.findById(attachmentId);
+    if (existing.isEmpty()) {
+      return;
+    }
+    Attachment attachment = existing.get();
+    if (attachment.getThumbnailFilename() != null) {
+      attachment.getEmbedData().setThumbnailNextAttemptAt(null);
+      return;
+    }
+
+    var source =
+        Attachment.builder()
+            .category(AttachmentCategory.IMAGE)
+            .folder(Constants.EMBED_FOLDER_NAME)
+            .filename(attachmentId.toString())
+            .metadata(new AttachmentMetadata())
+            .build();
+    Path stored = AttachmentMetadataUtils.storeFile(source, new ByteArrayInputStream(image));
+    RenderedImage thumbnail;
+    try {
+      // image is decoded from the temporary file, which is never published
+      source.setFilename(stored.getFileName().toString());
+      thumbnail = AttachmentImageUtils.createThumbnail(source);
+    } finally {
+      Files.deleteIfExists(stored);
+    }
+
+    String extension =
+        thumbnail.getColorModel().hasAlpha()
+            ? DEFAULT_THUMBNAIL_EXTENSION
+            : OPAQUE_THUMBNAIL_EXTENSION;
+    attachment.setFolder(Constants.EMBED_FOLDER_NAME);
+    attachment.setThumbnailFilename(
+        layout.resolveFilename(
+            source.getMetadata().getChecksum() + EXTENSION_SEPARATOR_STR + extension));
+    // thumbnail with the same name may still be scheduled for deletion after its last attachment
+    fileDeletionService.cancelDeletion(
+        attachment.getThumbnailFolder(), attachment.getThumbnailFilename());
+
+    if (attachment.getThumbnailFile().exists()) {
+      // the same thumbnail is already stored, including its copy on remote storage (if any)
+      attachmentRepository
+          .findFirstByFolderAndThumbnailFilenameAndRemoteStorageThumbnailUrlNotNull(
+              attachment.getFolder(), attachment.getThumbnailFilename())
+          .ifPresent(
+              other ->
+                  attachment.setRemoteStorageThumbnailUrl(other.getRemoteStorageThumbnailUrl()));
+    } else {
+      AttachmentImageUtils.writeThumbnail(
+          thumbnail, extension, attachment.getThumbnailFile().toPath());
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+              if (status != STATUS_COMMITTED) {
+                discardThumbnail(attachment);
+              }
+            }
+          });
+    }
+
+    if (remoteStorageService != null && attachment.getRemoteStorageThumbnailUrl() == null) {
+      String url =
+          remoteStorageService.uploadFile(
+              attachment.getThumbnailFolder(),
+              attachment.getThumbnailFilename(),
+              attachment.getThumbnailFile());
+      attachment.setRemoteStorageThumbnailUrl(url);
+    }
+
+    attachment.getEmbedData().setThumbnailNextAttemptAt(null);
+  }
+
+  /**
+   * Postpones download of thumbnail of embedded attachment, which failed. Each subsequent attempt
+   * is delayed by {@link Constants#EMBED_THUMBNAIL_RETRY_INTERVAL} more, after {@link
+   * Constants#EMBED_THUMBNAIL_MAX_ATTEMPTS} the download is given up and clients keep using
+   * thumbnail on provider's server.
+   *
+   * @param attachmentId ID of embedded attachment
+   */
+  public void postponeThumbnail(UUID attachmentId) {
+    attachmentRepository
+        .findById(attachmentId)
+        .map(Attachment::getEmbedData)
+        .ifPresent(
+            embedData -> {
+              embedData.setThumbnailAttempts(embedData.getThumbnailAttempts() + 1);
+              if (embedData.getThumbnailAttempts() >= Constants.EMBED_THUMBNAIL_MAX_ATTEMPTS) {
+                log.error(
+                    "Giving up download of thumbnail {} after {} attempts",
+                    embedData.getThumbnailUrl(),
+                    embedData.getThumbnailAttempts());
+                embedData.setThumbnailNextAttemptAt(null);
+              } else {
+                embedData.setThumbnailNextAttemptAt(
+                    OffsetDateTime.now()
+                        .plusSeconds(
+                            (long) Constants.EMBED_THUMBNAIL_RETRY_INTERVAL
+                                * embedData.getThumbnailAttempts()));
+              }
+            });
+  }
+
+  /**
+   * Discards stored thumbnail of embedded attachment, which was not saved in the end. Thumbnail
+   * shared with other attachments is kept. Errors are only logged, as there is nothing more to do
+   * about them.
+   *
+   * @param attachment attachment to discard thumbnail of
+   */
+  private void discardThumbnail(Attachment attachment) {
+    if (attachmentRepository.existsByFolderAndThumbnailFilenameAndIdNot(
+        attachment.getFolder(), attachment.getThumbnailFilename(), attachment.getId())) {
+      return;
+    }
+
+    try {
+      if (remoteStorageService != null && attachment.getRemoteStorageThumbnailUrl() != null) {
+        remoteStorageService.deleteFile(
+            attachment.getThumbnailFolder(), attachment.getThumbnailFilename());
+      }
+    } catch (RuntimeException ex) {
+      log.error("Failed to discard remote thumbnail {}", attachment.getThumbnailFilename(), ex);
+    }
+
+    FileUtils.deleteQuietly(attachment.getThumbnailFile());
+  }
+}
@@ -0,0 +1,121 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.attachment.embedded.OembedResolver;
+import com.github.njuro.jard.common.Constants;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background worker downloading thumbnails of embedded attachments from their providers and storing
+ * them with {@link EmbedThumbnailService}. The worker is woken up after transaction which saved
+ * embedded attachment commits, and it also periodically checks for downloads which are due to be
+ * retried or were missed (for example because of restart).
+ */
+@Component
+@Slf4j
+public class EmbedThumbnailWorker {
+
+  private final EmbedThumbnailService embedThumbnailService;
+  private final OembedResolver oembedResolver;
+
+  /** Single thread storing the thumbnails, so batches never compete for the same attachments. */
+  private final ScheduledExecutorService executor;
+
+  /** Whether download of due thumbnails is already waiting to be executed. */
+  private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+  @Autowired
+  public EmbedThumbnailWorker(
+      EmbedThumbnailService embedThumbnailService, OembedResolver oembedResolver) {
+    this.embedThumbnailService = embedThumbnailService;
+    this.oembedResolver = oembedResolver;
+
+    var threadFactory = new CustomizableThreadFactory("embed-thumbnail-");
+    threadFactory.setDaemon(true);
+    executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    executor.scheduleWithFixedDelay(
+        this::downloadDueThumbnails,
+        Constants.EMBED_THUMBNAIL_RETRY_INTERVAL,
+        Constants.EMBED_THUMBNAIL_RETRY_INTERVAL,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * Wakes up the worker to download all due thumbnails. Multiple calls made before the worker gets
+   * to them result in single execution.
+   */
+  public void wakeUp() {
+    if (wakeUpPending.compareAndSet(false, true)) {
+      executor.execute(
+          () -> {
+            wakeUpPending.set(false);
+            downloadDueThumbnails();
+          });
+    }
+  }
+
+  /**
+   * Downloads batches of due thumbnails, until there are none left. Thumbnails of single batch are
+   * downloaded in parallel, but stored one by one.
+   */
+  private void downloadDueThumbnails() {
+    try {
+      List<EmbedData> due;
+      do {
+        due = embedThumbnailService.getDueThumbnails();
+        Map<UUID, CompletableFuture<byte[]>> downloads = new LinkedHashMap<>();
+        due.forEach(
+            embedData ->
+                downloads.put(
+                    embedData.getAttachmentId(),
+                    oembedResolver.fetchThumbnail(embedData.getThumbnailUrl())));
+        downloads.forEach(this::saveThumbnail);
+      } while (due.size() == Constants.EMBED_THUMBNAIL_BATCH_SIZE
+          && !Thread.currentThread().isInterrupted());
+    } catch (RuntimeException ex) {
+      log.error("Download of thumbnails of embedded attachments failed", ex);
+    }
+  }
+
+  /**
+   * Stores downloaded thumbnail of embedded attachment, or postpones the download if it failed.
+   *
+   * @param attachmentId ID of embedded attachment
+   * @param download download of its thumbnail
+   */
+  private void saveThumbnail(UUID attachmentId, CompletableFuture<byte[]> download) {
+    if (Thread.currentThread().isInterrupted()) {
+      download.cancel(true);
+      return;
+    }
+
+    try {
+      embedThumbnailService.saveThumbnail(attachmentId, download.get());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | IOException | RuntimeException ex) {
+      log.warn("Storing of thumbnail of embedded attachment {} failed", attachmentId, ex);
+      embedThumbnailService.postponeThumbnail(attachmentId);
+    }
+  }
+
+  /** Stops the worker. Thumbnails which were not downloaded yet are left for next start. */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.board.BoardSettings;
+import lombok.Getter;
+
+/**
+ * Enum representing quality tiers for thumbnails of uploaded images.
+ *
+ * @see BoardSettings#getThumbnailQuality()
+ */
+public enum ThumbnailQuality {
+  /**
+   * Image is decoded with subsampling close to the thumbnail size and scaled without antialiasing
+   * and dithering. Fastest and lowest on memory, but prone to aliasing on detailed images.
+   */
+  FAST("-fast"),
+  /**
+   * Image is decoded with subsampling to at least twice the thumbnail size and scaled with bilinear
+   * interpolation, antialiasing and dithering.
+   */
+  QUALITY("");
+
+  /**
+   * Suffix appended to checksum in name of stored files which have thumbnail of this quality, so
+   * files (and thumbnails named after them) with the same content but different thumbnail quality
+   * are not shared.
+   */
+  @Getter private final String filenameSuffix;
+
+  ThumbnailQuality(String filenameSuffix) {
+    this.filenameSuffix = filenameSuffix;
+  }
+}
@@ -0,0 +1,63 @@
+package com.github.njuro.jard.attachment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Enum specifying how are files of attachments laid out in their folder. Specified by application
+ * property {@code app.user.content.layout}.
+ *
+ * <p>Path of the file relative to its folder is stored as attachment's filename, so attachments
+ * stored in different layouts can coexist and files stored in {@link #FLAT} layout can be moved to
+ * {@link #SHARDED} layout in background (see {@link AttachmentLayoutMigrationService}).
+ */
+public enum UserContentLayout {
+  /** Files are stored directly in their folder, which grows without bound. */
+  FLAT,
+  /**
+   * Files are fanned out into two levels of subdirectories named after prefix of their checksum,
+   * e.g. {@code 1f/a3/1fa3...png}.
+   */
+  SHARDED;
+
+  /**
+   * Pattern of name of file (without extension) stored under its checksum, followed by filename
+   * suffix of its {@link ThumbnailQuality}.
+   */
+  private static final Pattern CHECKSUM =
+      Pattern.compile(
+          "([0-9a-f]{64})("
+              + Arrays.stream(ThumbnailQuality.values())
+                  .map(quality -> Pattern.quote(quality.getFilenameSuffix()))
+                  .collect(Collectors.joining("|"))
+              + ")");
+
+  /**
+   * Resolves path to file with given name in this layout.
+   *
+   * <p>Files (and their thumbnails) stored under their checksum are sharded by it, legacy files by
+   * hash of their name.
+   *
+   * @param filename name of the file, may already be resolved in some layout
+   * @return path to the file relative to its folder
+   */
+  public String resolveFilename(String filename) {
+    String name = FilenameUtils.getName(filename);
+    if (this == FLAT) {
+      return name;
+    }
+
+    String baseName = FilenameUtils.removeExtension(name);
+    Matcher checksum = CHECKSUM.matcher(baseName);
+    String hash =
+        checksum.matches()
+            ? checksum.group(1)
+            : DigestUtils.md5DigestAsHex(baseName.getBytes(StandardCharsets.UTF_8));
+    return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + name;
+  }
+}
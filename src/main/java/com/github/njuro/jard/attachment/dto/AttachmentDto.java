@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.github.njuro.jard.attachment.Attachment;
 import com.github.njuro.jard.attachment.AttachmentCategory;
 import com.github.njuro.jard.attachment.AttachmentCategory.AttachmentCategorySerializer;
+import com.github.njuro.jard.attachment.AttachmentStatus;
 import com.github.njuro.jard.base.BaseDto;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
@@ -24,6 +25,9 @@ public class AttachmentDto extends BaseDto {
   @ToString.Include
   private AttachmentCategory category;
 
+  /** {@link Attachment#status */
+  private AttachmentStatus status;
+
   /** {@link Attachment#folder */
   @EqualsAndHashCode.Include @ToString.Include private String folder;
 
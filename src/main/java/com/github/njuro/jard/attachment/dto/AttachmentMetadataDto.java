@@ -34,6 +34,9 @@ public class AttachmentMetadataDto implements Serializable {
   /** {@link AttachmentMetadata#fileSize } */
   private String fileSize;
 
+  /** {@link AttachmentMetadata#fileSizeBytes } */
+  private Long fileSizeBytes;
+
   /** {@link AttachmentMetadata#duration } */
   private String duration;
 
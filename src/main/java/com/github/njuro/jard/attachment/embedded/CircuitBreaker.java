@@ -0,0 +1,66 @@
+package com.github.njuro.jard.attachment.embedded;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker guarding requests to single OEmbed provider. After given number of consecutive
+ * failures the circuit opens and requests are rejected without contacting the provider. When the
+ * open duration passes, single trial request is let through - if it succeeds, the circuit is closed
+ * again, otherwise it stays open for another period.
+ */
+class CircuitBreaker {
+
+  private final int failureThreshold;
+  private final long openDurationNanos;
+
+  private int failures;
+  private boolean open;
+  private boolean trialRunning;
+  private long openedAt;
+
+  CircuitBreaker(int failureThreshold, Duration openDuration) {
+    this.failureThreshold = failureThreshold;
+    openDurationNanos = openDuration.toNanos();
+  }
+
+  /**
+   * Checks whether request to the provider can be sent. Every permitted request must be followed by
+   * call to {@link #recordSuccess()} or {@link #recordFailure()}.
+   *
+   * @return {@code true} if the request can be sent, {@code false} if the circuit is open
+   */
+  synchronized boolean tryAcquire() {
+    if (!open) {
+      return true;
+    }
+
+    if (trialRunning || System.nanoTime() - openedAt < openDurationNanos) {
+      return false;
+    }
+
+    trialRunning = true;
+    return true;
+  }
+
+  /** Records that the provider responded, which closes the circuit. */
+  synchronized void recordSuccess() {
+    failures = 0;
+    open = false;
+    trialRunning = false;
+  }
+
+  /** Records failed request to the provider, which may open the circuit. */
+  synchronized void recordFailure() {
+    failures++;
+    if (trialRunning || failures >= failureThreshold) {
+      open = true;
+      openedAt = System.nanoTime();
+    }
+    trialRunning = false;
+  }
+
+  /** @return whether requests are currently rejected */
+  synchronized boolean isOpen() {
+    return open;
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.njuro.jard.attachment.embedded;
+
+import ac.simons.oembed.OembedEndpoint;
+import ac.simons.oembed.OembedResponse;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+/**
+ * Route of URLs matching URL schemes of single content provider to its handler and OEmbed endpoint.
+ *
+ * @see EmbedRouter
+ */
+@Getter
+public class EmbedRoute {
+
+  private final EmbeddedAttachmentHandler handler;
+  private final OembedEndpoint endpoint;
+
+  /** Compiled URL schemes of the endpoint. */
+  private final List<Pattern> urlSchemes;
+
+  /**
+   * @param handler handler of the content provider
+   * @throws IllegalArgumentException if the handler registers endpoint in other format than JSON
+   */
+  EmbedRoute(EmbeddedAttachmentHandler handler) {
+    this.handler = handler;
+    endpoint = handler.registerEndpoint();
+    if (endpoint.getFormat() == OembedResponse.Format.xml) {
+      throw new IllegalArgumentException(
+          "Only JSON OEmbed endpoints are supported: " + handler.getProviderName());
+    }
+    urlSchemes =
+        Optional.ofNullable(endpoint.getUrlSchemes()).orElse(List.of()).stream()
+            .map(scheme -> Pattern.compile(scheme, Pattern.CASE_INSENSITIVE))
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * @param url normalized URL
+   * @return whether given URL matches any of URL schemes of this route
+   */
+  public boolean matches(String url) {
+    for (Pattern scheme : urlSchemes) {
+      if (scheme.matcher(url).matches()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @param url URL of content to be embedded
+   * @return URI of request to OEmbed endpoint for given content
+   */
+  URI getRequestUri(String url) {
+    var base = endpoint.getEndpoint();
+    return URI.create(
+        base
+            + (base.contains("?") ? "&" : "?")
+            + "format=json&url="
+            + URLEncoder.encode(url, StandardCharsets.UTF_8));
+  }
+}
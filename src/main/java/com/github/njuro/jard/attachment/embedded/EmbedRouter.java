@@ -0,0 +1,181 @@
+package com.github.njuro.jard.attachment.embedded;
+
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Router of URLs of embedded content to handlers of their providers, so the handler is known (or
+ * unsupported URL rejected) before any request is sent.
+ *
+ * <p>URL schemes of all registered handlers are compiled once and indexed by domains found in them
+ * literally (such as {@code youtube\.com}), so routing of URL takes single lookup of its domain and
+ * matching of schemes of the few providers registered for it. Schemes without literal domain are
+ * tried for every URL.
+ */
+@Component
+public class EmbedRouter {
+
+  /** Pattern for domain names written literally in URL schemes, such as {@code youtube\.com}. */
+  private static final Pattern DOMAIN_LITERAL =
+      Pattern.compile("[a-z0-9-]+(?:\\\\?\\.[a-z0-9-]+)+", Pattern.CASE_INSENSITIVE);
+
+  /** Routes mapped by domain found in their URL schemes. */
+  private final Map<String, List<EmbedRoute>> routesByDomain = new HashMap<>();
+
+  /** Routes with URL scheme without literal domain. */
+  private final List<EmbedRoute> wildcardRoutes = new ArrayList<>();
+
+  @Autowired
+  public EmbedRouter(List<EmbeddedAttachmentHandler> embeddedAttachmentHandlers) {
+    for (EmbeddedAttachmentHandler handler : embeddedAttachmentHandlers) {
+      var route = new EmbedRoute(handler);
+      Set<String> domains = new LinkedHashSet<>();
+      boolean wildcard = false;
+      for (Pattern scheme : route.getUrlSchemes()) {
+        var schemeDomains = getDomains(scheme.pattern());
+        domains.addAll(schemeDomains);
+        wildcard |= schemeDomains.isEmpty();
+      }
+
+      domains.forEach(
+          domain -> routesByDomain.computeIfAbsent(domain, key -> new ArrayList<>()).add(route));
+      if (wildcard) {
+        wildcardRoutes.add(route);
+      }
+    }
+  }
+
+  /**
+   * Finds route for given URL.
+   *
+   * @param url normalized URL of content to be embedded, see {@link #normalizeUrl(String)}
+   * @return route of the first provider whose URL schemes match given URL, or empty optional if
+   *     there is none
+   */
+  public Optional<EmbedRoute> route(String url) {
+    var routes = routesByDomain.get(getDomain(getHost(url)));
+    if (routes != null) {
+      for (EmbedRoute route : routes) {
+        if (route.matches(url)) {
+          return Optional.of(route);
+        }
+      }
+    }
+
+    for (EmbedRoute route : wildcardRoutes) {
+      if (route.matches(url)) {
+        return Optional.of(route);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Normalizes given URL, so different forms of the same URL are routed and cached the same way.
+   * Scheme and host are converted to lower case, default port, user info and fragment are removed
+   * and empty path is replaced with {@code /}.
+   *
+   * @param url URL to normalize
+   * @return normalized URL
+   * @throws IllegalArgumentException if given URL is not valid absolute HTTP(S) URL
+   */
+  public static String normalizeUrl(String url) {
+    URI uri;
+    try {
+      uri = new URI(url.trim()).normalize();
+    } catch (URISyntaxException ex) {
+      throw new IllegalArgumentException("Invalid URL: " + url, ex);
+    }
+
+    var scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : null;
+    if (!("http".equals(scheme) || "https".equals(scheme)) || uri.getHost() == null) {
+      throw new IllegalArgumentException("Invalid URL: " + url);
+    }
+
+    var normalized = new StringBuilder(scheme).append("://");
+    normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+    int port = uri.getPort();
+    if (port != -1 && port != ("http".equals(scheme) ? 80 : 443)) {
+      normalized.append(':').append(port);
+    }
+    var path = uri.getRawPath();
+    normalized.append(path == null || path.isEmpty() ? "/" : path);
+    if (uri.getRawQuery() != null) {
+      normalized.append('?').append(uri.getRawQuery());
+    }
+
+    return normalized.toString();
+  }
+
+  /**
+   * @param scheme URL scheme (regular expression)
+   * @return domains written literally in host part of given URL scheme
+   */
+  static Set<String> getDomains(String scheme) {
+    int start = scheme.indexOf("://");
+    if (start == -1) {
+      return Set.of();
+    }
+
+    // host part ends with first slash outside of group, e.g. (?:youtu\.be|youtube\.com/embed)/
+    start += 3;
+    int end = scheme.length();
+    int depth = 0;
+    for (int i = start; i < scheme.length(); i++) {
+      char c = scheme.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '/' && depth == 0) {
+        end = i;
+        break;
+      }
+    }
+
+    Set<String> domains = new LinkedHashSet<>();
+    var matcher = DOMAIN_LITERAL.matcher(scheme.substring(start, end));
+    while (matcher.find()) {
+      domains.add(getDomain(matcher.group().replace("\\", "").toLowerCase(Locale.ROOT)));
+    }
+    return domains;
+  }
+
+  /** @return host of given normalized URL */
+  private static String getHost(String url) {
+    int start = url.indexOf("://") + 3;
+    int end = start;
+    while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != ':') {
+      end++;
+    }
+    return url.substring(start, end);
+  }
+
+  /**
+   * @return last two labels of given host name, e.g. {@code youtube.com} for {@code m.youtube.com}
+   */
+  private static String getDomain(String host) {
+    int last = host.lastIndexOf('.');
+    if (last <= 0) {
+      return host;
+    }
+
+    int previous = host.lastIndexOf('.', last - 1);
+    return previous == -1 ? host : host.substring(previous + 1);
+  }
+}
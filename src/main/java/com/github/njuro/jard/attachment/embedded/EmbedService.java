@@ -1,76 +1,85 @@
 package com.github.njuro.jard.attachment.embedded;
 
-import ac.simons.oembed.OembedEndpoint;
-import ac.simons.oembed.OembedException;
-import ac.simons.oembed.OembedService;
+import ac.simons.oembed.OembedResponse;
 import com.github.njuro.jard.attachment.Attachment;
 import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpResponseInterceptor;
-import org.apache.http.entity.BasicHttpEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.protocol.HttpContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-/** Service for handling of embedded attachments using OEmbed format providers. */
+/**
+ * Service for handling of embedded attachments using OEmbed format providers. URL of embedded
+ * content is routed to handler of its provider by {@link EmbedRouter} and unsupported URLs are
+ * rejected before any request is sent, unless OEmbed autodiscovery is enabled.
+ */
 @Service
 public class EmbedService {
 
-  private final List<EmbeddedAttachmentHandler> embeddedAttachmentHandlers;
-  private final OembedService oembedService;
+  /** Registered handlers, mapped by lower-cased name of their provider. */
+  private final Map<String, EmbeddedAttachmentHandler> embeddedAttachmentHandlers;
 
-  @Autowired
-  public EmbedService(List<EmbeddedAttachmentHandler> embeddedAttachmentHandlers) {
-    this.embeddedAttachmentHandlers = embeddedAttachmentHandlers;
-
-    oembedService = configureOembedService();
-  }
+  private final EmbedRouter embedRouter;
+  private final OembedResolver oembedResolver;
+  private final boolean autodiscovery;
 
-  /**
-   * Registers all detected embedded attachment handlers and sets up OEmbed service.
-   *
-   * @see EmbeddedAttachmentHandler
-   * @see OembedService
-   */
-  private OembedService configureOembedService() {
-    List<OembedEndpoint> endpoints =
+  @Autowired
+  public EmbedService(
+      List<EmbeddedAttachmentHandler> embeddedAttachmentHandlers,
+      EmbedRouter embedRouter,
+      OembedResolver oembedResolver,
+      @Value("${app.embed.autodiscovery:false}") boolean autodiscovery) {
+    this.embeddedAttachmentHandlers =
         embeddedAttachmentHandlers.stream()
-            .map(EmbeddedAttachmentHandler::registerEndpoint)
-            .collect(Collectors.toList());
-
-    var service =
-        new OembedService(
-            HttpClientBuilder.create().addInterceptorLast(new OembedResponseFixer()).build(),
-            null,
-            endpoints,
-            null);
-    service.setAutodiscovery(true);
-    service.setCacheName("oembed");
-
-    return service;
+            .collect(
+                Collectors.toMap(
+                    handler -> handler.getProviderName().toLowerCase(Locale.ROOT),
+                    Function.identity(),
+                    (first, second) -> first));
+    this.embedRouter = embedRouter;
+    this.oembedResolver = oembedResolver;
+    this.autodiscovery = autodiscovery;
   }
 
   /**
-   * Processes embedded attachment.
+   * Processes embedded attachment. The OEmbed response is resolved by {@link OembedResolver}, so
+   * waiting for it is bounded by its timeouts. If no registered provider supports given URL and
+   * autodiscovery is enabled, the OEmbed endpoint is looked up in HTML page of the content.
    *
    * @param url URL to content to be embedded
    * @param attachment {@link Attachment} connected to this embedding
-   * @throws OembedException if getting response from OEmbed endpoint fails
-   * @throws IllegalArgumentException if there is no response from OEmbed endpoint
+   * @throws IllegalArgumentException if the URL is not supported or getting response from OEmbed
+   *     endpoint fails
    */
   public void processEmbedded(String url, Attachment attachment) {
-    var response =
-        oembedService
-            .getOembedResponseFor(url)
-            .orElseThrow(() -> new IllegalArgumentException("Failed to get oembed response"));
-    var handler = getHandlerForProvider(response.getProviderName());
+    var normalizedUrl = EmbedRouter.normalizeUrl(url);
+    var route = embedRouter.route(normalizedUrl);
+    if (route.isEmpty() && !autodiscovery) {
+      throw new IllegalArgumentException("Unsupported URL of embedded content: " + url);
+    }
+
+    OembedResponse response;
+    try {
+      response =
+          route.isPresent()
+              ? oembedResolver.resolve(route.get(), normalizedUrl).get()
+              : oembedResolver.discover(normalizedUrl).get();
+    } catch (ExecutionException ex) {
+      throw new IllegalArgumentException("Failed to get oembed response", ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalArgumentException("Interrupted while getting oembed response", ex);
+    }
+
+    var handler =
+        route.isPresent()
+            ? route.get().getHandler()
+            : getHandlerForProvider(response.getProviderName());
     handler.setEmbedData(response, url, attachment);
     attachment.setOriginalFilename(handler.getTitle(response));
   }
@@ -81,52 +90,14 @@ public class EmbedService {
    * @throws IllegalArgumentException if there is no registered handler for given provider
    */
   public EmbeddedAttachmentHandler getHandlerForProvider(String providerName) {
-    return embeddedAttachmentHandlers.stream()
-        .filter(handler -> handler.getProviderName().equalsIgnoreCase(providerName))
-        .findAny()
-        .orElseThrow(
-            () ->
-                new IllegalArgumentException(
-                    "Failed to get handler for provider: " + providerName));
-  }
-
-  /**
-   * Response interceptor which fixes responses not adhering to Oembed format and thus causing
-   * parsing exception.
-   */
-  static class OembedResponseFixer implements HttpResponseInterceptor {
-
-    /**
-     * Pattern for matching width and height parameters in JSON/XML responses containing (illegal)
-     * percentage value.
-     */
-    private static final Pattern PERCENTAGE_DIMENSION_PATTERN =
-        Pattern.compile(
-            "(?:<width.*>|\"width\":|<height.*>|\"height\":)\\s*\"?(\\d+%)\"?\\s*(?:</width>|</height>)?",
-            Pattern.CASE_INSENSITIVE);
-
-    @Override
-    public void process(HttpResponse response, HttpContext context) throws IOException {
-      var entity = new BasicHttpEntity();
-      String content = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
-      entity.setContent(
-          IOUtils.toInputStream(removePercentageDimensions(content), StandardCharsets.UTF_8));
-      response.setEntity(entity);
+    var handler =
+        providerName != null
+            ? embeddedAttachmentHandlers.get(providerName.toLowerCase(Locale.ROOT))
+            : null;
+    if (handler == null) {
+      throw new IllegalArgumentException("Failed to get handler for provider: " + providerName);
     }
 
-    /**
-     * Replaces all dimensions parameters (width, height) in the response with percentage values
-     * with {@code 0}.
-     */
-    private String removePercentageDimensions(String response) {
-      var matcher = PERCENTAGE_DIMENSION_PATTERN.matcher(response);
-      var sb = new StringBuilder();
-      while (matcher.find()) {
-        matcher.appendReplacement(
-            sb, matcher.group(0).replaceFirst(Pattern.quote(matcher.group(1)), "0"));
-      }
-      matcher.appendTail(sb);
-      return sb.toString();
-    }
+    return handler;
   }
 }
@@ -0,0 +1,465 @@
+package com.github.njuro.jard.attachment.embedded;
+
+import ac.simons.oembed.OembedException;
+import ac.simons.oembed.OembedResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.njuro.jard.common.Constants;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolver of OEmbed responses for URLs of embedded content.
+ *
+ * <p>Requests are sent asynchronously by pooled HTTP client with connect and read timeouts, so slow
+ * provider cannot hold up threads waiting for the response. Responses are limited to {@link
+ * Constants#OEMBED_MAX_RESPONSE_SIZE} and cached in {@link Constants#OEMBED_CACHE_NAME} cache by
+ * normalized URL of the content. Requests to every host are guarded by its own {@link
+ * CircuitBreaker}, so requests to provider which keeps failing are rejected right away for a while.
+ */
+@Component
+@Slf4j
+public class OembedResolver {
+
+  /** User-Agent header sent to providers which do not require specific one. */
+  private static final String DEFAULT_USER_AGENT = "jard-oembed";
+
+  private final Cache cache;
+  private final HttpClient httpClient;
+  private final ExecutorService executor;
+  private final Duration timeout;
+  private final int maxResponseSize;
+  private final int circuitBreakerFailures;
+  private final Duration circuitBreakerOpenDuration;
+
+  /**
+   * Circuit breakers mapped by host, the least recently used are dropped when there is too many.
+   */
+  private final Map<String, CircuitBreaker> circuitBreakers =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CircuitBreaker> eldest) {
+              return size() > Constants.OEMBED_MAX_CIRCUIT_BREAKERS;
+            }
+          });
+
+  @Autowired
+  public OembedResolver(ObjectProvider<CacheManager> cacheManager) {
+    this(
+        getCache(cacheManager.getIfAvailable()),
+        Duration.ofSeconds(Constants.OEMBED_CONNECT_TIMEOUT),
+        Duration.ofSeconds(Constants.OEMBED_READ_TIMEOUT),
+        Constants.OEMBED_MAX_RESPONSE_SIZE,
+        Constants.OEMBED_CIRCUIT_BREAKER_FAILURES,
+        Duration.ofSeconds(Constants.OEMBED_CIRCUIT_BREAKER_OPEN_DURATION));
+  }
+
+  OembedResolver(
+      Cache cache,
+      Duration connectTimeout,
+      Duration readTimeout,
+      int maxResponseSize,
+      int circuitBreakerFailures,
+      Duration circuitBreakerOpenDuration) {
+    this.cache = cache;
+    this.maxResponseSize = maxResponseSize;
+    this.circuitBreakerFailures = circuitBreakerFailures;
+    this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+    timeout = connectTimeout.plus(readTimeout);
+
+    var threadFactory = new CustomizableThreadFactory("oembed-");
+    threadFactory.setDaemon(true);
+    executor = Executors.newFixedThreadPool(Constants.OEMBED_THREADS, threadFactory);
+    httpClient =
+        HttpClient.newBuilder()
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(executor)
+            .build();
+  }
+
+  private static Cache getCache(CacheManager cacheManager) {
+    var cache = cacheManager != null ? cacheManager.getCache(Constants.OEMBED_CACHE_NAME) : null;
+    if (cache == null) {
+      log.warn(
+          "Cache {} is not configured, OEmbed responses will not be cached",
+          Constants.OEMBED_CACHE_NAME);
+      return new NoOpCache(Constants.OEMBED_CACHE_NAME);
+    }
+
+    return cache;
+  }
+
+  /**
+   * Resolves OEmbed response for given URL, either from cache or from OEmbed endpoint of given
+   * route.
+   *
+   * @param route route of the URL, see {@link EmbedRouter#route(String)}
+   * @param url normalized URL of content to be embedded
+   * @return future completed with OEmbed response, or completed exceptionally with {@link
+   *     OembedException} if getting the response from provider fails or requests to the provider
+   *     are suspended by its circuit breaker
+   */
+  public CompletableFuture<OembedResponse> resolve(EmbedRoute route, String url) {
+    var cached = getCached(url);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+
+    var userAgent = route.getHandler().getUserAgent();
+    return fetchAndCache(route.getRequestUri(url), userAgent, url);
+  }
+
+  /**
+   * Resolves OEmbed response for given URL, either from cache or by discovering OEmbed endpoint in
+   * HTML page of the content (first {@link Constants#OEMBED_MAX_DISCOVERY_SIZE} bytes of it).
+   *
+   * @param url normalized URL of content to be embedded
+   * @return future completed with OEmbed response, or completed exceptionally with {@link
+   *     OembedException} if the page does not link to OEmbed endpoint or getting the page or the
+   *     response fails
+   */
+  public CompletableFuture<OembedResponse> discover(String url) {
+    var cached = getCached(url);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+
+    return fetch(URI.create(url), null, "text/html", Constants.OEMBED_MAX_DISCOVERY_SIZE, true)
+        .thenCompose(
+            page -> {
+              var link =
+                  Jsoup.parse(new String(page, StandardCharsets.UTF_8), url)
+                      .selectFirst("link[type=application/json+oembed][href]");
+              if (link == null) {
+                throw new OembedException("No OEmbed endpoint found at " + url);
+              }
+
+              return fetchAndCache(URI.create(link.absUrl("href")), null, url);
+            });
+  }
+
+  /**
+   * Downloads thumbnail of embedded content from its provider. Requests are subject to the same
+   * timeouts and circuit breakers as requests for OEmbed responses.
+   *
+   * @param thumbnailUrl URL of the thumbnail, see {@link OembedResponse#getThumbnailUrl()}
+   * @return future completed with content of the thumbnail, or completed exceptionally with {@link
+   *     OembedException} if the URL is invalid, the download fails or the thumbnail is larger than
+   *     {@link Constants#EMBED_THUMBNAIL_MAX_SIZE}
+   */
+  public CompletableFuture<byte[]> fetchThumbnail(String thumbnailUrl) {
+    URI uri;
+    try {
+      uri = URI.create(EmbedRouter.normalizeUrl(thumbnailUrl));
+    } catch (IllegalArgumentException ex) {
+      return CompletableFuture.failedFuture(new OembedException(ex));
+    }
+
+    return fetch(uri, null, "image/*", Constants.EMBED_THUMBNAIL_MAX_SIZE, false);
+  }
+
+  private OembedResponse getCached(String url) {
+    var cached = cache.get(url, byte[].class);
+    if (cached != null) {
+      try {
+        return OembedResponseFixer.parse(cached);
+      } catch (OembedException ex) {
+        cache.evict(url);
+      }
+    }
+
+    return null;
+  }
+
+  private CompletableFuture<OembedResponse> fetchAndCache(URI uri, String userAgent, String url) {
+    return fetch(uri, userAgent, "application/json", maxResponseSize, false)
+        .thenApply(
+            body -> {
+              var response = OembedResponseFixer.parse(body);
+              cache.put(url, body);
+              return response;
+            });
+  }
+
+  /**
+   * Sends GET request to given URI and reports the result to circuit breaker of its host.
+   *
+   * @param truncate whether to use first {@code maxSize} bytes of larger body instead of failing
+   */
+  private CompletableFuture<byte[]> fetch(
+      URI uri, String userAgent, String accept, int maxSize, boolean truncate) {
+    var host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+    var breaker =
+        circuitBreakers.computeIfAbsent(
+            host, key -> new CircuitBreaker(circuitBreakerFailures, circuitBreakerOpenDuration));
+    if (!breaker.tryAcquire()) {
+      return CompletableFuture.failedFuture(
+          new OembedException("Requests to " + host + " are suspended"));
+    }
+
+    var request =
+        HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("User-Agent", userAgent != null ? userAgent : DEFAULT_USER_AGENT)
+            .header("Accept", accept)
+            .GET()
+            .build();
+    var subscriber = new LimitedBodySubscriber(maxSize, truncate);
+
+    return httpClient
+        .sendAsync(
+            request,
+            info -> info.statusCode() == 200 ? subscriber : BodySubscribers.<byte[]>replacing(null))
+        .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+        .handle(
+            (response, ex) -> {
+              if (ex != null) {
+                subscriber.cancel();
+                breaker.recordFailure();
+                throw new OembedException(ex instanceof CompletionException ? ex.getCause() : ex);
+              }
+
+              int status = response.statusCode();
+              if (status >= 500 || status == 429) {
+                breaker.recordFailure();
+              } else {
+                breaker.recordSuccess();
+              }
+              if (status != 200) {
+                throw new OembedException(host + " responded with status " + status);
+              }
+
+              return response.body();
+            });
+  }
+
+  /** Stops workers of HTTP client. */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Subscriber collecting body of HTTP response, which stops as soon as the body exceeds given
+   * size, without waiting for the rest of it. Depending on {@code truncate}, the body collected so
+   * far is used, or the response fails.
+   */
+  private static class LimitedBodySubscriber implements BodySubscriber<byte[]> {
+
+    private final int maxSize;
+    private final boolean truncate;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+
+    private LimitedBodySubscriber(int maxSize, boolean truncate) {
+      this.maxSize = maxSize;
+      this.truncate = truncate;
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+      return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+      for (var buffer : buffers) {
+        if (body.size() + buffer.remaining() > maxSize) {
+          subscription.cancel();
+          if (truncate) {
+            var bytes = new byte[maxSize - body.size()];
+            buffer.get(bytes);
+            body.writeBytes(bytes);
+            result.complete(body.toByteArray());
+          } else {
+            result.completeExceptionally(
+                new IOException("Response is larger than " + maxSize + " bytes"));
+          }
+          return;
+        }
+        var bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        body.writeBytes(bytes);
+      }
+      subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      result.complete(body.toByteArray());
+    }
+
+    private void cancel() {
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+  }
+
+  /**
+   * Reader of OEmbed responses, which fixes responses not adhering to OEmbed format - width and
+   * height given as strings or (illegal) percentage values are read as numbers or {@code 0}. The
+   * response is read token by token, without building intermediate string or tree.
+   */
+  static class OembedResponseFixer {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private OembedResponseFixer() {}
+
+    /**
+     * @param body body of the JSON response
+     * @return parsed OEmbed response
+     * @throws OembedException if the body is not valid JSON object
+     */
+    static OembedResponse parse(byte[] body) {
+      try (var parser = JSON_FACTORY.createParser(body)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new OembedException("OEmbed response is not JSON object");
+        }
+
+        var response = new OembedResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          var field = parser.getCurrentName();
+          parser.nextToken();
+          switch (field) {
+            case "type":
+              response.setType(readString(parser));
+              break;
+            case "version":
+              response.setVersion(readString(parser));
+              break;
+            case "title":
+              response.setTitle(readString(parser));
+              break;
+            case "author_name":
+              response.setAuthorName(readString(parser));
+              break;
+            case "author_url":
+              response.setAuthorUrl(readString(parser));
+              break;
+            case "provider_name":
+              response.setProviderName(readString(parser));
+              break;
+            case "provider_url":
+              response.setProviderUrl(readString(parser));
+              break;
+            case "cache_age":
+              var cacheAge = readNumber(parser);
+              response.setCacheAge(cacheAge != null ? cacheAge.longValue() : null);
+              break;
+            case "thumbnail_url":
+              response.setThumbnailUrl(readString(parser));
+              break;
+            case "thumbnail_width":
+              response.setThumbnailWidth(readDimension(parser));
+              break;
+            case "thumbnail_height":
+              response.setThumbnailHeight(readDimension(parser));
+              break;
+            case "url":
+              response.setUrl(readString(parser));
+              break;
+            case "html":
+              response.setHtml(readString(parser));
+              break;
+            case "width":
+              response.setWidth(readDimension(parser));
+              break;
+            case "height":
+              response.setHeight(readDimension(parser));
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+          throw new OembedException("OEmbed response is not valid JSON object");
+        }
+        return response;
+      } catch (IOException ex) {
+        throw new OembedException(ex);
+      }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+      if (parser.currentToken().isStructStart()) {
+        parser.skipChildren();
+        return null;
+      }
+
+      return parser.getValueAsString();
+    }
+
+    private static Long readNumber(JsonParser parser) throws IOException {
+      if (parser.currentToken().isNumeric()) {
+        return parser.getValueAsLong();
+      }
+
+      var value = readString(parser);
+      if (value == null) {
+        return null;
+      }
+      try {
+        return Long.valueOf(value.trim());
+      } catch (NumberFormatException ex) {
+        return null;
+      }
+    }
+
+    private static Integer readDimension(JsonParser parser) throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return null;
+      }
+
+      var value = readNumber(parser);
+      return value != null ? value.intValue() : 0;
+    }
+  }
+}
@@ -22,6 +22,14 @@ public interface EmbeddedAttachmentHandler {
    */
   OembedEndpoint registerEndpoint();
 
+  /**
+   * @return value of User-Agent header sent to OEmbed endpoint of the content provider, or {@code
+   *     null} to send the default one
+   */
+  default String getUserAgent() {
+    return null;
+  }
+
   /**
    * @return title of this attachment. Used as file name for classic attachments. Cannot be {@code
    *     null}.
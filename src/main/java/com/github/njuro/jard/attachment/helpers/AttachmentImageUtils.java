@@ -1,27 +1,45 @@
 package com.github.njuro.jard.attachment.helpers;
 
+import static com.github.njuro.jard.attachment.ThumbnailQuality.FAST;
 import static com.github.njuro.jard.common.Constants.IMAGE_MAX_THUMB_HEIGHT;
 import static com.github.njuro.jard.common.Constants.IMAGE_MAX_THUMB_WIDTH;
+import static org.apache.commons.io.FilenameUtils.EXTENSION_SEPARATOR_STR;
 
 import com.github.njuro.jard.attachment.Attachment;
 import com.github.njuro.jard.attachment.AttachmentCategory;
 import com.github.njuro.jard.attachment.AttachmentMetadata;
+import com.github.njuro.jard.attachment.ThumbnailQuality;
 import com.github.njuro.jard.attachment.helpers.GifDecoder.GifImage;
 import com.github.njuro.jard.common.Constants;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
 import java.util.Objects;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import lombok.experimental.UtilityClass;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.resizers.configurations.AlphaInterpolation;
 import net.coobird.thumbnailator.resizers.configurations.Antialiasing;
 import net.coobird.thumbnailator.resizers.configurations.Dithering;
+import net.coobird.thumbnailator.resizers.configurations.Rendering;
 import net.coobird.thumbnailator.resizers.configurations.ScalingMode;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 
@@ -34,8 +52,15 @@ import org.apache.pdfbox.rendering.PDFRenderer;
 @UtilityClass
 public class AttachmentImageUtils {
 
+  /**
+   * Prefix of temporary files thumbnails are written to before they are moved to their location.
+   */
+  private static final String TEMPORARY_THUMBNAIL_PREFIX = "thumbnail-";
+
   /**
    * Creates thumbnail for given attachment. Thumbnail dimensions are automatically calculated.
+   * Images are decoded only once, with subsampling according to {@link
+   * Attachment#getThumbnailQuality()}.
    *
    * @param attachment attachment to create thumbnail for
    * @return created thumbnail
@@ -51,25 +76,103 @@ public class AttachmentImageUtils {
           "Cannot create thumbnail for attachment category " + attachment.getCategory().name());
     }
 
-    setThumbnailDimensions(attachment);
-
     AttachmentMetadata metadata = attachment.getMetadata();
-    BufferedImage image = getImageFromAttachment(attachment);
+    ThumbnailQuality quality = attachment.getThumbnailQuality();
+    BufferedImage image;
+    if (attachment.getCategory() == AttachmentCategory.PDF) {
+      // thumbnail dimensions are set from the same loaded document the page is rendered from
+      image = getImageFromPdfAttachment(attachment);
+    } else {
+      setThumbnailDimensions(attachment);
+      image =
+          attachment.getCategory() == AttachmentCategory.IMAGE
+              ? getImageFromImageAttachment(
+                  attachment,
+                  getSubsamplingFactor(
+                      metadata.getWidth(), metadata.getThumbnailWidth(), getScaleMultiple(quality)))
+              : getImageFromAttachment(attachment);
+    }
 
     try {
-      return Thumbnails.of(image)
-          .size(metadata.getThumbnailWidth(), metadata.getThumbnailHeight())
-          .outputQuality(1.0)
-          .alphaInterpolation(AlphaInterpolation.QUALITY)
-          .scalingMode(ScalingMode.BILINEAR)
-          .antialiasing(Antialiasing.ON)
-          .dithering(Dithering.ENABLE)
-          .asBufferedImage();
+      var thumbnail =
+          Thumbnails.of(image)
+              .size(metadata.getThumbnailWidth(), metadata.getThumbnailHeight())
+              .outputQuality(1.0)
+              .scalingMode(ScalingMode.BILINEAR);
+      if (quality == FAST) {
+        thumbnail
+            .alphaInterpolation(AlphaInterpolation.SPEED)
+            .antialiasing(Antialiasing.OFF)
+            .dithering(Dithering.DISABLE)
+            .rendering(Rendering.SPEED);
+      } else {
+        thumbnail
+            .alphaInterpolation(AlphaInterpolation.QUALITY)
+            .antialiasing(Antialiasing.ON)
+            .dithering(Dithering.ENABLE);
+      }
+      return thumbnail.asBufferedImage();
     } catch (IOException ex) {
       throw new IllegalArgumentException("Failed to create thumbnail", ex);
     }
   }
 
+  /**
+   * Writes thumbnail to temporary file in the target folder and then moves it to target location,
+   * so incomplete thumbnail never appears under its final name and concurrent writes of the same
+   * thumbnail never interleave.
+   *
+   * @param thumbnail thumbnail to write
+   * @param extension extension determining format of the thumbnail
+   * @param target location of the thumbnail
+   * @throws IOException if writing of the thumbnail fails
+   */
+  public void writeThumbnail(RenderedImage thumbnail, String extension, Path target)
+      throws IOException {
+    Files.createDirectories(target.getParent());
+    Path temporary =
+        Files.createTempFile(
+            target.getParent(), TEMPORARY_THUMBNAIL_PREFIX, EXTENSION_SEPARATOR_STR + extension);
+    try {
+      if (!ImageIO.write(thumbnail, extension, temporary.toFile())) {
+        throw new IOException("Cannot write thumbnail in format " + extension);
+      }
+      try {
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Calculates factor by which image can be subsampled while decoding, so the decoded image is
+   * still at least given multiple of thumbnail size.
+   *
+   * @param width width of the image
+   * @param thumbnailWidth width of the thumbnail
+   * @param multiple how many times should the decoded image be larger than thumbnail
+   * @return subsampling factor, {@code 1} if image should not be subsampled
+   */
+  int getSubsamplingFactor(int width, int thumbnailWidth, int multiple) {
+    if (thumbnailWidth <= 0) {
+      return 1;
+    }
+
+    return Math.max(1, width / (thumbnailWidth * multiple));
+  }
+
+  /**
+   * @param quality requested quality of the thumbnail
+   * @return how many times should the image, from which thumbnail is created, be larger than the
+   *     thumbnail itself
+   */
+  private int getScaleMultiple(ThumbnailQuality quality) {
+    return quality == FAST ? 1 : 2;
+  }
+
   /**
    * Calculates thumbnail dimensions for attachment.
    *
@@ -80,14 +183,15 @@ public class AttachmentImageUtils {
   private void setThumbnailDimensions(Attachment attachment) {
     AttachmentMetadata metadata = attachment.getMetadata();
 
-    if (attachment.getCategory() == AttachmentCategory.PDF) {
-      setThumbnailDimensionsForPdf(attachment);
-      return;
-    }
-
     if (metadata.getWidth() == 0 || metadata.getHeight() == 0) {
       // set real dimensions first
-      AttachmentMetadataUtils.setMetadata(attachment);
+      if (attachment.getCategory() == AttachmentCategory.IMAGE) {
+        Dimension dimension = getImageDimensions(attachment);
+        metadata.setWidth(dimension.width);
+        metadata.setHeight(dimension.height);
+      } else {
+        AttachmentMetadataUtils.setMetadata(attachment);
+      }
     }
 
     if (metadata.getWidth() > IMAGE_MAX_THUMB_WIDTH
@@ -108,12 +212,11 @@ public class AttachmentImageUtils {
   /**
    * Sets thumbnail dimensions for PDF document depending on its orientation (landscape/portrait).
    *
-   * @param attachment to get document from
-   * @throws IllegalArgumentException when loading document fails.
+   * @param attachment attachment to set thumbnail dimensions for
+   * @param landscape whether the first page of the document is in landscape orientation
    */
-  private void setThumbnailDimensionsForPdf(Attachment attachment) {
-    var image = getImageFromPdfAttachment(attachment);
-    if (image.getWidth() > image.getHeight()) {
+  private void setThumbnailDimensionsForPdf(Attachment attachment, boolean landscape) {
+    if (landscape) {
       // PDF is in landscape mode
       attachment.getMetadata().setThumbnailWidth((int) IMAGE_MAX_THUMB_WIDTH);
       attachment.getMetadata().setThumbnailHeight((int) (IMAGE_MAX_THUMB_WIDTH / Math.sqrt(2)));
@@ -136,7 +239,7 @@ public class AttachmentImageUtils {
   BufferedImage getImageFromAttachment(Attachment attachment) {
     switch (attachment.getCategory()) {
       case IMAGE:
-        return getImageFromImageAttachment(attachment);
+        return getImageFromImageAttachment(attachment, 1);
       case VIDEO:
         return getImageFromVideoAttachment(attachment);
       case PDF:
@@ -147,16 +250,49 @@ public class AttachmentImageUtils {
     }
   }
 
+  /**
+   * Gets dimensions of {@link AttachmentCategory#IMAGE} attachment. Only header of the image is
+   * read, pixels are not decoded.
+   *
+   * @param attachment attachment to get dimensions of
+   * @return dimensions of the image
+   * @throws IllegalArgumentException if opening image file fails
+   */
+  public Dimension getImageDimensions(Attachment attachment) {
+    try (ImageInputStream input = openImage(attachment)) {
+      ImageReader reader = getImageReader(input);
+      try {
+        return new Dimension(reader.getWidth(0), reader.getHeight(0));
+      } finally {
+        reader.dispose();
+      }
+    } catch (ArrayIndexOutOfBoundsException ex) {
+      // bug in JDK see documentation of getImageFromGifAttachment method
+      GifImage gif = readGifFirstFrame(attachment);
+      return new Dimension(gif.getWidth(), gif.getHeight());
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Reading image file failed", ex);
+    }
+  }
+
   /**
    * Gets image representation of {@link AttachmentCategory#IMAGE} attachments.
    *
    * @param attachment attachment to get image from
+   * @param subsampling only every n-th pixel in both directions is decoded
    * @return image file
    * @throws IllegalArgumentException if opening image file fails
    */
-  private BufferedImage getImageFromImageAttachment(Attachment attachment) {
-    try {
-      return ImageIO.read(attachment.getFile());
+  private BufferedImage getImageFromImageAttachment(Attachment attachment, int subsampling) {
+    try (ImageInputStream input = openImage(attachment)) {
+      ImageReader reader = getImageReader(input);
+      try {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
     } catch (ArrayIndexOutOfBoundsException ex) {
       // bug in JDK see documentation of method below
       return getImageFromGifAttachment(attachment);
@@ -165,6 +301,44 @@ public class AttachmentImageUtils {
     }
   }
 
+  /**
+   * Opens file of {@link AttachmentCategory#IMAGE} attachment for reading.
+   *
+   * @param attachment attachment to open file of
+   * @return input stream of the file
+   * @throws IOException if opening file fails
+   */
+  private ImageInputStream openImage(Attachment attachment) throws IOException {
+    if (attachment.getFile() == null || !attachment.getFile().isFile()) {
+      throw new IOException("Image file does not exist");
+    }
+
+    ImageInputStream input = ImageIO.createImageInputStream(attachment.getFile());
+    if (input == null) {
+      throw new IOException("Cannot open image file");
+    }
+
+    return input;
+  }
+
+  /**
+   * Finds {@link ImageReader} able to decode given image and sets the image as its input.
+   *
+   * @param input image to decode
+   * @return image reader
+   * @throws IOException if format of the image is not supported
+   */
+  private ImageReader getImageReader(ImageInputStream input) throws IOException {
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+    if (!readers.hasNext()) {
+      throw new IOException("Unsupported image format");
+    }
+
+    ImageReader reader = readers.next();
+    reader.setInput(input, true, true);
+    return reader;
+  }
+
   /**
    * Gets image representation of {@link AttachmentCategory#IMAGE} attachments. This method handles
    * special case for some of the {@code gif} files.
@@ -173,15 +347,28 @@ public class AttachmentImageUtils {
    * the {@link ImageIO#read(File)} throws {@link ArrayIndexOutOfBoundsException} while reading a
    * {@code gif} file. To solve this, we use custom {@code gif} decoder to read such files.
    *
+   * <p>Only the first frame of the file is read and decoded, the rest of (possibly large animated)
+   * image is never touched.
+   *
    * @param attachment attachment to get image from
    * @return image
    * @throws IllegalArgumentException if opening {@code gif} file with custom decoder fails
-   * @see GifDecoder
+   * @see GifDecoder#readFirstFrame(InputStream)
    */
   private BufferedImage getImageFromGifAttachment(Attachment attachment) {
-    try (var inputFile = new FileInputStream(attachment.getFile())) {
-      GifImage gif = GifDecoder.read(inputFile);
-      return gif.getFrame(0);
+    return readGifFirstFrame(attachment).getFrame(0);
+  }
+
+  /**
+   * Reads first frame of {@code gif} file with custom decoder, without decoding its image data.
+   *
+   * @param attachment attachment to read
+   * @return {@code gif} image with only the first frame
+   * @throws IllegalArgumentException if opening {@code gif} file with custom decoder fails
+   */
+  private GifImage readGifFirstFrame(Attachment attachment) {
+    try (var input = new BufferedInputStream(new FileInputStream(attachment.getFile()))) {
+      return GifDecoder.readFirstFrame(input);
     } catch (IOException ex) {
       throw new IllegalArgumentException("Reading GIF file failed", ex);
     }
@@ -197,7 +384,7 @@ public class AttachmentImageUtils {
    */
   private BufferedImage getImageFromVideoAttachment(Attachment attachment) {
     try {
-      return VideoThumbnailMaker.getImageFromVideo(attachment.getFile().toPath().toString());
+      return VideoThumbnailMaker.getImageFromVideo(attachment.getFile().toPath());
     } catch (IOException ex) {
       throw new IllegalArgumentException("Reading video file failed", ex);
     } catch (InterruptedException ex) {
@@ -207,17 +394,36 @@ public class AttachmentImageUtils {
   }
 
   /**
-   * Gets image representation of {@link AttachmentCategory#PDF} attachments.
+   * Gets image representation of {@link AttachmentCategory#PDF} attachments and sets thumbnail
+   * dimensions according to orientation of its first page, which is read from page's boxes without
+   * rendering. The page is then rendered only once, at resolution just large enough for the
+   * thumbnail (considering {@link Attachment#getThumbnailQuality()}).
+   *
+   * <p>Document is loaded with main memory usage limited to {@link
+   * Constants#PDF_MAX_MAIN_MEMORY_BYTES}, the rest is buffered in temporary file.
    *
    * @param attachment attachment to get image from
    * @return image created from the first page of PDF document
    * @throws IllegalArgumentException if opening PDF file fails
-   * @see VideoThumbnailMaker
    */
   private BufferedImage getImageFromPdfAttachment(Attachment attachment) {
-    try (var document = PDDocument.load(attachment.getFile())) {
-      var pdfRenderer = new PDFRenderer(document);
-      return pdfRenderer.renderImageWithDPI(0, 300, ImageType.RGB);
+    try (var document =
+        PDDocument.load(
+            attachment.getFile(),
+            MemoryUsageSetting.setupMixed(Constants.PDF_MAX_MAIN_MEMORY_BYTES))) {
+      PDPage page = document.getPage(0);
+      PDRectangle box = page.getCropBox();
+      boolean rotated = page.getRotation() % 180 != 0;
+      float width = rotated ? box.getHeight() : box.getWidth();
+      float height = rotated ? box.getWidth() : box.getHeight();
+      setThumbnailDimensionsForPdf(attachment, width > height);
+
+      AttachmentMetadata metadata = attachment.getMetadata();
+      float scale =
+          getScaleMultiple(attachment.getThumbnailQuality())
+              * Math.min(
+                  metadata.getThumbnailWidth() / width, metadata.getThumbnailHeight() / height);
+      return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
     } catch (IOException ex) {
       throw new IllegalArgumentException("Reading PDF file failed", ex);
     }
@@ -5,17 +5,26 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import com.github.njuro.jard.attachment.Attachment;
 import com.github.njuro.jard.attachment.AttachmentCategory;
 import com.github.njuro.jard.attachment.AttachmentMetadata;
+import com.github.njuro.jard.attachment.ThumbnailQuality;
 import io.humble.video.Decoder;
 import io.humble.video.Demuxer;
 import io.humble.video.MediaDescriptor.Type;
-import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import lombok.experimental.UtilityClass;
 import org.apache.commons.io.FileUtils;
-import org.springframework.util.DigestUtils;
+import org.apache.commons.io.FilenameUtils;
 
 /**
  * Utility class with methods for retrieving and storing metadata of uploaded attachments.
@@ -25,6 +34,18 @@ import org.springframework.util.DigestUtils;
 @UtilityClass
 public class AttachmentMetadataUtils {
 
+  /** Algorithm used for calculating checksum of attachment's file. */
+  private static final String CHECKSUM_ALGORITHM = "SHA-256";
+
+  /** Prefix of temporary file the uploaded content is written to before it is complete. */
+  private static final String TEMPORARY_FILE_PREFIX = "upload-";
+
+  /** Suffix of temporary file the uploaded content is written to before it is complete. */
+  private static final String TEMPORARY_FILE_SUFFIX = ".part";
+
+  /** Size of buffer used for streaming uploaded content to its location. */
+  private static final int STORE_BUFFER_SIZE = 64 * 1024;
+
   /**
    * Determines category of {@link Attachment} and sets appropriate metadata for this category. May
    * also create thumbnail for attachment (if this category supports it).
@@ -64,7 +85,7 @@ public class AttachmentMetadataUtils {
    *     category
    * @see AttachmentCategory
    */
-  private void setAttachmentCategory(Attachment attachment) {
+  public void setAttachmentCategory(Attachment attachment) {
     String mimeType = attachment.getMetadata().getMimeType();
     attachment.setCategory(AttachmentCategory.determineAttachmentCategory(mimeType));
 
@@ -76,15 +97,15 @@ public class AttachmentMetadataUtils {
 
   /**
    * Sets metadata for {@link AttachmentCategory#IMAGE} attachments: {@code width } and {@code
-   * height}.
+   * height}. Dimensions are read from header of the image, without decoding it.
    *
    * @param attachment attachment to set image metadata on
    * @throws IllegalArgumentException if opening image file fails
    */
   private void setImageMetadata(Attachment attachment) {
-    BufferedImage image = AttachmentImageUtils.getImageFromAttachment(attachment);
-    attachment.getMetadata().setWidth(image.getWidth());
-    attachment.getMetadata().setHeight(image.getHeight());
+    Dimension dimension = AttachmentImageUtils.getImageDimensions(attachment);
+    attachment.getMetadata().setWidth(dimension.width);
+    attachment.getMetadata().setHeight(dimension.height);
   }
 
   /**
@@ -96,20 +117,21 @@ public class AttachmentMetadataUtils {
    */
   private void setVideoMetadata(Attachment attachment) {
     try {
-      Demuxer demuxer = Demuxer.make();
-      demuxer.open(attachment.getFile().toPath().toString(), null, false, true, null, null);
-      attachment.getMetadata().setDuration(convertDuration(demuxer.getDuration()));
-
-      for (int i = 0; i < demuxer.getNumStreams(); i++) {
-        Decoder decoder = demuxer.getStream(i).getDecoder();
-        if (decoder.getCodecType() == Type.MEDIA_VIDEO) {
-          attachment.getMetadata().setWidth(decoder.getWidth());
-          attachment.getMetadata().setHeight(decoder.getHeight());
-          break;
+      Demuxer demuxer = VideoThumbnailMaker.open(attachment.getFile().toPath().toString());
+      try {
+        attachment.getMetadata().setDuration(convertDuration(demuxer.getDuration()));
+
+        for (int i = 0; i < demuxer.getNumStreams(); i++) {
+          Decoder decoder = demuxer.getStream(i).getDecoder();
+          if (decoder != null && decoder.getCodecType() == Type.MEDIA_VIDEO) {
+            attachment.getMetadata().setWidth(decoder.getWidth());
+            attachment.getMetadata().setHeight(decoder.getHeight());
+            break;
+          }
         }
+      } finally {
+        VideoThumbnailMaker.close(demuxer);
       }
-
-      demuxer.close();
     } catch (IOException ex) {
       throw new IllegalArgumentException("Failed to open video file", ex);
     } catch (InterruptedException ex) {
@@ -125,10 +147,12 @@ public class AttachmentMetadataUtils {
    */
   private void setAudioMetadata(Attachment attachment) {
     try {
-      Demuxer demuxer = Demuxer.make();
-      demuxer.open(attachment.getFile().toPath().toString(), null, false, true, null, null);
-      attachment.getMetadata().setDuration(convertDuration(demuxer.getDuration()));
-      demuxer.close();
+      Demuxer demuxer = VideoThumbnailMaker.open(attachment.getFile().toPath().toString());
+      try {
+        attachment.getMetadata().setDuration(convertDuration(demuxer.getDuration()));
+      } finally {
+        VideoThumbnailMaker.close(demuxer);
+      }
     } catch (IOException ex) {
       throw new IllegalArgumentException("Failed to open audio file", ex);
     } catch (InterruptedException ex) {
@@ -152,23 +176,121 @@ public class AttachmentMetadataUtils {
   }
 
   /**
-   * Sets metadata common for all attachment categories: {@code fileSize} and {@code checksum}.
+   * Stores uploaded file of attachment to temporary file in the folder of the attachment, while
+   * calculating its checksum and exact size in the same pass (see {@link #setFileSize(Attachment,
+   * long)}). Attachment's file is then named after its checksum and suffix of its thumbnail quality
+   * (see {@link ThumbnailQuality#getFilenameSuffix()}), so identical uploads share the same file,
+   * but the stored file has to be moved there with {@link #publishFile(Attachment, Path)}, so
+   * incomplete file never appears under the final name.
+   *
+   * @param attachment attachment to store file of
+   * @param source content of uploaded file, is not closed by this method
+   * @return path to stored temporary file
+   * @throws IOException if storing to local filesystem fails
+   */
+  public Path storeFile(Attachment attachment, InputStream source) throws IOException {
+    Path folder = attachment.getFile().toPath().getParent();
+    Files.createDirectories(folder);
+    Path stored = Files.createTempFile(folder, TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+
+    try (OutputStream output = Files.newOutputStream(stored)) {
+      long size = digest(attachment, source, output);
+      setFileSize(attachment, size);
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(stored);
+      throw ex;
+    }
+
+    attachment.setFilename(
+        attachment.getMetadata().getChecksum()
+            + attachment.getThumbnailQuality().getFilenameSuffix()
+            + FilenameUtils.EXTENSION_SEPARATOR
+            + FilenameUtils.getExtension(attachment.getFilename()));
+    return stored;
+  }
+
+  /**
+   * Moves file stored by {@link #storeFile(Attachment, InputStream)} to location of attachment's
+   * file, creating its parent directories if needed. Existing file with the same name is replaced,
+   * as it has the same content.
+   *
+   * @param attachment attachment to publish file of
+   * @param stored path to stored temporary file
+   * @throws IOException if moving the file fails
+   */
+  public void publishFile(Attachment attachment, Path stored) throws IOException {
+    Path target = attachment.getFile().toPath();
+    Files.createDirectories(target.getParent());
+    try {
+      Files.move(stored, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(stored, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Sets metadata common for all attachment categories: {@code fileSize} and {@code checksum}. Both
+   * are usually already set when the file is stored (see {@link #storeFile(Attachment,
+   * InputStream)}), otherwise the file is read once to calculate them.
    *
    * @param attachment attachment to set file metadata on
    * @throws IllegalArgumentException if calculation of checksum fails
    */
   private void setFileMetadata(Attachment attachment) {
-    try {
-      attachment
-          .getMetadata()
-          .setChecksum(
-              DigestUtils.md5DigestAsHex(Files.readAllBytes(attachment.getFile().toPath())));
+    if (attachment.getMetadata().getChecksum() != null
+        && attachment.getMetadata().getFileSizeBytes() != null) {
+      return;
+    }
+
+    try (InputStream input = Files.newInputStream(attachment.getFile().toPath())) {
+      long size = digest(attachment, input, OutputStream.nullOutputStream());
+      setFileSize(attachment, size);
     } catch (IOException ex) {
       throw new IllegalArgumentException("Failed to calculate file checksum", ex);
     }
+  }
+
+  /**
+   * Copies content of attachment's file to given output and sets its checksum.
+   *
+   * @param attachment attachment to set checksum on
+   * @param source content of the file
+   * @param output where to copy the content
+   * @return size of the file in bytes
+   * @throws IOException if reading or writing the content fails
+   */
+  private long digest(Attachment attachment, InputStream source, OutputStream output)
+      throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("Checksum algorithm is not available", ex);
+    }
+
+    long size = 0;
+    var buffer = new byte[STORE_BUFFER_SIZE];
+    int read;
+    while ((read = source.read(buffer)) != -1) {
+      digest.update(buffer, 0, read);
+      output.write(buffer, 0, read);
+      size += read;
+    }
 
     attachment
         .getMetadata()
-        .setFileSize(FileUtils.byteCountToDisplaySize(attachment.getFile().length()));
+        .setChecksum(String.format("%064x", new BigInteger(1, digest.digest())));
+    return size;
+  }
+
+  /**
+   * Sets exact and formatted size of attachment's file.
+   *
+   * @param attachment attachment to set size on
+   * @param size size of the file in bytes
+   */
+  private void setFileSize(Attachment attachment, long size) {
+    attachment.getMetadata().setFileSizeBytes(size);
+    attachment.getMetadata().setFileSize(FileUtils.byteCountToDisplaySize(size));
   }
 }
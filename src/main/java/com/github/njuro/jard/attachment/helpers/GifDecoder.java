@@ -5,6 +5,7 @@ import static java.lang.System.arraycopy;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -46,6 +47,10 @@ import java.util.List;
  * }
  * </pre>
  *
+ * <p>When only the first frame is needed, {@link #readFirstFrame(InputStream)} stops reading the
+ * stream right after it, and {@link #countFrames(InputStream)} reports number of frames by skipping
+ * over their image data without storing or decoding it.
+ *
  * @author Dhyan Blum
  * @version 1.09 November 2017
  */
@@ -470,6 +475,143 @@ public final class GifDecoder {
     return read(data);
   }
 
+  /**
+   * Reads only the first frame of the GIF image. The stream is read sequentially and reading stops
+   * right after image data of the first frame, so the rest of (possibly large animated) image is
+   * never touched. Image data are LZW-decoded lazily on first call of {@link
+   * GifImage#getFrame(int)}, so dimensions of the image can be obtained without decoding anything.
+   *
+   * @param is Image data as input stream. This method will read from the input stream's current
+   *     position and won't close the stream afterwards. As the stream is read in small chunks, it
+   *     should be buffered.
+   * @return A GifImage object containing only the first frame of the GIF image.
+   * @throws IOException If an I/O error occurs, the image violates the GIF specification, is
+   *     truncated before the first frame or contains no frame at all.
+   */
+  public static final GifImage readFirstFrame(InputStream is) throws IOException {
+    GifDecoder decoder = new GifDecoder();
+    GifImage img = decoder.new GifImage();
+    GifFrame frame = decoder.new GifFrame();
+    readHeader(readBytes(is, 6), img);
+    readLogicalScreenDescriptor(img, readBytes(is, 7), 0);
+    if (img.hasGlobColTbl) {
+      img.globalColTbl = new int[img.sizeOfGlobColTbl];
+      readColTbl(readBytes(is, 3 * img.sizeOfGlobColTbl), img.globalColTbl, 0);
+    }
+    while (true) {
+      int block = is.read();
+      switch (block) {
+        case 0x21: // Extension introducer
+          int label = is.read();
+          if (label == 0xF9) { // Graphic control extension
+            byte[] ext = new byte[8];
+            readBytes(is, ext, 2, 6); // Bytes 0-1 are introducer and label
+            readGraphicControlExt(frame, ext, 0);
+          } else if (label >= 0) {
+            if (label == 0x01) { // Plain text extension
+              frame = decoder.new GifFrame(); // End of current frame
+            }
+            skipSubBlocks(is);
+          } else {
+            throw new IOException("Unexpected end of file.");
+          }
+          break;
+        case 0x2C: // Image descriptor
+          byte[] descr = new byte[10];
+          readBytes(is, descr, 1, 9); // Byte 0 is image separator
+          readImgDescr(frame, descr, 0);
+          if (frame.hasLocColTbl) {
+            frame.localColTbl = new int[frame.sizeOfLocColTbl];
+            readColTbl(readBytes(is, 3 * frame.sizeOfLocColTbl), frame.localColTbl, 0);
+          }
+          readImgData(frame, is);
+          img.frames.add(frame);
+          return img; // Found first frame, finished reading.
+        case -1: // End of stream
+        case 0x3B: // GIF Trailer
+          throw new IOException("No frame found.");
+        default:
+          throw new IOException("Unknown block before first frame.");
+      }
+    }
+  }
+
+  /**
+   * Counts frames of the GIF image. Only headers of the blocks are read, image data of the frames
+   * are skipped without being stored or decoded.
+   *
+   * @param is Image data as input stream. This method will read from the input stream's current
+   *     position and won't close the stream afterwards. As the stream is read in small chunks, it
+   *     should be buffered.
+   * @return Number of frames found before the trailer, end of stream or first corrupted block.
+   * @throws IOException If an I/O error occurs or the GIF header is missing, incomplete or unknown
+   */
+  public static final int countFrames(InputStream is) throws IOException {
+    GifImage img = new GifDecoder().new GifImage();
+    readHeader(readBytes(is, 6), img);
+    readLogicalScreenDescriptor(img, readBytes(is, 7), 0);
+    if (img.hasGlobColTbl) {
+      readBytes(is, 3 * img.sizeOfGlobColTbl);
+    }
+    int frameCount = 0;
+    while (true) {
+      int block = is.read();
+      if (block == 0x21) { // Extension introducer
+        is.read(); // Skip label
+        skipSubBlocks(is);
+      } else if (block == 0x2C) { // Image descriptor
+        byte[] descr = readBytes(is, 9);
+        if ((descr[8] & 0b10000000) != 0) { // Has local color table
+          readBytes(is, 3 * (1 << ((descr[8] & 7) + 1)));
+        }
+        is.read(); // Skip LZW minimum code size
+        skipSubBlocks(is);
+        frameCount++;
+      } else { // GIF trailer, end of stream or unknown block
+        return frameCount;
+      }
+    }
+  }
+
+  /**
+   * @param is Input stream
+   * @param len Number of bytes to read
+   * @return Array with exactly len bytes read from the stream
+   * @throws IOException If an I/O error occurs or the stream ends before len bytes are read
+   */
+  static final byte[] readBytes(InputStream is, int len) throws IOException {
+    byte[] bytes = new byte[len];
+    readBytes(is, bytes, 0, len);
+    return bytes;
+  }
+
+  /**
+   * @param is Input stream
+   * @param bytes Target array
+   * @param off Index in target array to start storing the bytes at
+   * @param len Number of bytes to read
+   * @throws IOException If an I/O error occurs or the stream ends before len bytes are read
+   */
+  static final void readBytes(InputStream is, byte[] bytes, int off, int len) throws IOException {
+    if (is.readNBytes(bytes, off, len) < len) {
+      throw new IOException("Image is truncated.");
+    }
+  }
+
+  /**
+   * @param is Input stream positioned at the first sub-block size
+   * @throws IOException If an I/O error occurs
+   */
+  static final void skipSubBlocks(InputStream is) throws IOException {
+    byte[] subBlock = new byte[255];
+    int subBlockSize;
+    while ((subBlockSize = is.read()) > 0) { // While sub-block size != 0
+      if (is.readNBytes(subBlock, 0, subBlockSize) < subBlockSize) {
+        return; // Sub-block exceeds stream end
+      }
+    }
+  }
+
   /**
    * @param ext Empty application extension object
    * @param in Raw data
@@ -581,6 +723,35 @@ public final class GifDecoder {
     return i;
   }
 
+  /**
+   * @param fr The GIF frame to whom this image data belongs
+   * @param is Input stream positioned at the LZW minimum code size of the image data
+   * @throws IOException If an I/O error occurs or the stream ends before the image data starts
+   */
+  static final void readImgData(GifFrame fr, InputStream is) throws IOException {
+    int minCodeSize = is.read(); // Read code size, go to block
+    if (minCodeSize < 0) {
+      throw new IOException("Image is truncated.");
+    }
+    int clearCode = 1 << minCodeSize; // CLEAR = 2^minCodeSize
+    fr.firstCodeSize = minCodeSize + 1; // Add 1 bit for CLEAR and EOI
+    fr.clearCode = clearCode;
+    fr.endOfInfoCode = clearCode + 1;
+    ByteArrayOutputStream imgData = new ByteArrayOutputStream();
+    byte[] subBlock = new byte[255];
+    int subBlockSize;
+    while ((subBlockSize = is.read()) > 0) { // While block has data
+      int read = is.readNBytes(subBlock, 0, subBlockSize);
+      imgData.write(subBlock, 0, read);
+      if (read < subBlockSize) {
+        break; // Sub-block exceeds stream end, only use remaining bytes
+      }
+    }
+    imgData.write(0); // BitReader needs 2 more 0-bytes at the end
+    imgData.write(0);
+    fr.data = imgData.toByteArray(); // Holds LZW encoded data
+  }
+
   static final int readImgDataSize(byte[] in, int i) {
     int fileSize = in.length;
     int imgDataPos = 0;
@@ -1,82 +1,277 @@
 package com.github.njuro.jard.attachment.helpers;
 
+import com.github.njuro.jard.common.Constants;
 import io.humble.video.Decoder;
 import io.humble.video.Demuxer;
+import io.humble.video.DemuxerStream;
+import io.humble.video.Global;
 import io.humble.video.MediaDescriptor.Type;
 import io.humble.video.MediaPacket;
 import io.humble.video.MediaPicture;
-import io.humble.video.awt.MediaPictureConverter;
 import io.humble.video.awt.MediaPictureConverterFactory;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.experimental.UtilityClass;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
-/** Utility class with methods for making images from video files. */
+/**
+ * Utility class with methods for making images from video files.
+ *
+ * <p>Frames are extracted by small pool of {@link Constants#VIDEO_THUMBNAIL_THREADS} workers, so
+ * only limited number of videos is decoded at once, no matter how many threads request the
+ * thumbnails. Every extraction uses its own {@link Demuxer}, has hard time limit and releases all
+ * native resources when it finishes.
+ *
+ * <p>Bundled FFmpeg has no lock manager, so opening and closing of codecs (which also happens when
+ * demuxer is opened or closed) must never run concurrently - it has to be guarded by {@link
+ * #CODEC_LOCK}.
+ */
 @UtilityClass
 public class VideoThumbnailMaker {
 
-  private Demuxer demuxer;
+  /** Lock guarding opening and closing of codecs by FFmpeg. */
+  final Object CODEC_LOCK = new Object();
+
+  /** Workers extracting the frames. */
+  private final ExecutorService executor = createExecutor();
 
   /**
-   * Gets image from video file.
+   * Gets image from video file, taken at {@link Constants#VIDEO_THUMBNAIL_OFFSET}.
    *
-   * @param pathToFile full path to video file
-   * @return image from first complete frame of given video file
-   * @throws IOException if opening video file or getting image fails
+   * @param file path to video file
+   * @return image from the first complete frame at (or just before) the offset
+   * @throws IOException if opening video file or getting image fails or takes longer than {@link
+   *     Constants#VIDEO_THUMBNAIL_TIMEOUT}
+   * @throws InterruptedException if current thread is interrupted while waiting for the image
+   */
+  public BufferedImage getImageFromVideo(Path file) throws IOException, InterruptedException {
+    return getImageFromVideo(
+        file,
+        Duration.ofSeconds(Constants.VIDEO_THUMBNAIL_OFFSET),
+        Duration.ofSeconds(Constants.VIDEO_THUMBNAIL_TIMEOUT));
+  }
+
+  /**
+   * Gets image from video file. Decoding starts at the keyframe at or just before given offset (or
+   * at the first keyframe, if the offset is zero or beyond the end of the video), so frames before
+   * it are never decoded.
+   *
+   * @param file path to video file
+   * @param offset position in the video to take the image from
+   * @param timeout how long to wait for the image, including time spent waiting for free worker
+   * @return image from the first complete frame at (or just before) the offset
+   * @throws IOException if opening video file or getting image fails or takes longer than timeout
+   * @throws InterruptedException if current thread is interrupted while waiting for the image
    */
-  public BufferedImage getImageFromVideo(String pathToFile)
+  public BufferedImage getImageFromVideo(Path file, Duration offset, Duration timeout)
       throws IOException, InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    Future<BufferedImage> extraction =
+        executor.submit(() -> extractImage(file.toString(), offset, deadline));
 
-    demuxer = Demuxer.make();
-    demuxer.open(pathToFile, null, false, true, null, null);
+    try {
+      return extraction.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException ex) {
+      extraction.cancel(true);
+      throw new IOException("Getting image from video file timed out", ex);
+    } catch (InterruptedException ex) {
+      extraction.cancel(true);
+      throw ex;
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException("Failed to get image from video file", ex.getCause());
+    }
+  }
 
-    for (int i = 0; i < demuxer.getNumStreams(); i++) {
-      Decoder decoder = demuxer.getStream(i).getDecoder();
-      if (decoder != null && decoder.getCodecType() == Type.MEDIA_VIDEO) {
-        return getImageFromVideoStream(decoder, i);
+  /**
+   * Extracts image from first video stream of given file.
+   *
+   * @param pathToFile full path to video file
+   * @param offset position in the video to take the image from
+   * @param deadline {@link System#nanoTime()} after which the extraction is given up
+   * @return image from the first complete frame at (or just before) the offset
+   * @throws IOException if opening video file or getting image fails or deadline passes
+   * @throws InterruptedException if the extraction is cancelled
+   */
+  private BufferedImage extractImage(String pathToFile, Duration offset, long deadline)
+      throws IOException, InterruptedException {
+    Demuxer demuxer = open(pathToFile);
+    try {
+      for (int i = 0; i < demuxer.getNumStreams(); i++) {
+        DemuxerStream stream = demuxer.getStream(i);
+        Decoder decoder = stream.getDecoder();
+        if (decoder != null && decoder.getCodecType() == Type.MEDIA_VIDEO) {
+          seekToKeyframe(demuxer, stream, i, offset);
+          return getImageFromVideoStream(demuxer, decoder, i, deadline);
+        }
       }
+
+      throw new IOException("Video file has no video stream");
+    } finally {
+      close(demuxer);
     }
+  }
 
-    demuxer.close();
-    throw new IOException("Failed to get image from video file");
+  /**
+   * Moves the demuxer to the keyframe at or just before given offset in given stream. Does nothing
+   * if the offset is zero (stream starts with keyframe) or lies beyond the end of the stream.
+   *
+   * @param demuxer opened demuxer
+   * @param stream video stream
+   * @param streamIndex index of video stream
+   * @param offset position in the video to seek to
+   * @throws IOException if seeking fails
+   * @throws InterruptedException if the extraction is cancelled
+   */
+  private void seekToKeyframe(
+      Demuxer demuxer, DemuxerStream stream, int streamIndex, Duration offset)
+      throws IOException, InterruptedException {
+    if (offset.isZero()) {
+      return;
+    }
+
+    long start = stream.getStartTime() == Global.NO_PTS ? 0 : stream.getStartTime();
+    long timestamp = start + (long) (offset.toMillis() / 1000.0 / stream.getTimeBase().getDouble());
+    if (stream.getDuration() > 0 && timestamp >= start + stream.getDuration()) {
+      return;
+    }
+
+    // any timestamp up to the offset is accepted, so the seek lands on preceding keyframe
+    demuxer.seek(streamIndex, Long.MIN_VALUE, timestamp, timestamp, 0);
   }
 
   /**
-   * Retrieves image from given video stream.
+   * Retrieves image from given video stream. Packets preceding the first keyframe are skipped, as
+   * they cannot be decoded into complete picture anyway.
    *
+   * @param demuxer opened demuxer
    * @param decoder decoder for given stream
    * @param streamIndex index of given stream
-   * @return image from first complete frame of given stream
-   * @throws IOException if getting image fails
+   * @param deadline {@link System#nanoTime()} after which the extraction is given up
+   * @return image from the first complete frame of given stream
+   * @throws IOException if getting image fails or deadline passes
+   * @throws InterruptedException if the extraction is cancelled
    */
-  private BufferedImage getImageFromVideoStream(Decoder decoder, int streamIndex)
+  private BufferedImage getImageFromVideoStream(
+      Demuxer demuxer, Decoder decoder, int streamIndex, long deadline)
       throws IOException, InterruptedException {
-    decoder.open(null, null);
-    MediaPicture picture =
-        MediaPicture.make(decoder.getWidth(), decoder.getHeight(), decoder.getPixelFormat());
-    MediaPictureConverter converter =
-        MediaPictureConverterFactory.createConverter(
-            MediaPictureConverterFactory.HUMBLE_BGR_24, picture);
-
-    MediaPacket packet = MediaPacket.make();
-    while (demuxer.read(packet) >= 0) {
-      if (packet.getStreamIndex() != streamIndex) {
-        continue;
+    MediaPicture picture = null;
+    MediaPacket packet = null;
+    try {
+      synchronized (CODEC_LOCK) {
+        decoder.open(null, null);
       }
-      int offset = 0;
-      int bytesRead = 0;
-      decoder.decodeVideo(picture, packet, offset);
-      do {
-        bytesRead += decoder.decode(picture, packet, offset);
-        if (picture.isComplete()) {
-          demuxer.close();
-          return converter.toImage(null, picture);
+      picture =
+          MediaPicture.make(decoder.getWidth(), decoder.getHeight(), decoder.getPixelFormat());
+      packet = MediaPacket.make();
+
+      boolean keyframeRead = false;
+      while (demuxer.read(packet) >= 0) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
         }
-        offset += bytesRead;
+        if (System.nanoTime() - deadline > 0) {
+          throw new IOException("Getting image from video file timed out");
+        }
+        if (packet.getStreamIndex() != streamIndex || !(keyframeRead || packet.isKeyPacket())) {
+          continue;
+        }
+
+        keyframeRead = true;
+        int offset = 0;
+        do {
+          int bytesRead = decoder.decodeVideo(picture, packet, offset);
+          if (picture.isComplete()) {
+            return toImage(picture);
+          }
+          if (bytesRead <= 0) {
+            break;
+          }
+          offset += bytesRead;
+        } while (offset < packet.getSize());
+      }
 
-      } while (offset < packet.getSize());
+      // decoders with delay may still hold the picture
+      decoder.decodeVideo(picture, null, 0);
+      if (picture.isComplete()) {
+        return toImage(picture);
+      }
+    } finally {
+      if (packet != null) {
+        packet.delete();
+      }
+      if (picture != null) {
+        picture.delete();
+      }
+      // deleting opened decoder closes its codec
+      synchronized (CODEC_LOCK) {
+        decoder.delete();
+      }
     }
 
     throw new IOException("Failed to get image from video file");
   }
+
+  /**
+   * Opens demuxer for given media file and reads information about its streams.
+   *
+   * @param pathToFile full path to media file
+   * @return opened demuxer, which must be closed with {@link #close(Demuxer)}
+   * @throws IOException if opening fails
+   * @throws InterruptedException if opening is interrupted
+   */
+  Demuxer open(String pathToFile) throws IOException, InterruptedException {
+    Demuxer demuxer = Demuxer.make();
+    try {
+      synchronized (CODEC_LOCK) {
+        demuxer.open(pathToFile, null, false, true, null, null);
+      }
+      return demuxer;
+    } catch (IOException | InterruptedException | RuntimeException ex) {
+      demuxer.delete();
+      throw ex;
+    }
+  }
+
+  /**
+   * Closes given demuxer (if it was opened) and releases its native resources.
+   *
+   * @param demuxer demuxer to close
+   * @throws IOException if closing fails
+   * @throws InterruptedException if closing is interrupted
+   */
+  void close(Demuxer demuxer) throws IOException, InterruptedException {
+    try {
+      if (demuxer.getState() == Demuxer.State.STATE_OPENED
+          || demuxer.getState() == Demuxer.State.STATE_PLAYING) {
+        synchronized (CODEC_LOCK) {
+          demuxer.close();
+        }
+      }
+    } finally {
+      demuxer.delete();
+    }
+  }
+
+  private BufferedImage toImage(MediaPicture picture) {
+    return MediaPictureConverterFactory.createConverter(
+            MediaPictureConverterFactory.HUMBLE_BGR_24, picture)
+        .toImage(null, picture);
+  }
+
+  private ExecutorService createExecutor() {
+    var threadFactory = new CustomizableThreadFactory("video-thumbnail-");
+    threadFactory.setDaemon(true);
+    return Executors.newFixedThreadPool(Constants.VIDEO_THUMBNAIL_THREADS, threadFactory);
+  }
 }
@@ -8,11 +8,24 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.github.njuro.jard.attachment.UserContentStorageMode;
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
@@ -23,9 +36,13 @@ import org.springframework.stereotype.Service;
  * <p>Must be enabled by {@link UserContentStorageMode#AMAZON_S3}
  */
 @Service
+@Slf4j
 @ConditionalOnProperty(name = "app.user.content.storage", havingValue = "AMAZON_S3")
 public class AmazonS3FileService implements RemoteStorageService {
 
+  /** The highest number of keys Amazon S3 accepts in single multi-object delete request. */
+  private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+
   /** Access key for AWS. */
   @Value("${app.aws.accesskey}")
   private String awsAccessKey;
@@ -80,6 +97,22 @@ public class AmazonS3FileService implements RemoteStorageService {
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public String copyFile(
+      String sourceFolder, String sourceFilename, String folder, String filename) {
+    try {
+      String sourceKey = Paths.get(sourceFolder, sourceFilename).toString();
+      String key = Paths.get(folder, filename).toString();
+      awsClient.copyObject(
+          new CopyObjectRequest(bucket, sourceKey, bucket, key)
+              .withCannedAccessControlList(CannedAccessControlList.PublicRead));
+      return awsClient.getUrl(bucket, key).toExternalForm();
+    } catch (AmazonClientException ex) {
+      throw new IllegalArgumentException("Copying of file in Amazon S3 bucket failed", ex);
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void deleteFile(String folder, String filename) {
@@ -90,4 +123,37 @@ public class AmazonS3FileService implements RemoteStorageService {
       throw new IllegalArgumentException("Deletion of file from Amazon S3 bucket failed", ex);
     }
   }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Files are deleted in batches of up to {@value #MAX_KEYS_PER_DELETE_REQUEST} keys with
+   * multi-object delete requests.
+   */
+  @Override
+  public Set<Path> deleteFiles(Collection<Path> files) {
+    Set<Path> failed = new HashSet<>();
+    List<Path> paths = new ArrayList<>(files);
+
+    for (int from = 0; from < paths.size(); from += MAX_KEYS_PER_DELETE_REQUEST) {
+      List<Path> batch =
+          paths.subList(from, Math.min(paths.size(), from + MAX_KEYS_PER_DELETE_REQUEST));
+      Map<String, Path> keys =
+          batch.stream()
+              .collect(Collectors.toMap(Path::toString, Function.identity(), (a, b) -> a));
+      try {
+        awsClient.deleteObjects(
+            new DeleteObjectsRequest(bucket)
+                .withKeys(keys.keySet().toArray(String[]::new))
+                .withQuiet(true));
+      } catch (MultiObjectDeleteException ex) {
+        ex.getErrors().forEach(error -> failed.add(keys.get(error.getKey())));
+      } catch (AmazonClientException ex) {
+        log.warn("Deletion of {} files from Amazon S3 bucket failed", keys.size(), ex);
+        failed.addAll(batch);
+      }
+    }
+
+    return failed;
+  }
 }
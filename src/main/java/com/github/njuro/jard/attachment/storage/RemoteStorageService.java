@@ -2,6 +2,10 @@ package com.github.njuro.jard.attachment.storage;
 
 import com.github.njuro.jard.attachment.UserContentStorageMode;
 import java.io.File;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Interface for services responsible for storing files on remote servers.
@@ -21,6 +25,19 @@ public interface RemoteStorageService {
    */
   String uploadFile(String folder, String filename, File file);
 
+  /**
+   * Copies file to another location on remote server, without transferring its content from this
+   * server.
+   *
+   * @param sourceFolder path to the folder on the server where the copied file is located
+   * @param sourceFilename name of the copied file
+   * @param folder path to the folder to which the copy should be put on the server
+   * @param filename name of the copy on the server
+   * @return shareable url to the copy
+   * @throws IllegalArgumentException if copying of file fails
+   */
+  String copyFile(String sourceFolder, String sourceFilename, String folder, String filename);
+
   /**
    * Deletes file from remote server.
    *
@@ -29,4 +46,26 @@ public interface RemoteStorageService {
    * @throws IllegalArgumentException if deletion of file fails
    */
   void deleteFile(String folder, String filename);
+
+  /**
+   * Deletes multiple files from remote server, using as few requests as the server allows. Files
+   * which do not exist are considered deleted.
+   *
+   * <p>Default implementation deletes the files one by one with {@link #deleteFile(String,
+   * String)}.
+   *
+   * @param files paths to the files on the server (folder and filename)
+   * @return files which failed to be deleted
+   */
+  default Set<Path> deleteFiles(Collection<Path> files) {
+    Set<Path> failed = new HashSet<>();
+    for (Path file : files) {
+      try {
+        deleteFile(file.getParent().toString(), file.getFileName().toString());
+      } catch (IllegalArgumentException ex) {
+        failed.add(file);
+      }
+    }
+    return failed;
+  }
 }
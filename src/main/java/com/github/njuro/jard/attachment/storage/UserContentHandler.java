@@ -0,0 +1,183 @@
+package com.github.njuro.jard.attachment.storage;
+
+import com.github.njuro.jard.common.Constants;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.catalina.Globals;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Handler serving files from local user content folder ({@link Constants#USER_CONTENT_PATH}).
+ *
+ * <p>Attachment files are named after their checksum and never rewritten, so the responses are
+ * marked as immutable and carry strong {@code ETag} derived from the filename. Single byte range
+ * requests are supported, so clients can seek in video and audio files. When the connector supports
+ * it, content is transferred by Tomcat's {@code sendfile} without copying it through user space
+ * buffers. Otherwise it is written by {@link FileChannel#transferTo(long, long,
+ * WritableByteChannel)} to the servlet output stream, which still copies it through heap buffer.
+ */
+@Component
+public class UserContentHandler implements HttpRequestHandler {
+
+  private static final String CACHE_CONTROL =
+      CacheControl.maxAge(Constants.USER_CONTENT_MAX_AGE, TimeUnit.SECONDS)
+              .cachePublic()
+              .getHeaderValue()
+          + ", immutable"; // not supported by CacheControl builder yet
+
+  private final Path root;
+
+  public UserContentHandler() {
+    this(Constants.USER_CONTENT_PATH);
+  }
+
+  UserContentHandler(Path root) {
+    this.root = root.toAbsolutePath().normalize();
+  }
+
+  @Override
+  public void handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    HttpMethod method = HttpMethod.resolve(request.getMethod());
+    if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+      response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+      response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+      return;
+    }
+
+    Path file = resolveFile(request);
+    if (file == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    String etag = "\"" + FilenameUtils.removeExtension(file.getFileName().toString()) + "\"";
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(
+        MediaTypeFactory.getMediaType(file.getFileName().toString())
+            .orElse(MediaType.APPLICATION_OCTET_STREAM)
+            .toString());
+
+    long length = Files.size(file);
+    long start = 0;
+    long end = length - 1;
+    String range = request.getHeader(HttpHeaders.RANGE);
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (range != null && (ifRange == null || ifRange.equals(etag))) {
+      try {
+        List<HttpRange> ranges = HttpRange.parseRanges(range);
+        if (ranges.size() == 1) {
+          // multiple ranges are rarely used by clients, they are served whole file instead
+          start = ranges.get(0).getRangeStart(length);
+          end = ranges.get(0).getRangeEnd(length);
+          if (start > end) {
+            throw new IllegalArgumentException("Range starts after the end of file");
+          }
+          response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+          response.setHeader(
+              HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+      } catch (IllegalArgumentException ex) {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+    }
+
+    response.setContentLengthLong(end - start + 1);
+    if (method == HttpMethod.GET) {
+      transfer(request, response, file, start, end + 1);
+    }
+  }
+
+  /**
+   * Resolves requested file in user content folder.
+   *
+   * @param request request for the file
+   * @return path to requested file, or {@code null} if it does not exist, is not a regular file or
+   *     is outside of user content folder
+   */
+  private Path resolveFile(HttpServletRequest request) {
+    Object path = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+    if (path == null) {
+      return null;
+    }
+
+    Path file = root.resolve(path.toString()).normalize();
+    if (!file.startsWith(root) || file.equals(root) || !Files.isRegularFile(file)) {
+      return null;
+    }
+
+    return file;
+  }
+
+  private boolean matchesEtag(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Transfers part of the file to the response.
+   *
+   * @param start position of the first byte to transfer
+   * @param end position after the last byte to transfer
+   */
+  private void transfer(
+      HttpServletRequest request, HttpServletResponse response, Path file, long start, long end)
+      throws IOException {
+    if (Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+      // Tomcat writes the file by sendfile after the request is handled
+      request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.toRealPath().toString());
+      request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, start);
+      request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, end);
+      return;
+    }
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      while (position < end) {
+        long transferred = channel.transferTo(position, end - position, output);
+        if (transferred <= 0) {
+          break; // file was truncated meanwhile
+        }
+        position += transferred;
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.github.njuro.jard.board;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Allocates post numbers by increasing board's post counter with single {@code UPDATE ...
+ * RETURNING} statement. The row lock on the board is held until the end of posting transaction,
+ * which serializes concurrent posting on the same board, but never hands out the same number twice.
+ *
+ * <p>Enabled by {@link PostNumberAllocationMode#ATOMIC_UPDATE} (default).
+ */
+@Component
+@ConditionalOnProperty(
+    name = "app.post.number.allocation",
+    havingValue = "ATOMIC_UPDATE",
+    matchIfMissing = true)
+public class AtomicUpdatePostNumberAllocator implements PostNumberAllocator {
+
+  private final BoardRepository boardRepository;
+
+  @Autowired
+  public AtomicUpdatePostNumberAllocator(BoardRepository boardRepository) {
+    this.boardRepository = boardRepository;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long allocatePostNumber(Board board) {
+    return boardRepository
+        .reservePostNumbers(board.getId(), 1)
+        .orElseThrow(BoardNotFoundException::new);
+  }
+}
@@ -0,0 +1,77 @@
+package com.github.njuro.jard.board;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Allocates post numbers from blocks reserved in advance. Whole block of post numbers is reserved
+ * by increasing board's post counter in separate (immediately committed) transaction, and numbers
+ * from the block are then handed out from memory, so posting transactions do not touch (and lock)
+ * the board row at all.
+ *
+ * <p>Post numbers stay unique even when the application runs on multiple instances, as each of them
+ * reserves its own blocks. However, numbers may not be strictly increasing across the instances and
+ * numbers left in reserved blocks are skipped when the application is restarted.
+ *
+ * <p>Enabled by {@link PostNumberAllocationMode#BLOCK_RESERVATION}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.post.number.allocation", havingValue = "BLOCK_RESERVATION")
+public class BlockReservationPostNumberAllocator implements PostNumberAllocator {
+
+  private final BoardRepository boardRepository;
+
+  /** Template for transactions reserving blocks, independent of the posting transaction. */
+  private final TransactionTemplate reservationTransaction;
+
+  /** How many post numbers are reserved at once. */
+  private final int blockSize;
+
+  /** Currently reserved blocks, mapped by ID of board they belong to. */
+  private final Map<UUID, ReservedBlock> reservedBlocks = new ConcurrentHashMap<>();
+
+  @Autowired
+  public BlockReservationPostNumberAllocator(
+      BoardRepository boardRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${app.post.number.block.size:50}") int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be positive");
+    }
+
+    this.boardRepository = boardRepository;
+    reservationTransaction = new TransactionTemplate(transactionManager);
+    reservationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.blockSize = blockSize;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long allocatePostNumber(Board board) {
+    ReservedBlock block = reservedBlocks.computeIfAbsent(board.getId(), id -> new ReservedBlock());
+    synchronized (block) {
+      if (block.next >= block.end) {
+        block.next =
+            reservationTransaction
+                .execute(status -> boardRepository.reservePostNumbers(board.getId(), blockSize))
+                .orElseThrow(BoardNotFoundException::new);
+        block.end = block.next + blockSize;
+      }
+      return block.next++;
+    }
+  }
+
+  /** Range of reserved post numbers, from {@link #next} (inclusive) to {@link #end} (exclusive). */
+  private static class ReservedBlock {
+    private long next;
+    private long end;
+  }
+}
@@ -13,7 +13,6 @@ import lombok.*;
 import lombok.experimental.SuperBuilder;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
-import org.hibernate.annotations.Formula;
 
 /**
  * Entity representing a board.
@@ -58,26 +57,24 @@ public class Board extends BaseEntity {
   @Basic @ToString.Include private String name;
 
   /**
-   * Calculated property - how many pages of threads are currently active on this board.
-   *
-   * @see Constants#MAX_THREADS_PER_PAGE
+   * How many threads are currently active on this board. Changed only when thread is created or
+   * deleted (by {@link BoardService}), never by updating the entity.
    */
-  @Formula(
-      "(SELECT CEIL(COUNT(*)::float / "
-          + MAX_THREADS_PER_PAGE
-          + ") FROM threads t WHERE t.board_id = id)")
-  private int pageCount;
+  @Basic
+  @Column(nullable = false, updatable = false)
+  private int threadCount;
 
   /**
    * Counter which increases by one every time new post is added to the board. Previous value is
    * then used as {@link Post#postNumber} for that new post.
    *
    * <p>Note that this counter never decreases, so it's denoting number of posts created on board
-   * since its beginning.
+   * since its beginning. It is changed only by {@link PostNumberAllocator}, never by updating the
+   * entity.
    */
   @SuppressWarnings("JavadocReference")
   @Basic
-  @Column(nullable = false)
+  @Column(nullable = false, updatable = false)
   private Long postCounter;
 
   /**
@@ -104,4 +101,13 @@ public class Board extends BaseEntity {
       createdAt = OffsetDateTime.now();
     }
   }
+
+  /**
+   * Calculated property - how many pages of threads are currently active on this board.
+   *
+   * @see Constants#MAX_THREADS_PER_PAGE
+   */
+  public int getPageCount() {
+    return (int) Math.ceil((double) threadCount / MAX_THREADS_PER_PAGE);
+  }
 }
@@ -4,9 +4,7 @@ import com.github.njuro.jard.attachment.AttachmentCategory;
 import com.github.njuro.jard.base.BaseFacade;
 import com.github.njuro.jard.board.dto.BoardDto;
 import com.github.njuro.jard.board.dto.BoardForm;
-import com.github.njuro.jard.post.PostFacade;
 import com.github.njuro.jard.thread.ThreadFacade;
-import com.github.njuro.jard.thread.dto.ThreadDto;
 import com.github.njuro.jard.utils.validation.PropertyValidationException;
 import java.io.IOException;
 import java.util.Arrays;
@@ -21,14 +19,12 @@ import org.springframework.stereotype.Component;
 public class BoardFacade extends BaseFacade<Board, BoardDto> {
 
   private final ThreadFacade threadFacade;
-  private final PostFacade postFacade;
 
   private final BoardService boardService;
 
   @Autowired
-  public BoardFacade(ThreadFacade threadFacade, PostFacade postFacade, BoardService boardService) {
+  public BoardFacade(ThreadFacade threadFacade, BoardService boardService) {
     this.threadFacade = threadFacade;
-    this.postFacade = postFacade;
     this.boardService = boardService;
   }
 
@@ -61,10 +57,7 @@ public class BoardFacade extends BaseFacade<Board, BoardDto> {
    * @param pagination pagination parameters for threads
    */
   public BoardDto getBoard(BoardDto board, Pageable pagination) {
-    List<ThreadDto> threads = threadFacade.getThreadsFromBoard(board, pagination);
-    threads.forEach(thread -> thread.setReplies(postFacade.getLatestRepliesForThread(thread)));
-    board.setThreads(threads);
-
+    board.setThreads(threadFacade.getThreadsWithLatestRepliesFromBoard(board, pagination));
     return board;
   }
 
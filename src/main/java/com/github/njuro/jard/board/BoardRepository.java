@@ -1,7 +1,10 @@
 package com.github.njuro.jard.board;
 
 import com.github.njuro.jard.base.BaseRepository;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,10 +15,23 @@ public interface BoardRepository extends BaseRepository<Board> {
 
   Optional<Board> findByLabel(String label);
 
+  @Query("select b.label from Board b where b.label in (:labels)")
+  Set<String> findLabelsByLabelIn(@Param("labels") Collection<String> labels);
+
   @Query("select b.postCounter from Board b where b.label = :label")
   Long getPostCounter(@Param("label") String label);
 
-  @Modifying(flushAutomatically = true, clearAutomatically = true)
-  @Query("update Board set postCounter = postCounter + 1 where label = :label")
-  void increasePostNumber(@Param("label") String label);
+  @Query(
+      value =
+          "UPDATE boards SET post_counter = post_counter + :count WHERE id = :boardId "
+              + "RETURNING post_counter - :count",
+      nativeQuery = true)
+  Optional<Long> reservePostNumbers(@Param("boardId") UUID boardId, @Param("count") int count);
+
+  @Query("select b.threadCount from Board b where b.id = :boardId")
+  Integer getThreadCount(@Param("boardId") UUID boardId);
+
+  @Modifying
+  @Query("update Board b set b.threadCount = b.threadCount + :delta where b.id = :boardId")
+  void updateThreadCount(@Param("boardId") UUID boardId, @Param("delta") int delta);
 }
@@ -3,7 +3,11 @@ package com.github.njuro.jard.board;
 import com.github.njuro.jard.thread.ThreadService;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Sort;
@@ -18,15 +22,21 @@ public class BoardService {
 
   private final ThreadService threadService;
 
+  private final PostNumberAllocator postNumberAllocator;
+
   @Autowired
-  public BoardService(BoardRepository boardRepository, @Lazy ThreadService threadService) {
+  public BoardService(
+      BoardRepository boardRepository,
+      @Lazy ThreadService threadService,
+      PostNumberAllocator postNumberAllocator) {
     this.boardRepository = boardRepository;
     this.threadService = threadService;
+    this.postNumberAllocator = postNumberAllocator;
   }
 
   /**
    * Saves board and its settings to database and sets its post counter ({@link Board#postCounter})
-   * to initial value (1).
+   * to initial value (1) and its thread count ({@link Board#threadCount}) to zero.
    *
    * @param board board to be saved
    * @return saved board
@@ -34,6 +44,7 @@ public class BoardService {
   @SuppressWarnings("JavadocReference")
   public Board saveBoard(Board board) {
     board.setPostCounter(1L);
+    board.setThreadCount(0);
     board.getSettings().setBoard(board);
     return boardRepository.save(board);
   }
@@ -68,6 +79,20 @@ public class BoardService {
     return boardRepository.findByLabel(label).isPresent();
   }
 
+  /**
+   * Filters given board labels to those, which belong to existing boards.
+   *
+   * @param labels board labels to check
+   * @return subset of given labels for which board exists
+   */
+  public Set<String> getExistingLabels(Collection<String> labels) {
+    if (labels.isEmpty()) {
+      return Collections.emptySet();
+    }
+
+    return boardRepository.findLabelsByLabelIn(labels);
+  }
+
   /**
    * Retrieves post counter for given board.
    *
@@ -81,18 +106,50 @@ public class BoardService {
   }
 
   /**
-   * Generates post number for new post on given board (last value of board's post counter) and
-   * increases post counter of that board.
+   * Generates post number for new post on given board using configured {@link PostNumberAllocator}.
    *
    * @param board board to register new post on
    * @return generated post number for new post
    * @see Board#postCounter
+   * @see PostNumberAllocationMode
    */
   @SuppressWarnings("JavadocReference")
   public Long registerNewPost(Board board) {
-    Long newPostNumber = getPostCounter(board);
-    boardRepository.increasePostNumber(board.getLabel());
-    return newPostNumber;
+    return postNumberAllocator.allocatePostNumber(board);
+  }
+
+  /**
+   * Retrieves number of active threads on given board, without counting the threads themselves.
+   *
+   * @param boardId ID of board to get number of threads for
+   * @return number of active threads on given board
+   * @see Board#threadCount
+   */
+  @SuppressWarnings("JavadocReference")
+  public int getThreadCount(UUID boardId) {
+    return boardRepository.getThreadCount(boardId);
+  }
+
+  /**
+   * Increases number of active threads on given board by one.
+   *
+   * @param boardId ID of board new thread was created on
+   * @see Board#threadCount
+   */
+  @SuppressWarnings("JavadocReference")
+  public void increaseThreadCount(UUID boardId) {
+    boardRepository.updateThreadCount(boardId, 1);
+  }
+
+  /**
+   * Decreases number of active threads on given board by one.
+   *
+   * @param boardId ID of board the thread was deleted from
+   * @see Board#threadCount
+   */
+  @SuppressWarnings("JavadocReference")
+  public void decreaseThreadCount(UUID boardId) {
+    boardRepository.updateThreadCount(boardId, -1);
   }
 
   /**
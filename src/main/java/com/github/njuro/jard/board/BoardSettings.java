@@ -1,6 +1,7 @@
 package com.github.njuro.jard.board;
 
 import com.github.njuro.jard.attachment.AttachmentCategory;
+import com.github.njuro.jard.attachment.ThumbnailQuality;
 import com.github.njuro.jard.config.security.captcha.CaptchaProvider;
 import com.github.njuro.jard.post.Post;
 import com.github.njuro.jard.thread.Thread;
@@ -129,4 +130,14 @@ public class BoardSettings implements Serializable {
    * @see CaptchaProvider
    */
   @Basic private boolean captchaEnabled;
+
+  /**
+   * Quality of thumbnails created for images uploaded to this board.
+   *
+   * @see ThumbnailQuality
+   */
+  @Enumerated(value = EnumType.STRING)
+  @Column(nullable = false)
+  @Builder.Default
+  private ThumbnailQuality thumbnailQuality = ThumbnailQuality.QUALITY;
 }
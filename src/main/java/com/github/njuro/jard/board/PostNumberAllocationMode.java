@@ -0,0 +1,14 @@
+package com.github.njuro.jard.board;
+
+/**
+ * Enum specifying how are post numbers allocated for new posts on a {@link Board}. Specified by
+ * application property {@code app.post.number.allocation}.
+ *
+ * @see PostNumberAllocator
+ */
+public enum PostNumberAllocationMode {
+  /** Every post number is allocated by single atomic update of board's post counter */
+  ATOMIC_UPDATE,
+  /** Post numbers are handed out from blocks reserved in advance and kept in memory */
+  BLOCK_RESERVATION
+}
@@ -0,0 +1,19 @@
+package com.github.njuro.jard.board;
+
+/**
+ * Allocator of post numbers for new posts on a {@link Board}. Implementations must guarantee that
+ * no post number is allocated twice on the same board, even when called concurrently.
+ *
+ * @see PostNumberAllocationMode
+ */
+public interface PostNumberAllocator {
+
+  /**
+   * Allocates post number for new post on given board.
+   *
+   * @param board board to allocate post number on
+   * @return allocated post number
+   * @throws BoardNotFoundException if given board does not exist in database
+   */
+  Long allocatePostNumber(Board board);
+}
@@ -27,7 +27,7 @@ public class BoardDto extends BaseDto {
   /** {@link Board#name} */
   @ToString.Include private String name;
 
-  /** {@link Board#pageCount} */
+  /** {@link Board#getPageCount()} */
   private int pageCount;
 
   /** {@link Board#settings} */
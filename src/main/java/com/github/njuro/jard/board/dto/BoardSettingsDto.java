@@ -4,6 +4,7 @@ import static com.github.njuro.jard.common.InputConstraints.*;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.github.njuro.jard.attachment.AttachmentCategory;
+import com.github.njuro.jard.attachment.ThumbnailQuality;
 import com.github.njuro.jard.board.BoardSettings;
 import java.io.Serializable;
 import java.util.HashSet;
@@ -58,4 +59,7 @@ public class BoardSettingsDto implements Serializable {
 
   /** {@link BoardSettings#captchaEnabled */
   private boolean captchaEnabled;
+
+  /** {@link BoardSettings#thumbnailQuality} */
+  @Builder.Default private ThumbnailQuality thumbnailQuality = ThumbnailQuality.QUALITY;
 }
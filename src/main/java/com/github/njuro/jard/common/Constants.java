@@ -2,7 +2,6 @@ package com.github.njuro.jard.common;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.regex.Pattern;
 import lombok.experimental.UtilityClass;
 import org.springframework.scheduling.annotation.Scheduled;
 
@@ -26,6 +25,12 @@ public class Constants {
   public static final Path USER_CONTENT_PATH =
       Paths.get(System.getProperty("user.home"), "jard-usercontent");
 
+  /**
+   * How long can clients cache files served from local user content folder (in seconds). Files are
+   * named after their checksum and never rewritten, so they can be cached for a year.
+   */
+  public static final long USER_CONTENT_MAX_AGE = 365 * 24 * 60 * 60;
+
   /** Name of folder where attachment thumbnails are stored */
   public static final String THUMBNAIL_FOLDER_NAME = "thumbs";
 
@@ -38,6 +43,112 @@ public class Constants {
   /** Max height of thumbnail image (in pixels). */
   public static final double IMAGE_MAX_THUMB_HEIGHT = 250;
 
+  /**
+   * How much main memory can be used for loading of single PDF document (in bytes), when creating
+   * its thumbnail. Rest of the document is buffered in temporary file.
+   */
+  public static final long PDF_MAX_MAIN_MEMORY_BYTES = 16 * 1024 * 1024;
+
+  /** Number of worker threads extracting thumbnails from video files. */
+  public static final int VIDEO_THUMBNAIL_THREADS = 2;
+
+  /**
+   * Position in video to take thumbnail from (in seconds). The nearest preceding keyframe is used,
+   * so 0 means the first keyframe.
+   */
+  public static final int VIDEO_THUMBNAIL_OFFSET = 0;
+
+  /** How long can extraction of thumbnail from single video file take (in seconds). */
+  public static final int VIDEO_THUMBNAIL_TIMEOUT = 30;
+
+  /** Number of worker threads processing uploaded attachments of single category. */
+  public static final int ATTACHMENT_PROCESSING_THREADS = 2;
+
+  /**
+   * How many uploaded attachments of single category can wait for processing. Uploads over this
+   * limit are rejected.
+   */
+  public static final int ATTACHMENT_PROCESSING_QUEUE_CAPACITY = 16;
+
+  /**
+   * How many scheduled deletions of attachment files are executed at once. Every deletion has at
+   * most two files (file and thumbnail), so whole batch fits into single multi-object delete
+   * request to remote storage.
+   */
+  public static final int ATTACHMENT_DELETION_BATCH_SIZE = 500;
+
+  /**
+   * How often are failed or missed deletions of attachment files retried (in seconds). Each
+   * subsequent attempt is delayed by this interval more.
+   */
+  public static final int ATTACHMENT_DELETION_RETRY_INTERVAL = 60;
+
+  /** How many times is deletion of attachment files attempted, before it is given up. */
+  public static final int ATTACHMENT_DELETION_MAX_ATTEMPTS = 10;
+
+  /**
+   * How many attachments are moved to another storage layout at once, when migrating their files in
+   * background.
+   */
+  public static final int ATTACHMENT_LAYOUT_MIGRATION_BATCH_SIZE = 500;
+
+  /** Name of cache storing responses from OEmbed providers, by normalized URL of content. */
+  public static final String OEMBED_CACHE_NAME = "oembed";
+
+  /** Number of worker threads of HTTP client sending requests to OEmbed providers. */
+  public static final int OEMBED_THREADS = 4;
+
+  /** How long can connecting to OEmbed provider take (in seconds). */
+  public static final int OEMBED_CONNECT_TIMEOUT = 3;
+
+  /** How long can receiving of whole response from OEmbed provider take (in seconds). */
+  public static final int OEMBED_READ_TIMEOUT = 5;
+
+  /** Max size of response from OEmbed provider (in bytes). Larger responses are rejected. */
+  public static final int OEMBED_MAX_RESPONSE_SIZE = 64 * 1024;
+
+  /**
+   * How much of HTML page of embedded content is searched for link to OEmbed endpoint, when no
+   * registered provider supports its URL and autodiscovery is enabled (in bytes).
+   */
+  public static final int OEMBED_MAX_DISCOVERY_SIZE = 256 * 1024;
+
+  /**
+   * After how many consecutive failed requests to single OEmbed provider are further requests to it
+   * rejected without contacting the provider.
+   */
+  public static final int OEMBED_CIRCUIT_BREAKER_FAILURES = 5;
+
+  /** How long are requests to failing OEmbed provider rejected (in seconds). */
+  public static final int OEMBED_CIRCUIT_BREAKER_OPEN_DURATION = 60;
+
+  /** Max number of hosts whose OEmbed circuit breakers are kept. */
+  public static final int OEMBED_MAX_CIRCUIT_BREAKERS = 1000;
+
+  /**
+   * Name of folder where thumbnails of embedded attachments are stored. It is shared by all boards,
+   * so the same thumbnail embedded on different boards is stored only once.
+   */
+  public static final String EMBED_FOLDER_NAME = "embed";
+
+  /** Max size of thumbnail image downloaded from OEmbed provider (in bytes). */
+  public static final int EMBED_THUMBNAIL_MAX_SIZE = 4 * 1024 * 1024;
+
+  /** How many thumbnails of embedded attachments are downloaded from their providers at once. */
+  public static final int EMBED_THUMBNAIL_BATCH_SIZE = 20;
+
+  /**
+   * How often are failed or missed downloads of thumbnails of embedded attachments retried (in
+   * seconds). Each subsequent attempt is delayed by this interval more.
+   */
+  public static final int EMBED_THUMBNAIL_RETRY_INTERVAL = 300;
+
+  /**
+   * How many times is download of thumbnail of embedded attachment attempted, before it is given
+   * up.
+   */
+  public static final int EMBED_THUMBNAIL_MAX_ATTEMPTS = 10;
+
   /** Character to put at the beginning of tripcode. */
   public static final String TRIPCODE_SEPARATOR = "!";
 
@@ -47,9 +158,8 @@ public class Constants {
   /** Max threads per one page of board. */
   public static final int MAX_THREADS_PER_PAGE = 10;
 
-  /** Pattern for detecting greentext. */
-  public static final Pattern GREENTEXT_PATTERN =
-      Pattern.compile("^\\s*>.*$", Pattern.MULTILINE); // >foo
+  /** How many of the most recent replies are shown with each thread on board page. */
+  public static final int MAX_LATEST_REPLIES_PER_THREAD = 5;
 
   /** Tag to put at the beginning of greentext. */
   public static final String GREENTEXT_START = "<span class=\"greentext\">";
@@ -57,11 +167,6 @@ public class Constants {
   /** Tag to put at the end of the greentext. */
   public static final String GREENTEXT_END = "</span>";
 
-  /** Pattern for detecting crosslink. */
-  public static final Pattern CROSSLINK_PATTERN =
-      Pattern.compile(
-          ">>(?:>/(?<board>.+)/)?(?:(?<postNo>\\d+)|(?<=/)\\s*)"); // >>5, >>>/b/, >>>/b/5 etc.
-
   /** Tag to put at the beginning of crosslink. */
   public static final String CROSSLINK_START =
       "<a data-post-number=\"${postNumber}\" data-board-label=\"${boardLabel}\" href=\"${linkHref}\" class=\"${linkClass}\">";
@@ -81,11 +186,14 @@ public class Constants {
   /** Symbol indicating crosslink to original post of the thread. */
   public static final String CROSSLINK_OP = "(OP)";
 
-  /** Pattern for detecting spoiler. */
-  public static final Pattern SPOILER_PATTERN =
-      Pattern.compile(
-          "(\\[spoiler]|\\*\\*)(?<content>.*?\\w+.*?)(\\[/spoiler]|\\*\\*)", // [spoiler]foo[/spoiler] or **foo**
-          Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  /** Markup starting the spoiler (case insensitive). */
+  public static final String SPOILER_MARKUP_START = "[spoiler]";
+
+  /** Markup ending the spoiler (case insensitive). */
+  public static final String SPOILER_MARKUP_END = "[/spoiler]";
+
+  /** Markup which can be used both for starting and ending the spoiler ({@code **foo**}). */
+  public static final String SPOILER_MARKUP_SHORT = "**";
 
   /** Tag to put at the beginning of spoiler. */
   public static final String SPOILER_START = "<span class=\"spoiler\">";
@@ -93,11 +201,11 @@ public class Constants {
   /** Tag to put at the end of spoiler. */
   public static final String SPOILER_END = "</span>";
 
-  /** Pattern for detecting code block. */
-  public static final Pattern CODE_PATTERN =
-      Pattern.compile(
-          "\\[code](?<content>.*?\\w+.*?)\\[/code]",
-          Pattern.CASE_INSENSITIVE | Pattern.DOTALL); // [code]foo[/code]
+  /** Markup starting the code block (case insensitive). */
+  public static final String CODE_MARKUP_START = "[code]";
+
+  /** Markup ending the code block (case insensitive). */
+  public static final String CODE_MARKUP_END = "[/code]";
 
   /** Tag to put at the beginning of code block. */
   public static final String CODE_START = "<div class=\"code\">";
@@ -105,12 +213,6 @@ public class Constants {
   /** Tag to put at the end of code block. */
   public static final String CODE_END = "</div>";
 
-  /** Pattern for detecting hyperlink. */
-  public static final Pattern HYPERLINK_PATTERN =
-      Pattern.compile(
-          "(?<href>https?:\\/\\/(www\\.)?[-a-z0-9@:%._\\+~#=]{1,256}\\.[a-z0-9()]{1,6}\\b([-a-z0-9()@:%_\\+.~#?&//=]*))",
-          Pattern.CASE_INSENSITIVE);
-
   /** Tag to put at the beginning of hyperlink. */
   public static final String HYPERLINK_START =
       "<a href=\"${href}\" target=\"_blank\" rel=\"noopener nofollow noreferrer\">";
@@ -125,6 +227,9 @@ public class Constants {
   /** Tag to put at the end of matched search result. */
   public static final String SEARCH_RESULT_HIGHLIGHT_END = "</span>";
 
+  /** Length of highlighted fragment of matched search result (in characters). */
+  public static final int SEARCH_RESULT_FRAGMENT_SIZE = 100;
+
   /**
    * How often should system check for expired bans.
    *
@@ -145,10 +250,37 @@ public class Constants {
   /** The highest allowed results count for entity search. */
   public static final int MAX_SEARCH_RESULTS_COUNT = 50;
 
+  /**
+   * After how many matched entities stops the search counting them. Total results count of search
+   * with more matches is only a lower bound.
+   */
+  public static final int SEARCH_TOTAL_RESULTS_THRESHOLD = 1000;
+
+  /** How long can single search query take (in milliseconds), before it is aborted. */
+  public static final int SEARCH_TIMEOUT = 2000;
+
+  /** How many searches can run at once. Searches over this limit are rejected. */
+  public static final int MAX_CONCURRENT_SEARCHES = 8;
+
   /**
    * How often should system check for expired user tokens.
    *
    * @see Scheduled#fixedRateString()
    */
   public static final String EXPIRED_USER_TOKENS_CHECK_PERIOD = "PT5M"; // every 5 minutes
+
+  /**
+   * How many events can be buffered for single subscriber of thread updates. Subscribers which fall
+   * behind by more events are considered too slow and are disconnected.
+   */
+  public static final int THREAD_UPDATES_BUFFER_SIZE = 64;
+
+  /** How often is heartbeat sent to subscribers of thread updates (in seconds). */
+  public static final long THREAD_UPDATES_HEARTBEAT_INTERVAL = 15;
+
+  /** How long can subscription to thread updates last before client has to reconnect (in ms). */
+  public static final long THREAD_UPDATES_TIMEOUT = 30 * 60 * 1000L; // 30 minutes
+
+  /** Number of threads used for sending thread updates to subscribers. */
+  public static final int THREAD_UPDATES_SENDER_THREADS = 4;
 }
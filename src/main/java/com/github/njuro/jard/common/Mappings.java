@@ -19,6 +19,9 @@ public class Mappings {
   public static final String PLACEHOLDER_USER = "user";
   public static final String PATH_VARIABLE_USER = "/{" + PLACEHOLDER_USER + "}";
 
+  public static final String PLACEHOLDER_ATTACHMENT = "attachment";
+  public static final String PATH_VARIABLE_ATTACHMENT = "/{" + PLACEHOLDER_ATTACHMENT + "}";
+
   public static final String PLACEHOLDER_BAN = "ban";
   public static final String PATH_VARIABLE_BAN = "/{" + PLACEHOLDER_BAN + "}";
 
@@ -27,6 +30,7 @@ public class Mappings {
   public static final String API_ROOT_THREADS = API_ROOT_BOARDS + PATH_VARIABLE_BOARD + "/thread";
   public static final String API_ROOT_USERS = API_ROOT + "/users";
   public static final String API_ROOT_BANS = API_ROOT + "/bans";
+  public static final String API_ROOT_ATTACHMENTS = API_ROOT + "/attachments";
   public static final String API_ROOT_USERCONTENT = API_ROOT + "/usercontent";
   public static final String API_ROOT_SEARCH = API_ROOT + "/search";
 }
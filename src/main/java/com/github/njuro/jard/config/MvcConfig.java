@@ -4,7 +4,7 @@ import static com.jfilter.FilterConstantsHelper.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.attachment.storage.UserContentHandler;
 import com.github.njuro.jard.common.Mappings;
 import com.github.njuro.jard.utils.HttpUtils;
 import com.github.njuro.jard.utils.PathVariableArgumentResolver;
@@ -13,6 +13,7 @@ import com.jfilter.EnableJsonFilter;
 import com.jfilter.components.FilterConfiguration;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.apache.catalina.Context;
 import org.apache.tomcat.util.http.CookieProcessor;
@@ -28,15 +29,17 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
-import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 
 /** Configuration of Spring MVC. */
 @Configuration
@@ -71,14 +74,25 @@ public class MvcConfig implements WebMvcConfigurer {
         new MediaType(MEDIA_TYPE_APPLICATION, MEDIA_SUB_TYPE_JSON2), objectMapper);
   }
 
-  @Override
-  public void addResourceHandlers(ResourceHandlerRegistry registry) {
-    // serve content of local user content folder on user content endpoint
-    // useful mostly for local development
-    registry
-        .addResourceHandler(Mappings.API_ROOT_USERCONTENT + "/**")
-        .addResourceLocations("file:" + Constants.USER_CONTENT_PATH.toAbsolutePath() + "/")
-        .setCacheControl(CacheControl.noCache());
+  /**
+   * Serves content of local user content folder on user content endpoint. The content is public and
+   * immutable, so it can be read from any origin.
+   *
+   * @see UserContentHandler
+   */
+  @Bean
+  public SimpleUrlHandlerMapping userContentHandlerMapping(UserContentHandler userContentHandler) {
+    String pattern = Mappings.API_ROOT_USERCONTENT + "/**";
+    var cors = new CorsConfiguration();
+    cors.addAllowedOrigin(CorsConfiguration.ALL);
+    cors.setAllowedMethods(List.of(HttpMethod.GET.name(), HttpMethod.HEAD.name()));
+    cors.setExposedHeaders(
+        List.of(HttpHeaders.ACCEPT_RANGES, HttpHeaders.CONTENT_RANGE, HttpHeaders.ETAG));
+
+    var mapping = new SimpleUrlHandlerMapping(Map.of(pattern, userContentHandler));
+    mapping.setCorsConfigurations(Map.of(pattern, cors));
+    mapping.setOrder(Ordered.HIGHEST_PRECEDENCE);
+    return mapping;
   }
 
   @Override
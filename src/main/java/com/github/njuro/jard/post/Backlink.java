@@ -0,0 +1,21 @@
+package com.github.njuro.jard.post;
+
+import com.github.njuro.jard.board.Board;
+import com.github.njuro.jard.thread.Thread;
+import java.util.UUID;
+
+/** Projection of {@link PostLink} from the point of view of linked post. */
+public interface Backlink {
+
+  /** @return ID of linked {@link Post} */
+  UUID getTargetPostId();
+
+  /** @return label of {@link Board} the linking post belongs to */
+  String getBoardLabel();
+
+  /** @return number of {@link Thread} the linking post belongs to */
+  Long getThreadNumber();
+
+  /** @return number of the linking post */
+  Long getPostNumber();
+}
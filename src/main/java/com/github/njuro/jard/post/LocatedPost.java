@@ -0,0 +1,20 @@
+package com.github.njuro.jard.post;
+
+import com.github.njuro.jard.board.Board;
+import com.github.njuro.jard.thread.Thread;
+
+/**
+ * Projection of {@link Post} with its attachment, together with data needed to link to it. Its
+ * {@link Thread} is not loaded, only number of the thread and label of its board are.
+ */
+public interface LocatedPost {
+
+  /** @return the post, with its attachment (if any) loaded */
+  Post getPost();
+
+  /** @return number of {@link Thread} the post belongs to */
+  Long getThreadNumber();
+
+  /** @return label of {@link Board} the post belongs to */
+  String getBoardLabel();
+}
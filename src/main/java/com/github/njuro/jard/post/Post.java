@@ -5,16 +5,27 @@ import com.github.njuro.jard.base.BaseEntity;
 import com.github.njuro.jard.board.Board;
 import com.github.njuro.jard.board.BoardSettings;
 import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.search.TokenOffsetsBridge;
 import com.github.njuro.jard.thread.Thread;
 import com.github.njuro.jard.user.UserRole;
 import java.time.OffsetDateTime;
+import java.util.Set;
+import java.util.UUID;
 import javax.persistence.*;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.search.engine.backend.types.Projectable;
+import org.hibernate.search.engine.backend.types.Searchable;
+import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.ValueBridgeRef;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexingDependency;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.KeywordField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.ObjectPath;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.PropertyValue;
 
 /** Entity representing a post in thread. */
 @Entity
@@ -51,14 +62,23 @@ public class Post extends BaseEntity {
   @Enumerated(EnumType.STRING)
   private UserRole capcode;
 
-  /** Body of the post. */
+  /**
+   * Body of the post. Offsets of its tokens are indexed as well, so matched posts can be
+   * highlighted without analyzing their body again.
+   */
   @Basic
   @Column(columnDefinition = "TEXT")
   @FullTextField(analyzer = Constants.POST_ANALYZER)
+  @GenericField(
+      name = "bodyOffsets",
+      searchable = Searchable.NO,
+      projectable = Projectable.YES,
+      valueBridge = @ValueBridgeRef(type = TokenOffsetsBridge.class))
   private String body;
 
   /** Date and time when this post was created. */
   @Column(nullable = false)
+  @GenericField
   private OffsetDateTime createdAt;
 
   /** IP of the poster. */
@@ -104,6 +124,12 @@ public class Post extends BaseEntity {
   @Fetch(FetchMode.JOIN)
   private Attachment attachment;
 
+  /**
+   * IDs of posts this post links to via crosslinks in its body. Set when the body is decorated and
+   * recorded as {@link PostLink}s when the post is saved.
+   */
+  @Transient private Set<UUID> linkedPostIds;
+
   /** Before inserting to database, set creation date to current date and time. */
   @PrePersist
   private void setCreatedAt() {
@@ -119,4 +145,34 @@ public class Post extends BaseEntity {
     }
     return equals(thread.getOriginalPost());
   }
+
+  /**
+   * @return label of {@link Board} this post belongs to. Indexed for filtering of search results,
+   *     as label of board never changes.
+   */
+  @KeywordField
+  @IndexingDependency(derivedFrom = @ObjectPath(@PropertyValue(propertyName = "thread")))
+  public String getBoardLabel() {
+    if (thread == null || thread.getBoard() == null) {
+      return null;
+    }
+    return thread.getBoard().getLabel();
+  }
+
+  /**
+   * @return number of {@link Thread} this post belongs to. Indexed for filtering of search results.
+   * @see Thread#getThreadNumber()
+   */
+  @GenericField
+  @IndexingDependency(derivedFrom = @ObjectPath(@PropertyValue(propertyName = "thread")))
+  public Long getThreadNumber() {
+    return thread != null ? thread.getThreadNumber() : null;
+  }
+
+  /** @return true if this post has attachment. Indexed for filtering of search results. */
+  @GenericField
+  @IndexingDependency(derivedFrom = @ObjectPath(@PropertyValue(propertyName = "attachment")))
+  public boolean isWithAttachment() {
+    return attachment != null;
+  }
 }
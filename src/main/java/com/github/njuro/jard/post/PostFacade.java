@@ -5,9 +5,11 @@ import com.github.njuro.jard.attachment.AttachmentFacade;
 import com.github.njuro.jard.base.BaseFacade;
 import com.github.njuro.jard.board.Board;
 import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.post.dto.BacklinkDto;
 import com.github.njuro.jard.post.dto.PostDto;
 import com.github.njuro.jard.post.dto.PostForm;
 import com.github.njuro.jard.thread.Thread;
+import com.github.njuro.jard.thread.ThreadUpdateHub;
 import com.github.njuro.jard.thread.dto.ThreadDto;
 import com.github.njuro.jard.user.UserFacade;
 import com.github.njuro.jard.user.dto.UserDto;
@@ -17,8 +19,11 @@ import com.github.tornaia.geoip.GeoIPProvider;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,14 +37,19 @@ public class PostFacade extends BaseFacade<Post, PostDto> {
   private final UserFacade userFacade;
 
   private final PostService postService;
+  private final ThreadUpdateHub threadUpdateHub;
   private final GeoIP geoIP;
 
   @Autowired
   public PostFacade(
-      @Lazy AttachmentFacade attachmentFacade, UserFacade userFacade, PostService postService) {
+      @Lazy AttachmentFacade attachmentFacade,
+      UserFacade userFacade,
+      PostService postService,
+      ThreadUpdateHub threadUpdateHub) {
     this.attachmentFacade = attachmentFacade;
     this.userFacade = userFacade;
     this.postService = postService;
+    this.threadUpdateHub = threadUpdateHub;
     geoIP = GeoIPProvider.getGeoIP();
   }
 
@@ -109,6 +119,28 @@ public class PostFacade extends BaseFacade<Post, PostDto> {
     return toDtoList(postService.getNewRepliesForThreadSince(thread.getId(), lastPostNumber));
   }
 
+  /**
+   * Retrieves and sets backlinks of all given posts.
+   *
+   * @param posts posts to set backlinks for
+   * @see PostService#getBacklinks(Collection)
+   */
+  public void setBacklinks(Collection<PostDto> posts) {
+    Map<UUID, List<Backlink>> backlinks =
+        postService.getBacklinks(posts.stream().map(PostDto::getId).collect(Collectors.toList()));
+    for (PostDto post : posts) {
+      post.setBacklinks(
+          backlinks.getOrDefault(post.getId(), List.of()).stream()
+              .map(
+                  backlink ->
+                      new BacklinkDto(
+                          backlink.getBoardLabel(),
+                          backlink.getThreadNumber(),
+                          backlink.getPostNumber()))
+              .collect(Collectors.toList()));
+    }
+  }
+
   /** {@link PostService#getNumberOfPostsInThread(UUID)} )} */
   public int getNumberOfPostsInThread(ThreadDto thread) {
     return postService.getNumberOfPostsInThread(thread.getId());
@@ -157,8 +189,12 @@ public class PostFacade extends BaseFacade<Post, PostDto> {
     deletePost(post);
   }
 
-  /** {@link PostService#deletePost(Post)} */
+  /**
+   * {@link PostService#deletePost(Post)}. Subscribers of thread updates are notified about the
+   * deletion.
+   */
   public void deletePost(PostDto post) throws IOException {
     postService.deletePost(toEntity(post));
+    threadUpdateHub.publishDeletedPost(post.getThread().getId(), post);
   }
 }
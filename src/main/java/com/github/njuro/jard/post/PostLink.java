@@ -0,0 +1,41 @@
+package com.github.njuro.jard.post;
+
+import java.io.Serializable;
+import java.util.UUID;
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing crosslink from body of one {@link Post} to another. Links are recorded when
+ * the linking post is saved, so backlinks (replies to a post) can be looked up without parsing
+ * bodies of other posts.
+ *
+ * @see PostService#getBacklinks(java.util.Collection)
+ */
+@Entity
+@Table(name = "post_links")
+@IdClass(PostLink.PostLinkId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostLink {
+
+  /** ID of linking {@link Post}. */
+  @Id private UUID sourcePostId;
+
+  /** ID of linked {@link Post}. */
+  @Id private UUID targetPostId;
+
+  /** Composite identifier of {@link PostLink}. */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class PostLinkId implements Serializable {
+    private static final long serialVersionUID = 2941781045530196466L;
+
+    private UUID sourcePostId;
+    private UUID targetPostId;
+  }
+}
@@ -0,0 +1,27 @@
+package com.github.njuro.jard.post;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PostLinkRepository extends JpaRepository<PostLink, PostLink.PostLinkId> {
+
+  @Query(
+      "SELECT l.targetPostId AS targetPostId, b.label AS boardLabel, "
+          + "op.postNumber AS threadNumber, s.postNumber AS postNumber "
+          + "FROM PostLink l, Post s JOIN s.thread t JOIN t.board b JOIN t.originalPost op "
+          + "WHERE s.id = l.sourcePostId AND l.targetPostId IN (:postIds) "
+          + "ORDER BY s.createdAt")
+  List<Backlink> findBacklinksByTargetPostIdIn(@Param("postIds") Collection<UUID> postIds);
+
+  @Modifying
+  @Query(
+      "DELETE FROM PostLink l WHERE l.sourcePostId IN (:postIds) OR l.targetPostId IN (:postIds)")
+  void deleteBySourcePostIdInOrTargetPostIdIn(@Param("postIds") Collection<UUID> postIds);
+}
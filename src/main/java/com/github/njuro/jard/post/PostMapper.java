@@ -2,11 +2,37 @@ package com.github.njuro.jard.post;
 
 import com.github.njuro.jard.attachment.AttachmentMapper;
 import com.github.njuro.jard.base.BaseMapper;
+import com.github.njuro.jard.board.dto.BoardDto;
 import com.github.njuro.jard.post.dto.PostDto;
 import com.github.njuro.jard.thread.ThreadMapper;
+import com.github.njuro.jard.thread.dto.ThreadDto;
+import java.util.Objects;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Named;
 
 @Mapper(
     config = BaseMapper.Config.class,
     uses = {ThreadMapper.class, AttachmentMapper.class})
-public interface PostMapper extends BaseMapper<Post, PostDto> {}
+public interface PostMapper extends BaseMapper<Post, PostDto> {
+
+  @Named("withoutThread")
+  @Mapping(target = "thread", ignore = true)
+  @Mapping(target = "originalPost", ignore = true)
+  PostDto toDtoWithoutThread(Post post);
+
+  /**
+   * Maps located post to DTO. Its thread (which is not loaded) is not mapped, only number of the
+   * thread and label of its board are set, so the post can be linked.
+   */
+  default PostDto toDto(LocatedPost located) {
+    PostDto post = toDtoWithoutThread(located.getPost());
+    post.setThread(
+        ThreadDto.builder()
+            .threadNumber(located.getThreadNumber())
+            .board(BoardDto.builder().label(located.getBoardLabel()).build())
+            .build());
+    post.setOriginalPost(Objects.equals(post.getPostNumber(), located.getThreadNumber()));
+    return post;
+  }
+}
@@ -0,0 +1,23 @@
+package com.github.njuro.jard.post;
+
+import com.github.njuro.jard.thread.Thread;
+import java.util.UUID;
+
+/**
+ * Lightweight projection of {@link Post}, containing only data needed to link to it, so resolving
+ * references to posts does not require loading whole entity graph.
+ */
+public interface PostReference {
+
+  /** @return ID of the post */
+  UUID getId();
+
+  /** @return number of the post */
+  Long getPostNumber();
+
+  /** @return number of {@link Thread} the post belongs to */
+  Long getThreadNumber();
+
+  /** @return whether the post is original post of its thread */
+  boolean isOriginalPost();
+}
@@ -1,9 +1,13 @@
 package com.github.njuro.jard.post;
 
 import com.github.njuro.jard.base.BaseRepository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -11,6 +15,21 @@ public interface PostRepository extends BaseRepository<Post> {
 
   Optional<Post> findByThreadBoardLabelAndPostNumber(String label, Long postNumber);
 
+  @Query(
+      "SELECT p.id AS id, p.postNumber AS postNumber, op.postNumber AS threadNumber, "
+          + "CASE WHEN p.id = op.id THEN true ELSE false END AS originalPost "
+          + "FROM Post p JOIN p.thread t JOIN t.board b JOIN t.originalPost op "
+          + "WHERE b.label = :label AND p.postNumber IN (:postNumbers)")
+  List<PostReference> findReferencesByBoardLabelAndPostNumberIn(
+      @Param("label") String label, @Param("postNumbers") Collection<Long> postNumbers);
+
+  @Query(
+      "SELECT p AS post, op.postNumber AS threadNumber, b.label AS boardLabel "
+          + "FROM Post p JOIN p.thread t JOIN t.board b JOIN t.originalPost op "
+          + "LEFT JOIN FETCH p.attachment a LEFT JOIN FETCH a.metadata LEFT JOIN FETCH a.embedData "
+          + "WHERE p.id IN (:ids)")
+  List<LocatedPost> findLocatedByIdIn(@Param("ids") Collection<UUID> ids);
+
   List<Post> findByThreadIdAndPostNumberGreaterThanOrderByCreatedAtAsc(
       UUID threadId, Long postNumber);
 
@@ -18,5 +37,21 @@ public interface PostRepository extends BaseRepository<Post> {
 
   List<Post> findTop5ByThreadIdAndIdIsNotOrderByCreatedAtDesc(UUID threadId, UUID originalPostId);
 
+  @Query(
+      value =
+          "SELECT latest.* FROM ("
+              + "SELECT p.*, ROW_NUMBER() OVER (PARTITION BY p.thread_id ORDER BY p.created_at DESC) AS rn "
+              + "FROM posts p JOIN threads t ON p.thread_id = t.id "
+              + "WHERE p.thread_id IN (:threadIds) AND p.id <> t.original_post_id) latest "
+              + "WHERE latest.rn <= :limit "
+              + "ORDER BY latest.thread_id, latest.created_at",
+      nativeQuery = true)
+  List<Post> findLatestRepliesForThreads(
+      @Param("threadIds") Collection<UUID> threadIds, @Param("limit") int limit);
+
   Long countByThreadId(UUID threadId);
+
+  @Query("SELECT DISTINCT p.ip FROM Post p WHERE p.thread.id = :threadId AND p.ip IN (:ips)")
+  Set<String> findDistinctIpsByThreadIdAndIpIn(
+      @Param("threadId") UUID threadId, @Param("ips") Collection<String> ips);
 }
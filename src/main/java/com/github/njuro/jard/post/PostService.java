@@ -3,17 +3,23 @@ package com.github.njuro.jard.post;
 import com.github.njuro.jard.attachment.AttachmentService;
 import com.github.njuro.jard.board.Board;
 import com.github.njuro.jard.board.BoardService;
-import com.github.njuro.jard.post.decorators.PostDecorator;
+import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.post.decorators.MarkupCompiler;
+import com.github.njuro.jard.thread.ThreadStatisticsService;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.util.HtmlUtils;
 
 @Service
 @Transactional(noRollbackFor = PostNotFoundException.class)
@@ -25,23 +31,32 @@ public class PostService {
 
   private final PostRepository postRepository;
 
-  private final List<PostDecorator> decorators;
+  private final PostLinkRepository postLinkRepository;
+
+  private final ThreadStatisticsService threadStatisticsService;
+
+  private final MarkupCompiler markupCompiler;
 
   @Autowired
   public PostService(
       BoardService boardService,
       AttachmentService attachmentService,
       PostRepository postRepository,
-      List<PostDecorator> decorators) {
+      PostLinkRepository postLinkRepository,
+      ThreadStatisticsService threadStatisticsService,
+      MarkupCompiler markupCompiler) {
     this.boardService = boardService;
     this.attachmentService = attachmentService;
     this.postRepository = postRepository;
-    this.decorators = decorators;
+    this.postLinkRepository = postLinkRepository;
+    this.threadStatisticsService = threadStatisticsService;
+    this.markupCompiler = markupCompiler;
   }
 
   /**
-   * Generates and sets post number of given {@link Post}, process its body using registered post
-   * decorators and saves it to database.
+   * Generates and sets post number of given {@link Post}, compiles markup in its body and saves it
+   * to database along with {@link PostLink}s to posts linked from its body. If the post is reply to
+   * existing thread, statistics of the thread are updated as well.
    *
    * @param post post to be saved - cannot be null
    * @return saved post (with assigned id)
@@ -58,7 +73,34 @@ public class PostService {
       decoratePost(post);
     }
 
-    return postRepository.save(post);
+    if (post.isOriginalPost()) {
+      Post saved = postRepository.save(post);
+      saveLinks(saved, post.getLinkedPostIds());
+      return saved;
+    }
+
+    Post saved = postRepository.save(post);
+    saveLinks(saved, post.getLinkedPostIds());
+    threadStatisticsService.registerReply(
+        post.getThread().getId(), saved.getId(), post.getIp(), post.getAttachment() != null);
+    return saved;
+  }
+
+  /**
+   * Records links from given saved post to posts with given IDs.
+   *
+   * @param post saved linking post
+   * @param linkedPostIds IDs of linked posts, can be {@code null}
+   */
+  private void saveLinks(Post post, Set<UUID> linkedPostIds) {
+    if (linkedPostIds == null || linkedPostIds.isEmpty()) {
+      return;
+    }
+
+    postLinkRepository.saveAll(
+        linkedPostIds.stream()
+            .map(targetPostId -> new PostLink(post.getId(), targetPostId))
+            .collect(Collectors.toList()));
   }
 
   /**
@@ -75,6 +117,44 @@ public class PostService {
         .orElseThrow(PostNotFoundException::new);
   }
 
+  /**
+   * Resolves references to posts with given numbers in single query. Numbers of non-existing posts
+   * are silently skipped.
+   *
+   * @param boardLabel label of {@link Board} the posts belong to
+   * @param postNumbers numbers of the posts
+   * @return map of resolved references, with post numbers as keys
+   */
+  public Map<Long, PostReference> resolvePostReferences(
+      String boardLabel, Collection<Long> postNumbers) {
+    if (postNumbers.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return postRepository.findReferencesByBoardLabelAndPostNumberIn(boardLabel, postNumbers)
+        .stream()
+        .collect(Collectors.toMap(PostReference::getPostNumber, Function.identity()));
+  }
+
+  /**
+   * Retrieves posts with given IDs together with their attachments and locations in single query.
+   * Threads of the posts are not loaded. IDs of non-existing posts are silently skipped.
+   *
+   * @param postIds IDs of posts to retrieve - cannot be null
+   * @return map of retrieved posts, with post IDs as keys
+   * @throws NullPointerException if collection of post IDs is {@code null}
+   */
+  public Map<UUID, LocatedPost> getLocatedPosts(Collection<UUID> postIds) {
+    Objects.requireNonNull(postIds);
+
+    if (postIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return postRepository.findLocatedByIdIn(postIds).stream()
+        .collect(Collectors.toMap(located -> located.getPost().getId(), Function.identity()));
+  }
+
   /**
    * Retrieves all posts belonging to given thread (excluding thread's original post).
    *
@@ -110,6 +190,49 @@ public class PostService {
     return posts;
   }
 
+  /**
+   * Retrieves most recent replies (up to {@link Constants#MAX_LATEST_REPLIES_PER_THREAD}) for each
+   * of given threads using single query.
+   *
+   * @param threadIds IDs of threads to get replies for - cannot be null
+   * @return map of thread IDs to their most recent replies ordered by their creation date from
+   *     least to most recent. Threads without replies are not included.
+   * @throws NullPointerException if collection of thread IDs is {@code null}
+   */
+  public Map<UUID, List<Post>> getLatestRepliesForThreads(Collection<UUID> threadIds) {
+    Objects.requireNonNull(threadIds);
+
+    if (threadIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return postRepository
+        .findLatestRepliesForThreads(threadIds, Constants.MAX_LATEST_REPLIES_PER_THREAD).stream()
+        .collect(
+            Collectors.groupingBy(
+                post -> post.getThread().getId(), LinkedHashMap::new, Collectors.toList()));
+  }
+
+  /**
+   * Retrieves backlinks (posts linking to given post via crosslinks in their body) for each of
+   * given posts using single query.
+   *
+   * @param postIds IDs of posts to get backlinks for - cannot be null
+   * @return map of post IDs to their backlinks ordered by creation date of linking post from least
+   *     to most recent. Posts without backlinks are not included.
+   * @throws NullPointerException if collection of post IDs is {@code null}
+   */
+  public Map<UUID, List<Backlink>> getBacklinks(Collection<UUID> postIds) {
+    Objects.requireNonNull(postIds);
+
+    if (postIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return postLinkRepository.findBacklinksByTargetPostIdIn(postIds).stream()
+        .collect(Collectors.groupingBy(Backlink::getTargetPostId));
+  }
+
   /**
    * Counts number of posts in given thread.
    *
@@ -139,8 +262,8 @@ public class PostService {
   }
 
   /**
-   * Process body of given post with all registered implementations of {@link PostDecorator} and
-   * escapes any HTML in user input.
+   * Compiles markup in body of given post into HTML with {@link MarkupCompiler}, which also escapes
+   * any HTML in user input.
    *
    * @param post post to decorate - cannot be {@code null}
    * @throws NullPointerException if post is {@code null}
@@ -148,13 +271,7 @@ public class PostService {
   private void decoratePost(Post post) {
     Objects.requireNonNull(post);
 
-    post.setBody(HtmlUtils.htmlEscape(post.getBody()).replace("&gt;", ">"));
-
-    for (PostDecorator decorator : decorators) {
-      decorator.decorate(post);
-    }
-
-    post.setBody(post.getBody().replace("\n", "<br/>"));
+    post.setBody(markupCompiler.compile(post));
   }
 
   /**
@@ -168,7 +285,7 @@ public class PostService {
   }
 
   /**
-   * Deletes given post from database and also its attachment (if it has one).
+   * Deletes given post from database and also its attachment (if it has one) and links from/to it.
    *
    * @param post to delete - cannot be {@code null}
    * @throws NullPointerException if post is {@code null}
@@ -181,11 +298,14 @@ public class PostService {
       attachmentService.deleteAttachment(post.getAttachment());
     }
 
+    postLinkRepository.deleteBySourcePostIdInOrTargetPostIdIn(List.of(post.getId()));
     postRepository.delete(post);
+    updateThreadStatisticsAfterDeletion(List.of(post));
   }
 
   /**
-   * Deletes all given posts from database and also their attachments (if they have any).
+   * Deletes all given posts from database and also their attachments (if they have any) and links
+   * from/to them.
    *
    * @param posts posts to delete - cannot be {@code null}
    * @throws NullPointerException if post list is {@code null}
@@ -201,6 +321,34 @@ public class PostService {
             .collect(Collectors.toList());
     attachmentService.deleteAttachments(attachments);
 
+    if (!posts.isEmpty()) {
+      postLinkRepository.deleteBySourcePostIdInOrTargetPostIdIn(
+          posts.stream().map(Post::getId).collect(Collectors.toList()));
+    }
     postRepository.deleteAll(posts);
+    updateThreadStatisticsAfterDeletion(posts);
+  }
+
+  /**
+   * Subtracts given deleted replies from statistics of threads they belonged to. Poster is
+   * subtracted only if no other post with the same IP remains in the thread. Original posts are
+   * skipped, as they are deleted only together with their thread (and its statistics).
+   *
+   * @param deletedPosts posts which were deleted
+   */
+  private void updateThreadStatisticsAfterDeletion(List<Post> deletedPosts) {
+    deletedPosts.stream()
+        .filter(post -> !post.isOriginalPost())
+        .collect(Collectors.groupingBy(post -> post.getThread().getId()))
+        .forEach(
+            (threadId, posts) -> {
+              int replies = posts.size();
+              int attachments =
+                  (int) posts.stream().filter(post -> post.getAttachment() != null).count();
+              Set<String> ips = posts.stream().map(Post::getIp).collect(Collectors.toSet());
+              ips.removeAll(postRepository.findDistinctIpsByThreadIdAndIpIn(threadId, ips));
+              threadStatisticsService.updateStatistics(
+                  threadId, -replies, -attachments, -ips.size());
+            });
   }
 }
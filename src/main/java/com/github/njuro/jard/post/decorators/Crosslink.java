@@ -0,0 +1,41 @@
+package com.github.njuro.jard.post.decorators;
+
+import com.github.njuro.jard.board.Board;
+import com.github.njuro.jard.post.Post;
+import lombok.Data;
+
+/**
+ * Crosslink found in body of {@link Post}, such as {@code >>5}, {@code >>>/b/} or {@code >>>/b/5}.
+ *
+ * @see CrosslinkDecorator
+ */
+@Data
+public class Crosslink {
+
+  /**
+   * Label of linked {@link Board}. Is {@code null} until resolved when crosslink does not specify
+   * the board explicitly.
+   */
+  private String boardLabel;
+
+  /** Number of linked {@link Post}, empty if the crosslink links whole board. */
+  private final String postNumber;
+
+  /** Whether linked board/post exists. */
+  private boolean valid;
+
+  /** Target of the link - either board or thread with anchor to the linked post. */
+  private String href;
+
+  /** Symbol indicating special type of link, such as link to original post of the thread. */
+  private String special = "";
+
+  /**
+   * @param boardLabel label of linked board, or {@code null} when it is the board of linking post
+   * @param postNumber number of linked post, or empty string when linking whole board
+   */
+  public Crosslink(String boardLabel, String postNumber) {
+    this.boardLabel = boardLabel;
+    this.postNumber = postNumber;
+  }
+}
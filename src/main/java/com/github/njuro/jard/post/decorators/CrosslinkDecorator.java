@@ -2,23 +2,32 @@ package com.github.njuro.jard.post.decorators;
 
 import static com.github.njuro.jard.common.Constants.*;
 
-import com.github.njuro.jard.board.BoardNotFoundException;
 import com.github.njuro.jard.board.BoardService;
 import com.github.njuro.jard.post.Post;
-import com.github.njuro.jard.post.PostNotFoundException;
+import com.github.njuro.jard.post.PostReference;
 import com.github.njuro.jard.post.PostService;
-import java.util.Optional;
-import java.util.regex.Matcher;
+import com.github.njuro.jard.thread.Thread;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 /**
- * Decorator for rendering words starting with "{@code >>}" or "{@code >>>}" as links to other
+ * Decorator for resolving words starting with "{@code >>}" or "{@code >>>}" to links to other
  * active posts/threads/boards and checking if the linked entity exists.
+ *
+ * @see MarkupCompiler
  */
 @Component
-public class CrosslinkDecorator implements PostDecorator {
+public class CrosslinkDecorator {
 
   private final BoardService boardService;
   private final PostService postService;
@@ -30,54 +39,102 @@ public class CrosslinkDecorator implements PostDecorator {
     this.postService = postService;
   }
 
-  @Override
-  public void decorate(Post post) {
-    Matcher matcher = CROSSLINK_PATTERN.matcher(post.getBody());
-    StringBuilder sb = new StringBuilder(post.getBody().length());
+  /**
+   * Resolves given crosslinks found in body of given post - checks whether linked entities exist
+   * and sets targets and special symbols of the links. Linked boards are resolved in single query,
+   * linked posts in single query per referenced board. IDs of linked posts are stored in {@link
+   * Post#getLinkedPostIds()}.
+   *
+   * @param post post containing the crosslinks
+   * @param crosslinks crosslinks to resolve
+   */
+  public void resolveCrosslinks(Post post, List<Crosslink> crosslinks) {
+    String currentBoardLabel = post.getThread().getBoard().getLabel();
+    List<Crosslink> boardLinks = new ArrayList<>();
+    Map<String, List<Crosslink>> postLinks = new HashMap<>();
 
-    while (matcher.find()) {
-      String boardLabel =
-          Optional.ofNullable(matcher.group("board"))
-              .orElse(post.getThread().getBoard().getLabel());
-      String postNumber = Optional.ofNullable(matcher.group("postNo")).orElse("");
+    for (Crosslink crosslink : crosslinks) {
+      if (crosslink.getBoardLabel() == null) {
+        crosslink.setBoardLabel(currentBoardLabel);
+      }
+      crosslink.setValid(false);
 
-      String linkHref = "/boards/" + boardLabel;
-      boolean valid = true;
-      String special = "";
+      if (crosslink.getPostNumber().isEmpty()) {
+        boardLinks.add(crosslink);
+      } else {
+        postLinks
+            .computeIfAbsent(crosslink.getBoardLabel(), label -> new ArrayList<>())
+            .add(crosslink);
+      }
+    }
+
+    resolveBoardLinks(boardLinks);
+    Set<UUID> linkedPostIds = new LinkedHashSet<>();
+    postLinks.forEach(
+        (boardLabel, links) -> resolvePostLinks(post, boardLabel, links, linkedPostIds));
+    post.setLinkedPostIds(linkedPostIds);
+  }
+
+  private void resolveBoardLinks(List<Crosslink> crosslinks) {
+    Set<String> existingLabels =
+        boardService.getExistingLabels(
+            crosslinks.stream().map(Crosslink::getBoardLabel).collect(Collectors.toSet()));
+
+    for (Crosslink crosslink : crosslinks) {
+      if (existingLabels.contains(crosslink.getBoardLabel())) {
+        crosslink.setValid(true);
+        crosslink.setHref("/boards/" + crosslink.getBoardLabel());
+      }
+    }
+  }
+
+  private void resolvePostLinks(
+      Post post, String boardLabel, List<Crosslink> crosslinks, Set<UUID> linkedPostIds) {
+    Set<Long> postNumbers =
+        crosslinks.stream()
+            .map(CrosslinkDecorator::parsePostNumber)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+    Map<Long, PostReference> references =
+        postService.resolvePostReferences(boardLabel, postNumbers);
 
-      try {
-        if (postNumber.isEmpty()) {
-          boardService.resolveBoard(boardLabel);
-        } else {
-          Post linkedPost = postService.resolvePost(boardLabel, Long.valueOf(postNumber));
-          if (linkedPost.equals(post.getThread().getOriginalPost())) {
-            special += CROSSLINK_OP;
-          }
-          if (!linkedPost.getThread().equals(post.getThread())) {
-            special += CROSSLINK_DIFF_THREAD;
-          }
-          linkHref +=
-              "/thread/"
-                  + linkedPost.getThread().getThreadNumber()
-                  + "#"
-                  + linkedPost.getPostNumber();
-        }
-      } catch (BoardNotFoundException | PostNotFoundException e) {
-        valid = false;
+    Thread thread = post.getThread();
+    boolean sameBoard = boardLabel.equals(thread.getBoard().getLabel());
+
+    for (Crosslink crosslink : crosslinks) {
+      PostReference reference = references.get(parsePostNumber(crosslink));
+      if (reference == null) {
+        continue;
       }
 
-      String linkClass = valid ? CROSSLINK_CLASS_VALID : CROSSLINK_CLASS_INVALID;
-      String crosslinkStart =
-          CROSSLINK_START
-              .replace("${postNumber}", postNumber)
-              .replace("${boardLabel}", boardLabel)
-              .replace("${linkHref}", valid ? linkHref : "#")
-              .replace("${linkClass}", linkClass);
+      String special = "";
+      boolean sameThread =
+          sameBoard && reference.getThreadNumber().equals(thread.getThreadNumber());
+      if (sameThread && reference.isOriginalPost()) {
+        special += CROSSLINK_OP;
+      }
+      if (!sameThread) {
+        special += CROSSLINK_DIFF_THREAD;
+      }
 
-      matcher.appendReplacement(sb, crosslinkStart + "$0" + " " + special + CROSSLINK_END);
+      crosslink.setValid(true);
+      crosslink.setHref(
+          "/boards/"
+              + boardLabel
+              + "/thread/"
+              + reference.getThreadNumber()
+              + "#"
+              + reference.getPostNumber());
+      crosslink.setSpecial(special);
+      linkedPostIds.add(reference.getId());
     }
+  }
 
-    matcher.appendTail(sb);
-    post.setBody(sb.toString());
+  private static Long parsePostNumber(Crosslink crosslink) {
+    try {
+      return Long.valueOf(crosslink.getPostNumber());
+    } catch (NumberFormatException e) {
+      return null;
+    }
   }
 }
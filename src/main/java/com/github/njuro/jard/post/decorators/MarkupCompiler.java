@@ -0,0 +1,617 @@
+package com.github.njuro.jard.post.decorators;
+
+import static com.github.njuro.jard.common.Constants.*;
+
+import com.github.njuro.jard.post.Post;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+/**
+ * Compiler of markup used in body of {@link Post} into HTML. Recognizes the following markup:
+ *
+ * <ul>
+ *   <li>code blocks - text between {@code [code]} and {@code [/code]}
+ *   <li>crosslinks - {@code >>5}, {@code >>>/b/} or {@code >>>/b/5}, see {@link CrosslinkDecorator}
+ *   <li><a href="https://knowyourmeme.com/memes/greentext-stories">greentext</a> - lines starting
+ *       with "{@code >}"
+ *   <li>hyperlinks - valid URLs starting with http/https
+ *   <li>spoilers - text between {@code [spoiler]} and {@code [/spoiler]} or between pair of "{@code
+ *       **}"
+ * </ul>
+ *
+ * <p>Any HTML in the body is escaped (except of "{@code >}" character, which is part of the markup)
+ * and line breaks are converted to {@code <br/>} tags.
+ *
+ * <p>The markup is recognized by linear scans of the body, which only record positions of HTML
+ * fragments to insert (or markup to replace with them). The output is then written at once, so the
+ * body is copied only one time and compilation takes linear time regardless of the input.
+ */
+@Component
+public class MarkupCompiler {
+
+  /**
+   * HTML escapes of characters, as produced by {@link HtmlUtils#htmlEscape(String)}. Character
+   * "{@code >}" is not escaped as it is part of the markup. Characters beyond this table have no
+   * escapes.
+   */
+  private static final String[] ESCAPES = new String[10000];
+
+  static {
+    for (char c = 0; c < ESCAPES.length; c++) {
+      String escaped = HtmlUtils.htmlEscape(String.valueOf(c));
+      if (c != '>' && !escaped.equals(String.valueOf(c))) {
+        ESCAPES[c] = escaped;
+      }
+    }
+  }
+
+  private static final String LINE_BREAK = "<br/>";
+
+  private static final String HYPERLINK_SCHEME = "http://";
+  private static final String HYPERLINK_SECURE_SCHEME = "https://";
+
+  /** Optional prefix of domain name in recognized hyperlinks. */
+  private static final String HYPERLINK_DOMAIN_PREFIX = "www.";
+
+  /**
+   * Maximal length of domain name (without top level domain and optional prefix) in recognized
+   * hyperlinks.
+   */
+  private static final int HYPERLINK_MAX_DOMAIN_LENGTH = 256;
+
+  /** Maximal length of top level domain in recognized hyperlinks. */
+  private static final int HYPERLINK_MAX_TLD_LENGTH = 6;
+
+  /*
+   * Order of HTML fragments inserted at the same position of the body. Markup which is inserted
+   * without replacing any part of the body is ordered before the markup which is replaced.
+   */
+  private static final int HYPERLINK_END_ORDER = 0;
+  private static final int CROSSLINK_END_ORDER = 1;
+  private static final int GREENTEXT_END_ORDER = 2;
+  private static final int GREENTEXT_START_ORDER = 3;
+  private static final int CROSSLINK_START_ORDER = 4;
+  private static final int HYPERLINK_START_ORDER = 5;
+  private static final int REPLACED_MARKUP_ORDER = 6;
+
+  private final CrosslinkDecorator crosslinkDecorator;
+
+  @Autowired
+  public MarkupCompiler(CrosslinkDecorator crosslinkDecorator) {
+    this.crosslinkDecorator = crosslinkDecorator;
+  }
+
+  /**
+   * Compiles body of given post into HTML.
+   *
+   * @param post post to compile body of - its body cannot be {@code null}
+   * @return compiled body
+   */
+  public String compile(Post post) {
+    return new Compilation(post).compile();
+  }
+
+  /**
+   * Escapes HTML in given text, the same way as it is escaped in compiled body.
+   *
+   * @param text text to escape
+   * @return escaped text
+   */
+  private static String escape(String text) {
+    var escaped = new StringBuilder(text.length());
+    appendEscaped(escaped, text, 0, text.length());
+    return escaped.toString();
+  }
+
+  private static void appendEscaped(StringBuilder output, String text, int from, int to) {
+    int plain = from;
+    for (int i = from; i < to; i++) {
+      char c = text.charAt(i);
+      String replacement = c == '\n' ? LINE_BREAK : escapeOf(c);
+      if (replacement != null) {
+        output.append(text, plain, i).append(replacement);
+        plain = i + 1;
+      }
+    }
+    output.append(text, plain, to);
+  }
+
+  private static String escapeOf(int c) {
+    return c < ESCAPES.length ? ESCAPES[c] : null;
+  }
+
+  private static boolean isWordCharacter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  /** Whether character of the body contains word character once escaped. */
+  private static boolean isWordCharacterWhenEscaped(char c) {
+    return isWordCharacter(c) || escapeOf(c) != null;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isDomainCharacter(char c) {
+    return isWordCharacter(c) || "-@:%.+~#=".indexOf(c) >= 0;
+  }
+
+  private static boolean isTopLevelDomainCharacter(char c) {
+    return (isWordCharacter(c) && c != '_') || c == '(' || c == ')';
+  }
+
+  private static boolean isHyperlinkCharacter(char c) {
+    return isDomainCharacter(c) || "()?&/".indexOf(c) >= 0;
+  }
+
+  /** Fragment of HTML inserted into the body, optionally replacing markup at its position. */
+  private static class Fragment {
+    private final int position;
+    private final int order;
+    private final int replacedLength;
+    private final String html;
+
+    private Fragment(int position, int order, int replacedLength, String html) {
+      this.position = position;
+      this.order = order;
+      this.replacedLength = replacedLength;
+      this.html = html;
+    }
+
+    private int getPosition() {
+      return position;
+    }
+
+    private int getOrder() {
+      return order;
+    }
+  }
+
+  /** Crosslink together with its position in the body. */
+  private static class CrosslinkOccurrence {
+    private final int start;
+    private final int end;
+    private final Crosslink crosslink;
+
+    private CrosslinkOccurrence(int start, int end, Crosslink crosslink) {
+      this.start = start;
+      this.end = end;
+      this.crosslink = crosslink;
+    }
+  }
+
+  /** State of compilation of single body. */
+  private class Compilation {
+    private final Post post;
+    private final String body;
+    private final int length;
+
+    private final List<Fragment> fragments = new ArrayList<>();
+    private final List<Fragment> codeBlocks = new ArrayList<>();
+    private final List<CrosslinkOccurrence> crosslinks = new ArrayList<>();
+
+    private Compilation(Post post) {
+      this.post = post;
+      body = post.getBody();
+      length = body.length();
+    }
+
+    private String compile() {
+      recognizeCodeBlocks();
+      recognizeCrosslinks();
+      recognizeGreentext();
+      recognizeHyperlinks();
+      recognizeSpoilers();
+      return render();
+    }
+
+    /**
+     * Code block is the shortest text between {@code [code]} and {@code [/code]} which contains at
+     * least one word character.
+     */
+    private void recognizeCodeBlocks() {
+      int wordCharacter = 0;
+      int end = 0;
+      for (int start = body.indexOf('['); start >= 0; start = body.indexOf('[', start + 1)) {
+        if (!regionMatches(start, CODE_MARKUP_START)) {
+          continue;
+        }
+
+        wordCharacter = Math.max(wordCharacter, start + CODE_MARKUP_START.length());
+        while (wordCharacter < length && !isWordCharacterWhenEscaped(body.charAt(wordCharacter))) {
+          wordCharacter++;
+        }
+
+        end = Math.max(end, wordCharacter + 1);
+        while (end < length && !regionMatches(end, CODE_MARKUP_END)) {
+          end++;
+        }
+        if (end >= length) {
+          return;
+        }
+
+        var codeStart =
+            new Fragment(start, REPLACED_MARKUP_ORDER, CODE_MARKUP_START.length(), CODE_START);
+        var codeEnd = new Fragment(end, REPLACED_MARKUP_ORDER, CODE_MARKUP_END.length(), CODE_END);
+        codeBlocks.add(codeStart);
+        codeBlocks.add(codeEnd);
+        fragments.add(codeStart);
+        fragments.add(codeEnd);
+        start = end + CODE_MARKUP_END.length() - 1;
+      }
+    }
+
+    /**
+     * Crosslink is "{@code >>}" followed by post number, or "{@code >>>/}" followed by board label,
+     * "{@code /}" and optional post number. Linked entities are resolved by {@link
+     * CrosslinkDecorator}.
+     */
+    private void recognizeCrosslinks() {
+      int codeBlock = 0;
+      int start = body.indexOf(">>");
+      while (start >= 0) {
+        String boardLabel = null;
+        int postNumberStart = start + 2;
+        if (charAt(start + 2) == '>' && charAt(start + 3) == '/') {
+          int slash = start + 4;
+          while (slash < length
+              && body.charAt(slash) != '/'
+              && !isLineTerminator(body.charAt(slash))) {
+            slash++;
+          }
+          if (slash > start + 4 && charAt(slash) == '/') {
+            boardLabel = body.substring(start + 4, slash);
+            postNumberStart = slash + 1;
+          }
+        }
+
+        int postNumberEnd = postNumberStart;
+        while (postNumberEnd < length && isDigit(body.charAt(postNumberEnd))) {
+          postNumberEnd++;
+        }
+        int end = postNumberEnd;
+        if (postNumberEnd == postNumberStart && boardLabel != null) {
+          // link to whole board
+          while (end < length && isWhitespace(body.charAt(end))) {
+            end++;
+          }
+        }
+
+        while (codeBlock < codeBlocks.size() && endOf(codeBlocks.get(codeBlock)) <= start) {
+          codeBlock++;
+        }
+        boolean overlapsCodeBlock =
+            codeBlock < codeBlocks.size() && codeBlocks.get(codeBlock).position < end;
+
+        if ((postNumberEnd == postNumberStart && boardLabel == null) || overlapsCodeBlock) {
+          start = body.indexOf(">>", start + 1);
+          continue;
+        }
+
+        var crosslink = new Crosslink(boardLabel, body.substring(postNumberStart, postNumberEnd));
+        crosslinks.add(new CrosslinkOccurrence(start, end, crosslink));
+        start = body.indexOf(">>", end);
+      }
+
+      if (crosslinks.isEmpty()) {
+        return;
+      }
+
+      List<Crosslink> resolved = new ArrayList<>(crosslinks.size());
+      crosslinks.forEach(occurrence -> resolved.add(occurrence.crosslink));
+      crosslinkDecorator.resolveCrosslinks(post, resolved);
+
+      for (CrosslinkOccurrence occurrence : crosslinks) {
+        Crosslink crosslink = occurrence.crosslink;
+        String crosslinkStart =
+            CROSSLINK_START
+                .replace("${postNumber}", crosslink.getPostNumber())
+                .replace("${boardLabel}", escape(crosslink.getBoardLabel()))
+                .replace("${linkHref}", crosslink.isValid() ? escape(crosslink.getHref()) : "#")
+                .replace(
+                    "${linkClass}",
+                    crosslink.isValid() ? CROSSLINK_CLASS_VALID : CROSSLINK_CLASS_INVALID);
+        fragments.add(new Fragment(occurrence.start, CROSSLINK_START_ORDER, 0, crosslinkStart));
+        fragments.add(
+            new Fragment(
+                occurrence.end,
+                CROSSLINK_END_ORDER,
+                0,
+                " " + crosslink.getSpecial() + CROSSLINK_END));
+      }
+    }
+
+    /**
+     * Greentext is a line whose first non-whitespace character is "{@code >}" (not part of
+     * crosslink). Greentext starts at the beginning of the first of any preceding blank lines.
+     */
+    private void recognizeGreentext() {
+      int crosslink = 0;
+      int lineStart = 0;
+      while (lineStart < length) {
+        int first = lineStart;
+        while (first < length && isWhitespace(body.charAt(first))) {
+          first++;
+        }
+
+        while (crosslink < crosslinks.size() && crosslinks.get(crosslink).end < first) {
+          crosslink++;
+        }
+        boolean crosslinkBoundary =
+            crosslink < crosslinks.size()
+                && (crosslinks.get(crosslink).start == first
+                    || crosslinks.get(crosslink).end == first);
+
+        if (charAt(first) == '>' && !crosslinkBoundary) {
+          int lineEnd = first;
+          while (lineEnd < length && !isLineTerminator(body.charAt(lineEnd))) {
+            lineEnd++;
+          }
+          fragments.add(new Fragment(lineStart, GREENTEXT_START_ORDER, 0, GREENTEXT_START));
+          fragments.add(new Fragment(lineEnd, GREENTEXT_END_ORDER, 0, GREENTEXT_END));
+          first = lineEnd;
+        }
+
+        lineStart = nextLineStart(first);
+      }
+    }
+
+    /**
+     * Hyperlink is http/https URL with domain name, followed by optional path and query (see {@link
+     * #isHyperlinkCharacter(char)}).
+     */
+    private void recognizeHyperlinks() {
+      int crosslink = 0;
+      int hyperlinkEnd = 0;
+      for (int start = 0; start < length; start++) {
+        int domainStart;
+        if (regionMatches(start, HYPERLINK_SCHEME)) {
+          domainStart = start + HYPERLINK_SCHEME.length();
+        } else if (regionMatches(start, HYPERLINK_SECURE_SCHEME)) {
+          domainStart = start + HYPERLINK_SECURE_SCHEME.length();
+        } else {
+          continue;
+        }
+
+        while (crosslink < crosslinks.size() && crosslinks.get(crosslink).end <= start) {
+          crosslink++;
+        }
+        if (crosslink < crosslinks.size() && crosslinks.get(crosslink).start <= start) {
+          continue;
+        }
+
+        if (hyperlinkEnd <= domainStart) {
+          hyperlinkEnd = domainStart;
+          while (hyperlinkEnd < length && isHyperlinkCharacter(body.charAt(hyperlinkEnd))) {
+            hyperlinkEnd++;
+          }
+        }
+
+        if (!hasValidDomain(domainStart, hyperlinkEnd)) {
+          continue;
+        }
+
+        String href = escape(body.substring(start, hyperlinkEnd));
+        fragments.add(
+            new Fragment(
+                start, HYPERLINK_START_ORDER, 0, HYPERLINK_START.replace("${href}", href)));
+        fragments.add(new Fragment(hyperlinkEnd, HYPERLINK_END_ORDER, 0, HYPERLINK_END));
+        start = hyperlinkEnd - 1;
+      }
+    }
+
+    /**
+     * Checks whether hyperlink starts with domain name followed by dot and top level domain, which
+     * ends on word boundary.
+     */
+    private boolean hasValidDomain(int start, int end) {
+      int domainEnd = start;
+      int maxDomainLength = HYPERLINK_MAX_DOMAIN_LENGTH;
+      if (regionMatches(start, HYPERLINK_DOMAIN_PREFIX)) {
+        maxDomainLength += HYPERLINK_DOMAIN_PREFIX.length();
+      }
+      int maxDomainEnd = Math.min(end, start + maxDomainLength + 1);
+      while (domainEnd < maxDomainEnd && isDomainCharacter(body.charAt(domainEnd))) {
+        domainEnd++;
+      }
+
+      for (int dot = start + 1; dot < domainEnd; dot++) {
+        if (body.charAt(dot) != '.') {
+          continue;
+        }
+        for (int tldEnd = dot + 1;
+            tldEnd < end
+                && tldEnd - dot <= HYPERLINK_MAX_TLD_LENGTH
+                && isTopLevelDomainCharacter(body.charAt(tldEnd));
+            tldEnd++) {
+          if (isWordBoundary(tldEnd + 1)) {
+            return true;
+          }
+        }
+      }
+
+      return false;
+    }
+
+    /** Checks for word boundary before given position, considering escaping of the body. */
+    private boolean isWordBoundary(int position) {
+      char previous = body.charAt(position - 1);
+      boolean previousWord = Character.isLetterOrDigit(previous) || previous == '_';
+      if (position >= length) {
+        return previousWord;
+      }
+
+      int next = body.codePointAt(position);
+      if (escapeOf(next) != null) {
+        next = '&';
+      }
+      boolean nextWord =
+          Character.isLetterOrDigit(next)
+              || next == '_'
+              || (Character.getType(next) == Character.NON_SPACING_MARK
+                  && Character.isLetterOrDigit(previous));
+      return previousWord != nextWord;
+    }
+
+    /**
+     * Spoiler is the shortest text between its start and end markup, which contains at least one
+     * word character (including the HTML inserted by other markup).
+     */
+    private void recognizeSpoilers() {
+      int[] insertions =
+          fragments.stream()
+              .filter(fragment -> fragment.replacedLength == 0)
+              .mapToInt(Fragment::getPosition)
+              .sorted()
+              .toArray();
+      int insertion = 0;
+      int openingCrosslink = 0;
+      int closingCrosslink = 0;
+      int contentEnd = 0;
+      int wordCharacter = 0;
+      int end = 0;
+
+      for (int start = 0; start < length; start++) {
+        int startLength = spoilerMarkupLength(start, SPOILER_MARKUP_START);
+        if (startLength == 0) {
+          continue;
+        }
+        while (openingCrosslink < crosslinks.size()
+            && crosslinks.get(openingCrosslink).end <= start) {
+          openingCrosslink++;
+        }
+        if (openingCrosslink < crosslinks.size()
+            && crosslinks.get(openingCrosslink).start <= start) {
+          continue;
+        }
+
+        int contentStart = start + startLength;
+        if (wordCharacter < contentStart) {
+          // content must contain either word character or inserted HTML
+          wordCharacter = contentStart;
+          while (insertion < insertions.length && insertions[insertion] < wordCharacter) {
+            insertion++;
+          }
+          while (wordCharacter < length
+              && !(insertion < insertions.length && insertions[insertion] == wordCharacter)
+              && !isWordCharacterWhenEscaped(body.charAt(wordCharacter))) {
+            wordCharacter++;
+            while (insertion < insertions.length && insertions[insertion] < wordCharacter) {
+              insertion++;
+            }
+          }
+          if (wordCharacter >= length) {
+            return;
+          }
+          boolean inserted =
+              insertion < insertions.length && insertions[insertion] == wordCharacter;
+          contentEnd = inserted ? wordCharacter : wordCharacter + 1;
+        }
+
+        end = Math.max(end, contentEnd);
+        int endLength = 0;
+        while (end < length) {
+          while (closingCrosslink < crosslinks.size()
+              && crosslinks.get(closingCrosslink).end <= end) {
+            closingCrosslink++;
+          }
+          boolean inCrosslink =
+              closingCrosslink < crosslinks.size() && crosslinks.get(closingCrosslink).start <= end;
+          endLength = inCrosslink ? 0 : spoilerMarkupLength(end, SPOILER_MARKUP_END);
+          if (endLength > 0) {
+            break;
+          }
+          end++;
+        }
+        if (end >= length) {
+          return;
+        }
+
+        fragments.add(new Fragment(start, REPLACED_MARKUP_ORDER, startLength, SPOILER_START));
+        fragments.add(new Fragment(end, REPLACED_MARKUP_ORDER, endLength, SPOILER_END));
+        start = end + endLength - 1;
+      }
+    }
+
+    /**
+     * @return length of spoiler markup (either given one or the short one) at given position, or
+     *     zero if there is no such markup
+     */
+    private int spoilerMarkupLength(int position, String markup) {
+      if (regionMatches(position, markup)) {
+        return markup.length();
+      }
+      if (body.startsWith(SPOILER_MARKUP_SHORT, position)) {
+        return SPOILER_MARKUP_SHORT.length();
+      }
+      return 0;
+    }
+
+    private String render() {
+      fragments.sort(
+          Comparator.comparingInt(Fragment::getPosition).thenComparingInt(Fragment::getOrder));
+
+      var html = new StringBuilder(length + length / 4 + fragments.size() * 24);
+      int written = 0;
+      for (Fragment fragment : fragments) {
+        if (fragment.position > written) {
+          appendEscaped(html, body, written, fragment.position);
+        }
+        html.append(fragment.html);
+        written = Math.max(written, fragment.position + fragment.replacedLength);
+      }
+      appendEscaped(html, body, written, length);
+
+      return html.toString();
+    }
+
+    /** Compares region of the body with given markup, ignoring case of ASCII letters. */
+    private boolean regionMatches(int position, String markup) {
+      if (position + markup.length() > length) {
+        return false;
+      }
+      for (int i = 0; i < markup.length(); i++) {
+        char c = body.charAt(position + i);
+        char m = markup.charAt(i);
+        if (c != m && !(m >= 'a' && m <= 'z' && c == m - 'a' + 'A')) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int nextLineStart(int position) {
+      int terminator = position;
+      while (terminator < length && !isLineTerminator(body.charAt(terminator))) {
+        terminator++;
+      }
+      if (terminator + 1 < length
+          && body.charAt(terminator) == '\r'
+          && body.charAt(terminator + 1) == '\n') {
+        return terminator + 2;
+      }
+      return terminator + 1;
+    }
+
+    private char charAt(int position) {
+      return position < length ? body.charAt(position) : '\0';
+    }
+
+    private int endOf(Fragment fragment) {
+      return fragment.position + fragment.replacedLength;
+    }
+  }
+}
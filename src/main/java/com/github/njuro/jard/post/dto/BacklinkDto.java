@@ -0,0 +1,27 @@
+package com.github.njuro.jard.post.dto;
+
+import com.github.njuro.jard.post.Backlink;
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** DTO for {@link Backlink}. */
+@SuppressWarnings("JavadocReference")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BacklinkDto implements Serializable {
+  private static final long serialVersionUID = -3319452476245035873L;
+
+  /** {@link Backlink#getBoardLabel()} */
+  private String boardLabel;
+
+  /** {@link Backlink#getThreadNumber()} */
+  private Long threadNumber;
+
+  /** {@link Backlink#getPostNumber()} */
+  private Long postNumber;
+}
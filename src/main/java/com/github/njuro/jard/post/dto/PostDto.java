@@ -7,6 +7,7 @@ import com.github.njuro.jard.post.Post;
 import com.github.njuro.jard.thread.dto.ThreadDto;
 import com.github.njuro.jard.user.UserRole;
 import java.time.OffsetDateTime;
+import java.util.List;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 
@@ -66,4 +67,7 @@ public class PostDto extends BaseDto {
 
   /** {@link Post#isOriginalPost()} */
   private boolean originalPost;
+
+  /** Posts linking to this post via crosslinks in their body. */
+  private List<BacklinkDto> backlinks;
 }
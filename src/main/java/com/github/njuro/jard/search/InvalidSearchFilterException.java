@@ -0,0 +1,16 @@
+package com.github.njuro.jard.search;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception to be thrown when filters of search cannot be applied (for example thread number
+ * without board label).
+ *
+ * <p>Set 400 HTTP status.
+ */
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Invalid filters of search")
+public class InvalidSearchFilterException extends RuntimeException {
+
+  private static final long serialVersionUID = 4186237718409261359L;
+}
@@ -0,0 +1,15 @@
+package com.github.njuro.jard.search;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception to be thrown when token of page of search results cannot be decoded.
+ *
+ * <p>Set 400 HTTP status.
+ */
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Invalid page of search results")
+public class InvalidSearchPageTokenException extends RuntimeException {
+
+  private static final long serialVersionUID = -3208417316409632154L;
+}
@@ -0,0 +1,240 @@
+package com.github.njuro.jard.search;
+
+import com.github.njuro.jard.common.Constants;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+
+/**
+ * Highlighter marking searched terms in text of matched entity by offsets of its tokens, which were
+ * recorded when the entity was indexed (see {@link #encodeOffsets(Analyzer, String, String)}). The
+ * text is never analyzed again when highlighting, matched tokens are found by comparing their terms
+ * with terms (and automata of fuzzy, prefix and similar queries) of the search query.
+ *
+ * <p>Only the best fragment of the text is returned, which is the one of {@link
+ * Constants#SEARCH_RESULT_FRAGMENT_SIZE} characters containing the most distinct searched terms.
+ */
+public class OffsetHighlighter {
+
+  /** Exact terms of the query. */
+  private final Set<String> terms = new HashSet<>();
+
+  /** Automata of terms of the query, which match multiple terms. */
+  private final List<ByteRunAutomaton> automata = new ArrayList<>();
+
+  /**
+   * @param query Lucene query of the search
+   * @param field name of highlighted field
+   */
+  public OffsetHighlighter(Query query, String field) {
+    query.visit(
+        new QueryVisitor() {
+          @Override
+          public boolean acceptField(String visitedField) {
+            return field.equals(visitedField);
+          }
+
+          @Override
+          public void consumeTerms(Query query, Term... queryTerms) {
+            for (Term term : queryTerms) {
+              if (field.equals(term.field())) {
+                terms.add(term.text());
+              }
+            }
+          }
+
+          @Override
+          public void consumeTermsMatching(
+              Query query, String visitedField, Supplier<ByteRunAutomaton> automaton) {
+            if (field.equals(visitedField)) {
+              automata.add(automaton.get());
+            }
+          }
+
+          @Override
+          public QueryVisitor getSubVisitor(BooleanClause.Occur occur, Query parent) {
+            return occur == BooleanClause.Occur.MUST_NOT ? EMPTY_VISITOR : this;
+          }
+        });
+  }
+
+  /**
+   * Analyzes given text and encodes offsets of its tokens, so they can be stored in index together
+   * with the text.
+   *
+   * @param analyzer analyzer of the field
+   * @param field name of the field
+   * @param text text to analyze
+   * @return encoded offsets of tokens of the text
+   * @throws UncheckedIOException if analysis fails
+   */
+  public static String encodeOffsets(Analyzer analyzer, String field, String text) {
+    var encoded = new StringBuilder();
+    try (var tokenStream = analyzer.tokenStream(field, text)) {
+      var term = tokenStream.addAttribute(CharTermAttribute.class);
+      var offset = tokenStream.addAttribute(OffsetAttribute.class);
+      tokenStream.reset();
+      while (tokenStream.incrementToken()) {
+        if (encoded.length() > 0) {
+          encoded.append(' ');
+        }
+        encoded
+            .append(offset.startOffset())
+            .append(',')
+            .append(offset.endOffset())
+            .append(',')
+            .append(term);
+      }
+      tokenStream.end();
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to analyze text", ex);
+    }
+    return encoded.toString();
+  }
+
+  /**
+   * Marks searched terms in best fragment of given text.
+   *
+   * @param text original text of the field
+   * @param offsets offsets of tokens of the text, created by {@link #encodeOffsets(Analyzer,
+   *     String, String)}
+   * @return best fragment of the text with marked searched terms, or the original text if there is
+   *     no searched term in it (or its offsets are not known)
+   */
+  public String highlight(String text, String offsets) {
+    if (text == null || offsets == null || offsets.isEmpty()) {
+      return text;
+    }
+
+    List<Match> matches = getMatches(offsets);
+    if (matches.isEmpty()) {
+      return text;
+    }
+
+    int start = 0;
+    int end = text.length();
+    int first = 0;
+    int last = matches.size() - 1;
+    if (text.length() > Constants.SEARCH_RESULT_FRAGMENT_SIZE) {
+      int bestDistinct = 0;
+      for (int i = 0, j = 0; i < matches.size(); i++) {
+        int fragmentEnd = matches.get(i).start + Constants.SEARCH_RESULT_FRAGMENT_SIZE;
+        j = Math.max(i, j);
+        while (j + 1 < matches.size() && matches.get(j + 1).end <= fragmentEnd) {
+          j++;
+        }
+        int distinct = countDistinctTerms(matches, i, j);
+        if (distinct > bestDistinct) {
+          bestDistinct = distinct;
+          first = i;
+          last = j;
+        }
+      }
+
+      // fragment starts with the first searched term and does not end in the middle of word
+      start = matches.get(first).start;
+      end = Math.max(start + Constants.SEARCH_RESULT_FRAGMENT_SIZE, matches.get(last).end);
+      while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+        end++;
+      }
+      end = Math.min(end, text.length());
+    }
+
+    var highlighted = new StringBuilder(end - start + 64);
+    int position = start;
+    for (int i = first; i <= last; i++) {
+      var match = matches.get(i);
+      if (match.start < position || match.end > end) {
+        continue;
+      }
+      // end offset of token followed by HTML tag can point after the tag
+      int matchEnd = match.start;
+      while (matchEnd < match.end && text.charAt(matchEnd) != '<') {
+        matchEnd++;
+      }
+      highlighted
+          .append(text, position, match.start)
+          .append(Constants.SEARCH_RESULT_HIGHLIGHT_START)
+          .append(text, match.start, matchEnd)
+          .append(Constants.SEARCH_RESULT_HIGHLIGHT_END);
+      position = matchEnd;
+    }
+    highlighted.append(text, position, end);
+    return highlighted.toString();
+  }
+
+  /** @return tokens of encoded offsets, whose terms match the query, ordered by their offsets */
+  private List<Match> getMatches(String offsets) {
+    List<Match> matches = new ArrayList<>();
+    int position = 0;
+    while (position < offsets.length()) {
+      int tokenEnd = offsets.indexOf(' ', position);
+      if (tokenEnd == -1) {
+        tokenEnd = offsets.length();
+      }
+      int startSeparator = offsets.indexOf(',', position);
+      int endSeparator = offsets.indexOf(',', startSeparator + 1);
+      var term = offsets.substring(endSeparator + 1, tokenEnd);
+      if (matches(term)) {
+        matches.add(
+            new Match(
+                Integer.parseInt(offsets, position, startSeparator, 10),
+                Integer.parseInt(offsets, startSeparator + 1, endSeparator, 10),
+                term));
+      }
+      position = tokenEnd + 1;
+    }
+    return matches;
+  }
+
+  private boolean matches(String term) {
+    if (terms.contains(term)) {
+      return true;
+    }
+    if (automata.isEmpty()) {
+      return false;
+    }
+
+    var bytes = new BytesRef(term);
+    for (ByteRunAutomaton automaton : automata) {
+      if (automaton.run(bytes.bytes, bytes.offset, bytes.length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int countDistinctTerms(List<Match> matches, int first, int last) {
+    Set<String> distinct = new HashSet<>();
+    for (int i = first; i <= last; i++) {
+      distinct.add(matches.get(i).term);
+    }
+    return distinct.size();
+  }
+
+  /** Token of highlighted text matching the query. */
+  private static class Match {
+    private final int start;
+    private final int end;
+    private final String term;
+
+    private Match(int start, int end, String term) {
+      this.start = start;
+      this.end = end;
+      this.term = term;
+    }
+  }
+}
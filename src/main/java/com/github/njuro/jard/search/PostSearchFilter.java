@@ -0,0 +1,41 @@
+package com.github.njuro.jard.search;
+
+import com.github.njuro.jard.board.Board;
+import com.github.njuro.jard.thread.Thread;
+import java.time.OffsetDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+/**
+ * Optional filters narrowing search of posts via {@link SearchFacade}. Unset filters are ignored.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@SuppressWarnings("JavadocReference")
+public class PostSearchFilter {
+
+  /** {@link Board#label} of board the posts belong to. */
+  private String boardLabel;
+
+  /**
+   * {@link Thread#getThreadNumber()} of thread the posts belong to. Thread numbers are unique only
+   * within single board, so it can be used only together with {@link #boardLabel}.
+   */
+  private Long threadNumber;
+
+  /** Posts created at or after this time. */
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  private OffsetDateTime createdAfter;
+
+  /** Posts created at or before this time. */
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  private OffsetDateTime createdBefore;
+
+  /** Whether the posts have attachment. */
+  private Boolean withAttachment;
+}
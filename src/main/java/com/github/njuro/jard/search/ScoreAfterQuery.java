@@ -0,0 +1,153 @@
+package com.github.njuro.jard.search;
+
+import java.io.IOException;
+import java.util.Objects;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FilterWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Lucene query matching only documents, which are ordered after given position in results of
+ * wrapped query sorted by relevance. Documents are ordered by their score (descending) and then by
+ * their ID (ascending), the same way Lucene orders results sorted by relevance, so the next page of
+ * results is the top of results of this query and skipped results are never collected.
+ *
+ * <p>Positions are stable as long as the index does not change. When documents are added or removed
+ * between pages, scores of the following results may change slightly.
+ */
+class ScoreAfterQuery extends Query {
+
+  private final Query query;
+  private final SearchPageToken after;
+
+  /**
+   * @param query query to continue results of
+   * @param after position of the last result of previous page
+   */
+  ScoreAfterQuery(Query query, SearchPageToken after) {
+    this.query = Objects.requireNonNull(query);
+    this.after = Objects.requireNonNull(after);
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost)
+      throws IOException {
+    // scores are needed for matching, even when caller does not need them
+    var weight =
+        query.createWeight(
+            searcher, scoreMode.needsScores() ? scoreMode : ScoreMode.COMPLETE, boost);
+
+    return new FilterWeight(this, weight) {
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        var scorer = in.scorer(context);
+        return scorer != null ? new ScoreAfterScorer(scorer, this, context.docBase) : null;
+      }
+    };
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    var rewritten = query.rewrite(reader);
+    return rewritten != query ? new ScoreAfterQuery(rewritten, after) : this;
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    query.visit(visitor.getSubVisitor(BooleanClause.Occur.MUST, this));
+  }
+
+  @Override
+  public String toString(String field) {
+    return "ScoreAfter(" + query.toString(field) + ", " + after + ")";
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return sameClassAs(other)
+        && query.equals(((ScoreAfterQuery) other).query)
+        && after.equals(((ScoreAfterQuery) other).after);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(classHash(), query, after);
+  }
+
+  /** Scorer skipping documents of wrapped scorer, which are not after the position. */
+  private class ScoreAfterScorer extends Scorer {
+
+    private final Scorer in;
+    private final TwoPhaseIterator twoPhaseIterator;
+    private final DocIdSetIterator iterator;
+
+    private ScoreAfterScorer(Scorer scorer, Weight weight, int docBase) {
+      super(weight);
+      in = scorer;
+      var inner = scorer.twoPhaseIterator();
+      var approximation = inner != null ? inner.approximation() : scorer.iterator();
+      twoPhaseIterator =
+          new TwoPhaseIterator(approximation) {
+            @Override
+            public boolean matches() throws IOException {
+              if (inner != null && !inner.matches()) {
+                return false;
+              }
+              float score = scorer.score();
+              return score < after.getScore()
+                  || (score == after.getScore() && docBase + scorer.docID() > after.getDoc());
+            }
+
+            @Override
+            public float matchCost() {
+              return inner != null ? inner.matchCost() + 1 : 1;
+            }
+          };
+      iterator = TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator);
+    }
+
+    @Override
+    public float score() throws IOException {
+      return in.score();
+    }
+
+    @Override
+    public int docID() {
+      return in.docID();
+    }
+
+    @Override
+    public DocIdSetIterator iterator() {
+      return iterator;
+    }
+
+    @Override
+    public TwoPhaseIterator twoPhaseIterator() {
+      return twoPhaseIterator;
+    }
+
+    @Override
+    public float getMaxScore(int upTo) throws IOException {
+      return in.getMaxScore(upTo);
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return in.advanceShallow(target);
+    }
+
+    @Override
+    public void setMinCompetitiveScore(float minScore) throws IOException {
+      in.setMinCompetitiveScore(minScore);
+    }
+  }
+}
@@ -1,27 +1,72 @@
 package com.github.njuro.jard.search;
 
 import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.post.LocatedPost;
 import com.github.njuro.jard.post.Post;
 import com.github.njuro.jard.post.PostMapper;
+import com.github.njuro.jard.post.PostService;
 import com.github.njuro.jard.post.Post_;
 import com.github.njuro.jard.post.dto.PostDto;
 import com.github.njuro.jard.search.dto.SearchResultsDto;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import lombok.Value;
+import org.hibernate.search.engine.search.common.ValueConvert;
+import org.hibernate.search.engine.search.projection.dsl.ProjectionFinalStep;
+import org.hibernate.search.engine.search.projection.dsl.SearchProjectionFactory;
+import org.hibernate.search.mapper.orm.common.EntityReference;
+import org.hibernate.search.util.common.data.Range;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class SearchFacade {
 
+  /** Indexed field with label of board of post, see {@link Post#getBoardLabel()}. */
+  private static final String BOARD_LABEL_FIELD = "boardLabel";
+
+  /** Indexed field with number of thread of post, see {@link Post#getThreadNumber()}. */
+  private static final String THREAD_NUMBER_FIELD = "threadNumber";
+
+  /** Indexed field with presence of attachment of post, see {@link Post#isWithAttachment()}. */
+  private static final String WITH_ATTACHMENT_FIELD = "withAttachment";
+
+  /** Indexed offsets of tokens of body of post, see {@link TokenOffsetsBridge}. */
+  private static final String BODY_OFFSETS_FIELD = "bodyOffsets";
+
   private final SearchService searchService;
+  private final PostService postService;
   private final PostMapper postMapper;
 
+  /**
+   * Free slots for running searches. Searches are rejected before they open a transaction, so
+   * excessive searches never hold database connections or search threads.
+   */
+  private final Semaphore searchSlots;
+
   @Autowired
   public SearchFacade(
-      @Autowired(required = false) SearchService searchService, PostMapper postMapper) {
+      @Autowired(required = false) SearchService searchService,
+      PostService postService,
+      PostMapper postMapper) {
+    this(searchService, postService, postMapper, Constants.MAX_CONCURRENT_SEARCHES);
+  }
+
+  SearchFacade(
+      SearchService searchService,
+      PostService postService,
+      PostMapper postMapper,
+      int maxConcurrentSearches) {
     this.searchService = searchService;
+    this.postService = postService;
     this.postMapper = postMapper;
+    searchSlots = new Semaphore(maxConcurrentSearches);
   }
 
   /**
@@ -40,39 +85,119 @@ public class SearchFacade {
   }
 
   /**
-   * Searches across all posts.
+   * Searches across all posts. Only posts on the requested page of results are loaded from
+   * database, in single query together with their attachments. Offsets of tokens for highlighting
+   * are retrieved from the index.
    *
    * @param query user query to search by
-   * @return list of matched posts for given query with highlighted matches, ordered by relevance
-   *     (top {@link com.github.njuro.jard.common.Constants.MAX_SEARCH_RESULTS_COUNT} results)
+   * @param filter filters narrowing the search (thread number only together with board label)
+   * @param pageToken (optional) token of page of results to return, obtained from {@link
+   *     SearchResultsDto#getNextPageToken()} of previous search with the same query and filters
+   * @param pageSize maximal number of results to return (at most {@link
+   *     com.github.njuro.jard.common.Constants.MAX_SEARCH_RESULTS_COUNT})
+   * @return page of matched posts for given query with highlighted matches, ordered by relevance
+   * @throws SearchRejectedException if {@link
+   *     com.github.njuro.jard.common.Constants.MAX_CONCURRENT_SEARCHES} searches are already
+   *     running
+   * @throws SearchTimeoutException if the search takes too long
+   * @throws InvalidSearchPageTokenException if page token is not valid
+   * @throws InvalidSearchFilterException if thread number is filtered without board label
    * @see SearchResultsDto
    */
   @SuppressWarnings("JavadocReference")
-  public SearchResultsDto<PostDto> searchPosts(String query) {
+  public SearchResultsDto<PostDto> searchPosts(
+      String query, PostSearchFilter filter, String pageToken, int pageSize) {
+    if (filter.getThreadNumber() != null && filter.getBoardLabel() == null) {
+      // thread numbers are unique only within single board
+      throw new InvalidSearchFilterException();
+    }
+    if (!searchSlots.tryAcquire()) {
+      throw new SearchRejectedException();
+    }
+
+    try {
+      return doSearchPosts(query, filter, pageToken, pageSize);
+    } finally {
+      searchSlots.release();
+    }
+  }
+
+  private SearchResultsDto<PostDto> doSearchPosts(
+      String query, PostSearchFilter filter, String pageToken, int pageSize) {
+    Map<String, Object> filters = new HashMap<>();
+    if (filter.getBoardLabel() != null) {
+      filters.put(BOARD_LABEL_FIELD, filter.getBoardLabel());
+    }
+    if (filter.getThreadNumber() != null) {
+      filters.put(THREAD_NUMBER_FIELD, filter.getThreadNumber());
+    }
+    if (filter.getWithAttachment() != null) {
+      filters.put(WITH_ATTACHMENT_FIELD, filter.getWithAttachment());
+    }
+    Map<String, Range<?>> rangeFilters = new HashMap<>();
+    if (filter.getCreatedAfter() != null || filter.getCreatedBefore() != null) {
+      rangeFilters.put(
+          Post_.CREATED_AT, Range.between(filter.getCreatedAfter(), filter.getCreatedBefore()));
+    }
+
     var searchSpecification =
         SearchSpecification.<Post>builder()
             .entityClass(Post.class)
             .query(query)
             .primaryField(Post_.BODY)
             .additionalFields(Set.of(Post_.NAME, Post_.TRIPCODE))
-            .analyzerName(Constants.POST_ANALYZER)
+            .filters(filters)
+            .rangeFilters(rangeFilters)
+            .pageToken(pageToken)
+            .pageSize(Math.max(0, Math.min(pageSize, Constants.MAX_SEARCH_RESULTS_COUNT)))
             .build();
-    SearchResults<Post> searchResults = searchService.search(searchSpecification);
-
-    List<PostDto> posts = postMapper.toDtoList(searchResults.getEntityList());
-    posts.forEach(
-        post ->
-            post.setBody(
-                searchService.getHighlightedSearchResult(
-                    searchResults.getHighlighter(),
-                    searchResults.getAnalyzer(),
-                    Post_.BODY,
-                    post.getBody())));
+    SearchResults<PostHit> searchResults =
+        searchService.search(searchSpecification, this::projectPost);
+
+    Map<UUID, LocatedPost> located =
+        postService.getLocatedPosts(
+            searchResults.getResultList().stream()
+                .map(PostHit::getPostId)
+                .collect(Collectors.toList()));
+
+    var highlighter = searchResults.getHighlighter();
+    List<PostDto> posts = new ArrayList<>();
+    for (PostHit hit : searchResults.getResultList()) {
+      if (!located.containsKey(hit.getPostId())) {
+        continue; // deleted after it was indexed
+      }
+      var post = postMapper.toDto(located.get(hit.getPostId()));
+      post.setBody(highlighter.highlight(post.getBody(), hit.getBodyOffsets()));
+      posts.add(post);
+    }
 
     return SearchResultsDto.<PostDto>builder()
         .resultList(posts)
         .resultsCount(posts.size())
         .totalResultsCount(searchResults.getTotalResultsCount())
+        .totalResultsCountExact(searchResults.isTotalResultsCountExact())
+        .nextPageToken(searchResults.getNextPageToken())
         .build();
   }
+
+  /**
+   * Projects ID of matched post together with offsets of tokens of its body, for highlighting. Both
+   * are retrieved from the index, the posts themselves are loaded afterwards for whole page at
+   * once.
+   */
+  private ProjectionFinalStep<PostHit> projectPost(
+      SearchProjectionFactory<EntityReference, Post> factory) {
+    return factory.composite(
+        (EntityReference reference, String bodyOffsets) ->
+            new PostHit((UUID) reference.id(), bodyOffsets),
+        factory.entityReference(),
+        factory.field(BODY_OFFSETS_FIELD, String.class, ValueConvert.NO));
+  }
+
+  /** ID of matched post together with offsets of tokens of its body. */
+  @Value
+  private static class PostHit {
+    UUID postId;
+    String bodyOffsets;
+  }
 }
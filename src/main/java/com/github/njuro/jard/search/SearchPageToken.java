@@ -0,0 +1,61 @@
+package com.github.njuro.jard.search;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import lombok.Value;
+import org.apache.lucene.search.ScoreDoc;
+
+/**
+ * Position of the last result of page of search results, from which the next page continues. The
+ * position is encoded into opaque token, which is handed to the client.
+ *
+ * @see ScoreAfterQuery
+ */
+@Value
+class SearchPageToken {
+
+  /** Relevance score of the last result. */
+  float score;
+
+  /** Lucene document ID of the last result, which orders results with equal score. */
+  int doc;
+
+  /**
+   * @param scoreDoc last result of the page
+   * @return position after given result
+   */
+  static SearchPageToken after(ScoreDoc scoreDoc) {
+    return new SearchPageToken(scoreDoc.score, scoreDoc.doc);
+  }
+
+  /**
+   * @param token token created by {@link #encode()}
+   * @return decoded position
+   * @throws InvalidSearchPageTokenException if given token is not valid
+   */
+  static SearchPageToken decode(String token) {
+    byte[] bytes;
+    try {
+      bytes = Base64.getUrlDecoder().decode(token);
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidSearchPageTokenException();
+    }
+    if (bytes.length != Float.BYTES + Integer.BYTES) {
+      throw new InvalidSearchPageTokenException();
+    }
+
+    var buffer = ByteBuffer.wrap(bytes);
+    float score = buffer.getFloat();
+    int doc = buffer.getInt();
+    if (!Float.isFinite(score) || doc < 0) {
+      throw new InvalidSearchPageTokenException();
+    }
+    return new SearchPageToken(score, doc);
+  }
+
+  /** @return this position encoded as URL-safe token */
+  String encode() {
+    var buffer = ByteBuffer.allocate(Float.BYTES + Integer.BYTES).putFloat(score).putInt(doc);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.njuro.jard.search;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception to be thrown when search cannot be started, because {@link
+ * com.github.njuro.jard.common.Constants#MAX_CONCURRENT_SEARCHES} searches are already running.
+ *
+ * <p>Set 429 HTTP status.
+ */
+@ResponseStatus(
+    code = HttpStatus.TOO_MANY_REQUESTS,
+    reason = "Too many searches are running, try again later")
+public class SearchRejectedException extends RuntimeException {
+
+  private static final long serialVersionUID = 7305268114725367414L;
+}
@@ -5,6 +5,8 @@ import com.github.njuro.jard.config.security.methods.HasAuthorities;
 import com.github.njuro.jard.post.dto.PostDto;
 import com.github.njuro.jard.search.dto.SearchResultsDto;
 import com.github.njuro.jard.user.UserAuthority;
+import com.github.njuro.jard.utils.SensitiveDataFilter;
+import com.jfilter.filter.DynamicFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -32,7 +34,12 @@ public class SearchRestController {
   }
 
   @GetMapping
-  public SearchResultsDto<PostDto> searchPosts(@RequestParam(name = "query") String query) {
-    return searchFacade.searchPosts(query);
+  @DynamicFilter(SensitiveDataFilter.class)
+  public SearchResultsDto<PostDto> searchPosts(
+      @RequestParam(name = "query") String query,
+      PostSearchFilter filter,
+      @RequestParam(name = "pageToken", required = false) String pageToken,
+      @RequestParam(name = "pageSize", required = false, defaultValue = "50") int pageSize) {
+    return searchFacade.searchPosts(query, filter, pageToken, pageSize);
   }
 }
@@ -1,30 +1,40 @@
 package com.github.njuro.jard.search;
 
-import com.github.njuro.jard.base.BaseEntity;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.search.highlight.Highlighter;
 
 /** Result of searching via {@link SearchService}. */
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class SearchResults<T extends BaseEntity> {
+public class SearchResults<T> {
 
-  /** List of entities matched by given query. */
-  private List<T> entityList;
+  /** List of entities matched by given query, converted while the search session was still open. */
+  private List<T> resultList;
 
-  /** Total results found for given query (can be higher than size of {@link #entityList}. */
+  /**
+   * Total results found for given query (can be higher than size of {@link #resultList}. When
+   * continuing from page token, only results after the token are counted.
+   */
   private long totalResultsCount;
 
-  /** Lucene {@link Analyzer} for this search. */
-  private Analyzer analyzer;
+  /**
+   * Whether {@link #totalResultsCount} is exact. Counting of results stops after {@link
+   * com.github.njuro.jard.common.Constants#SEARCH_TOTAL_RESULTS_THRESHOLD}, then the count is only
+   * a lower bound.
+   */
+  private boolean totalResultsCountExact;
 
-  /** Lucene {@link Highlighter} for this search. */
-  private Highlighter highlighter;
+  /**
+   * Token of the next page of results, to be set in {@link SearchSpecification#getPageToken()}, or
+   * {@code null} if this is the last page.
+   */
+  private String nextPageToken;
+
+  /** Highlighter of searched terms in primary field of {@link #resultList}. */
+  private OffsetHighlighter highlighter;
 }
@@ -2,16 +2,20 @@ package com.github.njuro.jard.search;
 
 import com.github.njuro.jard.base.BaseEntity;
 import com.github.njuro.jard.common.Constants;
-import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.search.highlight.*;
-import org.hibernate.search.backend.lucene.LuceneBackend;
+import org.hibernate.search.backend.lucene.LuceneExtension;
+import org.hibernate.search.backend.lucene.search.query.LuceneSearchResult;
 import org.hibernate.search.backend.lucene.search.spi.LuceneMigrationUtils;
 import org.hibernate.search.engine.search.predicate.SearchPredicate;
+import org.hibernate.search.engine.search.projection.dsl.ProjectionFinalStep;
+import org.hibernate.search.engine.search.projection.dsl.SearchProjectionFactory;
 import org.hibernate.search.mapper.orm.Search;
-import org.hibernate.search.mapper.orm.session.SearchSession;
+import org.hibernate.search.mapper.orm.common.EntityReference;
+import org.hibernate.search.mapper.orm.scope.SearchScope;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -25,15 +29,15 @@ import org.springframework.transaction.annotation.Transactional;
     havingValue = "true")
 public class SearchService {
 
-  private final SearchSession searchSession;
-  private final Formatter highlightFormatter;
+  /** Shared entity manager, which delegates to the one bound to current transaction. */
+  private final EntityManager entityManager;
+
+  private final EntityManagerFactory entityManagerFactory;
 
   @Autowired
-  public SearchService(EntityManagerFactory entityManagerFactory) {
-    searchSession = Search.session(entityManagerFactory.createEntityManager());
-    highlightFormatter =
-        new SimpleHTMLFormatter(
-            Constants.SEARCH_RESULT_HIGHLIGHT_START, Constants.SEARCH_RESULT_HIGHLIGHT_END);
+  public SearchService(EntityManager entityManager, EntityManagerFactory entityManagerFactory) {
+    this.entityManager = entityManager;
+    this.entityManagerFactory = entityManagerFactory;
   }
 
   /**
@@ -43,59 +47,73 @@ public class SearchService {
    */
   @PostConstruct
   public void rebuildIndexes() throws InterruptedException {
-    searchSession.massIndexer().startAndWait();
+    Search.mapping(entityManagerFactory).scope(Object.class).massIndexer().startAndWait();
   }
 
   /**
-   * Searches in entities annotated by {@link Indexed}.
+   * Searches in entities annotated by {@link Indexed}. Only what given projection selects is
+   * retrieved - indexed fields are read from the index, matched entities (if selected) are loaded
+   * from database in batches and can be converted by the projection while the session is open.
+   *
+   * <p>Results are returned in pages ordered by their relevance. Next page continues after the last
+   * result of previous page, so deep pages are as cheap as the first one.
+   *
+   * <p>Search which takes longer than {@link Constants#SEARCH_TIMEOUT} is aborted. Counting of
+   * matched entities stops after {@link Constants#SEARCH_TOTAL_RESULTS_THRESHOLD}.
    *
    * @param specification for this search
-   * @return search results for given query ordered by their relevance (top 50 results)
+   * @param projection projection of matched entities or their indexed fields (for example to DTOs)
+   * @return page of search results for given query ordered by their relevance
+   * @throws SearchTimeoutException if the search takes too long
+   * @throws InvalidSearchPageTokenException if page token of given specification is not valid
    * @see SearchSpecification
    * @see SearchResults
    */
-  public <T extends BaseEntity> SearchResults<T> search(SearchSpecification<T> specification) {
+  @Transactional(readOnly = true)
+  public <T extends BaseEntity, R> SearchResults<R> search(
+      SearchSpecification<T> specification,
+      Function<SearchProjectionFactory<EntityReference, T>, ? extends ProjectionFinalStep<R>>
+          projection) {
+    var searchSession = Search.session(entityManager);
+    var scope = searchSession.scope(specification.getEntityClass());
+    var textPredicate = getTextPredicate(scope, specification);
+    var predicate = getPredicate(scope, specification, textPredicate);
+    LuceneSearchResult<R> results;
+    try {
+      results =
+          searchSession
+              .search(scope)
+              .extension(LuceneExtension.get())
+              .select(projection::apply)
+              .where(predicate)
+              .failAfter(Constants.SEARCH_TIMEOUT, TimeUnit.MILLISECONDS)
+              .totalHitCountThreshold(Constants.SEARCH_TOTAL_RESULTS_THRESHOLD)
+              .fetch(specification.getPageSize());
+    } catch (org.hibernate.search.util.common.SearchTimeoutException ex) {
+      throw new SearchTimeoutException(ex);
+    }
 
-    var predicate = getPredicate(specification);
-    var results =
-        searchSession
-            .search(specification.getEntityClass())
-            .where(factory -> factory.bool(clause -> clause.must(predicate)))
-            .fetch(Constants.MAX_SEARCH_RESULTS_COUNT);
+    String nextPageToken = null;
+    var scoreDocs = results.topDocs().scoreDocs;
+    if (specification.getPageSize() > 0 && scoreDocs.length == specification.getPageSize()) {
+      nextPageToken = SearchPageToken.after(scoreDocs[scoreDocs.length - 1]).encode();
+    }
 
-    return SearchResults.<T>builder()
-        .entityList(results.hits())
-        .totalResultsCount(results.total().hitCount())
-        .analyzer(getAnalyzer(specification.getAnalyzerName()))
-        .highlighter(getHighlighter(predicate))
+    return SearchResults.<R>builder()
+        .resultList(results.hits())
+        .totalResultsCount(results.total().hitCountLowerBound())
+        .totalResultsCountExact(results.total().isHitCountExact())
+        .nextPageToken(nextPageToken)
+        .highlighter(
+            new OffsetHighlighter(
+                LuceneMigrationUtils.toLuceneQuery(textPredicate), specification.getPrimaryField()))
         .build();
   }
 
-  /**
-   * Marks searched term(s) in given text. Highlighter and Analyzer should be obtained from {@link
-   * SearchResults}.
-   *
-   * @param highlighter {@link Highlighter} to use
-   * @param analyzer {@link Analyzer} to user
-   * @param fieldName field of entity to highlight
-   * @param originalContent original content of entity field
-   * @return source with marked searched terms
-   * @throws IllegalArgumentException if highlighting process fails
-   */
-  public String getHighlightedSearchResult(
-      Highlighter highlighter, Analyzer analyzer, String fieldName, String originalContent) {
-    try {
-      String highlighted = highlighter.getBestFragment(analyzer, fieldName, originalContent);
-      return highlighted != null ? highlighted : originalContent;
-    } catch (IOException | InvalidTokenOffsetsException ex) {
-      throw new IllegalArgumentException("Failed to highlight results", ex);
-    }
-  }
-
-  private <T extends BaseEntity> SearchPredicate getPredicate(
-      SearchSpecification<T> specification) {
-    var predicateFactory = searchSession.scope(specification.getEntityClass()).predicate();
-    return predicateFactory
+  private <T extends BaseEntity> SearchPredicate getTextPredicate(
+      SearchScope<T> scope, SearchSpecification<T> specification) {
+    return scope
+        .predicate()
         .simpleQueryString()
         .field(specification.getPrimaryField())
         .boost(2f)
@@ -104,19 +122,38 @@ public class SearchService {
         .toPredicate();
   }
 
-  private Analyzer getAnalyzer(String analyzerName) {
-    return Search.mapping(searchSession.toEntityManager().getEntityManagerFactory())
-        .backend()
-        .unwrap(LuceneBackend.class)
-        .analyzer(analyzerName)
-        .orElseThrow(
-            () ->
-                new IllegalStateException(
-                    String.format("Analyzer %s is not defined", analyzerName)));
-  }
+  /**
+   * Combines text predicate with filters of given specification. When page token is set, the
+   * predicate matches only results after it.
+   */
+  private <T extends BaseEntity> SearchPredicate getPredicate(
+      SearchScope<T> scope, SearchSpecification<T> specification, SearchPredicate textPredicate) {
+    var predicateFactory = scope.predicate();
+    var predicate =
+        predicateFactory
+            .bool(
+                clause -> {
+                  clause.must(textPredicate);
+                  specification
+                      .getFilters()
+                      .forEach(
+                          (field, value) ->
+                              clause.filter(predicateFactory.match().field(field).matching(value)));
+                  specification
+                      .getRangeFilters()
+                      .forEach(
+                          (field, range) ->
+                              clause.filter(predicateFactory.range().field(field).range(range)));
+                })
+            .toPredicate();
+    if (specification.getPageToken() == null) {
+      return predicate;
+    }
 
-  private Highlighter getHighlighter(SearchPredicate predicate) {
-    var queryScorer = new QueryScorer(LuceneMigrationUtils.toLuceneQuery(predicate));
-    return new Highlighter(highlightFormatter, queryScorer);
+    var after = SearchPageToken.decode(specification.getPageToken());
+    return predicateFactory
+        .extension(LuceneExtension.get())
+        .fromLuceneQuery(new ScoreAfterQuery(LuceneMigrationUtils.toLuceneQuery(predicate), after))
+        .toPredicate();
   }
 }
@@ -1,11 +1,13 @@
 package com.github.njuro.jard.search;
 
 import com.github.njuro.jard.base.BaseEntity;
+import java.util.Map;
 import java.util.Set;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.search.util.common.data.Range;
 
 /** Query for searching via {@link SearchService} */
 @Getter
@@ -20,12 +22,34 @@ public class SearchSpecification<T extends BaseEntity> {
   /** Class of entity to search. */
   private Class<T> entityClass;
 
-  /** Name of Hibernate Search analyzer to use. */
-  private String analyzerName;
-
-  /** Primary field on which search should be conducted. */
+  /** Primary field on which search should be conducted. Matches in it are highlighted. */
   private String primaryField;
 
   /** Optional additional fields on which search should be conducted. */
   private Set<String> additionalFields;
+
+  /**
+   * Optional values, which indexed fields of matched entities must be equal to, mapped by name of
+   * the field. Filters do not affect relevance of matched entities.
+   */
+  @Builder.Default private Map<String, Object> filters = Map.of();
+
+  /**
+   * Optional ranges, in which indexed fields of matched entities must be, mapped by name of the
+   * field. Filters do not affect relevance of matched entities.
+   */
+  @Builder.Default private Map<String, Range<?>> rangeFilters = Map.of();
+
+  /**
+   * (Optional) token of page of results to return, obtained from {@link
+   * SearchResults#getNextPageToken()} of previous search with the same specification. First page is
+   * returned when not set.
+   */
+  private String pageToken;
+
+  /**
+   * Maximal number of results to return. Must be equal or smaller than {@link
+   * com.github.njuro.jard.common.Constants#MAX_SEARCH_RESULTS_COUNT}.
+   */
+  private int pageSize;
 }
@@ -0,0 +1,22 @@
+package com.github.njuro.jard.search;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception to be thrown when search takes longer than {@link
+ * com.github.njuro.jard.common.Constants#SEARCH_TIMEOUT} and is aborted.
+ *
+ * <p>Set 503 HTTP status.
+ */
+@ResponseStatus(
+    code = HttpStatus.SERVICE_UNAVAILABLE,
+    reason = "Search took too long, try more specific query")
+public class SearchTimeoutException extends RuntimeException {
+
+  private static final long serialVersionUID = -2369108215380165231L;
+
+  public SearchTimeoutException(Throwable cause) {
+    super(cause);
+  }
+}
@@ -0,0 +1,46 @@
+package com.github.njuro.jard.search;
+
+import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.post.Post_;
+import org.apache.lucene.analysis.Analyzer;
+import org.hibernate.search.backend.lucene.LuceneBackend;
+import org.hibernate.search.mapper.orm.HibernateOrmExtension;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.pojo.bridge.ValueBridge;
+import org.hibernate.search.mapper.pojo.bridge.runtime.ValueBridgeToIndexedValueContext;
+
+/**
+ * Bridge indexing offsets of tokens of text analyzed by {@link Constants#POST_ANALYZER}, so the
+ * text can be highlighted by {@link OffsetHighlighter} without analyzing it again. Offsets should
+ * be indexed only as projectable field.
+ */
+public class TokenOffsetsBridge implements ValueBridge<String, String> {
+
+  /** Analyzer of the text, resolved when the first text is indexed. */
+  private volatile Analyzer analyzer;
+
+  @Override
+  public String toIndexedValue(String value, ValueBridgeToIndexedValueContext context) {
+    if (value == null) {
+      return null;
+    }
+
+    return OffsetHighlighter.encodeOffsets(getAnalyzer(context), Post_.BODY, value);
+  }
+
+  private Analyzer getAnalyzer(ValueBridgeToIndexedValueContext context) {
+    if (analyzer == null) {
+      var sessionFactory = context.extension(HibernateOrmExtension.get()).sessionFactory();
+      analyzer =
+          Search.mapping(sessionFactory)
+              .backend()
+              .unwrap(LuceneBackend.class)
+              .analyzer(Constants.POST_ANALYZER)
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          String.format("Analyzer %s is not defined", Constants.POST_ANALYZER)));
+    }
+    return analyzer;
+  }
+}
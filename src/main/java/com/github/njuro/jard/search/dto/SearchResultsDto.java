@@ -27,4 +27,10 @@ public class SearchResultsDto<T extends BaseDto> {
 
   /** Total matches for given query (can be higher than {@link #resultsCount} */
   private long totalResultsCount;
+
+  /** Whether {@link #totalResultsCount} is exact, or only a lower bound of total matches. */
+  private boolean totalResultsCountExact;
+
+  /** Token of the next page of results, or {@code null} if this is the last page. */
+  private String nextPageToken;
 }
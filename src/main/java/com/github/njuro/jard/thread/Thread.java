@@ -57,14 +57,12 @@ public class Thread extends BaseEntity {
   private Post originalPost;
 
   /**
-   * Calculated statistics for this thread.
+   * Statistics for this thread, maintained as posts are added to or removed from it.
    *
    * @see ThreadStatistics
    */
-  @SuppressWarnings("JpaDataSourceORMInspection")
-  @OneToOne(fetch = FetchType.LAZY)
+  @OneToOne(cascade = CascadeType.ALL, mappedBy = "thread", fetch = FetchType.LAZY)
   @Fetch(FetchMode.JOIN)
-  @JoinColumn(name = "id", referencedColumnName = "thread_id")
   private ThreadStatistics statistics;
 
   /** Before inserting to database, set creation date to current date and time. */
@@ -11,21 +11,27 @@ import com.github.njuro.jard.config.security.captcha.CaptchaVerificationResult;
 import com.github.njuro.jard.post.HashGenerationUtils;
 import com.github.njuro.jard.post.Post;
 import com.github.njuro.jard.post.PostFacade;
+import com.github.njuro.jard.post.PostMapper;
 import com.github.njuro.jard.post.PostService;
 import com.github.njuro.jard.post.dto.PostDto;
 import com.github.njuro.jard.post.dto.PostForm;
 import com.github.njuro.jard.thread.dto.ThreadDto;
 import com.github.njuro.jard.thread.dto.ThreadForm;
+import com.github.njuro.jard.user.UserAuthority;
+import com.github.njuro.jard.user.UserFacade;
 import com.github.njuro.jard.utils.validation.PropertyValidationException;
 import java.io.IOException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Component
 @Slf4j
@@ -36,18 +42,29 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
 
   private final ThreadService threadService;
 
+  private final PostMapper postMapper;
+
   private final CaptchaProvider captchaProvider;
 
+  private final ThreadUpdateHub threadUpdateHub;
+  private final UserFacade userFacade;
+
   @Autowired
   public ThreadFacade(
       ThreadService threadService,
       PostFacade postFacade,
       BanFacade banFacade,
-      CaptchaProvider captchaProvider) {
+      PostMapper postMapper,
+      CaptchaProvider captchaProvider,
+      ThreadUpdateHub threadUpdateHub,
+      UserFacade userFacade) {
     this.threadService = threadService;
     this.postFacade = postFacade;
     this.banFacade = banFacade;
+    this.postMapper = postMapper;
     this.captchaProvider = captchaProvider;
+    this.threadUpdateHub = threadUpdateHub;
+    this.userFacade = userFacade;
   }
 
   /**
@@ -80,7 +97,9 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
     if (threadService.getNumberOfThreadsOnBoard(board.getId())
         >= board.getSettings().getThreadLimit()) {
       try {
-        threadService.deleteStalestThread(board.getId());
+        threadService
+            .deleteStalestThread(board.getId())
+            .ifPresent(stalest -> threadUpdateHub.publishDeletedThread(stalest.getId()));
       } catch (IOException ex) {
         log.error("Failed to delete stalest thread", ex);
       }
@@ -127,12 +146,14 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
 
     updateLastReplyTimestamp(thread);
     if (!post.isSage()
-        && postFacade.getNumberOfPostsInThread(thread)
+        && threadService.getNumberOfRepliesInThread(thread.getId()) + 1
             <= thread.getBoard().getSettings().getBumpLimit()) {
       updateLastBumpTimestamp(thread);
     }
 
-    return postFacade.savePost(post);
+    PostDto savedPost = postFacade.savePost(post);
+    threadUpdateHub.publishNewReply(thread.getId(), savedPost);
+    return savedPost;
   }
 
   /** {@link ThreadService#resolveThread(String, Long)} */
@@ -141,7 +162,7 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
   }
 
   /**
-   * Retrieves and set all replies to given thread.
+   * Retrieves and set all replies to given thread, along with backlinks of all its posts.
    *
    * @param thread to get replies to
    * @return thread with its replies set
@@ -149,6 +170,7 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
   public ThreadDto getThread(ThreadDto thread) {
     List<PostDto> replies = postFacade.getAllRepliesForThread(thread);
     thread.setReplies(replies);
+    setBacklinks(List.of(thread));
     return thread;
   }
 
@@ -162,9 +184,64 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
     return toDtoList(threadService.getThreadsFromBoard(board.getId(), pagination));
   }
 
-  /** {@link PostService#getNewRepliesForThreadSince(UUID, Long)} */
+  /**
+   * Retrieves (sub)collection of threads from given board, each with set up to 5 most recent
+   * replies. Backlinks of all included posts are set as well.
+   *
+   * @see ThreadService#getThreadsWithLatestRepliesFromBoard(UUID, Pageable)
+   */
+  public List<ThreadDto> getThreadsWithLatestRepliesFromBoard(BoardDto board, Pageable pagination) {
+    List<ThreadDto> threads =
+        threadService.getThreadsWithLatestRepliesFromBoard(board.getId(), pagination).entrySet()
+            .stream()
+            .map(
+                entry -> {
+                  ThreadDto thread = toDto(entry.getKey());
+                  thread.setReplies(postMapper.toDtoList(entry.getValue()));
+                  return thread;
+                })
+            .collect(Collectors.toList());
+    setBacklinks(threads);
+    return threads;
+  }
+
+  /**
+   * {@link PostService#getNewRepliesForThreadSince(UUID, Long)}. Backlinks of the replies are set
+   * as well.
+   */
   public List<PostDto> getNewReplies(ThreadDto thread, Long lastPostNumber) {
-    return postFacade.getNewRepliesForThreadSince(thread, lastPostNumber);
+    List<PostDto> replies = postFacade.getNewRepliesForThreadSince(thread, lastPostNumber);
+    postFacade.setBacklinks(replies);
+    return replies;
+  }
+
+  /**
+   * Sets backlinks of original posts and replies of given threads using single lookup.
+   *
+   * @param threads threads to set backlinks for
+   */
+  private void setBacklinks(List<ThreadDto> threads) {
+    List<PostDto> posts = new ArrayList<>();
+    for (ThreadDto thread : threads) {
+      posts.add(thread.getOriginalPost());
+      if (thread.getReplies() != null) {
+        posts.addAll(thread.getReplies());
+      }
+    }
+    postFacade.setBacklinks(posts);
+  }
+
+  /**
+   * Subscribes current user to updates (new replies, deleted posts) of given thread. IP addresses
+   * of posters are included only if current user is authorized to view them.
+   *
+   * @param thread thread to subscribe to
+   * @return emitter streaming the updates
+   * @see ThreadUpdateHub
+   */
+  public SseEmitter subscribeToThreadUpdates(ThreadDto thread) {
+    return threadUpdateHub.subscribe(
+        thread.getId(), userFacade.hasCurrentUserAuthority(UserAuthority.VIEW_IP));
   }
 
   /**
@@ -220,6 +297,7 @@ public class ThreadFacade extends BaseFacade<Thread, ThreadDto> {
     if (post.isOriginalPost()) {
       // delete whole thread
       threadService.deleteThread(toEntity(thread));
+      threadUpdateHub.publishDeletedThread(thread.getId());
     } else {
       // delete post
       postFacade.deletePost(post);
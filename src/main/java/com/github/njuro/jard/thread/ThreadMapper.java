@@ -6,7 +6,6 @@ import com.github.njuro.jard.board.BoardMapper;
 import com.github.njuro.jard.thread.Thread.ThreadBuilder;
 import com.github.njuro.jard.thread.dto.ThreadDto;
 import com.github.njuro.jard.thread.dto.ThreadDto.ThreadDtoBuilder;
-import com.github.njuro.jard.thread.dto.ThreadStatisticsDto;
 import org.mapstruct.AfterMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -19,6 +18,7 @@ public interface ThreadMapper extends BaseMapper<Thread, ThreadDto> {
 
   @Override
   @Mapping(target = "originalPost.thread", ignore = true)
+  @Mapping(target = "statistics", ignore = true)
   Thread toEntity(ThreadDto thread);
 
   @Override
@@ -28,6 +28,7 @@ public interface ThreadMapper extends BaseMapper<Thread, ThreadDto> {
 
   @Override
   @Mapping(target = "originalPost.thread", ignore = true)
+  @Mapping(target = "statistics", ignore = true)
   Thread toExistingEntity(ThreadDto threadDto, @MappingTarget Thread threadEntity);
 
   @AfterMapping
@@ -44,9 +45,4 @@ public interface ThreadMapper extends BaseMapper<Thread, ThreadDto> {
     thread.getOriginalPost().setOriginalPost(true);
     return thread;
   }
-
-  @SuppressWarnings("unused")
-  default ThreadStatistics map(ThreadStatisticsDto value) {
-    return null;
-  }
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -12,9 +13,14 @@ public interface ThreadRepository extends BaseRepository<Thread> {
 
   Optional<Thread> findByBoardLabelAndOriginalPostPostNumber(String label, Long postNumber);
 
+  @EntityGraph(
+      attributePaths = {
+        "board",
+        "statistics",
+        "originalPost.attachment.metadata",
+        "originalPost.attachment.embedData"
+      })
   List<Thread> findByBoardIdOrderByStickiedDescLastBumpAtDesc(UUID boardId, Pageable pageRequest);
 
   Optional<Thread> findTopByBoardIdAndStickiedFalseOrderByLastBumpAtAsc(UUID boardId);
-
-  Long countByBoardId(UUID boardId);
 }
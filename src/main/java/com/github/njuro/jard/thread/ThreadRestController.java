@@ -21,9 +21,11 @@ import javax.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping(Mappings.API_ROOT_THREADS)
@@ -87,6 +89,13 @@ public class ThreadRestController {
     return threadFacade.getNewReplies(thread, lastPostNumber);
   }
 
+  @GetMapping(
+      value = Mappings.PATH_VARIABLE_THREAD + "/updates",
+      produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter subscribeToThreadUpdates(ThreadDto thread) {
+    return threadFacade.subscribeToThreadUpdates(thread);
+  }
+
   @PatchMapping(Mappings.PATH_VARIABLE_THREAD + "/sticky")
   @HasAuthorities(UserAuthority.TOGGLE_STICKY_THREAD)
   public ResponseEntity<Object> toggleStickyOnThread(ThreadDto thread) {
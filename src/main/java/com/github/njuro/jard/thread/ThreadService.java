@@ -1,10 +1,16 @@
 package com.github.njuro.jard.thread;
 
+import com.github.njuro.jard.board.BoardService;
+import com.github.njuro.jard.post.Post;
 import com.github.njuro.jard.post.PostService;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -18,21 +24,35 @@ public class ThreadService {
 
   private final PostService postService;
 
+  private final ThreadStatisticsService threadStatisticsService;
+
+  private final BoardService boardService;
+
   @Autowired
-  public ThreadService(ThreadRepository threadRepository, PostService postService) {
+  public ThreadService(
+      ThreadRepository threadRepository,
+      PostService postService,
+      ThreadStatisticsService threadStatisticsService,
+      BoardService boardService) {
     this.threadRepository = threadRepository;
     this.postService = postService;
+    this.threadStatisticsService = threadStatisticsService;
+    this.boardService = boardService;
   }
 
   /**
-   * Saves thread and its original post into database.
+   * Saves thread, its original post and its initial statistics into database. Number of active
+   * threads on containing board is increased.
    *
    * @param thread thread to be saved
    * @return saved thread
    */
   public Thread saveThread(Thread thread) {
     thread.setOriginalPost(postService.savePost(thread.getOriginalPost()));
-    return threadRepository.save(thread);
+    thread.setStatistics(threadStatisticsService.createStatistics(thread));
+    Thread saved = threadRepository.save(thread);
+    boardService.increaseThreadCount(thread.getBoard().getId());
+    return saved;
   }
 
   /**
@@ -71,11 +91,39 @@ public class ThreadService {
   }
 
   /**
+   * Retrieves (sub)collection of threads from given board together with their most recent replies.
+   *
+   * <p>Threads and replies are loaded within one persistence context, so the number of executed
+   * queries does not depend on the size of requested page.
+   *
    * @param boardId ID of board to get threads from
-   * @return number of active threads on given board
+   * @param pageRequest parameter specifying paging (requested page number and size of each page)
+   * @return map of threads (ordered by stickied status and last bump timestamp) to their most
+   *     recent replies
+   * @see PostService#getLatestRepliesForThreads(java.util.Collection)
    */
+  public Map<Thread, List<Post>> getThreadsWithLatestRepliesFromBoard(
+      UUID boardId, Pageable pageRequest) {
+    List<Thread> threads = getThreadsFromBoard(boardId, pageRequest);
+    Map<UUID, List<Post>> replies =
+        postService.getLatestRepliesForThreads(
+            threads.stream().map(Thread::getId).collect(Collectors.toList()));
+
+    Map<Thread, List<Post>> result = new LinkedHashMap<>();
+    threads.forEach(
+        thread ->
+            result.put(thread, replies.getOrDefault(thread.getId(), Collections.emptyList())));
+    return result;
+  }
+
+  /** {@link BoardService#getThreadCount(UUID)} */
   public int getNumberOfThreadsOnBoard(UUID boardId) {
-    return threadRepository.countByBoardId(boardId).intValue();
+    return boardService.getThreadCount(boardId);
+  }
+
+  /** {@link ThreadStatisticsService#getReplyCount(UUID)} */
+  public int getNumberOfRepliesInThread(UUID threadId) {
+    return threadStatisticsService.getReplyCount(threadId);
   }
 
   /**
@@ -96,18 +144,21 @@ public class ThreadService {
    * #deleteThread(Thread)}.
    *
    * @param boardId ID of board to delete the thread from
+   * @return deleted thread, or empty optional if there was no thread to delete
    * @throws IOException if deletion of one of the attachments' file fails
    */
-  public void deleteStalestThread(UUID boardId) throws IOException {
+  public Optional<Thread> deleteStalestThread(UUID boardId) throws IOException {
     Optional<Thread> stalest =
         threadRepository.findTopByBoardIdAndStickiedFalseOrderByLastBumpAtAsc(boardId);
     if (stalest.isPresent()) {
       deleteThread(stalest.get());
     }
+    return stalest;
   }
 
   /**
-   * Deletes given thread and all posts belonging to it along with their attachments.
+   * Deletes given thread and all posts belonging to it along with their attachments. Number of
+   * active threads on containing board is decreased.
    *
    * @param thread thread to delete
    * @throws IOException if deletion of one of the attachments' file fails
@@ -117,6 +168,7 @@ public class ThreadService {
         postService.getAllRepliesForThread(thread.getId(), thread.getOriginalPost().getId()));
     postService.deletePost(thread.getOriginalPost());
     threadRepository.delete(thread);
+    boardService.decreaseThreadCount(thread.getBoard().getId());
   }
 
   /**
@@ -0,0 +1,38 @@
+package com.github.njuro.jard.thread;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ThreadStatisticsRepository extends JpaRepository<ThreadStatistics, UUID> {
+
+  @Query("SELECT s.replyCount FROM ThreadStatistics s WHERE s.threadId = :threadId")
+  Optional<Integer> findReplyCountByThreadId(@Param("threadId") UUID threadId);
+
+  @Modifying(flushAutomatically = true)
+  @Query(
+      "UPDATE ThreadStatistics s SET s.replyCount = s.replyCount + :replyCountDelta, "
+          + "s.attachmentCount = s.attachmentCount + :attachmentCountDelta, "
+          + "s.posterCount = s.posterCount + :posterCountDelta "
+          + "WHERE s.threadId = :threadId")
+  void updateStatistics(
+      @Param("threadId") UUID threadId,
+      @Param("replyCountDelta") int replyCountDelta,
+      @Param("attachmentCountDelta") int attachmentCountDelta,
+      @Param("posterCountDelta") int posterCountDelta);
+
+  @Modifying(flushAutomatically = true)
+  @Query(
+      value =
+          "UPDATE thread_statistics SET poster_count = poster_count + 1 "
+              + "WHERE thread_id = :threadId AND NOT EXISTS (SELECT 1 FROM posts p "
+              + "WHERE p.thread_id = :threadId AND p.ip = :ip AND p.id <> :postId)",
+      nativeQuery = true)
+  void incrementPosterCountIfNewPoster(
+      @Param("threadId") UUID threadId, @Param("postId") UUID postId, @Param("ip") String ip);
+}
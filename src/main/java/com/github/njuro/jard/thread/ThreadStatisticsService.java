@@ -0,0 +1,124 @@
+package com.github.njuro.jard.thread;
+
+import java.util.Objects;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service maintaining {@link ThreadStatistics}.
+ *
+ * <p>Statistics are updated with single atomic {@code UPDATE} statement, so concurrent replies to
+ * the same thread do not overwrite each other's changes.
+ */
+@Service
+@Transactional
+public class ThreadStatisticsService {
+
+  private final ThreadStatisticsRepository threadStatisticsRepository;
+
+  private final EntityManager entityManager;
+
+  @Autowired
+  public ThreadStatisticsService(
+      ThreadStatisticsRepository threadStatisticsRepository, EntityManager entityManager) {
+    this.threadStatisticsRepository = threadStatisticsRepository;
+    this.entityManager = entityManager;
+  }
+
+  /**
+   * Creates initial statistics for new thread, which consists only of its original post.
+   *
+   * @param thread thread to create statistics for - cannot be {@code null}
+   * @return created (not yet persisted) statistics
+   * @throws NullPointerException if thread or its original post is {@code null}
+   */
+  public ThreadStatistics createStatistics(Thread thread) {
+    Objects.requireNonNull(thread);
+    Objects.requireNonNull(thread.getOriginalPost());
+
+    return ThreadStatistics.builder()
+        .thread(thread)
+        .replyCount(0)
+        .attachmentCount(thread.getOriginalPost().getAttachment() != null ? 1 : 0)
+        .posterCount(1)
+        .build();
+  }
+
+  /**
+   * Adds given deltas to statistics of given thread. Negative deltas are used when posts are
+   * removed from thread.
+   *
+   * @param threadId ID of thread to update statistics for - cannot be {@code null}
+   * @param replyCountDelta change in number of replies
+   * @param attachmentCountDelta change in number of attachments
+   * @param posterCountDelta change in number of unique posters
+   * @throws NullPointerException if thread ID is {@code null}
+   */
+  public void updateStatistics(
+      UUID threadId, int replyCountDelta, int attachmentCountDelta, int posterCountDelta) {
+    Objects.requireNonNull(threadId);
+
+    if (replyCountDelta == 0 && attachmentCountDelta == 0 && posterCountDelta == 0) {
+      return;
+    }
+
+    threadStatisticsRepository.updateStatistics(
+        threadId, replyCountDelta, attachmentCountDelta, posterCountDelta);
+    refreshLoadedStatistics(threadId);
+  }
+
+  /**
+   * Adds saved reply to statistics of its thread. The poster is counted only if there is no other
+   * post with the same IP in the thread.
+   *
+   * <p>Counts of replies and attachments are updated first, which locks the statistics row until
+   * the end of transaction. The poster is checked only afterwards, in separate statement, which
+   * therefore sees posts of all concurrent replies which held the lock before. Doing the check in
+   * the same statement would evaluate it against snapshot taken before waiting for the lock, so
+   * concurrent first posts of the same poster would both be counted.
+   *
+   * @param threadId ID of thread the reply belongs to - cannot be {@code null}
+   * @param postId ID of saved reply - cannot be {@code null}
+   * @param ip IP of the poster of the reply
+   * @param withAttachment whether the reply has attachment
+   * @throws NullPointerException if thread or post ID is {@code null}
+   */
+  public void registerReply(UUID threadId, UUID postId, String ip, boolean withAttachment) {
+    Objects.requireNonNull(threadId);
+    Objects.requireNonNull(postId);
+
+    threadStatisticsRepository.updateStatistics(threadId, 1, withAttachment ? 1 : 0, 0);
+    threadStatisticsRepository.incrementPosterCountIfNewPoster(threadId, postId, ip);
+    refreshLoadedStatistics(threadId);
+  }
+
+  /**
+   * Re-reads counts of statistics of given thread, if they were already loaded in current
+   * persistence context, as the bulk updates bypass it. Statistics which were not loaded are left
+   * alone, they will be read fresh when needed.
+   *
+   * @param threadId ID of thread whose statistics were updated
+   */
+  private void refreshLoadedStatistics(UUID threadId) {
+    ThreadStatistics statistics = entityManager.getReference(ThreadStatistics.class, threadId);
+    if (Hibernate.isInitialized(statistics)) {
+      entityManager.refresh(statistics);
+    }
+  }
+
+  /**
+   * @param threadId ID of thread to get number of replies for - cannot be {@code null}
+   * @return number of replies in given thread (original post is not counted), or {@code 0} if the
+   *     thread has no statistics
+   * @throws NullPointerException if thread ID is {@code null}
+   */
+  public int getReplyCount(UUID threadId) {
+    Objects.requireNonNull(threadId);
+
+    return threadStatisticsRepository.findReplyCountByThreadId(threadId).orElse(0);
+  }
+}
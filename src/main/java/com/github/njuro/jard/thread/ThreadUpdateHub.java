@@ -0,0 +1,329 @@
+package com.github.njuro.jard.thread;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.njuro.jard.common.Constants;
+import com.github.njuro.jard.post.Post_;
+import com.github.njuro.jard.post.dto.PostDto;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * In-process hub distributing updates of threads (new replies, deleted posts and threads) to
+ * clients subscribed via Server-Sent Events.
+ *
+ * <p>Each update is serialized only once and then shared by all subscribers of the thread. Every
+ * subscriber has its own bounded buffer of pending updates, which is drained by shared pool of
+ * sender threads, so slow subscribers never block the publisher. Subscriber whose buffer overflows
+ * is considered too slow and is disconnected (client is expected to reconnect and fetch missed
+ * replies). Heartbeat is sent periodically to all subscribers to keep the connections open and to
+ * detect disconnected clients.
+ */
+@Component
+@Slf4j
+public class ThreadUpdateHub {
+
+  /** Name of event sent when new reply is added to thread. */
+  public static final String EVENT_NEW_REPLY = "new-reply";
+
+  /** Name of event sent when post is deleted from thread. */
+  public static final String EVENT_DELETED_POST = "deleted-post";
+
+  /** Name of event sent when whole thread is deleted. */
+  public static final String EVENT_DELETED_THREAD = "deleted-thread";
+
+  /** Update which is sent only to keep the connection alive. */
+  private static final ThreadUpdate HEARTBEAT = new ThreadUpdate(null, null, null, null, false);
+
+  /** Mapper for serializing updates. Thread is omitted from serialized posts. */
+  private final ObjectMapper objectMapper;
+
+  /** Active subscribers, mapped by ID of thread they are subscribed to. */
+  private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+  /** Executor for sending updates and heartbeats to subscribers. */
+  private final ScheduledExecutorService executor;
+
+  @Autowired
+  public ThreadUpdateHub(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper.copy().addMixIn(PostDto.class, PostDtoMixin.class);
+    executor = Executors.newScheduledThreadPool(Constants.THREAD_UPDATES_SENDER_THREADS);
+    executor.scheduleAtFixedRate(
+        this::sendHeartbeat,
+        Constants.THREAD_UPDATES_HEARTBEAT_INTERVAL,
+        Constants.THREAD_UPDATES_HEARTBEAT_INTERVAL,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * Subscribes to updates of given thread.
+   *
+   * @param threadId ID of thread to subscribe to
+   * @param canViewIp whether subscriber is allowed to view IP addresses of posters
+   * @return emitter streaming the updates
+   */
+  public SseEmitter subscribe(UUID threadId, boolean canViewIp) {
+    return subscribe(threadId, canViewIp, new SseEmitter(Constants.THREAD_UPDATES_TIMEOUT));
+  }
+
+  /**
+   * Subscribes given emitter to updates of given thread.
+   *
+   * @param threadId ID of thread to subscribe to
+   * @param canViewIp whether subscriber is allowed to view IP addresses of posters
+   * @param emitter emitter to send the updates with
+   * @return given emitter
+   */
+  SseEmitter subscribe(UUID threadId, boolean canViewIp, SseEmitter emitter) {
+    var subscriber = new Subscriber(threadId, canViewIp, emitter);
+    emitter.onCompletion(() -> unsubscribe(subscriber));
+    emitter.onTimeout(() -> unsubscribe(subscriber));
+    emitter.onError(ex -> unsubscribe(subscriber));
+    subscribers.computeIfAbsent(threadId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    return emitter;
+  }
+
+  /**
+   * Publishes new reply to all subscribers of given thread.
+   *
+   * @param threadId ID of thread the reply belongs to
+   * @param reply new reply
+   */
+  public void publishNewReply(UUID threadId, PostDto reply) {
+    if (!hasSubscribers(threadId)) {
+      return;
+    }
+
+    ObjectNode json = objectMapper.valueToTree(reply);
+    String privateData = serialize(json);
+    json.remove(Post_.IP);
+    String publicData = serialize(json);
+
+    publish(
+        threadId,
+        new ThreadUpdate(
+            EVENT_NEW_REPLY,
+            String.valueOf(reply.getPostNumber()),
+            publicData,
+            privateData,
+            false));
+  }
+
+  /**
+   * Publishes deletion of post to all subscribers of given thread.
+   *
+   * @param threadId ID of thread the post belonged to
+   * @param post deleted post
+   */
+  public void publishDeletedPost(UUID threadId, PostDto post) {
+    if (!hasSubscribers(threadId)) {
+      return;
+    }
+
+    String data =
+        serialize(objectMapper.createObjectNode().put(Post_.POST_NUMBER, post.getPostNumber()));
+    publish(threadId, new ThreadUpdate(EVENT_DELETED_POST, null, data, data, false));
+  }
+
+  /**
+   * Publishes deletion of thread to all its subscribers. Subscriptions are closed afterwards.
+   *
+   * @param threadId ID of deleted thread
+   */
+  public void publishDeletedThread(UUID threadId) {
+    Set<Subscriber> threadSubscribers = subscribers.remove(threadId);
+    if (threadSubscribers == null) {
+      return;
+    }
+
+    var update = new ThreadUpdate(EVENT_DELETED_THREAD, null, "{}", "{}", true);
+    threadSubscribers.forEach(subscriber -> subscriber.enqueue(update));
+  }
+
+  /**
+   * @param threadId ID of thread
+   * @return number of active subscribers of given thread
+   */
+  public int getNumberOfSubscribers(UUID threadId) {
+    Set<Subscriber> threadSubscribers = subscribers.get(threadId);
+    return threadSubscribers == null ? 0 : threadSubscribers.size();
+  }
+
+  /** Stops sending of updates and closes all subscriptions. */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+    subscribers.values().forEach(set -> set.forEach(Subscriber::close));
+    subscribers.clear();
+  }
+
+  private boolean hasSubscribers(UUID threadId) {
+    return getNumberOfSubscribers(threadId) > 0;
+  }
+
+  private void publish(UUID threadId, ThreadUpdate update) {
+    Set<Subscriber> threadSubscribers = subscribers.get(threadId);
+    if (threadSubscribers != null) {
+      threadSubscribers.forEach(subscriber -> subscriber.enqueue(update));
+    }
+  }
+
+  private void sendHeartbeat() {
+    subscribers.values().forEach(set -> set.forEach(Subscriber::enqueueHeartbeat));
+  }
+
+  private void unsubscribe(Subscriber subscriber) {
+    subscribers.computeIfPresent(
+        subscriber.threadId,
+        (id, set) -> {
+          set.remove(subscriber);
+          return set.isEmpty() ? null : set;
+        });
+  }
+
+  private String serialize(Object value) {
+    try {
+      return objectMapper.writeValueAsString(value);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalArgumentException("Failed to serialize thread update", ex);
+    }
+  }
+
+  /** Excludes thread from serialized posts, as subscribers already know it. */
+  @JsonIgnoreProperties(Post_.THREAD)
+  private abstract static class PostDtoMixin {}
+
+  /** Update of thread, already serialized for both subscribers who can and cannot view IPs. */
+  private static class ThreadUpdate {
+    private final String name;
+    private final String id;
+    private final String publicData;
+    private final String privateData;
+
+    /** Whether subscription should be closed after this update is sent. */
+    private final boolean last;
+
+    private ThreadUpdate(
+        String name, String id, String publicData, String privateData, boolean last) {
+      this.name = name;
+      this.id = id;
+      this.publicData = publicData;
+      this.privateData = privateData;
+      this.last = last;
+    }
+  }
+
+  /** Single subscriber with its own bounded buffer of pending updates. */
+  private class Subscriber {
+    private final UUID threadId;
+    private final boolean canViewIp;
+    private final SseEmitter emitter;
+    private final BlockingQueue<ThreadUpdate> buffer =
+        new ArrayBlockingQueue<>(Constants.THREAD_UPDATES_BUFFER_SIZE);
+
+    /** Whether draining of buffer is scheduled or in progress. */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /** Whether subscription was closed. */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Subscriber(UUID threadId, boolean canViewIp, SseEmitter emitter) {
+      this.threadId = threadId;
+      this.canViewIp = canViewIp;
+      this.emitter = emitter;
+    }
+
+    private void enqueue(ThreadUpdate update) {
+      if (closed.get()) {
+        return;
+      }
+
+      if (!buffer.offer(update)) {
+        log.debug("Disconnecting slow subscriber of thread {}", threadId);
+        close();
+        return;
+      }
+
+      scheduleDrain();
+    }
+
+    private void enqueueHeartbeat() {
+      // heartbeat is not needed when there are other updates waiting to be sent
+      if (buffer.isEmpty()) {
+        enqueue(HEARTBEAT);
+      }
+    }
+
+    private void scheduleDrain() {
+      if (draining.compareAndSet(false, true)) {
+        try {
+          executor.execute(this::drain);
+        } catch (RejectedExecutionException ex) {
+          close();
+        }
+      }
+    }
+
+    private void drain() {
+      try {
+        ThreadUpdate update;
+        while (!closed.get() && (update = buffer.poll()) != null) {
+          send(update);
+          if (update.last) {
+            close();
+          }
+        }
+      } catch (IOException | IllegalStateException ex) {
+        close();
+      } finally {
+        draining.set(false);
+      }
+
+      if (!buffer.isEmpty() && !closed.get()) {
+        scheduleDrain();
+      }
+    }
+
+    private void send(ThreadUpdate update) throws IOException {
+      if (update == HEARTBEAT) {
+        emitter.send(SseEmitter.event().comment("heartbeat"));
+        return;
+      }
+
+      var event =
+          SseEmitter.event()
+              .name(update.name)
+              .data(canViewIp ? update.privateData : update.publicData, MediaType.APPLICATION_JSON);
+      if (update.id != null) {
+        event.id(update.id);
+      }
+      emitter.send(event);
+    }
+
+    private void close() {
+      if (closed.compareAndSet(false, true)) {
+        buffer.clear();
+        unsubscribe(this);
+        emitter.complete();
+      }
+    }
+  }
+}
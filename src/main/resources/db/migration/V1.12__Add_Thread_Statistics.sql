@@ -0,0 +1,20 @@
+create table thread_statistics
+(
+    thread_id        uuid not null,
+    reply_count      int4 not null default 0,
+    attachment_count int4 not null default 0,
+    poster_count     int4 not null default 0,
+    primary key (thread_id)
+);
+
+alter table if exists thread_statistics
+    add constraint FK_thread_statistics_threads
+        foreign key (thread_id)
+            references threads;
+
+insert into thread_statistics (thread_id, reply_count, attachment_count, poster_count)
+select t.id, greatest(count(p.id) - 1, 0), count(a.id), count(distinct p.ip)
+from threads t
+         left join posts p on t.id = p.thread_id
+         left join attachments a on p.attachment_id = a.id
+group by t.id;
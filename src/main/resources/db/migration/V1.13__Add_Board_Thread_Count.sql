@@ -0,0 +1,5 @@
+alter table if exists boards
+    add column thread_count int4 not null default 0;
+
+update boards b
+set thread_count = (select count(*) from threads t where t.board_id = b.id);
@@ -0,0 +1,11 @@
+create index IDX_posts_thread_id_created_at on posts (thread_id, created_at);
+create index IDX_posts_thread_id_post_number on posts (thread_id, post_number);
+create index IDX_posts_thread_id_ip on posts (thread_id, ip);
+
+create index IDX_threads_board_id_stickied_last_bump_at on threads (board_id, stickied, last_bump_at);
+
+create index IDX_bans_ip_status on bans (ip, status);
+create index IDX_bans_status_valid_to on bans (status, valid_to);
+
+create index IDX_user_tokens_user_id_type on user_tokens (user_id, type);
+create index IDX_user_tokens_expiration_at on user_tokens (expiration_at);
@@ -0,0 +1,29 @@
+create table post_links
+(
+    source_post_id uuid not null,
+    target_post_id uuid not null,
+    primary key (source_post_id, target_post_id)
+);
+
+alter table if exists post_links
+    add constraint FK_post_links_source_post
+        foreign key (source_post_id)
+            references posts;
+
+alter table if exists post_links
+    add constraint FK_post_links_target_post
+        foreign key (target_post_id)
+            references posts;
+
+create index IDX_post_links_target_post_id on post_links (target_post_id);
+
+insert into post_links (source_post_id, target_post_id)
+select distinct source.id, target.id
+from posts source
+         cross join lateral regexp_matches(source.body,
+                                           'data-post-number="(\d+)" data-board-label="([^"]*)" href="[^"]*" class="crosslink"',
+                                           'g') link
+         join boards b on b.label = link[2]
+         join threads t on t.board_id = b.id
+         join posts target on target.thread_id = t.id and target.post_number = link[1]::int8
+where source.id <> target.id;
@@ -0,0 +1,5 @@
+alter table if exists attachments
+    add column status varchar(255) not null default 'READY';
+
+alter table if exists attachments_metadata
+    alter column checksum drop not null;
@@ -0,0 +1,2 @@
+alter table board_settings
+    add thumbnail_quality varchar(255) not null default 'QUALITY';
@@ -0,0 +1,2 @@
+alter table attachments_metadata
+    add column file_size_bytes bigint;
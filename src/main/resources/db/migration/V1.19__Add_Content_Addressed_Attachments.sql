@@ -0,0 +1,8 @@
+alter table if exists attachments
+    drop constraint UK_124krfsd4bd49ul6vwxgsdmoe;
+
+alter table if exists attachments
+    drop constraint UK_badqm7ie8fmvvjpce7i7894vs;
+
+create index IDX_attachments_folder_filename on attachments (folder, filename);
+create index IDX_attachments_metadata_checksum on attachments_metadata (checksum);
@@ -0,0 +1,13 @@
+create table attachment_file_deletions
+(
+    id                 uuid         not null,
+    folder             varchar(255) not null,
+    filename           varchar(255) not null,
+    thumbnail_filename varchar(255),
+    attempts           int4         not null,
+    next_attempt_at    timestamp    not null,
+    primary key (id)
+);
+
+create index IDX_attachment_file_deletions_next_attempt_at on attachment_file_deletions (next_attempt_at);
+create index IDX_attachment_file_deletions_folder_filename on attachment_file_deletions (folder, filename);
@@ -0,0 +1,13 @@
+alter table attachments_embed_data
+    add thumbnail_attempts int4 default 0 not null;
+alter table attachments_embed_data
+    add thumbnail_next_attempt_at timestamp;
+
+-- thumbnails of existing embedded attachments are downloaded in background
+update attachments_embed_data
+set thumbnail_next_attempt_at = now()
+where thumbnail_url is not null;
+
+create index IDX_attachments_embed_data_thumbnail_next_attempt_at
+    on attachments_embed_data (thumbnail_next_attempt_at)
+    where thumbnail_next_attempt_at is not null;
@@ -0,0 +1,2 @@
+alter table attachments
+    add thumbnail_quality varchar(255) not null default 'QUALITY';
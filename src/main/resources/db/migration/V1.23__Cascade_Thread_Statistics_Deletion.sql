@@ -0,0 +1,8 @@
+alter table if exists thread_statistics
+    drop constraint FK_thread_statistics_threads;
+
+alter table if exists thread_statistics
+    add constraint FK_thread_statistics_threads
+        foreign key (thread_id)
+            references threads
+            on delete cascade;
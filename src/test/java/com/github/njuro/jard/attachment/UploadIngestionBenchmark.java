@@ -0,0 +1,174 @@
+package com.github.njuro.jard.attachment;
+
+import com.github.njuro.jard.attachment.helpers.AttachmentMetadataUtils;
+import com.github.njuro.jard.common.Constants;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Microbenchmark comparing previous ingestion of uploaded file (MIME type sniffed from one stream,
+ * file transferred with {@link MultipartFile#transferTo(File)} and then read whole to memory to
+ * calculate its checksum) with single streaming pass of {@link
+ * AttachmentMetadataUtils#storeFile(Attachment, InputStream)}.
+ *
+ * <p>Uploaded file is spooled on disk, as is the case with servlet container. Runs with GC profiler
+ * - its {@code gc.alloc.rate.norm} metric shows bytes allocated per upload.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.attachment.UploadIngestionBenchmark}, or directly from
+ * IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadIngestionBenchmark {
+
+  private static final String FOLDER = "benchmark";
+
+  @Param({"1048576", "10485760"})
+  private int size;
+
+  private final Tika mimeTypeDetector = new Tika();
+  private Path spooled;
+  private MultipartFile upload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    var content = new byte[size];
+    new Random(42).nextBytes(content);
+    spooled = Files.createTempFile("upload", ".bin");
+    Files.write(spooled, content);
+    upload = new SpooledMultipartFile(spooled);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(spooled);
+    FileUtils.deleteQuietly(Constants.USER_CONTENT_PATH.resolve(FOLDER).toFile());
+  }
+
+  @Benchmark
+  public Attachment previous() throws IOException {
+    Attachment attachment = createAttachment("previous.bin");
+    attachment.getMetadata().setMimeType(mimeTypeDetector.detect(upload.getInputStream()));
+
+    attachment.getFile().getParentFile().mkdirs();
+    upload.transferTo(attachment.getFile());
+    attachment
+        .getMetadata()
+        .setChecksum(DigestUtils.md5DigestAsHex(Files.readAllBytes(attachment.getFile().toPath())));
+    attachment
+        .getMetadata()
+        .setFileSize(FileUtils.byteCountToDisplaySize(attachment.getFile().length()));
+    return attachment;
+  }
+
+  @Benchmark
+  public Attachment streaming() throws IOException {
+    Attachment attachment = createAttachment("streaming.bin");
+    try (InputStream input = new BufferedInputStream(upload.getInputStream())) {
+      attachment.getMetadata().setMimeType(mimeTypeDetector.detect(input));
+      AttachmentMetadataUtils.publishFile(
+          attachment, AttachmentMetadataUtils.storeFile(attachment, input));
+    }
+    return attachment;
+  }
+
+  private Attachment createAttachment(String filename) {
+    return Attachment.builder()
+        .folder(FOLDER)
+        .filename(filename)
+        .metadata(new AttachmentMetadata())
+        .build();
+  }
+
+  /** Multipart file spooled on disk. Transfer copies the file, so it can be uploaded again. */
+  private static class SpooledMultipartFile implements MultipartFile {
+
+    private final Path path;
+
+    private SpooledMultipartFile(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    public String getName() {
+      return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+      return path.getFileName().toString();
+    }
+
+    @Override
+    public String getContentType() {
+      return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+      return path.toFile().length();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+      return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+      Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(UploadIngestionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
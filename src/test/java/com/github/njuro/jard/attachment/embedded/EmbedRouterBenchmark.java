@@ -0,0 +1,113 @@
+package com.github.njuro.jard.attachment.embedded;
+
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedCodePenHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedCodeSandboxHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedRedditHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedScribdHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedSoundcloudHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedSpotifyHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedTikTokHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedTwitterHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedVimeoHandler;
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedYoutubeHandler;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Microbenchmark comparing routing of mixed corpus of supported and unsupported URLs by {@link
+ * EmbedRouter} with matching of each URL against URL schemes of all registered providers in turn.
+ * Score is time of routing the whole corpus, URLs are normalized beforehand.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.attachment.embedded.EmbedRouterBenchmark}, or directly
+ * from IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbedRouterBenchmark {
+
+  private static final List<String> CORPUS =
+      List.of(
+          "https://www.youtube.com/watch?v=kJQP7kiw5Fk",
+          "https://youtu.be/kJQP7kiw5Fk",
+          "https://m.youtube.com/watch?feature=share&v=kJQP7kiw5Fk",
+          "https://vimeo.com/437808118",
+          "https://twitter.com/elonmusk/status/1284291528328790016",
+          "https://www.tiktok.com/@scout2015/video/6718335390845095173",
+          "https://open.spotify.com/album/0YvYmLBFFwYxgI4U9KKgUm",
+          "https://soundcloud.com/pslwave/drowning",
+          "https://codepen.io/lynnandtonic/pen/dyGjvLB",
+          "https://codesandbox.io/s/j0y0vpz59",
+          "https://reddit.com/r/java/comments/hyb41c/what_is_your_favourite_java_libraryframework/",
+          "https://www.scribd.com/document/357546412/Opinion-on-Sarah-Palin-lawsuit",
+          "https://example.com/",
+          "https://www.google.com/search?q=oembed&source=hp",
+          "https://en.wikipedia.org/wiki/OEmbed",
+          "https://github.com/njuro/jard/blob/master/README.md",
+          "https://vimeo.com/about",
+          "https://www.youtube.com/feed/trending",
+          "https://imgur.com/gallery/abcdef",
+          "https://news.ycombinator.com/item?id=12345678");
+
+  private List<String> urls;
+  private List<EmbedRoute> routes;
+  private EmbedRouter router;
+
+  @Setup
+  public void setUp() {
+    List<EmbeddedAttachmentHandler> handlers =
+        List.of(
+            new EmbeddedCodePenHandler(),
+            new EmbeddedCodeSandboxHandler(),
+            new EmbeddedRedditHandler(),
+            new EmbeddedScribdHandler(),
+            new EmbeddedSoundcloudHandler(),
+            new EmbeddedSpotifyHandler(),
+            new EmbeddedTikTokHandler(),
+            new EmbeddedTwitterHandler(),
+            new EmbeddedVimeoHandler(),
+            new EmbeddedYoutubeHandler());
+    urls = CORPUS.stream().map(EmbedRouter::normalizeUrl).collect(Collectors.toList());
+    routes = handlers.stream().map(EmbedRoute::new).collect(Collectors.toList());
+    router = new EmbedRouter(handlers);
+  }
+
+  @Benchmark
+  public void router(Blackhole blackhole) {
+    for (String url : urls) {
+      blackhole.consume(router.route(url));
+    }
+  }
+
+  @Benchmark
+  public void linearScan(Blackhole blackhole) {
+    for (String url : urls) {
+      blackhole.consume(routes.stream().filter(route -> route.matches(url)).findFirst());
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(EmbedRouterBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,136 @@
+package com.github.njuro.jard.attachment.helpers;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Microbenchmark comparing reading of whole {@code gif} file with {@link
+ * GifDecoder#read(InputStream)} with reading only its first frame with {@link
+ * GifDecoder#readFirstFrame(InputStream)}, on test attachment and on large generated animated
+ * {@code gif} (200 frames of 800x600 pixels).
+ *
+ * <p>Runs with GC profiler - its {@code gc.alloc.rate.norm} metric shows bytes allocated per
+ * operation.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.attachment.helpers.GifDecoderBenchmark}, or directly from
+ * IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class GifDecoderBenchmark {
+
+  private static final String GENERATED = "generated";
+
+  @Param({"test_attachment_corrupted.gif", GENERATED})
+  private String filename;
+
+  private Path file;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    if (!GENERATED.equals(filename)) {
+      file = Paths.get("src", "test", "resources", "attachments", filename);
+      return;
+    }
+
+    file = Files.createTempFile("benchmark", ".gif");
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(file.toFile())) {
+      writer.setOutput(output);
+      writer.prepareWriteSequence(null);
+      var random = new Random(0);
+      for (int i = 0; i < 200; i++) {
+        var frame = new BufferedImage(800, 600, BufferedImage.TYPE_BYTE_INDEXED);
+        var graphics = frame.createGraphics();
+        for (int j = 0; j < 50; j++) {
+          graphics.setColor(new Color(random.nextInt()));
+          graphics.fillOval(random.nextInt(800), random.nextInt(600), 120, 90);
+        }
+        graphics.dispose();
+        writer.writeToSequence(new IIOImage(frame, null, null), null);
+      }
+      writer.endWriteSequence();
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (GENERATED.equals(filename)) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Benchmark
+  public BufferedImage wholeFile() throws IOException {
+    try (var input = new FileInputStream(file.toFile())) {
+      return GifDecoder.read(input).getFrame(0);
+    }
+  }
+
+  @Benchmark
+  public BufferedImage firstFrame() throws IOException {
+    try (var input = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+      return GifDecoder.readFirstFrame(input).getFrame(0);
+    }
+  }
+
+  @Benchmark
+  public int dimensions() throws IOException {
+    try (var input = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+      return GifDecoder.readFirstFrame(input).getWidth();
+    }
+  }
+
+  @Benchmark
+  public int countFrames() throws IOException {
+    try (var input = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+      return GifDecoder.countFrames(input);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(GifDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
@@ -0,0 +1,166 @@
+package com.github.njuro.jard.attachment.helpers;
+
+import com.github.njuro.jard.attachment.Attachment;
+import com.github.njuro.jard.attachment.AttachmentCategory;
+import com.github.njuro.jard.attachment.AttachmentMetadata;
+import com.github.njuro.jard.attachment.ThumbnailQuality;
+import com.github.njuro.jard.common.Constants;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.resizers.configurations.AlphaInterpolation;
+import net.coobird.thumbnailator.resizers.configurations.Antialiasing;
+import net.coobird.thumbnailator.resizers.configurations.Dithering;
+import net.coobird.thumbnailator.resizers.configurations.ScalingMode;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Microbenchmark comparing previous image ingestion (image decoded in full once for dimensions and
+ * once more for thumbnail) with header-only probing and single subsampled decode, in both {@link
+ * ThumbnailQuality} tiers, on large generated images.
+ *
+ * <p>Runs with GC profiler - its {@code gc.alloc.rate.norm} metric shows bytes allocated per
+ * operation, which is dominated by decoded image rasters and thus tracks peak heap usage.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.attachment.helpers.ImageThumbnailBenchmark}, or directly
+ * from IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class ImageThumbnailBenchmark {
+
+  private static final String FOLDER = "benchmark";
+
+  @Param({"png", "jpg"})
+  private String format;
+
+  @Param({"4000x3000"})
+  private String size;
+
+  private String filename;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    String[] dimensions = size.split("x");
+    int width = Integer.parseInt(dimensions[0]);
+    int height = Integer.parseInt(dimensions[1]);
+
+    // gradient with noise, so the image does not compress unrealistically well
+    var random = new Random(42);
+    var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int noise = random.nextInt(32);
+        int r = (x * 255 / width + noise) & 0xFF;
+        int g = (y * 255 / height + noise) & 0xFF;
+        int b = ((x + y) * 255 / (width + height)) & 0xFF;
+        image.setRGB(x, y, (r << 16) | (g << 8) | b);
+      }
+    }
+
+    filename = "large." + format;
+    File file = Constants.USER_CONTENT_PATH.resolve(FOLDER).resolve(filename).toFile();
+    file.getParentFile().mkdirs();
+    ImageIO.write(image, format, file);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtils.deleteQuietly(Constants.USER_CONTENT_PATH.resolve(FOLDER).toFile());
+  }
+
+  @Benchmark
+  public RenderedImage previous() throws IOException {
+    Attachment attachment = createAttachment(ThumbnailQuality.QUALITY);
+    AttachmentMetadata metadata = attachment.getMetadata();
+
+    BufferedImage probe = ImageIO.read(attachment.getFile());
+    metadata.setWidth(probe.getWidth());
+    metadata.setHeight(probe.getHeight());
+
+    double factor =
+        Math.min(
+            Constants.IMAGE_MAX_THUMB_WIDTH / metadata.getWidth(),
+            Constants.IMAGE_MAX_THUMB_HEIGHT / metadata.getHeight());
+    BufferedImage image = ImageIO.read(attachment.getFile());
+    return Thumbnails.of(image)
+        .size(
+            (int) Math.ceil(metadata.getWidth() * factor),
+            (int) Math.ceil(metadata.getHeight() * factor))
+        .outputQuality(1.0)
+        .alphaInterpolation(AlphaInterpolation.QUALITY)
+        .scalingMode(ScalingMode.BILINEAR)
+        .antialiasing(Antialiasing.ON)
+        .dithering(Dithering.ENABLE)
+        .asBufferedImage();
+  }
+
+  @Benchmark
+  public RenderedImage quality() {
+    return createThumbnail(ThumbnailQuality.QUALITY);
+  }
+
+  @Benchmark
+  public RenderedImage fast() {
+    return createThumbnail(ThumbnailQuality.FAST);
+  }
+
+  private RenderedImage createThumbnail(ThumbnailQuality quality) {
+    Attachment attachment = createAttachment(quality);
+    var dimension = AttachmentImageUtils.getImageDimensions(attachment);
+    attachment.getMetadata().setWidth(dimension.width);
+    attachment.getMetadata().setHeight(dimension.height);
+    return AttachmentImageUtils.createThumbnail(attachment);
+  }
+
+  private Attachment createAttachment(ThumbnailQuality quality) {
+    var metadata = new AttachmentMetadata();
+    metadata.setMimeType("image/" + format);
+    var attachment =
+        Attachment.builder()
+            .category(AttachmentCategory.IMAGE)
+            .folder(FOLDER)
+            .filename(filename)
+            .metadata(metadata)
+            .thumbnailQuality(quality)
+            .build();
+    metadata.setAttachment(attachment);
+    return attachment;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(ImageThumbnailBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
@@ -0,0 +1,145 @@
+package com.github.njuro.jard.attachment.helpers;
+
+import com.github.njuro.jard.attachment.Attachment;
+import com.github.njuro.jard.attachment.AttachmentCategory;
+import com.github.njuro.jard.attachment.AttachmentMetadata;
+import com.github.njuro.jard.attachment.ThumbnailQuality;
+import com.github.njuro.jard.common.Constants;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.resizers.configurations.AlphaInterpolation;
+import net.coobird.thumbnailator.resizers.configurations.Antialiasing;
+import net.coobird.thumbnailator.resizers.configurations.Dithering;
+import net.coobird.thumbnailator.resizers.configurations.ScalingMode;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Microbenchmark comparing previous PDF thumbnailing (document loaded and first page rendered at
+ * 300 DPI once for orientation and once more for thumbnail) with single render at thumbnail
+ * resolution, in both {@link ThumbnailQuality} tiers, on portrait and landscape test documents.
+ *
+ * <p>Runs with GC profiler - its {@code gc.alloc.rate.norm} metric shows bytes allocated per
+ * operation, which is dominated by rendered page rasters and thus tracks peak heap usage.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.attachment.helpers.PdfThumbnailBenchmark}, or directly
+ * from IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class PdfThumbnailBenchmark {
+
+  private static final String FOLDER = "benchmark";
+  private static final Path TEST_ATTACHMENTS = Paths.get("src", "test", "resources", "attachments");
+
+  @Param({"test_attachment_portrait.pdf", "test_attachment_landscape.pdf"})
+  private String filename;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Path target = Constants.USER_CONTENT_PATH.resolve(FOLDER).resolve(filename);
+    Files.createDirectories(target.getParent());
+    Files.copy(TEST_ATTACHMENTS.resolve(filename), target, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtils.deleteQuietly(Constants.USER_CONTENT_PATH.resolve(FOLDER).toFile());
+  }
+
+  @Benchmark
+  public RenderedImage previous() throws IOException {
+    Attachment attachment = createAttachment(ThumbnailQuality.QUALITY);
+    AttachmentMetadata metadata = attachment.getMetadata();
+
+    BufferedImage probe = renderAt300Dpi(attachment);
+    if (probe.getWidth() > probe.getHeight()) {
+      metadata.setThumbnailWidth((int) Constants.IMAGE_MAX_THUMB_WIDTH);
+      metadata.setThumbnailHeight((int) (Constants.IMAGE_MAX_THUMB_WIDTH / Math.sqrt(2)));
+    } else {
+      metadata.setThumbnailHeight((int) Constants.IMAGE_MAX_THUMB_HEIGHT);
+      metadata.setThumbnailWidth((int) (Constants.IMAGE_MAX_THUMB_HEIGHT / Math.sqrt(2)));
+    }
+
+    BufferedImage image = renderAt300Dpi(attachment);
+    return Thumbnails.of(image)
+        .size(metadata.getThumbnailWidth(), metadata.getThumbnailHeight())
+        .outputQuality(1.0)
+        .alphaInterpolation(AlphaInterpolation.QUALITY)
+        .scalingMode(ScalingMode.BILINEAR)
+        .antialiasing(Antialiasing.ON)
+        .dithering(Dithering.ENABLE)
+        .asBufferedImage();
+  }
+
+  @Benchmark
+  public RenderedImage quality() {
+    return AttachmentImageUtils.createThumbnail(createAttachment(ThumbnailQuality.QUALITY));
+  }
+
+  @Benchmark
+  public RenderedImage fast() {
+    return AttachmentImageUtils.createThumbnail(createAttachment(ThumbnailQuality.FAST));
+  }
+
+  private BufferedImage renderAt300Dpi(Attachment attachment) throws IOException {
+    try (var document = PDDocument.load(attachment.getFile())) {
+      return new PDFRenderer(document).renderImageWithDPI(0, 300, ImageType.RGB);
+    }
+  }
+
+  private Attachment createAttachment(ThumbnailQuality quality) {
+    var metadata = new AttachmentMetadata();
+    metadata.setMimeType("application/pdf");
+    var attachment =
+        Attachment.builder()
+            .category(AttachmentCategory.PDF)
+            .folder(FOLDER)
+            .filename(filename)
+            .metadata(metadata)
+            .thumbnailQuality(quality)
+            .build();
+    metadata.setAttachment(attachment);
+    return attachment;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(PdfThumbnailBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
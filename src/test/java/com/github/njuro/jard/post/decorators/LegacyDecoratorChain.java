@@ -0,0 +1,91 @@
+package com.github.njuro.jard.post.decorators;
+
+import static com.github.njuro.jard.common.Constants.*;
+
+import com.github.njuro.jard.post.Post;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.web.util.HtmlUtils;
+
+/**
+ * Chain of regular expression based decorators, which was used for processing of post bodies before
+ * {@link MarkupCompiler}. Kept as reference for comparing output and performance of the compiler.
+ * Crosslinks are resolved by given {@link CrosslinkDecorator}, one by one.
+ */
+public class LegacyDecoratorChain {
+
+  private static final Pattern CODE_PATTERN =
+      Pattern.compile(
+          "\\[code](?<content>.*?\\w+.*?)\\[/code]", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private static final Pattern CROSSLINK_PATTERN =
+      Pattern.compile(">>(?:>/(?<board>.+)/)?(?:(?<postNo>\\d+)|(?<=/)\\s*)");
+
+  private static final Pattern GREENTEXT_PATTERN = Pattern.compile("^\\s*>.*$", Pattern.MULTILINE);
+
+  private static final Pattern HYPERLINK_PATTERN =
+      Pattern.compile(
+          "(?<href>https?:\\/\\/(www\\.)?[-a-z0-9@:%._\\+~#=]{1,256}\\.[a-z0-9()]{1,6}\\b([-a-z0-9()@:%_\\+.~#?&//=]*))",
+          Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern SPOILER_PATTERN =
+      Pattern.compile(
+          "(\\[spoiler]|\\*\\*)(?<content>.*?\\w+.*?)(\\[/spoiler]|\\*\\*)",
+          Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private final CrosslinkDecorator crosslinkDecorator;
+
+  public LegacyDecoratorChain(CrosslinkDecorator crosslinkDecorator) {
+    this.crosslinkDecorator = crosslinkDecorator;
+  }
+
+  public String decorate(Post post) {
+    String body = HtmlUtils.htmlEscape(post.getBody()).replace("&gt;", ">");
+    body = CODE_PATTERN.matcher(body).replaceAll(CODE_START + "${content}" + CODE_END);
+    body = decorateCrosslinks(post, body);
+    body = GREENTEXT_PATTERN.matcher(body).replaceAll(GREENTEXT_START + "$0" + GREENTEXT_END);
+    body = decorateHyperlinks(body);
+    body = SPOILER_PATTERN.matcher(body).replaceAll(SPOILER_START + "${content}" + SPOILER_END);
+    return body.replace("\n", "<br/>");
+  }
+
+  private String decorateCrosslinks(Post post, String body) {
+    Matcher matcher = CROSSLINK_PATTERN.matcher(body);
+    StringBuilder sb = new StringBuilder(body.length());
+
+    while (matcher.find()) {
+      String postNumber = matcher.group("postNo") != null ? matcher.group("postNo") : "";
+      var crosslink = new Crosslink(matcher.group("board"), postNumber);
+      crosslinkDecorator.resolveCrosslinks(post, List.of(crosslink));
+
+      String crosslinkStart =
+          CROSSLINK_START
+              .replace("${postNumber}", postNumber)
+              .replace("${boardLabel}", crosslink.getBoardLabel())
+              .replace("${linkHref}", crosslink.isValid() ? crosslink.getHref() : "#")
+              .replace(
+                  "${linkClass}",
+                  crosslink.isValid() ? CROSSLINK_CLASS_VALID : CROSSLINK_CLASS_INVALID);
+
+      matcher.appendReplacement(
+          sb, crosslinkStart + "$0" + " " + crosslink.getSpecial() + CROSSLINK_END);
+    }
+
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+
+  private String decorateHyperlinks(String body) {
+    Matcher matcher = HYPERLINK_PATTERN.matcher(body);
+    StringBuilder sb = new StringBuilder(body.length());
+    while (matcher.find()) {
+      String href = matcher.group("href");
+      matcher.appendReplacement(
+          sb, HYPERLINK_START.replace("${href}", href) + "$0" + HYPERLINK_END);
+    }
+
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+}
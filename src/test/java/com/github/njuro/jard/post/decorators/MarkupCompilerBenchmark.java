@@ -0,0 +1,92 @@
+package com.github.njuro.jard.post.decorators;
+
+import com.github.njuro.jard.post.Post;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Microbenchmark comparing {@link MarkupCompiler} with {@link LegacyDecoratorChain} on typical and
+ * adversarial post bodies. Crosslinks are resolved by stub, so only processing of the markup itself
+ * is measured.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.post.decorators.MarkupCompilerBenchmark}, or directly from
+ * IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkupCompilerBenchmark {
+
+  private static final String TYPICAL_BODY =
+      ">>12\n"
+          + ">implying this is true\n"
+          + "Check out https://www.example.com/thread?id=5&page=2 and >>>/b/34 for details.\n"
+          + "[code]for (int i = 0; i < 10; i++) { sum += i; }[/code]\n"
+          + "**spoiler** ending and [spoiler]another one[/spoiler]\n"
+          + "Regular text with <b>html</b> & entities that needs to be escaped.";
+
+  @Param({"typical", "adversarial"})
+  private String body;
+
+  private Post post;
+  private MarkupCompiler markupCompiler;
+  private LegacyDecoratorChain legacyDecoratorChain;
+
+  @Setup
+  public void setUp() {
+    post = new Post();
+    post.setBody(
+        "typical".equals(body)
+            ? TYPICAL_BODY.repeat(20)
+            : "[spoiler]".repeat(100) + "**".repeat(100) + "[code]".repeat(100));
+
+    var crosslinkDecorator =
+        new CrosslinkDecorator(null, null) {
+          @Override
+          public void resolveCrosslinks(Post post, List<Crosslink> crosslinks) {
+            for (Crosslink crosslink : crosslinks) {
+              if (crosslink.getBoardLabel() == null) {
+                crosslink.setBoardLabel("r");
+              }
+              crosslink.setValid(true);
+              crosslink.setHref("/boards/" + crosslink.getBoardLabel());
+            }
+          }
+        };
+    markupCompiler = new MarkupCompiler(crosslinkDecorator);
+    legacyDecoratorChain = new LegacyDecoratorChain(crosslinkDecorator);
+  }
+
+  @Benchmark
+  public String compiler() {
+    return markupCompiler.compile(post);
+  }
+
+  @Benchmark
+  public String legacyChain() {
+    return legacyDecoratorChain.decorate(post);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MarkupCompilerBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,134 @@
+package com.github.njuro.jard.search;
+
+import com.github.njuro.jard.common.Constants;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilterFactory;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.core.StopFilterFactory;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
+import org.apache.lucene.analysis.snowball.SnowballPorterFilterFactory;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Microbenchmark comparing highlighting of full page of search results ({@link
+ * Constants#MAX_SEARCH_RESULTS_COUNT} long posts) by {@link OffsetHighlighter} with classic Lucene
+ * {@link Highlighter}, which analyzes every post again. Offsets of tokens are encoded beforehand,
+ * as they are computed when posts are indexed. Score is time of highlighting the whole page.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.njuro.jard.search.HighlighterBenchmark}, or directly from IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighlighterBenchmark {
+
+  private static final String FIELD = "body";
+  private static final String QUERY = "serch~1 highlighting";
+  private static final String[] WORDS = {
+    "lorem",
+    "ipsum",
+    "dolor",
+    "sit",
+    "amet",
+    "consectetur",
+    "adipiscing",
+    "elit",
+    "posts",
+    "threads",
+    "boards",
+    "replies",
+    "attachments",
+    "searching",
+    "highlighted",
+    "results"
+  };
+
+  private final List<String> bodies = new ArrayList<>();
+  private final List<String> offsets = new ArrayList<>();
+  private Analyzer analyzer;
+  private Query query;
+
+  @Setup
+  public void setUp() throws IOException {
+    // the same analyzer as configured in SearchAnalysisConfigurer
+    analyzer =
+        CustomAnalyzer.builder()
+            .withTokenizer(StandardTokenizerFactory.class)
+            .addCharFilter(HTMLStripCharFilterFactory.class)
+            .addTokenFilter(ASCIIFoldingFilterFactory.class)
+            .addTokenFilter(LowerCaseFilterFactory.class)
+            .addTokenFilter(StopFilterFactory.class)
+            .addTokenFilter(SnowballPorterFilterFactory.class, "language", "English")
+            .build();
+    query = new SimpleQueryParser(analyzer, FIELD).parse(QUERY);
+
+    var random = new Random(42);
+    for (int i = 0; i < Constants.MAX_SEARCH_RESULTS_COUNT; i++) {
+      var body = new StringBuilder();
+      while (body.length() < 8000) {
+        if (random.nextInt(50) == 0) {
+          body.append("<span class=\"quote\">&gt;search highlighting</span><br/>");
+        }
+        body.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      bodies.add(body.toString());
+      offsets.add(OffsetHighlighter.encodeOffsets(analyzer, FIELD, body.toString()));
+    }
+  }
+
+  @Benchmark
+  public void offsetHighlighter(Blackhole blackhole) {
+    var highlighter = new OffsetHighlighter(query, FIELD);
+    for (int i = 0; i < bodies.size(); i++) {
+      blackhole.consume(highlighter.highlight(bodies.get(i), offsets.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void classicHighlighter(Blackhole blackhole)
+      throws IOException, InvalidTokenOffsetsException {
+    var highlighter =
+        new Highlighter(
+            new SimpleHTMLFormatter(
+                Constants.SEARCH_RESULT_HIGHLIGHT_START, Constants.SEARCH_RESULT_HIGHLIGHT_END),
+            new QueryScorer(query));
+    for (String body : bodies) {
+      blackhole.consume(highlighter.getBestFragment(analyzer, FIELD, body));
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(HighlighterBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
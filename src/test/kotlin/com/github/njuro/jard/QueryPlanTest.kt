@@ -0,0 +1,302 @@
+package com.github.njuro.jard
+
+import com.github.njuro.jard.attachment.AttachmentFileDeletionRepository
+import com.github.njuro.jard.attachment.AttachmentRepository
+import com.github.njuro.jard.attachment.ThumbnailQuality
+import com.github.njuro.jard.ban.BanRepository
+import com.github.njuro.jard.ban.BanStatus
+import com.github.njuro.jard.post.PostLinkRepository
+import com.github.njuro.jard.post.PostRepository
+import com.github.njuro.jard.thread.ThreadRepository
+import com.github.njuro.jard.thread.ThreadStatisticsRepository
+import com.github.njuro.jard.user.UserRepository
+import com.github.njuro.jard.user.token.UserTokenRepository
+import com.github.njuro.jard.user.token.UserTokenType
+import io.kotest.matchers.collections.shouldNotBeEmpty
+import io.kotest.matchers.string.shouldContain
+import org.hibernate.resource.jdbc.spi.StatementInspector
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.TestFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import org.springframework.data.domain.PageRequest
+import org.springframework.jdbc.core.JdbcTemplate
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.time.OffsetDateTime
+import java.util.UUID
+import javax.persistence.EntityManager
+import javax.persistence.PersistenceContext
+
+/**
+ * Regression suite for query plans of hot repository queries. Each repository method is executed against seeded
+ * dataset, SQL actually generated by Hibernate is recorded and its generic plan (the one used for any parameter values)
+ * is explained, so the test fails when the query or the indexes drift apart and the planner picks different index
+ * or falls back to sequential scan.
+ *
+ * Queries of small tables (such as boards) are not included, as sequential scan is the best plan for them. The same
+ * goes for queries filtered only by range of timestamps, whose generic plan always expects large part of the table.
+ * */
+@DataJpaTest(
+    properties = [
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+            "com.github.njuro.jard.QueryPlanTest\$RecordingStatementInspector"
+    ]
+)
+@WithContainerDatabase
+internal class QueryPlanTest {
+
+    @Autowired
+    private lateinit var postRepository: PostRepository
+
+    @Autowired
+    private lateinit var postLinkRepository: PostLinkRepository
+
+    @Autowired
+    private lateinit var threadRepository: ThreadRepository
+
+    @Autowired
+    private lateinit var threadStatisticsRepository: ThreadStatisticsRepository
+
+    @Autowired
+    private lateinit var banRepository: BanRepository
+
+    @Autowired
+    private lateinit var userRepository: UserRepository
+
+    @Autowired
+    private lateinit var userTokenRepository: UserTokenRepository
+
+    @Autowired
+    private lateinit var attachmentRepository: AttachmentRepository
+
+    @Autowired
+    private lateinit var attachmentFileDeletionRepository: AttachmentFileDeletionRepository
+
+    @Autowired
+    private lateinit var jdbcTemplate: JdbcTemplate
+
+    @PersistenceContext
+    private lateinit var entityManager: EntityManager
+
+    @BeforeEach
+    fun seedDatabase() {
+        jdbcTemplate.execute(SEED_DATA)
+        jdbcTemplate.execute("ANALYZE")
+        jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_generic_plan")
+    }
+
+    @TestFactory
+    fun `hot queries use indexes`() = listOf(
+        HotQuery("PostRepository.findByThreadIdAndIdIsNotOrderByCreatedAtAsc", POSTS_THREAD_INDEX) {
+            postRepository.findByThreadIdAndIdIsNotOrderByCreatedAtAsc(THREAD, ORIGINAL_POST)
+        },
+        HotQuery("PostRepository.findTop5ByThreadIdAndIdIsNotOrderByCreatedAtDesc", "idx_posts_thread_id_created_at") {
+            postRepository.findTop5ByThreadIdAndIdIsNotOrderByCreatedAtDesc(THREAD, ORIGINAL_POST)
+        },
+        HotQuery(
+            "PostRepository.findByThreadIdAndPostNumberGreaterThanOrderByCreatedAtAsc",
+            "idx_posts_thread_id_post_number"
+        ) {
+            postRepository.findByThreadIdAndPostNumberGreaterThanOrderByCreatedAtAsc(THREAD, 110)
+        },
+        HotQuery("PostRepository.findByThreadBoardLabelAndPostNumber", "idx_posts_thread_id_post_number") {
+            postRepository.findByThreadBoardLabelAndPostNumber("b1", 110)
+        },
+        HotQuery("PostRepository.findReferencesByBoardLabelAndPostNumberIn", POSTS_THREAD_INDEX) {
+            postRepository.findReferencesByBoardLabelAndPostNumberIn("b1", listOf(110, 205, 1001))
+        },
+        HotQuery("PostRepository.findLocatedByIdIn", "posts_pkey") {
+            postRepository.findLocatedByIdIn(listOf(ORIGINAL_POST, md5Uuid("post-1-1-2")))
+        },
+        HotQuery("PostRepository.countByThreadId", POSTS_THREAD_INDEX) {
+            postRepository.countByThreadId(THREAD)
+        },
+        HotQuery("PostRepository.findDistinctIpsByThreadIdAndIpIn", "idx_posts_thread_id_ip") {
+            postRepository.findDistinctIpsByThreadIdAndIpIn(THREAD, listOf("10.0.1.1", "10.0.2.1"))
+        },
+        HotQuery("PostRepository.findLatestRepliesForThreads", POSTS_THREAD_INDEX) {
+            postRepository.findLatestRepliesForThreads(listOf(THREAD, md5Uuid("thread-1-2")), 5)
+        },
+        HotQuery("PostLinkRepository.findBacklinksByTargetPostIdIn", "idx_post_links_target_post_id") {
+            postLinkRepository.findBacklinksByTargetPostIdIn(listOf(ORIGINAL_POST, md5Uuid("post-1-1-2")))
+        },
+        HotQuery("ThreadStatisticsRepository.incrementPosterCountIfNewPoster", "idx_posts_thread_id_ip") {
+            threadStatisticsRepository.incrementPosterCountIfNewPoster(THREAD, ORIGINAL_POST, "10.0.1.1")
+        },
+        HotQuery(
+            "ThreadRepository.findByBoardIdOrderByStickiedDescLastBumpAtDesc",
+            "idx_threads_board_id_stickied_last_bump_at"
+        ) {
+            threadRepository.findByBoardIdOrderByStickiedDescLastBumpAtDesc(BOARD, PageRequest.of(0, 10))
+        },
+        HotQuery(
+            "ThreadRepository.findTopByBoardIdAndStickiedFalseOrderByLastBumpAtAsc",
+            "idx_threads_board_id_stickied_last_bump_at"
+        ) {
+            threadRepository.findTopByBoardIdAndStickiedFalseOrderByLastBumpAtAsc(BOARD)
+        },
+        HotQuery(
+            "ThreadRepository.findByBoardLabelAndOriginalPostPostNumber",
+            "idx_threads_board_id_stickied_last_bump_at"
+        ) {
+            threadRepository.findByBoardLabelAndOriginalPostPostNumber("b1", 101)
+        },
+        HotQuery("BanRepository.findByIp", "idx_bans_ip_status") {
+            banRepository.findByIp("10.1.1.1")
+        },
+        HotQuery("BanRepository.findByIpAndStatus", "idx_bans_ip_status") {
+            banRepository.findByIpAndStatus("10.1.1.1", BanStatus.ACTIVE)
+        },
+        HotQuery("BanRepository.findByStatusAndValidToBefore", "idx_bans_status_valid_to") {
+            banRepository.findByStatusAndValidToBefore(BanStatus.ACTIVE, OffsetDateTime.now())
+        },
+        HotQuery("UserTokenRepository.findByUserAndType", "idx_user_tokens_user_id_type") {
+            userTokenRepository.findByUserAndType(
+                userRepository.getById(USER),
+                UserTokenType.EMAIL_VERIFICATION
+            )
+        },
+        HotQuery("UserTokenRepository.findByValueAndType", "user_tokens_pkey") {
+            userTokenRepository.findByValueAndType("token-1-1", UserTokenType.EMAIL_VERIFICATION)
+        },
+        HotQuery("AttachmentRepository.findReadyByChecksumForShare", "idx_attachments_metadata_checksum") {
+            attachmentRepository.findReadyByChecksumForShare(md5("file-10"), ThumbnailQuality.QUALITY.name)
+        },
+        HotQuery("AttachmentRepository.existsByFolderAndFilenameAndIdNot", "idx_attachments_folder_filename") {
+            attachmentRepository.existsByFolderAndFilenameAndIdNot(
+                "b1",
+                md5("file-11") + ".png",
+                md5Uuid("attachment-1")
+            )
+        },
+        HotQuery(
+            "AttachmentFileDeletionRepository.findDueForUpdate",
+            "idx_attachment_file_deletions_next_attempt_at"
+        ) {
+            attachmentFileDeletionRepository.findDueForUpdate(OffsetDateTime.now(), 500)
+        },
+        HotQuery(
+            "AttachmentFileDeletionRepository.deleteByFolderAndFilename",
+            "idx_attachment_file_deletions_folder_filename"
+        ) {
+            attachmentFileDeletionRepository.deleteByFolderAndFilename("b1", md5("deleted-11") + ".png")
+        }
+    ).map { query ->
+        DynamicTest.dynamicTest(query.name) {
+            entityManager.clear()
+            RecordingStatementInspector.statements.clear()
+            query.execute()
+
+            val statements = RecordingStatementInspector.statements.toList()
+            statements.shouldNotBeEmpty()
+            // the first statement is the query itself, the rest are loads of associations of its results
+            val plan = explain(statements.first())
+            query.indexes.forEach { plan shouldContain it }
+        }
+    }
+
+    /**
+     * Explains generic plan of given SQL statement with JDBC parameters.
+     */
+    private fun explain(sql: String): String {
+        var parameters = 0
+        val prepared = sql.replace(Regex("\\?")) { "$${++parameters}" }
+        jdbcTemplate.execute("DEALLOCATE ALL")
+        jdbcTemplate.execute("PREPARE hot_query AS $prepared")
+        val execute = if (parameters > 0) "EXECUTE hot_query(${List(parameters) { "NULL" }.joinToString()})"
+        else "EXECUTE hot_query"
+        return jdbcTemplate.queryForList("EXPLAIN $execute", String::class.java).joinToString("\n", prefix = "$sql\n")
+    }
+
+    private class HotQuery(val name: String, vararg val indexes: String, val execute: () -> Any?)
+
+    /** Records SQL of all statements prepared by Hibernate. */
+    class RecordingStatementInspector : StatementInspector {
+        override fun inspect(sql: String): String {
+            statements += sql
+            return sql
+        }
+
+        companion object {
+            val statements: MutableList<String> = mutableListOf()
+        }
+    }
+
+    companion object {
+        /** Prefix of indexes of posts by thread, planner picks any of them for small threads. */
+        private const val POSTS_THREAD_INDEX = "idx_posts_thread_id_"
+
+        private val THREAD = md5Uuid("thread-1-1")
+        private val ORIGINAL_POST = md5Uuid("post-1-1-1")
+        private val BOARD = md5Uuid("board-1")
+        private val USER = md5Uuid("user-1")
+
+        private fun md5(value: String) =
+            MessageDigest.getInstance("MD5").digest(value.toByteArray()).joinToString("") { "%02x".format(it) }
+
+        /** Same as `md5(value)::uuid` in PostgreSQL. */
+        private fun md5Uuid(value: String) =
+            ByteBuffer.wrap(MessageDigest.getInstance("MD5").digest(value.toByteArray())).let { UUID(it.long, it.long) }
+
+        private val SEED_DATA =
+            """
+            INSERT INTO boards (id, label, name, post_counter, thread_count)
+            SELECT md5('board-' || b)::uuid, 'b' || b, 'Board ' || b, 1, 0 FROM generate_series(1, 50) b;
+
+            INSERT INTO board_settings (board_id, force_default_poster_name, nsfw)
+            SELECT id, false, false FROM boards;
+
+            INSERT INTO threads (id, created_at, last_bump_at, last_reply_at, locked, stickied, board_id)
+            SELECT md5('thread-' || b || '-' || t)::uuid, now(), now() - t * interval '1 minute', now(), false,
+                   t % 50 = 0, md5('board-' || b)::uuid
+            FROM generate_series(1, 20) b, generate_series(1, 100) t;
+
+            INSERT INTO thread_statistics (thread_id, reply_count, attachment_count, poster_count)
+            SELECT id, 9, 0, 7 FROM threads;
+
+            INSERT INTO posts (id, created_at, ip, post_number, sage, thread_id)
+            SELECT md5('post-' || b || '-' || t || '-' || p)::uuid, now() + p * interval '1 second',
+                   '10.0.' || (p % 7) || '.' || t, t * 100 + p, false, md5('thread-' || b || '-' || t)::uuid
+            FROM generate_series(1, 20) b, generate_series(1, 100) t, generate_series(1, 10) p;
+
+            UPDATE threads t SET original_post_id = p.id FROM posts p
+            WHERE p.thread_id = t.id AND p.post_number % 100 = 1;
+
+            INSERT INTO post_links (source_post_id, target_post_id)
+            SELECT p.id, previous.id FROM posts p
+            JOIN posts previous ON previous.thread_id = p.thread_id AND previous.post_number = p.post_number - 1;
+
+            INSERT INTO users (id, created_at, enabled, password, role, username)
+            SELECT md5('user-' || u)::uuid, now(), true, 'password', 'USER', 'user' || u
+            FROM generate_series(1, 1000) u;
+
+            INSERT INTO user_tokens (value, user_id, type, issued_at, expiration_at)
+            SELECT 'token-' || u || '-' || k, md5('user-' || u)::uuid,
+                   CASE WHEN k = 1 THEN 'EMAIL_VERIFICATION' ELSE 'PASSWORD_RESET' END, now(),
+                   now() + u * interval '1 minute'
+            FROM generate_series(1, 1000) u, generate_series(1, 2) k;
+
+            INSERT INTO bans (id, ip, status, valid_from, valid_to)
+            SELECT md5('ban-' || i)::uuid, '10.1.' || (i % 250) || '.' || (i / 250),
+                   CASE WHEN i % 3 = 0 THEN 'EXPIRED' ELSE 'ACTIVE' END, now(), now() + i * interval '1 hour'
+            FROM generate_series(1, 5000) i;
+
+            INSERT INTO attachments (id, category, filename, folder, original_filename, status)
+            SELECT md5('attachment-' || a)::uuid, 'IMAGE', md5('file-' || a) || '.png', 'b' || (a % 5), 'file.png',
+                   'READY'
+            FROM generate_series(1, 5000) a;
+
+            INSERT INTO attachments_metadata (attachment_id, checksum, file_size, height, mime_type, thumbnail_height,
+                                              thumbnail_width, width)
+            SELECT md5('attachment-' || a)::uuid, md5('file-' || a), '1 KB', 0, 'image/png', 0, 0, 0
+            FROM generate_series(1, 5000) a;
+
+            INSERT INTO attachment_file_deletions (id, folder, filename, attempts, next_attempt_at)
+            SELECT md5('deletion-' || d)::uuid, 'b' || (d % 5), md5('deleted-' || d) || '.png', 0,
+                   now() + (d - 10) * interval '1 minute'
+            FROM generate_series(1, 5000) d;
+            """.trimIndent()
+    }
+}
@@ -4,6 +4,7 @@ import com.github.njuro.jard.attachment.Attachment
 import com.github.njuro.jard.attachment.AttachmentCategory
 import com.github.njuro.jard.attachment.AttachmentMetadata
 import com.github.njuro.jard.attachment.EmbedData
+import com.github.njuro.jard.attachment.ThumbnailQuality
 import com.github.njuro.jard.ban.Ban
 import com.github.njuro.jard.ban.BanStatus
 import com.github.njuro.jard.ban.UnbanForm
@@ -17,6 +18,7 @@ import com.github.njuro.jard.config.security.JsonUsernamePasswordAuthenticationF
 import com.github.njuro.jard.post.Post
 import com.github.njuro.jard.post.dto.PostForm
 import com.github.njuro.jard.thread.Thread
+import com.github.njuro.jard.thread.ThreadStatistics
 import com.github.njuro.jard.thread.dto.ThreadForm
 import com.github.njuro.jard.user.User
 import com.github.njuro.jard.user.UserAuthority
@@ -41,6 +43,7 @@ val TEST_ATTACHMENTS_FOLDER: Path = TEST_RESOURCES_FOLDER.resolve("attachments")
 const val TEST_FOLDER_NAME = "test"
 const val TEST_ATTACHMENT_PNG = "test_attachment.png"
 const val TEST_ATTACHMENT_AVI = "test_attachment.avi"
+const val TEST_ATTACHMENT_MP4 = "test_attachment.mp4"
 const val TEST_ATTACHMENT_DOCX = "test_attachment.docx"
 const val TEST_ATTACHMENT_PDF_PORTRAIT = "test_attachment_portrait.pdf"
 const val TEST_ATTACHMENT_PDF_LANDSCAPE = "test_attachment_landscape.pdf"
@@ -52,14 +55,14 @@ fun board(
     label: String,
     name: String = label,
     createdAt: OffsetDateTime = OffsetDateTime.now(),
-    pageCount: Int = 1,
+    threadCount: Int = 0,
     postCounter: Long = 1L,
     settings: BoardSettings = boardSettings()
 ): Board = Board.builder()
     .label(label)
     .name(name)
     .createdAt(createdAt)
-    .pageCount(pageCount)
+    .threadCount(threadCount)
     .postCounter(postCounter)
     .settings(settings)
     .build().also { it.settings.board = it; it.settings.boardId = it.id }
@@ -73,7 +76,8 @@ fun boardSettings(
     captchaEnabled: Boolean = false,
     countryFlags: Boolean = false,
     posterThreadIds: Boolean = false,
-    nsfw: Boolean = false
+    nsfw: Boolean = false,
+    thumbnailQuality: ThumbnailQuality = ThumbnailQuality.QUALITY
 ): BoardSettings = BoardSettings.builder()
     .attachmentCategories(attachmentCategories)
     .defaultPosterName(defaultPosterName)
@@ -84,6 +88,7 @@ fun boardSettings(
     .countryFlags(countryFlags)
     .posterThreadIds(posterThreadIds)
     .nsfw(nsfw)
+    .thumbnailQuality(thumbnailQuality)
     .build()
 
 fun thread(
@@ -94,6 +99,7 @@ fun thread(
     locked: Boolean = false,
     stickied: Boolean = false,
     subject: String? = null,
+    statistics: ThreadStatistics = threadStatistics(),
 ): Thread = Thread.builder()
     .board(board)
     .createdAt(createdAt)
@@ -102,7 +108,21 @@ fun thread(
     .locked(locked)
     .stickied(stickied)
     .subject(subject)
-    .build().also { it.originalPost = post(it) }
+    .statistics(statistics)
+    .build().also {
+        it.originalPost = post(it)
+        statistics.thread = it
+    }
+
+fun threadStatistics(
+    replyCount: Int = 0,
+    attachmentCount: Int = 0,
+    posterCount: Int = 1
+): ThreadStatistics = ThreadStatistics.builder()
+    .replyCount(replyCount)
+    .attachmentCount(attachmentCount)
+    .posterCount(posterCount)
+    .build()
 
 fun post(
     thread: Thread,
@@ -146,6 +166,7 @@ fun attachment(
     remoteStorageThumbnailUrl: String? = null,
     metadata: AttachmentMetadata? = metadata(),
     embedData: EmbedData? = null,
+    thumbnailQuality: ThumbnailQuality = ThumbnailQuality.QUALITY,
 ): Attachment = Attachment.builder()
     .category(category)
     .folder(folder)
@@ -156,6 +177,7 @@ fun attachment(
     .remoteStorageThumbnailUrl(remoteStorageThumbnailUrl)
     .metadata(metadata)
     .embedData(embedData)
+    .thumbnailQuality(thumbnailQuality)
     .build().also {
         if (it.metadata != null) {
             it.metadata.attachment = it
@@ -318,6 +340,7 @@ fun BoardSettings.toForm(): BoardSettingsDto = BoardSettingsDto.builder()
     .nsfw(isNsfw)
     .posterThreadIds(isPosterThreadIds)
     .threadLimit(threadLimit)
+    .thumbnailQuality(thumbnailQuality)
     .build()
 
 fun Thread.toForm(): ThreadForm = ThreadForm.builder()
@@ -10,6 +10,8 @@ import com.github.njuro.jard.board.Board
 import com.github.njuro.jard.board.BoardRepository
 import com.github.njuro.jard.board.dto.BoardDto
 import com.github.njuro.jard.post.Post
+import com.github.njuro.jard.post.PostLink
+import com.github.njuro.jard.post.PostLinkRepository
 import com.github.njuro.jard.post.PostRepository
 import com.github.njuro.jard.post.dto.PostDto
 import com.github.njuro.jard.thread.Thread
@@ -37,6 +39,9 @@ internal class TestDataRepository {
     @Autowired
     private lateinit var postRepository: PostRepository
 
+    @Autowired
+    private lateinit var postLinkRepository: PostLinkRepository
+
     @Autowired
     private lateinit var attachmentRepository: AttachmentRepository
 
@@ -63,6 +68,8 @@ internal class TestDataRepository {
         return postRepository.save(post)
     }
 
+    fun insert(postLink: PostLink) = postLinkRepository.save(postLink)
+
     fun insert(attachment: Attachment) = attachmentRepository.save(attachment)
 
     fun insert(user: User) = userRepository.save(user)
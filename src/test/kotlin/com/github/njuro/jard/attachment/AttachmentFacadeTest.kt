@@ -19,6 +19,7 @@ import io.kotest.matchers.string.shouldMatch
 import io.mockk.Runs
 import io.mockk.every
 import io.mockk.just
+import io.mockk.spyk
 import io.mockk.verify
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.DisplayName
@@ -27,8 +28,8 @@ import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.http.MediaType
 import org.springframework.transaction.annotation.Transactional
-import org.springframework.web.multipart.MultipartFile
 import java.io.IOException
+import java.io.InputStream
 
 @WithContainerDatabase
 @Transactional
@@ -56,7 +57,7 @@ internal class AttachmentFacadeTest : MapperTest() {
             every {
                 attachmentService.saveAttachment(
                     ofType(Attachment::class),
-                    ofType(MultipartFile::class)
+                    ofType(InputStream::class)
                 )
             } answers { firstArg() }
             every { boardFacade.isMimeTypeSupported(ofType(BoardDto::class), ofType(String::class)) } returns true
@@ -72,6 +73,18 @@ internal class AttachmentFacadeTest : MapperTest() {
             }
         }
 
+        @Test
+        fun `open uploaded file only once`() {
+            val file = spyk(multipartFile("attachment.png", TEST_ATTACHMENT_PNG))
+            every { attachmentService.saveAttachment(ofType(Attachment::class), ofType(InputStream::class)) } answers {
+                secondArg<InputStream>().readBytes() shouldBe file.bytes
+                firstArg()
+            }
+
+            attachmentFacade.createAttachment(file, board).metadata.mimeType shouldBe MediaType.IMAGE_PNG_VALUE
+            verify(exactly = 1) { file.inputStream }
+        }
+
         @Test
         fun `don't create attachment with unsupported mime type`() {
             val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
@@ -0,0 +1,127 @@
+package com.github.njuro.jard.attachment
+
+import com.github.njuro.jard.TEST_FOLDER_NAME
+import com.github.njuro.jard.WithContainerDatabase
+import com.github.njuro.jard.attachment
+import com.github.njuro.jard.attachment.storage.LocalRemoteStorageService
+import com.github.njuro.jard.attachmentPath
+import com.github.njuro.jard.common.Constants.THUMBNAIL_FOLDER_NAME
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldBeSingleton
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.collections.shouldHaveSize
+import io.kotest.matchers.date.shouldBeAfter
+import io.kotest.matchers.file.shouldExist
+import io.kotest.matchers.file.shouldNotExist
+import io.kotest.matchers.shouldBe
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import org.springframework.transaction.annotation.Transactional
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.time.OffsetDateTime
+
+@DataJpaTest
+@WithContainerDatabase
+@Transactional
+internal class AttachmentFileDeletionServiceTest {
+
+    @Autowired
+    private lateinit var fileDeletionRepository: AttachmentFileDeletionRepository
+
+    private lateinit var remoteStorageService: LocalRemoteStorageService
+
+    private lateinit var fileDeletionService: AttachmentFileDeletionService
+
+    @BeforeEach
+    fun setUp(@TempDir remoteRoot: Path) {
+        remoteStorageService = LocalRemoteStorageService(remoteRoot)
+        fileDeletionService = AttachmentFileDeletionService(remoteStorageService, fileDeletionRepository)
+    }
+
+    @AfterEach
+    fun `delete test folder`() {
+        val testFolder = attachmentPath(TEST_FOLDER_NAME).toFile()
+        if (testFolder.exists()) {
+            testFolder.deleteRecursively().shouldBeTrue()
+        }
+    }
+
+    @Test
+    fun `delete files of scheduled attachments in single batch`() {
+        val attachments = (1..3).map { storedAttachment("$it.png") }
+        attachments.forEach(fileDeletionService::scheduleDeletion)
+
+        fileDeletionService.deleteDueFiles() shouldBe 3
+
+        attachments.forEach {
+            it.file.shouldNotExist()
+            it.thumbnailFile.shouldNotExist()
+            remoteStorageService.resolve(Paths.get(it.folder, it.filename)).toFile().shouldNotExist()
+        }
+        remoteStorageService.deleteRequests.shouldBeSingleton { it shouldHaveSize 6 }
+        fileDeletionRepository.findAll().shouldBeEmpty()
+    }
+
+    @Test
+    fun `retry failed deletion later`() {
+        val failing = storedAttachment("1.png")
+        val deleted = storedAttachment("2.png")
+        remoteStorageService.failingFiles.add(Paths.get(failing.folder, failing.filename))
+        fileDeletionService.scheduleDeletion(failing)
+        fileDeletionService.scheduleDeletion(deleted)
+
+        fileDeletionService.deleteDueFiles() shouldBe 2
+
+        deleted.file.shouldNotExist()
+        fileDeletionRepository.findAll().shouldBeSingleton {
+            it.filename shouldBe failing.filename
+            it.attempts shouldBe 1
+            it.nextAttemptAt shouldBeAfter OffsetDateTime.now()
+        }
+        fileDeletionService.deleteDueFiles() shouldBe 0
+    }
+
+    @Test
+    fun `do not delete file when deletion was cancelled`() {
+        val attachment = storedAttachment("1.png")
+        fileDeletionService.scheduleDeletion(attachment)
+
+        fileDeletionService.cancelDeletion(attachment.folder, attachment.filename)
+
+        fileDeletionService.deleteDueFiles() shouldBe 0
+        attachment.file.shouldExist()
+        remoteStorageService.deleteRequests.shouldBeEmpty()
+    }
+
+    @Test
+    fun `delete files without remote storage`() {
+        fileDeletionService = AttachmentFileDeletionService(null, fileDeletionRepository)
+        val attachment = storedAttachment("1.png")
+        fileDeletionService.scheduleDeletion(attachment)
+
+        fileDeletionService.deleteDueFiles() shouldBe 1
+
+        attachment.file.shouldNotExist()
+        attachment.thumbnailFile.shouldNotExist()
+        attachmentPath(TEST_FOLDER_NAME).toFile().list()!!.toList()
+            .shouldContainExactlyInAnyOrder(THUMBNAIL_FOLDER_NAME)
+    }
+
+    private fun storedAttachment(filename: String): Attachment {
+        val attachment = attachment(filename = filename, folder = TEST_FOLDER_NAME, thumbnailFilename = filename)
+        val files = listOf(attachment.folder to attachment.file, attachment.thumbnailFolder to attachment.thumbnailFile)
+        for ((folder, file) in files) {
+            Files.createDirectories(file.toPath().parent)
+            Files.writeString(file.toPath(), filename)
+            remoteStorageService.uploadFile(folder, file.name, file)
+        }
+        return attachment
+    }
+}
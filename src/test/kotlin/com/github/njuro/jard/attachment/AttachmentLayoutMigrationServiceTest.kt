@@ -0,0 +1,171 @@
+package com.github.njuro.jard.attachment
+
+import com.github.njuro.jard.TEST_FOLDER_NAME
+import com.github.njuro.jard.WithContainerDatabase
+import com.github.njuro.jard.attachment
+import com.github.njuro.jard.attachment.storage.LocalRemoteStorageService
+import com.github.njuro.jard.attachmentPath
+import com.github.njuro.jard.common.Constants.THUMBNAIL_FOLDER_NAME
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldBeSingleton
+import io.kotest.matchers.file.shouldExist
+import io.kotest.matchers.paths.shouldExist
+import io.kotest.matchers.paths.shouldNotExist
+import io.kotest.matchers.should
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldEndWith
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.annotation.Transactional
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+@DataJpaTest
+@WithContainerDatabase
+@Transactional
+internal class AttachmentLayoutMigrationServiceTest {
+
+    @Autowired
+    private lateinit var attachmentRepository: AttachmentRepository
+
+    @Autowired
+    private lateinit var fileDeletionRepository: AttachmentFileDeletionRepository
+
+    @Autowired
+    private lateinit var entityManager: TestEntityManager
+
+    @Autowired
+    private lateinit var transactionManager: PlatformTransactionManager
+
+    private lateinit var remoteStorageService: LocalRemoteStorageService
+
+    private lateinit var layoutMigrationService: AttachmentLayoutMigrationService
+
+    @BeforeEach
+    fun setUp(@TempDir remoteRoot: Path) {
+        remoteStorageService = LocalRemoteStorageService(remoteRoot)
+        layoutMigrationService = AttachmentLayoutMigrationService(
+            remoteStorageService,
+            attachmentRepository,
+            AttachmentFileDeletionService(remoteStorageService, fileDeletionRepository),
+            transactionManager
+        )
+    }
+
+    @AfterEach
+    fun `delete test folder`() {
+        val testFolder = attachmentPath(TEST_FOLDER_NAME).toFile()
+        if (testFolder.exists()) {
+            testFolder.deleteRecursively().shouldBeTrue()
+        }
+    }
+
+    @Test
+    fun `resolve filename in layout`() {
+        val checksum = "1fa3" + "0".repeat(60)
+
+        UserContentLayout.SHARDED.resolveFilename("$checksum.png") shouldBe "1f/a3/$checksum.png"
+        UserContentLayout.SHARDED.resolveFilename("1f/a3/$checksum.png") shouldBe "1f/a3/$checksum.png"
+        UserContentLayout.SHARDED.resolveFilename("$checksum-fast.png") shouldBe "1f/a3/$checksum-fast.png"
+        UserContentLayout.SHARDED.resolveFilename("1625000000000.png") shouldEndWith "/1625000000000.png"
+        UserContentLayout.FLAT.resolveFilename("1f/a3/$checksum.png") shouldBe "$checksum.png"
+    }
+
+    @Test
+    fun `move files shared by attachments to sharded layout`() {
+        val shared = List(2) { storedAttachment("1fa3" + "0".repeat(60)) }
+        val other = storedAttachment("1625000000000")
+
+        migrateAll()
+
+        (shared + other).map { attachmentRepository.findById(it.id).get() }.forEach {
+            it.filename shouldBe UserContentLayout.SHARDED.resolveFilename(it.filename)
+            it.file.shouldExist()
+            it.thumbnailFile.shouldExist()
+            it.remoteStorageUrl shouldBe
+                remoteStorageService.resolve(Paths.get(it.folder, it.filename)).toUri().toString()
+        }
+        attachmentRepository.findById(shared[0].id).get().filename shouldBe
+            attachmentRepository.findById(shared[1].id).get().filename
+        fileDeletionRepository.findAll().filter { it.folder == TEST_FOLDER_NAME }
+            .map { it.filename }.sorted() shouldBe listOf(other.filename, shared[0].filename).sorted()
+        attachmentRepository.findFlatAfter("", "", 1000).filter { it.folder == TEST_FOLDER_NAME }.shouldBeEmpty()
+    }
+
+    @Test
+    fun `move file missing locally by copying it on remote storage`() {
+        val attachment = storedAttachment("1625000000000")
+        Files.delete(attachment.file.toPath())
+
+        migrateAll()
+
+        attachmentRepository.findById(attachment.id).get().should {
+            it.filename shouldBe UserContentLayout.SHARDED.resolveFilename(attachment.filename)
+            it.thumbnailFile.shouldExist()
+            remoteStorageService.resolve(Paths.get(it.folder, it.filename)).shouldExist()
+            it.remoteStorageUrl shouldBe
+                remoteStorageService.resolve(Paths.get(it.folder, it.filename)).toUri().toString()
+        }
+        fileDeletionRepository.findAll().filter { it.folder == TEST_FOLDER_NAME }.shouldBeSingleton()
+    }
+
+    @Test
+    fun `leave attachment with file which cannot be copied in flat layout`() {
+        val attachment = storedAttachment("1625000000000")
+        val other = storedAttachment("1fa3" + "0".repeat(60))
+        Files.delete(attachment.file.toPath())
+        Files.delete(remoteStorageService.resolve(Paths.get(attachment.folder, attachment.filename)))
+
+        migrateAll()
+
+        attachmentRepository.findById(attachment.id).get().should {
+            it.filename shouldBe attachment.filename
+            it.remoteStorageUrl shouldBe attachment.remoteStorageUrl
+        }
+        attachmentPath(TEST_FOLDER_NAME, UserContentLayout.SHARDED.resolveFilename(attachment.filename))
+            .shouldNotExist()
+        attachmentPath(
+            TEST_FOLDER_NAME,
+            THUMBNAIL_FOLDER_NAME,
+            UserContentLayout.SHARDED.resolveFilename(attachment.thumbnailFilename)
+        ).shouldNotExist()
+        fileDeletionRepository.findAll().filter { it.folder == TEST_FOLDER_NAME }.map { it.filename } shouldBe
+            listOf(other.filename)
+    }
+
+    private fun migrateAll() {
+        var last: AttachmentFiles? = null
+        do {
+            last = layoutMigrationService.migrateBatch(last)
+        } while (last != null)
+        entityManager.clear()
+    }
+
+    private fun storedAttachment(name: String): Attachment {
+        val attachment = attachment(
+            filename = "$name.png",
+            folder = TEST_FOLDER_NAME,
+            thumbnailFilename = "$name.png"
+        )
+        for (file in listOf(attachment.file, attachment.thumbnailFile)) {
+            Files.createDirectories(file.toPath().parent)
+            Files.writeString(file.toPath(), name)
+        }
+        attachment.remoteStorageUrl =
+            remoteStorageService.uploadFile(attachment.folder, attachment.filename, attachment.file)
+        attachment.remoteStorageThumbnailUrl = remoteStorageService.uploadFile(
+            attachment.thumbnailFolder,
+            attachment.thumbnailFilename,
+            attachment.thumbnailFile
+        )
+        return attachmentRepository.save(attachment)
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.njuro.jard.attachment
+
+import io.kotest.assertions.throwables.shouldNotThrowAny
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.booleans.shouldBeTrue
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+internal class AttachmentProcessingExecutorTest {
+
+    private lateinit var executor: AttachmentProcessingExecutor
+
+    @BeforeEach
+    fun initializeExecutor() {
+        executor = AttachmentProcessingExecutor(1, 1)
+    }
+
+    @AfterEach
+    fun shutdownExecutor() {
+        executor.shutdown()
+    }
+
+    @Test
+    fun `reject attachment when processing queue is full`() {
+        repeat(2) { executor.reserve(AttachmentCategory.VIDEO) }
+
+        shouldThrow<AttachmentProcessingRejectedException> {
+            executor.reserve(AttachmentCategory.VIDEO)
+        }
+        shouldNotThrowAny {
+            executor.reserve(AttachmentCategory.IMAGE)
+        }
+
+        executor.release(AttachmentCategory.VIDEO)
+        shouldNotThrowAny {
+            executor.reserve(AttachmentCategory.VIDEO)
+        }
+    }
+
+    @Test
+    fun `release slot when processing finishes`() {
+        val finished = CountDownLatch(2)
+        repeat(2) {
+            executor.reserve(AttachmentCategory.VIDEO)
+            executor.submit(AttachmentCategory.VIDEO) { finished.countDown() }
+        }
+        finished.await(5, TimeUnit.SECONDS).shouldBeTrue()
+
+        val processed = CountDownLatch(1)
+        awaitReservation(AttachmentCategory.VIDEO)
+        executor.submit(AttachmentCategory.VIDEO) { throw IllegalStateException() }
+        awaitReservation(AttachmentCategory.VIDEO)
+        executor.submit(AttachmentCategory.VIDEO) { processed.countDown() }
+        processed.await(5, TimeUnit.SECONDS).shouldBeTrue()
+
+        repeat(2) { awaitReservation(AttachmentCategory.VIDEO) }
+        shouldThrow<AttachmentProcessingRejectedException> {
+            executor.reserve(AttachmentCategory.VIDEO)
+        }
+    }
+
+    /**
+     * Reserves slot, retrying until the worker releases slot of finished task (it does so only after the task
+     * returns, so possibly after the test was notified about its completion).
+     */
+    private fun awaitReservation(category: AttachmentCategory) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (true) {
+            try {
+                executor.reserve(category)
+                return
+            } catch (ex: AttachmentProcessingRejectedException) {
+                if (System.nanoTime() > deadline) {
+                    throw ex
+                }
+                Thread.sleep(10)
+            }
+        }
+    }
+}
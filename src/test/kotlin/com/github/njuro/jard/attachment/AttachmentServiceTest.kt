@@ -16,6 +16,9 @@ import com.github.njuro.jard.metadata
 import com.github.njuro.jard.multipartFile
 import com.ninjasquad.springmockk.MockkBean
 import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
 import io.kotest.matchers.file.shouldBeAFile
 import io.kotest.matchers.file.shouldBeReadable
 import io.kotest.matchers.file.shouldExist
@@ -25,6 +28,7 @@ import io.kotest.matchers.file.shouldNotBeEmpty
 import io.kotest.matchers.file.shouldNotExist
 import io.kotest.matchers.nulls.shouldBeNull
 import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.optional.shouldBePresent
 import io.kotest.matchers.optional.shouldNotBePresent
 import io.kotest.matchers.should
 import io.kotest.matchers.shouldBe
@@ -32,6 +36,7 @@ import io.kotest.matchers.string.shouldNotBeBlank
 import io.mockk.Runs
 import io.mockk.every
 import io.mockk.just
+import io.mockk.verify
 import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.DisplayName
@@ -39,8 +44,12 @@ import org.junit.jupiter.api.Nested
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.util.ReflectionTestUtils
 import org.springframework.transaction.annotation.Transactional
+import org.springframework.web.multipart.MultipartFile
 import java.io.File
+import java.nio.file.Paths
+import java.security.MessageDigest
 
 @SpringBootTest
 @WithContainerDatabase
@@ -53,6 +62,9 @@ internal class AttachmentServiceTest {
     @MockkBean
     private lateinit var remoteStorageService: RemoteStorageService
 
+    @Autowired
+    private lateinit var fileDeletionService: AttachmentFileDeletionService
+
     @Autowired
     private lateinit var db: TestDataRepository
 
@@ -92,15 +104,16 @@ internal class AttachmentServiceTest {
                     metadata = metadata(mimeType = "image/png")
                 )
 
-            attachmentService.saveAttachment(attachment, file).should {
+            attachmentService.saveAndProcess(attachment, file).should {
+                it.status shouldBe AttachmentStatus.READY
                 it.metadata.shouldNotBeNull()
                 it.remoteStorageUrl shouldBe getRemoteUrl(attachment.folder, attachment.filename)
-                it.file.shouldMatchFile("attachment", "png")
+                it.file.shouldMatchFile(file.checksum(), "png")
                 it.remoteStorageThumbnailUrl shouldBe getRemoteUrl(
                     "$TEST_FOLDER_NAME/$THUMBNAIL_FOLDER_NAME",
                     attachment.filename
                 )
-                it.thumbnailFile.shouldMatchFile("attachment", "png")
+                it.thumbnailFile.shouldMatchFile(file.checksum(), "png")
             }
         }
 
@@ -115,10 +128,10 @@ internal class AttachmentServiceTest {
                     metadata = metadata(mimeType = "video/avi")
                 )
 
-            attachmentService.saveAttachment(attachment, file).should {
+            attachmentService.saveAndProcess(attachment, file).should {
                 it.remoteStorageUrl.shouldNotBeBlank()
-                it.file.shouldMatchFile("attachment", "avi")
-                it.thumbnailFile.shouldMatchFile("attachment", DEFAULT_THUMBNAIL_EXTENSION)
+                it.file.shouldMatchFile(file.checksum(), "avi")
+                it.thumbnailFile.shouldMatchFile(file.checksum(), DEFAULT_THUMBNAIL_EXTENSION)
                 it.remoteStorageThumbnailUrl.shouldNotBeBlank()
             }
         }
@@ -134,14 +147,158 @@ internal class AttachmentServiceTest {
                     metadata = metadata(mimeType = "application/vnd.openxmlformats-officedocument.wordprocessingml.document")
                 )
 
-            attachmentService.saveAttachment(attachment, file).should {
-                it.file.shouldMatchFile("attachment", "docx")
+            attachmentService.saveAndProcess(attachment, file).should {
+                it.file.shouldMatchFile(file.checksum(), "docx")
                 it.remoteStorageUrl.shouldNotBeBlank()
                 it.thumbnailFile.shouldBeNull()
                 it.remoteStorageThumbnailUrl.shouldBeNull()
             }
         }
 
+        @Test
+        fun `save attachment in processing state`() {
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val attachment =
+                attachment(filename = file.name, folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png"))
+
+            attachmentService.saveAttachment(attachment, file.inputStream).should {
+                it.status shouldBe AttachmentStatus.PROCESSING
+                it.category shouldBe AttachmentCategory.IMAGE
+                it.file.shouldMatchFile(file.checksum(), "png")
+                it.thumbnailFile.shouldBeNull()
+                it.metadata.checksum shouldBe file.checksum()
+                it.metadata.fileSizeBytes shouldBe file.size
+            }
+            attachmentPath(TEST_FOLDER_NAME).toFile().list()!!.toList().shouldContainExactly("${file.checksum()}.png")
+            db.select(attachment).shouldBePresent { it.status shouldBe AttachmentStatus.PROCESSING }
+        }
+
+        @Test
+        fun `discard files when processing fails`() {
+            every { remoteStorageService.uploadFile(any(), any(), any()) } throws IllegalArgumentException()
+            every { remoteStorageService.deleteFile(any(), any()) } just Runs
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val attachment =
+                attachment(filename = file.name, folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png"))
+
+            attachmentService.saveAndProcess(attachment, file).should {
+                it.status shouldBe AttachmentStatus.FAILED
+                it.filename.shouldBeNull()
+                it.thumbnailFilename.shouldBeNull()
+                it.remoteStorageUrl.shouldBeNull()
+            }
+            attachmentPath(TEST_FOLDER_NAME, "${file.checksum()}.png").toFile().shouldNotExist()
+            db.select(attachment).shouldBePresent { it.status shouldBe AttachmentStatus.FAILED }
+        }
+
+        @Test
+        fun `discard files of attachment deleted during processing`() {
+            every { remoteStorageService.uploadFile(any(), any(), any()) } returns "url"
+            every { remoteStorageService.deleteFile(any(), any()) } just Runs
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val attachment = attachmentService.saveAttachment(
+                attachment(filename = file.name, folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+                file.inputStream
+            )
+            val storedFile = attachment.file
+
+            attachmentService.deleteAttachment(attachment)
+            attachmentService.processAttachment(attachment).filename.shouldBeNull()
+            storedFile.shouldNotExist()
+            attachmentPath(TEST_FOLDER_NAME, THUMBNAIL_FOLDER_NAME, "${file.checksum()}.png").toFile().shouldNotExist()
+            db.select(attachment).shouldNotBePresent()
+        }
+
+        @Test
+        fun `reuse stored files of attachment with the same content`() {
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val original = attachmentService.saveAndProcess(
+                attachment(filename = "1.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+                file
+            )
+            val repost =
+                attachment(
+                    filename = "2.png",
+                    originalFilename = "repost.png",
+                    folder = "$TEST_FOLDER_NAME/repost",
+                    metadata = metadata(mimeType = "image/png")
+                )
+
+            attachmentService.saveAttachment(repost, file.inputStream).should {
+                it.status shouldBe AttachmentStatus.READY
+                it.originalFilename shouldBe "repost.png"
+                it.folder shouldBe original.folder
+                it.filename shouldBe original.filename
+                it.thumbnailFilename shouldBe original.thumbnailFilename
+                it.remoteStorageUrl shouldBe original.remoteStorageUrl
+                it.remoteStorageThumbnailUrl shouldBe original.remoteStorageThumbnailUrl
+                it.metadata.width shouldBe original.metadata.width
+                it.metadata.thumbnailWidth shouldBe original.metadata.thumbnailWidth
+            }
+            verify(exactly = 2) { remoteStorageService.uploadFile(any(), any(), any()) }
+            attachmentPath(TEST_FOLDER_NAME).toFile().list()!!.toList()
+                .shouldContainExactlyInAnyOrder(original.filename, THUMBNAIL_FOLDER_NAME, "repost")
+            attachmentPath(TEST_FOLDER_NAME, "repost").toFile().list()!!.shouldBeEmpty()
+        }
+
+        @Test
+        fun `don't reuse stored files of attachment with different thumbnail quality`() {
+            every { remoteStorageService.uploadFile(any(), any(), any()) } returns null
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val original = attachmentService.saveAndProcess(
+                attachment(filename = "1.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+                file
+            )
+            val repost =
+                attachment(filename = "2.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png"))
+                    .apply { thumbnailQuality = ThumbnailQuality.FAST }
+
+            attachmentService.saveAndProcess(repost, file).should {
+                it.status shouldBe AttachmentStatus.READY
+                it.filename shouldBe "${file.checksum()}-fast.png"
+                it.file.shouldMatchFile("${file.checksum()}-fast", "png")
+                it.thumbnailFile.shouldMatchFile("${file.checksum()}-fast", "png")
+            }
+            original.file.shouldMatchFile(file.checksum(), "png")
+            original.thumbnailFile.shouldMatchFile(file.checksum(), "png")
+        }
+
+        @Test
+        fun `don't rewrite thumbnail already stored for the same file`() {
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val thumbnail = attachmentPath(TEST_FOLDER_NAME, THUMBNAIL_FOLDER_NAME, "${file.checksum()}.png").toFile()
+            thumbnail.parentFile.mkdirs()
+            thumbnail.writeText("stored thumbnail")
+            val attachment =
+                attachment(filename = file.name, folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png"))
+
+            attachmentService.saveAndProcess(attachment, file).should {
+                it.status shouldBe AttachmentStatus.READY
+                it.thumbnailFile.readText() shouldBe "stored thumbnail"
+            }
+            thumbnail.parentFile.list()!!.toList().shouldContainExactly(thumbnail.name)
+        }
+
+        @Test
+        fun `save attachment in sharded layout`() {
+            ReflectionTestUtils.setField(attachmentService, "layout", UserContentLayout.SHARDED)
+            val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+            val checksum = file.checksum()
+            val attachment =
+                attachment(filename = file.name, folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png"))
+
+            try {
+                attachmentService.saveAndProcess(attachment, file).should {
+                    it.filename shouldBe "${checksum.substring(0, 2)}/${checksum.substring(2, 4)}/$checksum.png"
+                    it.file.shouldMatchFile(checksum, "png")
+                    it.thumbnailFilename shouldBe it.filename
+                    it.thumbnailFile.shouldMatchFile(checksum, "png")
+                }
+            } finally {
+                ReflectionTestUtils.setField(attachmentService, "layout", UserContentLayout.FLAT)
+            }
+        }
+
         @Test
         fun `save embedded attachment`() {
             val attachment =
@@ -153,7 +310,7 @@ internal class AttachmentServiceTest {
     @Test
     fun `delete attachment`() {
         every { remoteStorageService.uploadFile(any(), any(), any()) } returns null
-        every { remoteStorageService.deleteFile(ofType(String::class), ofType(String::class)) } just Runs
+        every { remoteStorageService.deleteFiles(any()) } returns emptySet()
 
         val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
         val attachment =
@@ -163,14 +320,99 @@ internal class AttachmentServiceTest {
                 folder = TEST_FOLDER_NAME,
                 metadata = metadata(mimeType = "image/png")
             )
-        val saved = attachmentService.saveAttachment(attachment, file)
+        val saved = attachmentService.saveAndProcess(attachment, file)
 
         attachmentService.deleteAttachment(saved)
         db.select(saved).shouldNotBePresent()
+        attachment.file.shouldExist()
+
+        fileDeletionService.deleteDueFiles() shouldBe 1
         attachment.file.shouldNotExist()
         attachment.thumbnailFile.shouldNotExist()
+        verify(exactly = 1) {
+            remoteStorageService.deleteFiles(
+                listOf(
+                    Paths.get(attachment.folder, attachment.filename),
+                    Paths.get(attachment.thumbnailFolder, attachment.thumbnailFilename)
+                )
+            )
+        }
+    }
+
+    @Test
+    fun `delete files of multiple attachments in single batch`() {
+        every { remoteStorageService.uploadFile(any(), any(), any()) } returns "url"
+        every { remoteStorageService.deleteFiles(any()) } returns emptySet()
+
+        val attachments = mapOf(
+            TEST_ATTACHMENT_PNG to "image/png",
+            TEST_ATTACHMENT_DOCX to "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
+        ).map { (filename, mimeType) ->
+            attachmentService.saveAndProcess(
+                attachment(filename = filename, folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = mimeType)),
+                multipartFile(filename, filename)
+            )
+        }
+
+        attachmentService.deleteAttachments(attachments)
+        fileDeletionService.deleteDueFiles() shouldBe 2
+        attachments.forEach { it.file.shouldNotExist() }
+        verify(exactly = 1) { remoteStorageService.deleteFiles(match { it.size == 3 }) }
+    }
+
+    @Test
+    fun `delete shared files only with last attachment`() {
+        every { remoteStorageService.uploadFile(any(), any(), any()) } returns "url"
+        every { remoteStorageService.deleteFiles(any()) } returns emptySet()
+
+        val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+        val first = attachmentService.saveAndProcess(
+            attachment(filename = "1.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+            file
+        )
+        val second = attachmentService.saveAttachment(
+            attachment(filename = "2.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+            file.inputStream
+        )
+
+        attachmentService.deleteAttachment(first)
+        db.select(first).shouldNotBePresent()
+        fileDeletionService.deleteDueFiles() shouldBe 0
+        second.file.shouldExist()
+        second.thumbnailFile.shouldExist()
+
+        attachmentService.deleteAttachment(second)
+        fileDeletionService.deleteDueFiles() shouldBe 1
+        second.file.shouldNotExist()
+        second.thumbnailFile.shouldNotExist()
+        verify(exactly = 1) { remoteStorageService.deleteFiles(any()) }
+    }
+
+    @Test
+    fun `cancel scheduled deletion of file stored again`() {
+        every { remoteStorageService.uploadFile(any(), any(), any()) } returns "url"
+
+        val file = multipartFile("attachment.png", TEST_ATTACHMENT_PNG)
+        val deleted = attachmentService.saveAndProcess(
+            attachment(filename = "1.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+            file
+        )
+        attachmentService.deleteAttachment(deleted)
+
+        val stored = attachmentService.saveAttachment(
+            attachment(filename = "2.png", folder = TEST_FOLDER_NAME, metadata = metadata(mimeType = "image/png")),
+            file.inputStream
+        )
+        fileDeletionService.deleteDueFiles() shouldBe 0
+        stored.file.shouldExist()
     }
 
+    private fun MultipartFile.checksum() =
+        MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+
+    private fun AttachmentService.saveAndProcess(attachment: Attachment, file: MultipartFile) =
+        processAttachment(saveAttachment(attachment, file.inputStream))
+
     private fun File.shouldMatchFile(name: String, extension: String) = should {
         it.shouldExist()
         it.shouldBeAFile()
@@ -0,0 +1,174 @@
+package com.github.njuro.jard.attachment
+
+import com.github.njuro.jard.TEST_ATTACHMENT_PNG
+import com.github.njuro.jard.WithContainerDatabase
+import com.github.njuro.jard.attachment
+import com.github.njuro.jard.attachment.storage.RemoteStorageService
+import com.github.njuro.jard.common.Constants.EMBED_FOLDER_NAME
+import com.github.njuro.jard.common.Constants.EMBED_THUMBNAIL_MAX_ATTEMPTS
+import com.github.njuro.jard.common.Constants.THUMBNAIL_FOLDER_NAME
+import com.github.njuro.jard.embedData
+import com.github.njuro.jard.multipartFile
+import com.ninjasquad.springmockk.MockkBean
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldNotContain
+import io.kotest.matchers.date.shouldBeAfter
+import io.kotest.matchers.file.shouldExist
+import io.kotest.matchers.file.shouldNotExist
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.should
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldEndWith
+import io.mockk.Runs
+import io.mockk.every
+import io.mockk.just
+import io.mockk.verify
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.transaction.annotation.Transactional
+import java.io.File
+import java.time.OffsetDateTime
+
+@SpringBootTest
+@WithContainerDatabase
+@Transactional
+internal class EmbedThumbnailServiceTest {
+
+    @Autowired
+    private lateinit var embedThumbnailService: EmbedThumbnailService
+
+    @Autowired
+    private lateinit var attachmentService: AttachmentService
+
+    @Autowired
+    private lateinit var fileDeletionService: AttachmentFileDeletionService
+
+    @MockkBean
+    private lateinit var remoteStorageService: RemoteStorageService
+
+    private val image = multipartFile("thumbnail.png", TEST_ATTACHMENT_PNG).bytes
+
+    @BeforeEach
+    fun setUpMocks() {
+        every {
+            remoteStorageService.uploadFile(ofType(String::class), ofType(String::class), ofType(File::class))
+        } answers { "https://remote-storage.com/${firstArg<String>()}/${secondArg<String>()}" }
+        every { remoteStorageService.deleteFile(any(), any()) } just Runs
+        every { remoteStorageService.deleteFiles(any()) } returns emptySet()
+    }
+
+    @Test
+    fun `schedule download of thumbnail of saved embedded attachment`() {
+        val attachment = saveEmbeddedAttachment()
+
+        attachment.embedData.thumbnailNextAttemptAt.shouldNotBeNull()
+        embedThumbnailService.getDueThumbnails().map { it.attachmentId } shouldContainExactly listOf(attachment.id)
+    }
+
+    @Test
+    fun `store downloaded thumbnail`() {
+        val attachment = saveEmbeddedAttachment()
+
+        embedThumbnailService.saveThumbnail(attachment.id, image)
+
+        attachment.should {
+            it.thumbnailFolder shouldBe "$EMBED_FOLDER_NAME/$THUMBNAIL_FOLDER_NAME"
+            it.thumbnailFilename shouldEndWith ".png"
+            it.thumbnailFile.shouldExist()
+            it.remoteStorageThumbnailUrl shouldBe
+                "https://remote-storage.com/${it.thumbnailFolder}/${it.thumbnailFilename}"
+            it.embedData.thumbnailNextAttemptAt.shouldBeNull()
+        }
+        embedThumbnailService.getDueThumbnails().map { it.attachmentId } shouldNotContain attachment.id
+    }
+
+    @Test
+    fun `don't store the same thumbnail again`() {
+        val first = saveEmbeddedAttachment()
+        val second = saveEmbeddedAttachment()
+        embedThumbnailService.saveThumbnail(first.id, image)
+        first.thumbnailFile.setLastModified(0).shouldBeTrue()
+
+        embedThumbnailService.saveThumbnail(second.id, image)
+
+        second.should {
+            it.thumbnailFilename shouldBe first.thumbnailFilename
+            it.thumbnailFile.lastModified() shouldBe 0
+            it.remoteStorageThumbnailUrl shouldBe first.remoteStorageThumbnailUrl
+            it.embedData.thumbnailNextAttemptAt.shouldBeNull()
+        }
+        verify(exactly = 1) { remoteStorageService.uploadFile(any(), any(), any()) }
+    }
+
+    @Test
+    fun `don't download thumbnail of attachment which already has it`() {
+        val attachment = saveEmbeddedAttachment()
+        embedThumbnailService.saveThumbnail(attachment.id, image)
+        attachment.embedData.thumbnailNextAttemptAt = OffsetDateTime.now()
+
+        embedThumbnailService.saveThumbnail(attachment.id, image)
+
+        attachment.embedData.thumbnailNextAttemptAt.shouldBeNull()
+        embedThumbnailService.getDueThumbnails().map { it.attachmentId } shouldNotContain attachment.id
+    }
+
+    @Test
+    fun `don't store thumbnail which is not an image`() {
+        val attachment = saveEmbeddedAttachment()
+
+        shouldThrow<IllegalArgumentException> {
+            embedThumbnailService.saveThumbnail(attachment.id, "not an image".toByteArray())
+        }
+        attachment.thumbnailFilename.shouldBeNull()
+    }
+
+    @Test
+    fun `delete shared thumbnail only with last attachment`() {
+        val first = saveEmbeddedAttachment()
+        val second = saveEmbeddedAttachment()
+        embedThumbnailService.saveThumbnail(first.id, image)
+        embedThumbnailService.saveThumbnail(second.id, image)
+        first.thumbnailFilename shouldBe second.thumbnailFilename
+
+        attachmentService.deleteAttachment(first)
+        fileDeletionService.deleteDueFiles() shouldBe 0
+        second.thumbnailFile.shouldExist()
+
+        attachmentService.deleteAttachment(second)
+        fileDeletionService.deleteDueFiles() shouldBe 1
+        second.thumbnailFile.shouldNotExist()
+    }
+
+    @Test
+    fun `postpone failed download until it is given up`() {
+        val attachment = saveEmbeddedAttachment()
+
+        embedThumbnailService.postponeThumbnail(attachment.id)
+        attachment.embedData.should {
+            it.thumbnailAttempts shouldBe 1
+            it.thumbnailNextAttemptAt shouldBeAfter OffsetDateTime.now()
+        }
+
+        repeat(EMBED_THUMBNAIL_MAX_ATTEMPTS - 1) { embedThumbnailService.postponeThumbnail(attachment.id) }
+        attachment.embedData.thumbnailNextAttemptAt.shouldBeNull()
+    }
+
+    private fun saveEmbeddedAttachment() = attachmentService.saveEmbeddedAttachment(
+        attachment(
+            category = AttachmentCategory.EMBED,
+            metadata = null,
+            embedData = embedData(
+                embedUrl = "https://mock-service.com/video",
+                thumbnailUrl = "https://mock-service.com/thumbnail.png",
+                providerName = "mock",
+                uploaderName = "mock-uploader",
+                renderedHtml = "<b>mock</b>"
+            )
+        )
+    )
+}
@@ -0,0 +1,94 @@
+package com.github.njuro.jard.attachment.embedded
+
+import ac.simons.oembed.OembedEndpoint
+import ac.simons.oembed.OembedResponse
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedCodePenHandler
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedRedditHandler
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedSpotifyHandler
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedTwitterHandler
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedVimeoHandler
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedYoutubeHandler
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.optional.shouldBeEmpty
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+internal class EmbedRouterTest {
+
+    private lateinit var router: EmbedRouter
+
+    @BeforeEach
+    fun initializeRouter() {
+        val wildcardHandler = object : EmbeddedAttachmentHandler {
+            override fun getProviderName() = "wildcard"
+
+            override fun registerEndpoint() = OembedEndpoint().apply {
+                name = providerName
+                format = OembedResponse.Format.json
+                endpoint = "https://wildcard.com/oembed"
+                urlSchemes = listOf("https?://[^/]+/wildcard/.+")
+            }
+        }
+        router = EmbedRouter(
+            listOf(
+                EmbeddedYoutubeHandler(),
+                EmbeddedVimeoHandler(),
+                EmbeddedTwitterHandler(),
+                EmbeddedRedditHandler(),
+                EmbeddedSpotifyHandler(),
+                EmbeddedCodePenHandler(),
+                wildcardHandler
+            )
+        )
+    }
+
+    @Test
+    fun `route url to handler of its provider`() {
+        route("https://www.youtube.com/watch?v=kJQP7kiw5Fk").shouldBeInstanceOf<EmbeddedYoutubeHandler>()
+        route("https://youtu.be/kJQP7kiw5Fk").shouldBeInstanceOf<EmbeddedYoutubeHandler>()
+        route("https://m.youtube.com/embed/kJQP7kiw5Fk").shouldBeInstanceOf<EmbeddedYoutubeHandler>()
+        route("https://vimeo.com/437808118").shouldBeInstanceOf<EmbeddedVimeoHandler>()
+        route("https://twitter.com/elonmusk/status/1284291528328790016")
+            .shouldBeInstanceOf<EmbeddedTwitterHandler>()
+        route("https://old.reddit.com/r/java/comments/hyb41c/what_is/").shouldBeInstanceOf<EmbeddedRedditHandler>()
+        route("https://open.spotify.com/album/0YvYmLBFFwYxgI4U9KKgUm").shouldBeInstanceOf<EmbeddedSpotifyHandler>()
+        route("https://codepen.io/lynnandtonic/pen/dyGjvLB").shouldBeInstanceOf<EmbeddedCodePenHandler>()
+        route("https://example.com/wildcard/video").providerName shouldBe "wildcard"
+    }
+
+    @Test
+    fun `don't route unsupported url`() {
+        router.route(EmbedRouter.normalizeUrl("https://example.com/video")).shouldBeEmpty()
+        router.route(EmbedRouter.normalizeUrl("https://vimeo.com/about")).shouldBeEmpty()
+        router.route(EmbedRouter.normalizeUrl("https://youtube.com.example.com/watch?v=1")).shouldBeEmpty()
+    }
+
+    @Test
+    fun `get domains from url scheme`() {
+        EmbedRouter.getDomains("https?://(?:[^\\.]+\\.)?(?:youtu\\.be|youtube\\.com/embed)/([a-zA-Z0-9_-]+)")
+            .shouldContainExactly("youtu.be", "youtube.com")
+        EmbedRouter.getDomains("https?://(open|play).spotify.com/.+/.+").shouldContainExactly("spotify.com")
+        EmbedRouter.getDomains("https?://(old\\.)?reddit\\.com/r/.*/comments/.*/.*").shouldContainExactly("reddit.com")
+        EmbedRouter.getDomains("https?://[^/]+/wildcard\\.html").shouldBeEmpty()
+    }
+
+    @Test
+    fun `normalize url`() {
+        EmbedRouter.normalizeUrl(" HTTPS://Www.Example.com") shouldBe "https://www.example.com/"
+        EmbedRouter.normalizeUrl("http://example.com:80/a/../b?x=1#y") shouldBe "http://example.com/b?x=1"
+        EmbedRouter.normalizeUrl("https://user@example.com:8443/a") shouldBe "https://example.com:8443/a"
+        shouldThrow<IllegalArgumentException> {
+            EmbedRouter.normalizeUrl("not a url")
+        }
+        shouldThrow<IllegalArgumentException> {
+            EmbedRouter.normalizeUrl("ftp://example.com/video")
+        }
+    }
+
+    private fun route(url: String) = router.route(EmbedRouter.normalizeUrl(url)).orElseThrow().handler
+}
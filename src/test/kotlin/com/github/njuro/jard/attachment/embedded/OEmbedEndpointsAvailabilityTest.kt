@@ -40,7 +40,9 @@ internal class OEmbedEndpointsAvailabilityTest {
         useDefaultFilters = false
     )
     @Import(
-        EmbedService::class
+        EmbedService::class,
+        EmbedRouter::class,
+        OembedResolver::class
     )
     internal class EmbedConfiguration
 
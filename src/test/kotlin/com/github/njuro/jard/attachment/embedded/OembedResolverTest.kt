@@ -0,0 +1,180 @@
+package com.github.njuro.jard.attachment.embedded
+
+import ac.simons.oembed.OembedEndpoint
+import ac.simons.oembed.OembedException
+import ac.simons.oembed.OembedResponse
+import com.github.njuro.jard.attachment.embedded.handlers.EmbeddedAttachmentHandler
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.should
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import io.kotest.matchers.types.shouldBeInstanceOf
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.cache.concurrent.ConcurrentMapCache
+import java.time.Duration
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+internal class OembedResolverTest {
+
+    private lateinit var mockServer: MockWebServer
+    private lateinit var resolver: OembedResolver
+    private lateinit var route: EmbedRoute
+
+    @BeforeEach
+    fun initializeResolver() {
+        mockServer = MockWebServer()
+        mockServer.start()
+
+        val handler = object : EmbeddedAttachmentHandler {
+            override fun getProviderName() = MockEmbeddedAttachmentHandler.PROVIDER_NAME
+
+            override fun getUserAgent() = "mock-agent"
+
+            override fun registerEndpoint() = OembedEndpoint().apply {
+                name = providerName
+                format = OembedResponse.Format.json
+                endpoint = mockServer.url("/oembed?maxwidth=500").toString()
+                urlSchemes = listOf("https://mock-service\\.com/.*")
+            }
+        }
+        route = EmbedRoute(handler)
+        resolver = OembedResolver(
+            ConcurrentMapCache("oembed"),
+            Duration.ofSeconds(1),
+            Duration.ofMillis(500),
+            1024,
+            2,
+            Duration.ofMillis(200)
+        )
+    }
+
+    @AfterEach
+    fun shutdownResolver() {
+        resolver.shutdown()
+        mockServer.shutdown()
+    }
+
+    @Test
+    fun `resolve and fix oembed response`() {
+        mockServer.enqueue(MockResponse().setBody(MockEmbeddedAttachmentHandler.RESPONSE))
+
+        resolve("https://mock-service.com/video").should {
+            it.providerName shouldBe MockEmbeddedAttachmentHandler.PROVIDER_NAME
+            it.title shouldBe "mock-title"
+            it.authorName shouldBe "mock-uploader"
+            it.html shouldBe "<b>mock-data</b>"
+            it.width shouldBe 0
+            it.height shouldBe 150
+        }
+        mockServer.takeRequest().should {
+            it.path shouldBe "/oembed?maxwidth=500&format=json&url=https%3A%2F%2Fmock-service.com%2Fvideo"
+            it.getHeader("User-Agent") shouldBe "mock-agent"
+        }
+    }
+
+    @Test
+    fun `resolve cached response`() {
+        mockServer.enqueue(MockResponse().setBody(MockEmbeddedAttachmentHandler.RESPONSE))
+
+        resolve("https://mock-service.com/video").title shouldBe "mock-title"
+        resolve("https://mock-service.com/video").title shouldBe "mock-title"
+        mockServer.requestCount shouldBe 1
+    }
+
+    @Test
+    fun `discover oembed endpoint`() {
+        val page = """
+            <html><head>
+            <link rel="alternate" type="application/json+oembed" href="/oembed?url=page" title="mock">
+            </head><body>${"x".repeat(2048)}</body></html>
+        """.trimIndent()
+        mockServer.enqueue(MockResponse().setBody(page))
+        mockServer.enqueue(MockResponse().setBody(MockEmbeddedAttachmentHandler.RESPONSE))
+
+        val url = mockServer.url("/page").toString()
+        resolver.discover(url).get(5, TimeUnit.SECONDS).title shouldBe "mock-title"
+        mockServer.takeRequest().path shouldBe "/page"
+        mockServer.takeRequest().path shouldBe "/oembed?url=page"
+    }
+
+    @Test
+    fun `don't discover oembed endpoint when page doesn't link to it`() {
+        mockServer.enqueue(MockResponse().setBody("<html><head></head></html>"))
+
+        shouldThrow<ExecutionException> {
+            resolver.discover(mockServer.url("/page").toString()).get(5, TimeUnit.SECONDS)
+        }.cause.shouldBeInstanceOf<OembedException>()
+    }
+
+    @Test
+    fun `reject too large response`() {
+        mockServer.enqueue(MockResponse().setBody("{\"html\": \"${"x".repeat(2048)}\"}"))
+
+        shouldThrow<ExecutionException> {
+            resolve("https://mock-service.com/video")
+        }.cause.shouldBeInstanceOf<OembedException>()
+    }
+
+    @Test
+    fun `reject slow response`() {
+        mockServer.enqueue(
+            MockResponse().setBody(MockEmbeddedAttachmentHandler.RESPONSE).setBodyDelay(3, TimeUnit.SECONDS)
+        )
+
+        shouldThrow<ExecutionException> {
+            resolver.resolve(route, "https://mock-service.com/video").get(2, TimeUnit.SECONDS)
+        }.cause.shouldBeInstanceOf<OembedException>()
+    }
+
+    @Test
+    fun `suspend requests to failing provider`() {
+        repeat(2) { mockServer.enqueue(MockResponse().setResponseCode(503)) }
+        mockServer.enqueue(MockResponse().setBody(MockEmbeddedAttachmentHandler.RESPONSE))
+
+        repeat(2) {
+            shouldThrow<ExecutionException> {
+                resolve("https://mock-service.com/video")
+            }.cause!!.message shouldContain "503"
+        }
+        shouldThrow<ExecutionException> {
+            resolve("https://mock-service.com/video")
+        }.cause!!.message shouldContain "suspended"
+        mockServer.requestCount shouldBe 2
+
+        Thread.sleep(300)
+        resolve("https://mock-service.com/video").title shouldBe "mock-title"
+        mockServer.requestCount shouldBe 3
+    }
+
+    @Test
+    fun `don't suspend requests to provider on client errors`() {
+        repeat(2) { mockServer.enqueue(MockResponse().setResponseCode(404)) }
+        mockServer.enqueue(MockResponse().setBody(MockEmbeddedAttachmentHandler.RESPONSE))
+
+        repeat(2) {
+            shouldThrow<ExecutionException> {
+                resolve("https://mock-service.com/video")
+            }.cause!!.message shouldContain "404"
+        }
+        resolve("https://mock-service.com/video").title shouldBe "mock-title"
+    }
+
+    @Test
+    fun `fetch thumbnail`() {
+        mockServer.enqueue(MockResponse().setBody("mock-image"))
+
+        resolver.fetchThumbnail(mockServer.url("/thumbnail.png").toString())
+            .get(5, TimeUnit.SECONDS) shouldBe "mock-image".toByteArray()
+        mockServer.takeRequest().getHeader("Accept") shouldBe "image/*"
+        shouldThrow<ExecutionException> {
+            resolver.fetchThumbnail("not a url").get(5, TimeUnit.SECONDS)
+        }.cause.shouldBeInstanceOf<OembedException>()
+    }
+
+    private fun resolve(url: String) = resolver.resolve(route, url).get(5, TimeUnit.SECONDS)
+}
@@ -2,17 +2,23 @@ package com.github.njuro.jard.attachment.helpers
 
 import com.github.njuro.jard.*
 import com.github.njuro.jard.attachment.AttachmentCategory
+import com.github.njuro.jard.attachment.ThumbnailQuality
 import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.matchers.ints.shouldBeGreaterThan
 import io.kotest.matchers.ints.shouldBeInRange
 import io.kotest.matchers.ints.shouldBeLessThan
 import io.kotest.matchers.should
+import io.kotest.matchers.shouldBe
 import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.CsvSource
+import java.awt.image.BufferedImage
 import java.awt.image.RenderedImage
 import java.nio.file.Files
 import java.nio.file.StandardCopyOption
+import javax.imageio.ImageIO
 
 internal class AttachmentImageUtilsTest {
 
@@ -36,6 +42,64 @@ internal class AttachmentImageUtilsTest {
     fun `create thumbnail for image attachment`() =
         createAndVerifyThumbnail(AttachmentCategory.IMAGE, "image/png", TEST_ATTACHMENT_PNG)
 
+    @Test
+    fun `create fast thumbnail for image attachment`() =
+        createAndVerifyThumbnail(
+            AttachmentCategory.IMAGE,
+            "image/png",
+            TEST_ATTACHMENT_PNG,
+            thumbnailQuality = ThumbnailQuality.FAST
+        )
+
+    @ParameterizedTest
+    @CsvSource("png, QUALITY", "png, FAST", "jpg, QUALITY", "jpg, FAST")
+    fun `create thumbnail for large image attachment`(format: String, thumbnailQuality: ThumbnailQuality) {
+        val filename = "large.$format"
+        ImageIO.write(
+            BufferedImage(3000, 2000, BufferedImage.TYPE_INT_RGB),
+            format,
+            attachmentPath(TEST_FOLDER_NAME, filename).toFile()
+        )
+        val attachment = attachment(
+            filename = filename,
+            folder = TEST_FOLDER_NAME,
+            metadata = metadata(mimeType = "image/$format"),
+            thumbnailQuality = thumbnailQuality
+        )
+
+        AttachmentImageUtils.createThumbnail(attachment).should {
+            it.width shouldBe 250
+            it.height shouldBeInRange 166..167
+        }
+        attachment.metadata.should {
+            it.width shouldBe 3000
+            it.height shouldBe 2000
+        }
+    }
+
+    @Test
+    fun `get dimensions of corrupted gif image attachment`() {
+        Files.copy(
+            testAttachmentPath(TEST_ATTACHMENT_GIF_CORRUPTED),
+            attachmentPath(TEST_FOLDER_NAME, TEST_ATTACHMENT_GIF_CORRUPTED),
+            StandardCopyOption.REPLACE_EXISTING
+        )
+        val attachment = attachment(filename = TEST_ATTACHMENT_GIF_CORRUPTED, folder = TEST_FOLDER_NAME)
+
+        AttachmentImageUtils.getImageDimensions(attachment).should {
+            it.width shouldBeGreaterThan 0
+            it.height shouldBeGreaterThan 0
+        }
+    }
+
+    @Test
+    fun `calculate subsampling factor`() {
+        AttachmentImageUtils.getSubsamplingFactor(3000, 250, 1) shouldBe 12
+        AttachmentImageUtils.getSubsamplingFactor(3000, 250, 2) shouldBe 6
+        AttachmentImageUtils.getSubsamplingFactor(400, 250, 2) shouldBe 1
+        AttachmentImageUtils.getSubsamplingFactor(3000, 0, 2) shouldBe 1
+    }
+
     @Test
     fun `create thumbnail for corrupted gif image attachment`() =
         createAndVerifyThumbnail(AttachmentCategory.IMAGE, "image/gif", TEST_ATTACHMENT_GIF_CORRUPTED)
@@ -56,6 +120,42 @@ internal class AttachmentImageUtilsTest {
             it.width shouldBeGreaterThan it.height
         }
 
+    @ParameterizedTest
+    @CsvSource(
+        "$TEST_ATTACHMENT_PDF_PORTRAIT, QUALITY, 176, 250",
+        "$TEST_ATTACHMENT_PDF_PORTRAIT, FAST, 176, 250",
+        "$TEST_ATTACHMENT_PDF_LANDSCAPE, QUALITY, 250, 176",
+        "$TEST_ATTACHMENT_PDF_LANDSCAPE, FAST, 250, 176"
+    )
+    fun `create thumbnail for pdf attachment in thumbnail size`(
+        filename: String,
+        thumbnailQuality: ThumbnailQuality,
+        thumbnailWidth: Int,
+        thumbnailHeight: Int
+    ) {
+        Files.copy(
+            testAttachmentPath(filename),
+            attachmentPath(TEST_FOLDER_NAME, filename),
+            StandardCopyOption.REPLACE_EXISTING
+        )
+        val attachment = attachment(
+            category = AttachmentCategory.PDF,
+            filename = filename,
+            folder = TEST_FOLDER_NAME,
+            metadata = metadata(mimeType = "application/pdf"),
+            thumbnailQuality = thumbnailQuality
+        )
+
+        AttachmentImageUtils.createThumbnail(attachment).should {
+            it.width shouldBeInRange thumbnailWidth - 10..thumbnailWidth
+            it.height shouldBeInRange thumbnailHeight - 10..thumbnailHeight
+        }
+        attachment.metadata.should {
+            it.thumbnailWidth shouldBe thumbnailWidth
+            it.thumbnailHeight shouldBe thumbnailHeight
+        }
+    }
+
     @Test
     fun `don't create thumbnail for other categories`() {
         shouldThrow<IllegalArgumentException> {
@@ -71,6 +171,7 @@ internal class AttachmentImageUtilsTest {
         attachmentCategory: AttachmentCategory,
         mimeType: String,
         filename: String,
+        thumbnailQuality: ThumbnailQuality = ThumbnailQuality.QUALITY,
         additionalCheck: ((RenderedImage) -> Unit)? = null
     ) {
         Files.copy(
@@ -83,7 +184,8 @@ internal class AttachmentImageUtilsTest {
             category = attachmentCategory,
             filename = filename,
             folder = TEST_FOLDER_NAME,
-            metadata = metadata(mimeType = mimeType)
+            metadata = metadata(mimeType = mimeType),
+            thumbnailQuality = thumbnailQuality
         )
         val thumbnail = AttachmentImageUtils.createThumbnail(attachment)
 
@@ -0,0 +1,55 @@
+package com.github.njuro.jard.attachment.helpers
+
+import com.github.njuro.jard.TEST_ATTACHMENT_GIF_CORRUPTED
+import com.github.njuro.jard.testAttachmentPath
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.ints.shouldBeGreaterThan
+import io.kotest.matchers.shouldBe
+import org.junit.jupiter.api.Test
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.nio.file.Files
+
+internal class GifDecoderTest {
+
+    private val gif = Files.readAllBytes(testAttachmentPath(TEST_ATTACHMENT_GIF_CORRUPTED))
+
+    @Test
+    fun `read first frame only`() {
+        val full = GifDecoder.read(gif)
+        val input = ByteArrayInputStream(gif)
+
+        val firstFrame = GifDecoder.readFirstFrame(input)
+
+        input.available() shouldBeGreaterThan 0
+        firstFrame.frameCount shouldBe 1
+        firstFrame.width shouldBe full.width
+        firstFrame.height shouldBe full.height
+        val expected = full.getFrame(0)
+        val actual = firstFrame.getFrame(0)
+        actual.getRGB(0, 0, actual.width, actual.height, null, 0, actual.width) shouldBe
+            expected.getRGB(0, 0, expected.width, expected.height, null, 0, expected.width)
+    }
+
+    @Test
+    fun `count frames without decoding them`() {
+        val frameCount = GifDecoder.countFrames(ByteArrayInputStream(gif))
+
+        frameCount shouldBeGreaterThan 1
+        frameCount shouldBe GifDecoder.read(gif).frameCount
+    }
+
+    @Test
+    fun `fail to read first frame of truncated image`() {
+        shouldThrow<IOException> {
+            GifDecoder.readFirstFrame(ByteArrayInputStream(gif.copyOf(100)))
+        }
+    }
+
+    @Test
+    fun `fail to read image without gif header`() {
+        shouldThrow<IOException> {
+            GifDecoder.readFirstFrame(ByteArrayInputStream("not a gif file".toByteArray()))
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.njuro.jard.attachment.helpers
+
+import com.github.njuro.jard.TEST_ATTACHMENT_AVI
+import com.github.njuro.jard.TEST_ATTACHMENT_MP3
+import com.github.njuro.jard.TEST_ATTACHMENT_MP4
+import com.github.njuro.jard.testAttachmentPath
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+import java.io.IOException
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+internal class VideoThumbnailMakerTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = [TEST_ATTACHMENT_AVI, TEST_ATTACHMENT_MP4])
+    fun `get image from video`(filename: String) {
+        val image = VideoThumbnailMaker.getImageFromVideo(testAttachmentPath(filename))
+
+        image.width shouldBe expectedWidth(filename)
+    }
+
+    @Test
+    fun `get image from keyframe before offset`() {
+        val file = testAttachmentPath(TEST_ATTACHMENT_MP4)
+        val first = VideoThumbnailMaker.getImageFromVideo(file, Duration.ZERO, TIMEOUT)
+
+        VideoThumbnailMaker.getImageFromVideo(file, Duration.ofMillis(2500), TIMEOUT)
+            .getRGB(0, 0) shouldNotBe first.getRGB(0, 0)
+        VideoThumbnailMaker.getImageFromVideo(file, Duration.ofMinutes(10), TIMEOUT)
+            .getRGB(0, 0) shouldBe first.getRGB(0, 0)
+    }
+
+    @Test
+    fun `fail when extraction times out`() {
+        shouldThrow<IOException> {
+            VideoThumbnailMaker.getImageFromVideo(
+                testAttachmentPath(TEST_ATTACHMENT_AVI),
+                Duration.ZERO,
+                Duration.ofNanos(1)
+            )
+        }
+    }
+
+    @Test
+    fun `fail on file without video stream`() {
+        shouldThrow<IOException> {
+            VideoThumbnailMaker.getImageFromVideo(testAttachmentPath(TEST_ATTACHMENT_MP3))
+        }
+    }
+
+    @Test
+    fun `get images from many videos in parallel`() {
+        val files = List(64) { if (it % 2 == 0) TEST_ATTACHMENT_AVI else TEST_ATTACHMENT_MP4 }
+        val executor = Executors.newFixedThreadPool(16)
+
+        try {
+            val widths = executor.invokeAll(
+                files.map { Callable { VideoThumbnailMaker.getImageFromVideo(testAttachmentPath(it)).width } }
+            ).map { it.get() }
+
+            widths shouldBe files.map(::expectedWidth)
+        } finally {
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.MINUTES)
+        }
+    }
+
+    private fun expectedWidth(filename: String) = if (filename == TEST_ATTACHMENT_MP4) 320 else AVI_WIDTH
+
+    companion object {
+        private val TIMEOUT = Duration.ofSeconds(30)
+        private const val AVI_WIDTH = 480
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.njuro.jard.attachment.storage
+
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+
+/**
+ * Stand-in for remote storage, which keeps the files in given local folder. Batch deletions are
+ * recorded, and files can be marked as failing to be deleted.
+ */
+internal class LocalRemoteStorageService(private val root: Path) : RemoteStorageService {
+
+    val deleteRequests = mutableListOf<Collection<Path>>()
+    val failingFiles = mutableSetOf<Path>()
+
+    fun resolve(file: Path): Path = root.resolve(file)
+
+    override fun uploadFile(folder: String, filename: String, file: File): String {
+        val target = resolve(Paths.get(folder, filename))
+        Files.createDirectories(target.parent)
+        Files.copy(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING)
+        return target.toUri().toString()
+    }
+
+    override fun copyFile(sourceFolder: String, sourceFilename: String, folder: String, filename: String): String {
+        val source = resolve(Paths.get(sourceFolder, sourceFilename))
+        if (!Files.exists(source)) throw IllegalArgumentException("Copying of $source failed")
+        val target = resolve(Paths.get(folder, filename))
+        Files.createDirectories(target.parent)
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING)
+        return target.toUri().toString()
+    }
+
+    override fun deleteFile(folder: String, filename: String) {
+        val file = Paths.get(folder, filename)
+        if (file in failingFiles) throw IllegalArgumentException("Deletion of $file failed")
+        Files.deleteIfExists(resolve(file))
+    }
+
+    override fun deleteFiles(files: Collection<Path>): Set<Path> {
+        deleteRequests.add(files.toList())
+        files.filter { it !in failingFiles }.forEach { Files.deleteIfExists(resolve(it)) }
+        return files.filter { it in failingFiles }.toSet()
+    }
+}
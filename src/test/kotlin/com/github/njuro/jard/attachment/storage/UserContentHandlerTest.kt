@@ -0,0 +1,146 @@
+package com.github.njuro.jard.attachment.storage
+
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.should
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import org.apache.catalina.Globals
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.springframework.http.HttpHeaders
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.web.servlet.HandlerMapping
+import java.nio.file.Files
+import java.nio.file.Path
+import javax.servlet.http.HttpServletResponse
+
+internal class UserContentHandlerTest {
+
+    @TempDir
+    lateinit var root: Path
+
+    private lateinit var handler: UserContentHandler
+
+    private val content = ByteArray(1000) { it.toByte() }
+
+    @BeforeEach
+    fun setUp() {
+        handler = UserContentHandler(root)
+        Files.createDirectories(root.resolve("r"))
+        Files.write(root.resolve("r/abc123.webm"), content)
+    }
+
+    @Test
+    fun `serve whole file as immutable content`() {
+        val response = handle(request("r/abc123.webm"))
+
+        response.status shouldBe HttpServletResponse.SC_OK
+        response.contentAsByteArray shouldBe content
+        response.contentType shouldBe "video/webm"
+        response.getHeader(HttpHeaders.ETAG) shouldBe "\"abc123\""
+        response.getHeader(HttpHeaders.ACCEPT_RANGES) shouldBe "bytes"
+        response.getHeader(HttpHeaders.CACHE_CONTROL)!!.should {
+            it shouldContain "immutable"
+            it shouldContain "max-age=31536000"
+        }
+    }
+
+    @Test
+    fun `serve nothing when etag matches`() {
+        val request = request("r/abc123.webm").apply { addHeader(HttpHeaders.IF_NONE_MATCH, "\"x\", \"abc123\"") }
+
+        val response = handle(request)
+
+        response.status shouldBe HttpServletResponse.SC_NOT_MODIFIED
+        response.contentAsByteArray.size shouldBe 0
+    }
+
+    @Test
+    fun `serve requested range`() {
+        val request = request("r/abc123.webm").apply { addHeader(HttpHeaders.RANGE, "bytes=100-199") }
+
+        val response = handle(request)
+
+        response.status shouldBe HttpServletResponse.SC_PARTIAL_CONTENT
+        response.getHeader(HttpHeaders.CONTENT_RANGE) shouldBe "bytes 100-199/1000"
+        response.contentAsByteArray shouldBe content.copyOfRange(100, 200)
+    }
+
+    @Test
+    fun `serve whole file when range is for different version`() {
+        val request = request("r/abc123.webm").apply {
+            addHeader(HttpHeaders.RANGE, "bytes=100-199")
+            addHeader(HttpHeaders.IF_RANGE, "\"other\"")
+        }
+
+        val response = handle(request)
+
+        response.status shouldBe HttpServletResponse.SC_OK
+        response.contentAsByteArray shouldBe content
+    }
+
+    @Test
+    fun `reject unsatisfiable range`() {
+        val request = request("r/abc123.webm").apply { addHeader(HttpHeaders.RANGE, "bytes=1000-") }
+
+        val response = handle(request)
+
+        response.status shouldBe HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE
+        response.getHeader(HttpHeaders.CONTENT_RANGE) shouldBe "bytes */1000"
+    }
+
+    @Test
+    fun `let container send file when sendfile is supported`() {
+        val request = request("r/abc123.webm").apply {
+            setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, true)
+            addHeader(HttpHeaders.RANGE, "bytes=500-")
+        }
+
+        val response = handle(request)
+
+        response.contentLengthLong shouldBe 500
+        response.contentAsByteArray.size shouldBe 0
+        request.getAttribute(Globals.SENDFILE_FILENAME_ATTR) shouldBe
+            root.resolve("r/abc123.webm").toRealPath().toString()
+        request.getAttribute(Globals.SENDFILE_FILE_START_ATTR) shouldBe 500L
+        request.getAttribute(Globals.SENDFILE_FILE_END_ATTR) shouldBe 1000L
+    }
+
+    @Test
+    fun `serve only headers on head request`() {
+        val response = handle(request("r/abc123.webm", "HEAD"))
+
+        response.status shouldBe HttpServletResponse.SC_OK
+        response.contentLengthLong shouldBe 1000
+        response.contentAsByteArray.size shouldBe 0
+    }
+
+    @Test
+    fun `don't serve missing files and files outside of user content folder`() {
+        Files.write(root.resolveSibling("secret.txt"), content)
+
+        handle(request("r/missing.png")).status shouldBe HttpServletResponse.SC_NOT_FOUND
+        handle(request("r")).status shouldBe HttpServletResponse.SC_NOT_FOUND
+        handle(request("../secret.txt")).status shouldBe HttpServletResponse.SC_NOT_FOUND
+    }
+
+    @Test
+    fun `reject other methods than get and head`() {
+        val response = handle(request("r/abc123.webm", "DELETE"))
+
+        response.status shouldBe HttpServletResponse.SC_METHOD_NOT_ALLOWED
+        response.getHeader(HttpHeaders.ALLOW) shouldBe "GET, HEAD"
+        Files.exists(root.resolve("r/abc123.webm")) shouldBe true
+        response.getHeader(HttpHeaders.ETAG).shouldBeNull()
+    }
+
+    private fun request(path: String, method: String = "GET") =
+        MockHttpServletRequest(method, "/api/usercontent/$path").apply {
+            setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, path)
+        }
+
+    private fun handle(request: MockHttpServletRequest) =
+        MockHttpServletResponse().also { handler.handleRequest(request, it) }
+}
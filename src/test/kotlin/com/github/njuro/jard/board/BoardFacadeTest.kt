@@ -7,7 +7,6 @@ import com.github.njuro.jard.attachment.AttachmentCategory
 import com.github.njuro.jard.board
 import com.github.njuro.jard.boardSettings
 import com.github.njuro.jard.post
-import com.github.njuro.jard.post.PostFacade
 import com.github.njuro.jard.thread
 import com.github.njuro.jard.thread.ThreadFacade
 import com.github.njuro.jard.toForm
@@ -31,9 +30,6 @@ internal class BoardFacadeTest : MapperTest() {
     @MockkBean
     private lateinit var threadFacade: ThreadFacade
 
-    @MockkBean
-    private lateinit var postFacade: PostFacade
-
     @Autowired
     private lateinit var boardFacade: BoardFacade
 
@@ -65,12 +61,11 @@ internal class BoardFacadeTest : MapperTest() {
         val replies = listOf(post(thread).toDto(), post(thread).toDto())
 
         every {
-            threadFacade.getThreadsFromBoard(
+            threadFacade.getThreadsWithLatestRepliesFromBoard(
                 board.toDto(),
                 ofType(Pageable::class)
             )
-        } returns listOf(thread.toDto())
-        every { postFacade.getLatestRepliesForThread(thread.toDto()) } returns replies
+        } returns listOf(thread.toDto().apply { this.replies = replies })
 
         val actual = boardFacade.getBoard(board.toDto(), Pageable.unpaged())
         actual.threads shouldHaveSize 1
@@ -2,23 +2,27 @@ package com.github.njuro.jard.board
 
 import com.github.njuro.jard.TestDataRepository
 import com.github.njuro.jard.WithContainerDatabase
-import com.github.njuro.jard.WithTestDataRepository
 import com.github.njuro.jard.board
 import com.github.njuro.jard.common.Constants.MAX_THREADS_PER_PAGE
 import com.github.njuro.jard.thread
+import com.github.njuro.jard.thread.ThreadService
 import io.kotest.matchers.optional.shouldBePresent
 import io.kotest.matchers.shouldBe
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.transaction.annotation.Transactional
 import javax.persistence.EntityManager
 import javax.persistence.PersistenceContext
 
-@DataJpaTest
-@WithTestDataRepository
+@SpringBootTest
 @WithContainerDatabase
+@Transactional
 internal class BoardPageCountTest {
 
+    @Autowired
+    private lateinit var threadService: ThreadService
+
     @Autowired
     private lateinit var db: TestDataRepository
 
@@ -28,20 +32,21 @@ internal class BoardPageCountTest {
     @Test
     fun `calculate page count of board`() {
         val board = db.insert(board(label = "r"))
-        entityManager.flush()
-        entityManager.clear()
-        db.select(board).shouldBePresent { it.pageCount shouldBe 0 }
+        assertPageCount(board, 0)
 
-        (1..MAX_THREADS_PER_PAGE).forEach {
-            db.insert(thread(board), threadNumber = it.toLong())
-        }
-        entityManager.flush()
-        entityManager.clear()
-        db.select(board).shouldBePresent { it.pageCount shouldBe 1 }
+        repeat(MAX_THREADS_PER_PAGE) { threadService.saveThread(thread(board)) }
+        assertPageCount(board, 1)
+
+        val lastThread = threadService.saveThread(thread(board))
+        assertPageCount(board, 2)
+
+        threadService.deleteThread(lastThread)
+        assertPageCount(board, 1)
+    }
 
-        db.insert(thread(board), threadNumber = MAX_THREADS_PER_PAGE + 1L)
+    private fun assertPageCount(board: Board, pageCount: Int) {
         entityManager.flush()
         entityManager.clear()
-        db.select(board).shouldBePresent { it.pageCount shouldBe 2 }
+        db.select(board).shouldBePresent { it.pageCount shouldBe pageCount }
     }
 }
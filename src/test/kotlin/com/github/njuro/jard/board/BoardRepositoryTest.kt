@@ -8,6 +8,7 @@ import io.kotest.matchers.shouldBe
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import java.util.UUID
 
 @DataJpaTest
 @WithContainerDatabase
@@ -39,11 +40,24 @@ internal class BoardRepositoryTest {
     }
 
     @Test
-    fun `increase post counter of board`() {
+    fun `retrieve thread count of board`() {
+        val board = board(label = "r", threadCount = 3)
+        boardRepository.save(board)
+
+        boardRepository.getThreadCount(board.id) shouldBe 3
+    }
+
+    @Test
+    fun `reserve post numbers on board`() {
         val board = board(label = "sp", postCounter = 15)
         boardRepository.save(board)
 
-        boardRepository.increasePostNumber(board.label)
-        boardRepository.findByLabel(board.label).shouldBePresent { it.postCounter shouldBe board.postCounter + 1 }
+        boardRepository.reservePostNumbers(board.id, 5).shouldBePresent { it shouldBe board.postCounter }
+        boardRepository.getPostCounter(board.label) shouldBe board.postCounter + 5
+    }
+
+    @Test
+    fun `don't reserve post numbers on non-existing board`() {
+        boardRepository.reservePostNumbers(UUID.randomUUID(), 1).shouldBeEmpty()
     }
 }
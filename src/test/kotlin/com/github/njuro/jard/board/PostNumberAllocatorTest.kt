@@ -0,0 +1,76 @@
+package com.github.njuro.jard.board
+
+import com.github.njuro.jard.TestDataRepository
+import com.github.njuro.jard.WithContainerDatabase
+import com.github.njuro.jard.board
+import com.github.njuro.jard.post
+import com.github.njuro.jard.post.PostService
+import com.github.njuro.jard.thread
+import com.github.njuro.jard.thread.ThreadService
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.optional.shouldBePresent
+import io.kotest.matchers.shouldBe
+import org.junit.jupiter.api.Test
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.transaction.PlatformTransactionManager
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+@SpringBootTest
+@WithContainerDatabase
+internal class PostNumberAllocatorTest {
+
+    @Autowired
+    private lateinit var postService: PostService
+
+    @Autowired
+    private lateinit var threadService: ThreadService
+
+    @Autowired
+    private lateinit var boardRepository: BoardRepository
+
+    @Autowired
+    private lateinit var transactionManager: PlatformTransactionManager
+
+    @Autowired
+    private lateinit var db: TestDataRepository
+
+    @Test
+    fun `allocate unique post numbers for parallel replies`() {
+        val board = db.insert(board(label = "r", postCounter = 1L))
+        val thread = threadService.saveThread(thread(board))
+
+        val postNumbers = runInParallel(REPLIES) { postService.savePost(post(thread)).postNumber }
+
+        postNumbers.shouldContainExactlyInAnyOrder((2L until 2L + REPLIES).toList())
+        db.select(board).shouldBePresent { it.postCounter shouldBe 2L + REPLIES }
+    }
+
+    @Test
+    fun `allocate unique post numbers from reserved blocks`() {
+        val board = db.insert(board(label = "r", postCounter = 1L))
+        val allocator = BlockReservationPostNumberAllocator(boardRepository, transactionManager, 7)
+
+        val postNumbers = runInParallel(REPLIES) { allocator.allocatePostNumber(board) }
+
+        postNumbers.shouldContainExactlyInAnyOrder((1L..REPLIES).toList())
+        db.select(board).shouldBePresent { it.postCounter shouldBe 1L + 7 * ((REPLIES + 6) / 7) }
+    }
+
+    private fun <T> runInParallel(times: Int, task: () -> T): List<T> {
+        val executor = Executors.newFixedThreadPool(THREADS)
+        try {
+            return executor.invokeAll(List(times) { Callable { task() } }).map { it.get() }
+        } finally {
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.MINUTES)
+        }
+    }
+
+    companion object {
+        private const val THREADS = 8
+        private const val REPLIES = 100
+    }
+}
@@ -9,6 +9,9 @@ import com.github.njuro.jard.thread
 import com.github.njuro.jard.thread.Thread
 import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.collections.shouldHaveSize
+import io.kotest.matchers.maps.shouldBeEmpty
 import io.kotest.matchers.nulls.shouldNotBeNull
 import io.kotest.matchers.optional.shouldBePresent
 import io.kotest.matchers.optional.shouldNotBePresent
@@ -56,6 +59,16 @@ internal class PostServiceTest {
         }
     }
 
+    @Test
+    fun `record links when saving post`() {
+        val reply = postService.savePost(post(thread, postNumber = 0L, body = ">>1 and again >>1, >>42"))
+
+        postService.getBacklinks(listOf(thread.originalPost.id)).should {
+            it.keys shouldContainExactly listOf(thread.originalPost.id)
+            it[thread.originalPost.id]!!.map(Backlink::getPostNumber) shouldContainExactly listOf(reply.postNumber)
+        }
+    }
+
     @Test
     fun `resolve post`() {
         val post = db.insert(post(thread, postNumber = 2L))
@@ -70,6 +83,20 @@ internal class PostServiceTest {
         }
     }
 
+    @Test
+    fun `resolve post references`() {
+        db.insert(post(thread, postNumber = 2L))
+
+        postService.resolvePostReferences(board.label, listOf(1L, 2L, 42L)).should {
+            it.keys shouldContainExactlyInAnyOrder listOf(1L, 2L)
+            it[1L].shouldNotBeNull().isOriginalPost shouldBe true
+            it[2L].shouldNotBeNull().should { reference ->
+                reference.threadNumber shouldBe thread.threadNumber
+                reference.isOriginalPost shouldBe false
+            }
+        }
+    }
+
     @Test
     fun `get latest replies for thread`() {
         (2L..8L).forEach { db.insert(post(thread, postNumber = it)) }
@@ -78,6 +105,17 @@ internal class PostServiceTest {
             .shouldContainExactly(4L, 5L, 6L, 7L, 8L)
     }
 
+    @Test
+    fun `get latest replies for multiple threads`() {
+        val otherThread = db.insert(thread(board), threadNumber = 10L)
+        (2L..8L).forEach { db.insert(post(thread, postNumber = it)) }
+        (11L..12L).forEach { db.insert(post(otherThread, postNumber = it)) }
+
+        val replies = postService.getLatestRepliesForThreads(listOf(thread.id, otherThread.id))
+        replies[thread.id]!!.map(Post::getPostNumber).shouldContainExactly(4L, 5L, 6L, 7L, 8L)
+        replies[otherThread.id]!!.map(Post::getPostNumber).shouldContainExactly(11L, 12L)
+    }
+
     @Test
     fun `delete single post`() {
         val reply = db.insert(post(thread, postNumber = 2L))
@@ -95,4 +133,16 @@ internal class PostServiceTest {
         postService.deletePosts(replies)
         postRepository.countByThreadId(thread.id) shouldBe 1L
     }
+
+    @Test
+    fun `delete links together with posts`() {
+        val reply = db.insert(post(thread, postNumber = 2L))
+        val linkingReply = postService.savePost(post(thread, postNumber = 0L, body = ">>1 >>2"))
+        postService.getBacklinks(listOf(thread.originalPost.id, reply.id)).keys shouldHaveSize 2
+
+        postService.deletePost(reply)
+        postService.getBacklinks(listOf(thread.originalPost.id, reply.id)).keys shouldHaveSize 1
+        postService.deletePosts(listOf(linkingReply))
+        postService.getBacklinks(listOf(thread.originalPost.id)).shouldBeEmpty()
+    }
 }
@@ -22,9 +22,9 @@ import org.springframework.transaction.annotation.Transactional
 @SpringBootTest
 @WithContainerDatabase
 @Transactional
-internal class CrosslinkDecoratorTest : PostDecoratorTest() {
+internal class CrosslinkDecoratorTest {
     @Autowired
-    private lateinit var decorator: CrosslinkDecorator
+    private lateinit var markupCompiler: MarkupCompiler
 
     @Autowired
     private lateinit var db: TestDataRepository
@@ -33,8 +33,6 @@ internal class CrosslinkDecoratorTest : PostDecoratorTest() {
 
     private lateinit var postFitness: Post
 
-    override fun initDecorator() = decorator
-
     @BeforeEach
     @Suppress("UNUSED_VARIABLE")
     fun `initialize data`() {
@@ -50,6 +48,11 @@ internal class CrosslinkDecoratorTest : PostDecoratorTest() {
         postFitness = threadFitness1.originalPost
     }
 
+    private fun decorate(post: Post, body: String): String {
+        post.body = body
+        return markupCompiler.compile(post)
+    }
+
     @Test
     fun `valid cross thread link`() {
         decorate(postRandom, ">>1").shouldContainInOrder("/boards/r/thread/1", Constants.CROSSLINK_CLASS_VALID)
@@ -85,6 +88,22 @@ internal class CrosslinkDecoratorTest : PostDecoratorTest() {
         }
     }
 
+    @Test
+    fun `multiple links to different boards`() {
+        decorate(postRandom, ">>4 >>>/fit/1 >>42 >>>/fit/ >>>/q/ >>>/fit/42 >>99999999999999999999").shouldContainInOrder(
+            "/boards/r/thread/3#4",
+            Constants.CROSSLINK_DIFF_THREAD,
+            "/boards/fit/thread/1#1",
+            Constants.CROSSLINK_DIFF_THREAD,
+            Constants.CROSSLINK_CLASS_INVALID,
+            "/boards/fit",
+            Constants.CROSSLINK_CLASS_VALID,
+            Constants.CROSSLINK_CLASS_INVALID,
+            Constants.CROSSLINK_CLASS_INVALID,
+            Constants.CROSSLINK_CLASS_INVALID
+        )
+    }
+
     @Test
     fun `invalid cross board link`() {
         decorate(postFitness, "This points to >>>/r/42").shouldContain(Constants.CROSSLINK_CLASS_INVALID)
@@ -0,0 +1,245 @@
+package com.github.njuro.jard.post.decorators
+
+import com.github.njuro.jard.common.Constants
+import com.github.njuro.jard.post.Post
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContainInOrder
+import io.mockk.every
+import io.mockk.mockk
+import mu.KotlinLogging
+import org.junit.jupiter.api.Assertions.assertTimeoutPreemptively
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Nested
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.MethodSource
+import org.junit.jupiter.params.provider.ValueSource
+import java.time.Duration
+
+private val log = KotlinLogging.logger { }
+
+internal class MarkupCompilerTest {
+
+    private val crosslinkDecorator = mockk<CrosslinkDecorator> {
+        every { resolveCrosslinks(any(), any()) } answers { secondArg<List<Crosslink>>().forEach(::resolve) }
+    }
+
+    private val compiler = MarkupCompiler(crosslinkDecorator)
+
+    private val legacyChain = LegacyDecoratorChain(crosslinkDecorator)
+
+    private fun decorate(body: String): String {
+        val post = Post.builder().body(body).build()
+        return compiler.compile(post).also { log.info { "$body -> $it" } }
+    }
+
+    /** Resolves crosslinks without database - post numbers with more than two digits are invalid. */
+    private fun resolve(crosslink: Crosslink) {
+        if (crosslink.boardLabel == null) {
+            crosslink.boardLabel = "r"
+        }
+        crosslink.isValid = crosslink.postNumber.length <= 2
+        crosslink.href = "/boards/${crosslink.boardLabel}" +
+            if (crosslink.postNumber.isEmpty()) "" else "/thread/1#${crosslink.postNumber}"
+        crosslink.special = when (crosslink.postNumber) {
+            "1" -> Constants.CROSSLINK_OP
+            "3" -> Constants.CROSSLINK_DIFF_THREAD
+            else -> ""
+        }
+    }
+
+    @Nested
+    @DisplayName("code")
+    inner class Code {
+        @ParameterizedTest
+        @ValueSource(strings = [CODE_VALID_1, CODE_VALID_2, CODE_VALID_3])
+        fun `valid code block`(input: String) {
+            decorate(input).shouldContainInOrder(Constants.CODE_START, Constants.CODE_END)
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = [CODE_INVALID_1, CODE_INVALID_2, CODE_INVALID_3, CODE_INVALID_4, CODE_INVALID_5])
+        fun `invalid code block`(input: String) {
+            decorate(input) shouldBe input
+        }
+    }
+
+    @Nested
+    @DisplayName("greentext")
+    inner class Greentext {
+        @ParameterizedTest
+        @ValueSource(
+            strings = [
+                GREENTEXT_VALID_1, GREENTEXT_VALID_2, GREENTEXT_VALID_3,
+                GREENTEXT_VALID_4, GREENTEXT_VALID_5, GREENTEXT_VALID_6
+            ]
+        )
+        fun `valid greentext`(input: String) {
+            decorate(input).shouldContainInOrder(Constants.GREENTEXT_START, Constants.GREENTEXT_END)
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = [GREENTEXT_INVALID_1, GREENTEXT_INVALID_2, GREENTEXT_INVALID_3])
+        fun `invalid greentext`(input: String) {
+            decorate(input) shouldBe input
+        }
+    }
+
+    @Nested
+    @DisplayName("hyperlink")
+    inner class Hyperlink {
+        @Test
+        fun `valid hyperlink`() {
+            decorate(HYPERLINK_VALID).shouldContainInOrder(
+                Constants.HYPERLINK_START.substring(0, 3), "google.com", "google.com", Constants.HYPERLINK_END
+            )
+        }
+
+        @Test
+        fun `multiple hyperlinks`() {
+            decorate(HYPERLINK_MULTIPLE).shouldContainInOrder(
+                Constants.HYPERLINK_START.substring(0, 3),
+                "google.com",
+                "google.com",
+                Constants.HYPERLINK_END,
+                Constants.HYPERLINK_START.substring(0, 3),
+                "yahoo.com",
+                "yahoo.com",
+                Constants.HYPERLINK_END
+            )
+        }
+
+        @Test
+        fun `invalid hyperlink`() {
+            decorate(HYPERLINK_INVALID) shouldBe HYPERLINK_INVALID
+        }
+    }
+
+    @Nested
+    @DisplayName("spoiler")
+    inner class Spoiler {
+        @ParameterizedTest
+        @ValueSource(strings = [SPOILER_VALID_1, SPOILER_VALID_2, SPOILER_VALID_3, SPOILER_VALID_4])
+        fun `valid spoiler`(input: String) {
+            decorate(input).shouldContainInOrder(Constants.SPOILER_START, Constants.SPOILER_END)
+        }
+
+        @ParameterizedTest
+        @ValueSource(
+            strings = [
+                SPOILER_INVALID_1, SPOILER_INVALID_2, SPOILER_INVALID_3, SPOILER_INVALID_4,
+                SPOILER_INVALID_5, SPOILER_INVALID_6, SPOILER_INVALID_7
+            ]
+        )
+        fun `invalid spoiler`(input: String) {
+            decorate(input) shouldBe input
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("compatibilityInputs")
+    fun `produce same output as legacy decorator chain`(input: String) {
+        decorate(input) shouldBe legacyChain.decorate(Post.builder().body(input).build())
+    }
+
+    @ParameterizedTest
+    @MethodSource("adversarialInputs")
+    fun `compile adversarial input in linear time`(input: String) {
+        assertTimeoutPreemptively(Duration.ofSeconds(2)) {
+            compiler.compile(Post.builder().body(input).build())
+        }
+    }
+
+    @Suppress("unused")
+    fun compatibilityInputs() = listOf(
+        CODE_VALID_1, CODE_VALID_2, CODE_VALID_3,
+        CODE_INVALID_1, CODE_INVALID_2, CODE_INVALID_3, CODE_INVALID_4, CODE_INVALID_5,
+        GREENTEXT_VALID_1, GREENTEXT_VALID_2, GREENTEXT_VALID_3,
+        GREENTEXT_VALID_4, GREENTEXT_VALID_5, GREENTEXT_VALID_6,
+        GREENTEXT_INVALID_1, GREENTEXT_INVALID_2, GREENTEXT_INVALID_3,
+        HYPERLINK_VALID, HYPERLINK_MULTIPLE, HYPERLINK_INVALID,
+        SPOILER_VALID_1, SPOILER_VALID_2, SPOILER_VALID_3, SPOILER_VALID_4,
+        SPOILER_INVALID_1, SPOILER_INVALID_2, SPOILER_INVALID_3, SPOILER_INVALID_4,
+        SPOILER_INVALID_5, SPOILER_INVALID_6, SPOILER_INVALID_7,
+        // crosslinks
+        ">>1", ">>42", ">>123", "To different thread >>3 more text\n >>1 and to OP", "Some text  >>>/fit/1",
+        ">>>/r/4 some text", "This points to >>>/r/42", "This is pure valid link to >>>/fit/  ",
+        ">>", " >>>", ">> 1", ">>/r/1", ">>> /fit/1", ">>abc", ">>>abc", ">>>//123", ">>/fit/", ">>>5", ">>1>>2",
+        // combinations
+        "",
+        "Hello\nworld\n",
+        "<script>alert('xss')</script> & \"quotes\"",
+        ">>1\n>quote with https://example.com/path?a=1 and **spoiler**",
+        "[code]\nfun main() {\n    println(\"hi\")\n}\n[/code]",
+        "[code]\n>quoted code\n[/code]",
+        "[code]&[/code] [code]>[/code]",
+        ">implying [spoiler]secret[/spoiler] >>2",
+        "  \n\n> greentext after blank lines\n \n",
+        "text >>>/fit/\n>after board link",
+        ">>>/r/ board link\n>>>/fit/4 more",
+        "**spoiler?** text ** not closed",
+        "[code]**[/code]** after",
+        "** >>5 ** and ** \n **",
+        "*****text**",
+        "check https://www.google.com. and http://a.b/c_(d)",
+        "HTTPS://EXAMPLE.COM/UPPER http://localhost:8080/x http://a.b_c",
+        "Crème brûlée → café",
+        ">greentext\r\nwindows line\r\n>another\r\n",
+        "[SPOILER]caps[/Spoiler] [Code]x[/CODE]",
+        ">>12 >>13\n>>14",
+        "> >>5 in greentext https://example.com\n>>6 not greentext",
+        "[spoiler]multiline\n>greentext\n[code]code[/code]**"
+    )
+
+    @Suppress("unused")
+    fun adversarialInputs() = listOf(
+        "[code]".repeat(20_000) + "a",
+        "[code]a".repeat(20_000),
+        "[spoiler]".repeat(20_000) + "a",
+        "**a".repeat(30_000),
+        "** ".repeat(30_000) + "a",
+        ">>>/" + "a".repeat(100_000),
+        ">>>/a ".repeat(20_000),
+        "http://" + "a".repeat(100_000),
+        "http://a".repeat(20_000),
+        "\n".repeat(50_000) + " ".repeat(50_000),
+        " \n".repeat(50_000) + ">"
+    )
+
+    companion object {
+        private const val CODE_VALID_1 = "[code]text[/code]"
+        private const val CODE_VALID_2 = "[CODE]text[/code]"
+        private const val CODE_VALID_3 = "[code]\nmultiple\n[/code] \n [code]code blocks[/code]"
+        private const val CODE_INVALID_1 = "[code]text"
+        private const val CODE_INVALID_2 = "[code]text[code]"
+        private const val CODE_INVALID_3 = "test[/code]"
+        private const val CODE_INVALID_4 = "[code] [/code]"
+        private const val CODE_INVALID_5 = "text"
+
+        private const val GREENTEXT_VALID_1 = ">text"
+        private const val GREENTEXT_VALID_2 = ">  text"
+        private const val GREENTEXT_VALID_3 = "    >longer text > another"
+        private const val GREENTEXT_VALID_4 = "  > some longer text"
+        private const val GREENTEXT_VALID_5 = ">>>multiple quotes"
+        private const val GREENTEXT_VALID_6 = ">multiline\r\n>text"
+        private const val GREENTEXT_INVALID_1 = "aaa>text"
+        private const val GREENTEXT_INVALID_2 = "    aaaa > text"
+        private const val GREENTEXT_INVALID_3 = " aaa>text "
+
+        private const val HYPERLINK_VALID = "text https://google.com text"
+        private const val HYPERLINK_MULTIPLE = "text https://google.com http://yahoo.com/something text"
+        private const val HYPERLINK_INVALID = "text http://google www.google.com text"
+
+        private const val SPOILER_VALID_1 = "[spoiler]text[/spoiler]"
+        private const val SPOILER_VALID_2 = "**text**"
+        private const val SPOILER_VALID_3 = "[SPOILER]text[/spoiler]"
+        private const val SPOILER_VALID_4 = "**multiple** \n [spoiler]\nspoilers\n[spoiler]"
+        private const val SPOILER_INVALID_1 = "[spoiler]text"
+        private const val SPOILER_INVALID_2 = "**text"
+        private const val SPOILER_INVALID_3 = "*****"
+        private const val SPOILER_INVALID_4 = "[spoiler][spoiler]"
+        private const val SPOILER_INVALID_5 = "**text[spoiler]"
+        private const val SPOILER_INVALID_6 = "**  **"
+        private const val SPOILER_INVALID_7 = "text"
+    }
+}
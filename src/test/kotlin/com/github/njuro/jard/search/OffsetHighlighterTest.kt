@@ -0,0 +1,73 @@
+package com.github.njuro.jard.search
+
+import com.github.njuro.jard.common.Constants.SEARCH_RESULT_FRAGMENT_SIZE
+import com.github.njuro.jard.common.Constants.SEARCH_RESULT_HIGHLIGHT_END
+import com.github.njuro.jard.common.Constants.SEARCH_RESULT_HIGHLIGHT_START
+import io.kotest.matchers.ints.shouldBeInRange
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import io.kotest.matchers.string.shouldEndWith
+import io.kotest.matchers.string.shouldNotContain
+import io.kotest.matchers.string.shouldStartWith
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilterFactory
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory
+import org.apache.lucene.analysis.custom.CustomAnalyzer
+import org.apache.lucene.analysis.snowball.SnowballPorterFilterFactory
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory
+import org.apache.lucene.queryparser.simple.SimpleQueryParser
+import org.junit.jupiter.api.Test
+
+internal class OffsetHighlighterTest {
+
+    private val analyzer = CustomAnalyzer.builder()
+        .withTokenizer(StandardTokenizerFactory::class.java)
+        .addCharFilter(HTMLStripCharFilterFactory::class.java)
+        .addTokenFilter(LowerCaseFilterFactory::class.java)
+        .addTokenFilter(SnowballPorterFilterFactory::class.java, "language", "English")
+        .build()
+
+    private fun highlight(query: String, text: String) =
+        OffsetHighlighter(SimpleQueryParser(analyzer, FIELD).parse(query), FIELD)
+            .highlight(text, OffsetHighlighter.encodeOffsets(analyzer, FIELD, text))
+
+    private fun mark(term: String) = "$SEARCH_RESULT_HIGHLIGHT_START$term$SEARCH_RESULT_HIGHLIGHT_END"
+
+    @Test
+    fun `highlight stemmed terms`() {
+        highlight("posting", "Posted <b>posts</b> here") shouldBe "${mark("Posted")} <b>${mark("posts")}</b> here"
+    }
+
+    @Test
+    fun `highlight fuzzy and prefix terms`() {
+        highlight("first~1 unrel*", "Forst or first unrelated") shouldBe
+            "${mark("Forst")} or ${mark("first")} ${mark("unrelated")}"
+    }
+
+    @Test
+    fun `don't highlight excluded terms`() {
+        highlight("first -second", "first second") shouldBe "${mark("first")} second"
+    }
+
+    @Test
+    fun `keep text without searched terms`() {
+        highlight("missing", "Nothing to see here") shouldBe "Nothing to see here"
+    }
+
+    @Test
+    fun `highlight best fragment of long text`() {
+        val text = "lorem ".repeat(50) + "first " + "ipsum ".repeat(5) + "second " + "dolor ".repeat(50)
+
+        highlight("first second", text).let {
+            it shouldStartWith mark("first")
+            it shouldContain mark("second")
+            it shouldNotContain "lorem"
+            it shouldEndWith "dolor"
+            val fragment = it.replace(SEARCH_RESULT_HIGHLIGHT_START, "").replace(SEARCH_RESULT_HIGHLIGHT_END, "")
+            fragment.length shouldBeInRange (SEARCH_RESULT_FRAGMENT_SIZE until SEARCH_RESULT_FRAGMENT_SIZE + "dolor".length)
+        }
+    }
+
+    companion object {
+        private const val FIELD = "body"
+    }
+}
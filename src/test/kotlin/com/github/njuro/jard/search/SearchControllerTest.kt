@@ -8,7 +8,9 @@ import com.github.njuro.jard.post.dto.PostDto
 import com.github.njuro.jard.search.dto.SearchResultsDto
 import com.github.njuro.jard.user.UserAuthority
 import com.ninjasquad.springmockk.MockkBean
+import io.kotest.matchers.nulls.shouldBeNull
 import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.should
 import io.kotest.matchers.shouldBe
 import io.mockk.every
 import io.mockk.slot
@@ -17,6 +19,7 @@ import org.junit.jupiter.api.Nested
 import org.junit.jupiter.api.Test
 import org.springframework.test.web.servlet.get
 import org.springframework.test.web.servlet.post
+import java.time.Instant
 
 @WithContainerDatabase
 internal class SearchControllerTest : MockMvcTest() {
@@ -46,14 +49,49 @@ internal class SearchControllerTest : MockMvcTest() {
     @Test
     fun `search posts`() {
         val query = slot<String>()
-        every { searchFacade.searchPosts(capture(query)) } returns SearchResultsDto.builder<PostDto>()
+        val filter = slot<PostSearchFilter>()
+        every { searchFacade.searchPosts(capture(query), capture(filter), "token", 10) } returns SearchResultsDto.builder<PostDto>()
             .resultsCount(2)
             .totalResultsCount(5)
             .resultList(listOf(PostDto.builder().build()))
             .build()
 
-        mockMvc.get("${Mappings.API_ROOT_SEARCH}?query=test-query") { setUp() }.andExpect { status { isOk() } }
+        mockMvc.get(
+            "${Mappings.API_ROOT_SEARCH}?query=test-query&boardLabel=r&threadNumber=1" +
+                "&createdAfter=2021-01-01T00:00:00Z&withAttachment=true&pageToken=token&pageSize=10"
+        ) { setUp() }.andExpect { status { isOk() } }
             .andReturnConverted<SearchResultsDto<PostDto>>().shouldNotBeNull()
         query.captured shouldBe "test-query"
+        filter.captured.should {
+            it.boardLabel shouldBe "r"
+            it.threadNumber shouldBe 1L
+            it.createdAfter.toInstant() shouldBe Instant.parse("2021-01-01T00:00:00Z")
+            it.createdBefore.shouldBeNull()
+            it.withAttachment shouldBe true
+        }
+    }
+
+    @Test
+    fun `reject search when too many searches are running`() {
+        every { searchFacade.searchPosts(any(), any(), any(), any()) } throws SearchRejectedException()
+
+        mockMvc.get("${Mappings.API_ROOT_SEARCH}?query=test-query") { setUp() }
+            .andExpect { status { isTooManyRequests() } }
+    }
+
+    @Test
+    fun `reject invalid page token`() {
+        every { searchFacade.searchPosts(any(), any(), any(), any()) } throws InvalidSearchPageTokenException()
+
+        mockMvc.get("${Mappings.API_ROOT_SEARCH}?query=test-query&pageToken=invalid") { setUp() }
+            .andExpect { status { isBadRequest() } }
+    }
+
+    @Test
+    fun `reject thread filter without board label`() {
+        every { searchFacade.searchPosts(any(), any(), any(), any()) } throws InvalidSearchFilterException()
+
+        mockMvc.get("${Mappings.API_ROOT_SEARCH}?query=test-query&threadNumber=1") { setUp() }
+            .andExpect { status { isBadRequest() } }
     }
 }
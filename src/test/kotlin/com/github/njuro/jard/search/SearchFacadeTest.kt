@@ -2,19 +2,31 @@ package com.github.njuro.jard.search
 
 import com.github.njuro.jard.TestDataRepository
 import com.github.njuro.jard.WithContainerDatabase
+import com.github.njuro.jard.attachment
 import com.github.njuro.jard.board
 import com.github.njuro.jard.common.Constants
 import com.github.njuro.jard.post
 import com.github.njuro.jard.post.dto.PostDto
+import com.github.njuro.jard.search.dto.SearchResultsDto
 import com.github.njuro.jard.thread
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.inspectors.forAll
+import io.kotest.matchers.booleans.shouldBeFalse
 import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
 import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.collections.shouldNotBeEmpty
+import io.kotest.matchers.nulls.shouldNotBeNull
 import io.kotest.matchers.should
 import io.kotest.matchers.shouldBe
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
 import org.springframework.transaction.support.TransactionTemplate
+import java.time.OffsetDateTime
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 @SpringBootTest
 @WithContainerDatabase
@@ -58,7 +70,7 @@ internal class SearchFacadeTest {
             val reply4 = db.insert(post(thread1, postNumber = 6L, body = "Another unrelated reply"))
         }
 
-        searchFacade.searchPosts("first~1").should {
+        search("first~1").should {
             it.totalResultsCount shouldBe 3
             it.resultsCount shouldBe 3
             it.resultList.map(PostDto::getPostNumber).shouldContainExactlyInAnyOrder(1L, 4L, 5L)
@@ -67,4 +79,139 @@ internal class SearchFacadeTest {
                 .shouldBeTrue()
         }
     }
+
+    @Test
+    fun `search posts in parallel`() {
+        transactionTemplate.executeWithoutResult {
+            val board = db.insert(board(label = "s"))
+            val thread = db.insert(thread(board).apply { originalPost.body = "parallel search" })
+            (2L..20L).forEach { db.insert(post(thread, postNumber = it, body = "parallel reply $it")) }
+        }
+
+        val executor = Executors.newFixedThreadPool(Constants.MAX_CONCURRENT_SEARCHES * 2)
+        try {
+            val results = (1..100).map {
+                executor.submit<Any> {
+                    try {
+                        search("parallel")
+                    } catch (ex: SearchRejectedException) {
+                        ex
+                    }
+                }
+            }.map { it.get(1, TimeUnit.MINUTES) }
+
+            results.filterIsInstance<SearchResultsDto<*>>().shouldNotBeEmpty().forAll {
+                it.totalResultsCount shouldBe 20
+            }
+            results.filterNot { it is SearchResultsDto<*> || it is SearchRejectedException }.shouldBeEmpty()
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun `reject search when too many searches are running`() {
+        shouldThrow<SearchRejectedException> {
+            SearchFacade(null, null, null, 0).searchPosts("query", PostSearchFilter(), null, 1)
+        }
+    }
+
+    @Test
+    fun `filter searched posts`() {
+        val now = OffsetDateTime.now()
+        transactionTemplate.executeWithoutResult {
+            val board = db.insert(board(label = "f"))
+            val thread1 = db.insert(thread(board).apply { originalPost.body = "filterable" }, threadNumber = 1L)
+            val thread2 = db.insert(thread(board).apply { originalPost.body = "filterable" }, threadNumber = 2L)
+            db.insert(post(thread1, postNumber = 3L, body = "filterable", createdAt = now.minusDays(10)))
+            db.insert(post(thread2, postNumber = 4L, body = "filterable", attachment = attachment()))
+            val otherBoard = db.insert(board(label = "g"))
+            db.insert(thread(otherBoard).apply { originalPost.body = "filterable" }, threadNumber = 1L)
+        }
+
+        fun labels(filter: PostSearchFilter.PostSearchFilterBuilder) =
+            search("filterable", filter.build()).resultList.map { "${it.thread.board.label}/${it.postNumber}" }
+
+        labels(PostSearchFilter.builder()).shouldContainExactlyInAnyOrder("f/1", "f/2", "f/3", "f/4", "g/1")
+        labels(PostSearchFilter.builder().boardLabel("f")).shouldContainExactlyInAnyOrder("f/1", "f/2", "f/3", "f/4")
+        labels(PostSearchFilter.builder().boardLabel("f").threadNumber(2L)).shouldContainExactlyInAnyOrder("f/2", "f/4")
+        labels(PostSearchFilter.builder().createdBefore(now.minusDays(1))).shouldContainExactly("f/3")
+        labels(PostSearchFilter.builder().createdAfter(now.minusDays(1)).boardLabel("f"))
+            .shouldContainExactlyInAnyOrder("f/1", "f/2", "f/4")
+        labels(PostSearchFilter.builder().withAttachment(true)).shouldContainExactly("f/4")
+    }
+
+    @Test
+    fun `return complete searched posts`() {
+        transactionTemplate.executeWithoutResult {
+            val board = db.insert(board(label = "j"))
+            val thread = db.insert(thread(board).apply { originalPost.body = "complete" }, threadNumber = 7L)
+            db.insert(
+                post(
+                    thread,
+                    postNumber = 8L,
+                    body = "complete reply",
+                    name = "Anon",
+                    sage = true,
+                    attachment = attachment(originalFilename = "attached.png")
+                )
+            )
+        }
+
+        search("complete").resultList.associateBy(PostDto::getPostNumber).should {
+            it.keys.shouldContainExactlyInAnyOrder(7L, 8L)
+            it[7L]!!.isOriginalPost.shouldBeTrue()
+            it[8L]!!.should { reply ->
+                reply.id.shouldNotBeNull()
+                reply.isOriginalPost.shouldBeFalse()
+                reply.name shouldBe "Anon"
+                reply.isSage.shouldBeTrue()
+                reply.attachment.originalFilename shouldBe "attached.png"
+                reply.thread.threadNumber shouldBe 7L
+                reply.thread.board.label shouldBe "j"
+            }
+        }
+    }
+
+    @Test
+    fun `reject thread filter without board label`() {
+        shouldThrow<InvalidSearchFilterException> {
+            search("query", PostSearchFilter.builder().threadNumber(1L).build())
+        }
+    }
+
+    @Test
+    fun `page through search results`() {
+        transactionTemplate.executeWithoutResult {
+            val board = db.insert(board(label = "p"))
+            val thread = db.insert(thread(board).apply { originalPost.body = "pageable" })
+            (2L..12L).forEach {
+                db.insert(post(thread, postNumber = it, body = "pageable ".repeat((it % 3 + 1).toInt())))
+            }
+        }
+
+        val firstPage = search("pageable", pageSize = 12)
+        firstPage.nextPageToken.shouldNotBeNull()
+
+        val pages = generateSequence(search("pageable", pageSize = 5)) {
+            it.nextPageToken?.let { token -> search("pageable", pageToken = token, pageSize = 5) }
+        }.toList()
+        pages.map { it.resultsCount } shouldContainExactly listOf(5, 5, 2)
+        pages.flatMap { it.resultList }.map(PostDto::getPostNumber) shouldContainExactly
+            firstPage.resultList.map(PostDto::getPostNumber)
+    }
+
+    @Test
+    fun `reject invalid page token`() {
+        shouldThrow<InvalidSearchPageTokenException> {
+            search("query", pageToken = "invalid token")
+        }
+    }
+
+    private fun search(
+        query: String,
+        filter: PostSearchFilter = PostSearchFilter(),
+        pageToken: String? = null,
+        pageSize: Int = Constants.MAX_SEARCH_RESULTS_COUNT
+    ) = searchFacade.searchPosts(query, filter, pageToken, pageSize)
 }
@@ -10,8 +10,12 @@ import com.github.njuro.jard.boardSettings
 import com.github.njuro.jard.config.security.captcha.CaptchaProvider
 import com.github.njuro.jard.config.security.captcha.CaptchaVerificationException
 import com.github.njuro.jard.post
+import com.github.njuro.jard.post.PostLink
+import com.github.njuro.jard.post.PostService
+import com.github.njuro.jard.post.dto.BacklinkDto
 import com.github.njuro.jard.security.captcha.MockCaptchaVerificationResult
 import com.github.njuro.jard.thread
+import com.github.njuro.jard.threadStatistics
 import com.github.njuro.jard.toForm
 import com.github.njuro.jard.utils.validation.PropertyValidationException
 import com.ninjasquad.springmockk.MockkBean
@@ -19,6 +23,7 @@ import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.matchers.booleans.shouldBeFalse
 import io.kotest.matchers.booleans.shouldBeTrue
 import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
 import io.kotest.matchers.collections.shouldHaveSize
 import io.kotest.matchers.date.shouldBeAfter
 import io.kotest.matchers.nulls.shouldNotBeNull
@@ -26,11 +31,13 @@ import io.kotest.matchers.optional.shouldBePresent
 import io.kotest.matchers.optional.shouldNotBePresent
 import io.kotest.matchers.shouldBe
 import io.mockk.every
+import io.mockk.verify
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.DisplayName
 import org.junit.jupiter.api.Nested
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.transaction.annotation.Propagation
 import org.springframework.transaction.annotation.Transactional
 import java.time.OffsetDateTime
 
@@ -47,6 +54,18 @@ internal class ThreadFacadeTest : MapperTest() {
     @MockkBean
     private lateinit var banFacade: BanFacade
 
+    @MockkBean(relaxed = true)
+    private lateinit var threadUpdateHub: ThreadUpdateHub
+
+    @Autowired
+    private lateinit var threadService: ThreadService
+
+    @Autowired
+    private lateinit var postService: PostService
+
+    @Autowired
+    private lateinit var threadStatisticsRepository: ThreadStatisticsRepository
+
     @Autowired
     private lateinit var db: TestDataRepository
 
@@ -116,7 +135,7 @@ internal class ThreadFacadeTest : MapperTest() {
         @Test
         @Suppress("UNUSED_VARIABLE")
         fun `delete stalest thread when limit is exceeded`() {
-            val board = db.insert(board(label = "r", settings = boardSettings(threadLimit = 2)))
+            val board = db.insert(board(label = "r", threadCount = 2, settings = boardSettings(threadLimit = 2)))
             val thread1 = db.insert(thread(board, lastBumpAt = OffsetDateTime.now().minusWeeks(1)))
             val thread2 = db.insert(thread(board))
             val thread3 = threadFacade.createThread(thread(board).toForm(), board.toDto())
@@ -146,6 +165,7 @@ internal class ThreadFacadeTest : MapperTest() {
             val created = threadFacade.replyToThread(postForm, thread.toDto())
             created.ip.shouldNotBeNull()
             created.postNumber shouldBe thread.threadNumber
+            verify { threadUpdateHub.publishNewReply(thread.id, created) }
             db.select(thread)
                 .shouldBePresent {
                     it.lastReplyAt shouldBeAfter originalLastReplyAt
@@ -222,7 +242,7 @@ internal class ThreadFacadeTest : MapperTest() {
         @Test
         fun `don't update last bump time when post limit is exceeded`() {
             val board = db.insert(board(label = "r", settings = boardSettings(bumpLimit = 2)))
-            val thread = db.insert(thread(board))
+            val thread = db.insert(thread(board, statistics = threadStatistics(replyCount = 2)))
             db.insert(post(thread, postNumber = 2L))
             db.insert(post(thread, postNumber = 3L))
 
@@ -247,6 +267,18 @@ internal class ThreadFacadeTest : MapperTest() {
         result.replies shouldHaveSize 2
     }
 
+    @Test
+    fun `get thread with backlinks`() {
+        val board = db.insert(board(label = "r"))
+        val thread = db.insert(thread(board))
+        db.insert(post(thread, postNumber = 2L))
+        db.insert(PostLink(db.insert(post(thread, postNumber = 3L)).id, thread.originalPost.id))
+
+        val result = threadFacade.getThread(thread.toDto())
+        result.originalPost.backlinks.map(BacklinkDto::getPostNumber) shouldContainExactly listOf(3L)
+        result.replies.forEach { it.backlinks.shouldBeEmpty() }
+    }
+
     @Test
     fun `toggle lock on thread`() {
         val board = db.insert(board(label = "r"))
@@ -276,6 +308,19 @@ internal class ThreadFacadeTest : MapperTest() {
 
         threadFacade.deletePost(thread.toDto(), thread.originalPost.toDto())
         db.select(thread).shouldNotBePresent()
+        verify { threadUpdateHub.publishDeletedThread(thread.id) }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    fun `delete thread with statistics`() {
+        val board = db.insert(board(label = "r"))
+        val thread = threadService.saveThread(thread(board))
+        postService.savePost(post(thread))
+
+        threadFacade.deletePost(thread.toDto(), thread.originalPost.toDto())
+        db.select(thread).shouldNotBePresent()
+        threadStatisticsRepository.existsById(thread.id).shouldBeFalse()
     }
 
     @Test
@@ -287,5 +332,6 @@ internal class ThreadFacadeTest : MapperTest() {
         threadFacade.deletePost(thread.toDto(), reply.toDto())
         db.select(thread).shouldBePresent()
         threadFacade.getThread(thread.toDto()).replies.shouldBeEmpty()
+        verify { threadUpdateHub.publishDeletedPost(thread.id, reply.toDto()) }
     }
 }
@@ -71,13 +71,4 @@ internal class ThreadRepositoryTest {
         threadRepository.findTopByBoardIdAndStickiedFalseOrderByLastBumpAtAsc(board.id)
             .shouldBePresent { it.id shouldBe thread2.id }
     }
-
-    @Test
-    fun `count threads in board`() {
-        db.insert(thread(board), threadNumber = 1L)
-        db.insert(thread(board), threadNumber = 2L)
-        db.insert(thread(board), threadNumber = 3L)
-
-        threadRepository.countByBoardId(board.id) shouldBe 3
-    }
 }
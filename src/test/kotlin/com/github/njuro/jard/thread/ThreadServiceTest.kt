@@ -2,20 +2,29 @@ package com.github.njuro.jard.thread
 
 import com.github.njuro.jard.TestDataRepository
 import com.github.njuro.jard.WithContainerDatabase
+import com.github.njuro.jard.attachment
 import com.github.njuro.jard.board
 import com.github.njuro.jard.board.Board
+import com.github.njuro.jard.post
+import com.github.njuro.jard.post.Post
 import com.github.njuro.jard.thread
 import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.collections.shouldContainExactly
 import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.collections.shouldHaveSize
 import io.kotest.matchers.optional.shouldBeEmpty
 import io.kotest.matchers.optional.shouldBePresent
 import io.kotest.matchers.shouldBe
+import org.hibernate.SessionFactory
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.data.domain.PageRequest
 import org.springframework.transaction.annotation.Transactional
 import java.time.OffsetDateTime
+import javax.persistence.EntityManager
+import javax.persistence.PersistenceContext
 
 @SpringBootTest
 @WithContainerDatabase
@@ -28,6 +37,9 @@ internal class ThreadServiceTest {
     @Autowired
     private lateinit var db: TestDataRepository
 
+    @PersistenceContext
+    private lateinit var entityManager: EntityManager
+
     private lateinit var board: Board
 
     @BeforeEach
@@ -56,6 +68,53 @@ internal class ThreadServiceTest {
         }
     }
 
+    @Test
+    fun `get threads with latest replies`() {
+        val baseTime = OffsetDateTime.now().minusDays(1)
+        val thread1 = db.insert(thread(board, lastBumpAt = baseTime), threadNumber = 1L)
+        val thread2 = db.insert(thread(board, lastBumpAt = baseTime.plusHours(1)), threadNumber = 2L)
+        (3L..9L).forEach { db.insert(post(thread1, postNumber = it, createdAt = baseTime.plusMinutes(it))) }
+
+        val threads = threadService.getThreadsWithLatestRepliesFromBoard(board.id, PageRequest.of(0, 10))
+        threads.keys.map(Thread::getId).shouldContainExactly(thread2.id, thread1.id)
+        threads[thread1]!!.map(Post::getPostNumber).shouldContainExactly(5L, 6L, 7L, 8L, 9L)
+        threads[thread2]!!.shouldHaveSize(0)
+    }
+
+    @Test
+    fun `get threads with latest replies using constant number of queries`() {
+        var postNumber = 1L
+        fun insertThreadsWithReplies(count: Int) = repeat(count) {
+            val thread = db.insert(thread(board), threadNumber = postNumber++)
+            repeat(7) {
+                db.insert(
+                    post(
+                        thread,
+                        postNumber = postNumber,
+                        attachment = attachment(filename = "$postNumber.png", thumbnailFilename = "s$postNumber.png")
+                    )
+                )
+                postNumber++
+            }
+        }
+
+        val statistics = entityManager.entityManagerFactory.unwrap(SessionFactory::class.java).statistics
+        fun countQueries(pageSize: Int): Long {
+            entityManager.flush()
+            entityManager.clear()
+            statistics.isStatisticsEnabled = true
+            statistics.clear()
+            threadService.getThreadsWithLatestRepliesFromBoard(board.id, PageRequest.of(0, pageSize))
+                .values.forEach { it shouldHaveSize 5 }
+            return statistics.prepareStatementCount.also { statistics.isStatisticsEnabled = false }
+        }
+
+        insertThreadsWithReplies(2)
+        val smallPageQueries = countQueries(2)
+        insertThreadsWithReplies(8)
+        countQueries(10) shouldBe smallPageQueries
+    }
+
     @Test
     @Suppress("UNUSED_VARIABLE")
     fun `delete stalest thread from board`() {
@@ -2,51 +2,113 @@ package com.github.njuro.jard.thread
 
 import com.github.njuro.jard.TestDataRepository
 import com.github.njuro.jard.WithContainerDatabase
-import com.github.njuro.jard.WithTestDataRepository
 import com.github.njuro.jard.attachment
 import com.github.njuro.jard.board
 import com.github.njuro.jard.post
+import com.github.njuro.jard.post.Post
+import com.github.njuro.jard.post.PostService
 import com.github.njuro.jard.thread
 import io.kotest.matchers.optional.shouldBePresent
 import io.kotest.matchers.should
 import io.kotest.matchers.shouldBe
+import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.transaction.annotation.Propagation
 import org.springframework.transaction.annotation.Transactional
-import javax.persistence.EntityManager
-import javax.persistence.PersistenceContext
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
-@DataJpaTest
-@WithTestDataRepository
+@SpringBootTest
 @WithContainerDatabase
 @Transactional
 internal class ThreadStatisticsTest {
 
+    @Autowired
+    private lateinit var threadService: ThreadService
+
+    @Autowired
+    private lateinit var postService: PostService
+
     @Autowired
     private lateinit var db: TestDataRepository
 
-    @PersistenceContext
-    private lateinit var entityManager: EntityManager
+    private lateinit var thread: Thread
 
-    @Test
-    fun `extract thread statistics`() {
+    @BeforeEach
+    fun initializeThread() {
         val board = db.insert(board(label = "r"))
-        val thread = db.insert(thread(board))
-        db.insert(post(thread, ip = "127.0.0.1", postNumber = 2L))
-        db.insert(post(thread, ip = "127.0.0.2", postNumber = 3L, attachment = attachment(filename = "1.jpg")))
-        db.insert(post(thread, ip = "127.0.0.2", postNumber = 4L))
-        db.insert(post(thread, ip = "127.0.0.1", postNumber = 5L, attachment = attachment(filename = "2.jpg")))
-        db.insert(post(thread, ip = "127.0.0.3", postNumber = 6L, attachment = attachment(filename = "3.jpg")))
-        db.insert(post(thread, ip = "127.0.0.1", postNumber = 7L, attachment = attachment(filename = "4.jpg")))
-        db.insert(post(thread, ip = "127.0.0.1", postNumber = 8L, attachment = attachment(filename = "5.jpg")))
-        entityManager.flush()
-        entityManager.clear()
+        thread = threadService.saveThread(
+            thread(board).apply {
+                originalPost.ip = "127.0.0.1"
+                originalPost.attachment = db.insert(attachment(filename = "0.jpg"))
+            }
+        )
+    }
+
+    @Test
+    fun `create statistics for new thread`() {
+        assertStatistics(replyCount = 0, posterCount = 1, attachmentCount = 1)
+    }
+
+    @Test
+    fun `update statistics when replies are added`() {
+        reply(ip = "127.0.0.1")
+        reply(ip = "127.0.0.2", attachment = "1.jpg")
+        reply(ip = "127.0.0.2")
+        reply(ip = "127.0.0.1", attachment = "2.jpg")
+        reply(ip = "127.0.0.3", attachment = "3.jpg")
+        reply(ip = "127.0.0.4")
+
+        assertStatistics(replyCount = 6, posterCount = 4, attachmentCount = 4)
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    fun `count poster of parallel replies only once`() {
+        val executor = Executors.newFixedThreadPool(8)
+        try {
+            executor.invokeAll(
+                List(20) { index -> Callable { reply(ip = if (index % 2 == 0) "127.0.0.2" else "127.0.0.3") } }
+            ).forEach { it.get() }
+        } finally {
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.MINUTES)
+        }
+
+        assertStatistics(replyCount = 20, posterCount = 3, attachmentCount = 1)
+    }
+
+    @Test
+    fun `update statistics when replies are deleted`() {
+        val reply1 = reply(ip = "127.0.0.1")
+        val reply2 = reply(ip = "127.0.0.2")
+        reply(ip = "127.0.0.2")
+        val reply4 = reply(ip = "127.0.0.3")
+        val reply5 = reply(ip = "127.0.0.4")
+
+        postService.deletePost(reply2)
+        assertStatistics(replyCount = 4, posterCount = 4, attachmentCount = 1)
+
+        postService.deletePosts(listOf(reply1, reply4, reply5))
+        assertStatistics(replyCount = 1, posterCount = 2, attachmentCount = 1)
+    }
+
+    private fun reply(ip: String, attachment: String? = null): Post {
+        val post = post(thread, ip = ip)
+        if (attachment != null) {
+            post.attachment = db.insert(attachment(filename = attachment))
+        }
+        return postService.savePost(post)
+    }
 
+    private fun assertStatistics(replyCount: Int, posterCount: Int, attachmentCount: Int) {
         db.select(thread).shouldBePresent().statistics.should {
-            it.replyCount shouldBe 7
-            it.posterCount shouldBe 4
-            it.attachmentCount shouldBe 5
+            it.replyCount shouldBe replyCount
+            it.posterCount shouldBe posterCount
+            it.attachmentCount shouldBe attachmentCount
         }
     }
 }
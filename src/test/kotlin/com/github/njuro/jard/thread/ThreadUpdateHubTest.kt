@@ -0,0 +1,136 @@
+package com.github.njuro.jard.thread
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.njuro.jard.common.Constants
+import com.github.njuro.jard.post.dto.PostDto
+import com.github.njuro.jard.thread.dto.ThreadDto
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.should
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import io.kotest.matchers.string.shouldNotContain
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import java.util.UUID
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+internal class ThreadUpdateHubTest {
+
+    private lateinit var hub: ThreadUpdateHub
+
+    private val threadId = UUID.randomUUID()
+
+    @BeforeEach
+    fun initializeHub() {
+        hub = ThreadUpdateHub(ObjectMapper().findAndRegisterModules())
+    }
+
+    @AfterEach
+    fun shutdownHub() {
+        hub.shutdown()
+    }
+
+    @Test
+    fun `deliver new reply to subscribers`() {
+        val publicEmitter = RecordingEmitter()
+        val privateEmitter = RecordingEmitter()
+        hub.subscribe(threadId, false, publicEmitter)
+        hub.subscribe(threadId, true, privateEmitter)
+
+        hub.publishNewReply(threadId, reply(postNumber = 2L))
+
+        publicEmitter.nextEvent().shouldNotBeNull().should {
+            it shouldContain "event:${ThreadUpdateHub.EVENT_NEW_REPLY}"
+            it shouldContain "id:2"
+            it shouldContain "Hello"
+            it shouldNotContain "127.0.0.1"
+            it shouldNotContain "\"thread\""
+        }
+        privateEmitter.nextEvent().shouldNotBeNull() shouldContain "127.0.0.1"
+    }
+
+    @Test
+    fun `don't deliver updates of other threads`() {
+        val emitter = RecordingEmitter()
+        hub.subscribe(threadId, false, emitter)
+
+        hub.publishNewReply(UUID.randomUUID(), reply(postNumber = 2L))
+        emitter.nextEvent(timeout = 200).shouldBeNull()
+    }
+
+    @Test
+    fun `deliver deleted post to subscribers`() {
+        val emitter = RecordingEmitter()
+        hub.subscribe(threadId, false, emitter)
+
+        hub.publishDeletedPost(threadId, reply(postNumber = 3L))
+        emitter.nextEvent().shouldNotBeNull().should {
+            it shouldContain "event:${ThreadUpdateHub.EVENT_DELETED_POST}"
+            it shouldContain "\"postNumber\":3"
+        }
+    }
+
+    @Test
+    fun `close subscriptions when thread is deleted`() {
+        val emitter = RecordingEmitter()
+        hub.subscribe(threadId, false, emitter)
+
+        hub.publishDeletedThread(threadId)
+        emitter.nextEvent().shouldNotBeNull() shouldContain "event:${ThreadUpdateHub.EVENT_DELETED_THREAD}"
+        emitter.completed.await(5, TimeUnit.SECONDS).shouldBeTrue()
+        hub.getNumberOfSubscribers(threadId) shouldBe 0
+    }
+
+    @Test
+    fun `disconnect slow subscriber`() {
+        val fastEmitter = RecordingEmitter()
+        val slowEmitter = RecordingEmitter(blocked = true)
+        hub.subscribe(threadId, false, fastEmitter)
+        hub.subscribe(threadId, false, slowEmitter)
+
+        try {
+            repeat(Constants.THREAD_UPDATES_BUFFER_SIZE + 2) {
+                hub.publishNewReply(threadId, reply(postNumber = it + 2L))
+                fastEmitter.nextEvent().shouldNotBeNull()
+            }
+
+            slowEmitter.completed.await(5, TimeUnit.SECONDS).shouldBeTrue()
+            fastEmitter.completed.count shouldBe 1
+            hub.getNumberOfSubscribers(threadId) shouldBe 1
+        } finally {
+            slowEmitter.unblock.countDown()
+        }
+    }
+
+    private fun reply(postNumber: Long) = PostDto.builder()
+        .postNumber(postNumber)
+        .body("Hello")
+        .ip("127.0.0.1")
+        .thread(ThreadDto.builder().subject("Subject").build())
+        .build()
+
+    /** Emitter recording sent events instead of writing them to HTTP response. */
+    private class RecordingEmitter(blocked: Boolean = false) : SseEmitter() {
+        private val events = LinkedBlockingQueue<String>()
+        val unblock = CountDownLatch(if (blocked) 1 else 0)
+        val completed = CountDownLatch(1)
+
+        override fun send(builder: SseEventBuilder) {
+            unblock.await()
+            events.add(builder.build().joinToString("") { it.data.toString() })
+        }
+
+        override fun complete() {
+            completed.countDown()
+            super.complete()
+        }
+
+        fun nextEvent(timeout: Long = 5000): String? = events.poll(timeout, TimeUnit.MILLISECONDS)
+    }
+}